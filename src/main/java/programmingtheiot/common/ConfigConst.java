@@ -31,7 +31,11 @@ public class ConfigConst
 	public static final String DEFAULT_MQTT_SECURE_PROTOCOL = "ssl";
 	public static final int    DEFAULT_MQTT_PORT        = 1883;
 	public static final int    DEFAULT_MQTT_SECURE_PORT = 8883;
+	public static final int    DEFAULT_REDIS_PORT       = 6379;
 	public static final int    DEFAULT_KEEP_ALIVE       = 60;
+	public static final int    DEFAULT_MAX_INFLIGHT     = 10;
+	public static final int    DEFAULT_CONTROL_RESERVED_INFLIGHT = 2;
+	public static final int    DEFAULT_MAX_PUBLISH_WAIT_MILLIS   = 1000;
 	public static final int    DEFAULT_POLL_CYCLES      = 60;
 	public static final int    DEFAULT_TTL              = 60;
 	
@@ -107,6 +111,8 @@ public class ConfigConst
 	
 	public static final int    DEFAULT_COMMAND = 0;
 	public static final int    DEFAULT_STATUS  = 0;
+	public static final int    ANOMALY_SPIKE_STATUS = 10;
+	public static final int    ANOMALY_STUCK_STATUS = 11;
 	public static final int    OFF_COMMAND     = DEFAULT_COMMAND;
 	public static final int    ON_COMMAND      = 1;
 	public static final int    REBOOT_SYSTEM_COMMAND    = 100;
@@ -202,6 +208,89 @@ public class ConfigConst
 	
 	public static final String ENABLE_RUN_FOREVER_KEY        = "runForever";
 	
+	// CoAP content-format ID's (RFC 7252 / RFC 8949) for message payloads
+	public static final int    UNKNOWN_CONTENT_FORMAT = -1;
+	public static final int    JSON_CONTENT_FORMAT    = 50;
+	public static final int    CBOR_CONTENT_FORMAT    = 60;
+	public static final int    DEFAULT_CONTENT_FORMAT = JSON_CONTENT_FORMAT;
+	
+	public static final String JSON_CONTENT_FORMAT_NAME = "json";
+	public static final String CBOR_CONTENT_FORMAT_NAME = "cbor";
+	
+	// default payload encoding, and per resource override (prefixed
+	// with the resource type, e.g. 'ActuatorCmdContentFormat')
+	public static final String CONTENT_FORMAT_KEY            = "contentFormat";
+	public static final String CONTENT_FORMAT_KEY_SUFFIX     = "ContentFormat";
+	
+	public static final String ENABLE_INGESTION_PIPELINE_KEY = "enableIngestionPipeline";
+	public static final String STAGE_THREADS_KEY_SUFFIX      = "StageThreads";
+	public static final String STAGE_QUEUE_SIZE_KEY_SUFFIX   = "StageQueueSize";
+	public static final int    DEFAULT_STAGE_THREADS         = 1;
+	public static final int    DEFAULT_STAGE_QUEUE_SIZE      = 1024;
+	
+	public static final String ENABLE_SENSOR_EVENT_RING_KEY  = "enableSensorEventRing";
+	public static final String SENSOR_EVENT_RING_SIZE_KEY    = "sensorEventRingSize";
+	public static final int    DEFAULT_SENSOR_EVENT_RING_SIZE = 4096;
+	
+	// secs between metrics snapshots (0 to disable)
+	public static final String METRICS_REPORT_SECS_KEY       = "metricsReportSecs";
+	public static final int    DEFAULT_METRICS_REPORT_SECS   = 60;
+	
+	public static final String MAX_TRACKED_DEVICES_KEY       = "maxTrackedDevices";
+	public static final String DEVICE_STATE_IDLE_TIMEOUT_KEY = "deviceStateIdleTimeout";
+	
+	public static final String HANDLE_HUMIDITY_CHANGE_KEY           = "handleHumidityChangeOnDevice";
+	public static final String HUMIDITY_MAX_TIME_PAST_THRESHOLD_KEY = "humidityMaxTimePastThreshold";
+	public static final String NOMINAL_HUMIDITY_SETTING_KEY         = "nominalHumiditySetting";
+	public static final String TRIGGER_HUMIDIFIER_FLOOR_KEY         = "triggerHumidifierFloor";
+	public static final String TRIGGER_HUMIDIFIER_CEILING_KEY       = "triggerHumidifierCeiling";
+	
+	public static final String ANALYSIS_RULES_KEY               = "analysisRules";
+	public static final String RULE_SENSOR_TYPE_KEY             = "sensorType";
+	public static final String RULE_ACTUATOR_TYPE_KEY           = "actuatorType";
+	public static final String RULE_ACTUATOR_NAME_KEY           = "actuatorName";
+	public static final String RULE_FLOOR_KEY                   = "floor";
+	public static final String RULE_CEILING_KEY                 = "ceiling";
+	public static final String RULE_NOMINAL_KEY                 = "nominal";
+	public static final String RULE_MAX_TIME_PAST_THRESHOLD_KEY = "maxTimePastThreshold";
+	public static final String RULE_LOW_COMMAND_KEY             = "lowCommand";
+	public static final String RULE_HIGH_COMMAND_KEY            = "highCommand";
+	public static final String RULE_CONDITION_KEY               = "condition";
+	public static final String RULE_COMMAND_KEY                 = "command";
+	public static final String RULE_SENSOR_TYPES_KEY            = "sensorTypes";
+	public static final String RULE_CONDITIONS_KEY              = "conditions";
+	public static final String RULE_WITHIN_KEY                  = "within";
+	public static final String RULE_ORDERED_KEY                 = "ordered";
+	
+	public static final String TIMER_TICK_MILLIS_KEY    = "timerTickMillis";
+	public static final String TIMER_WHEEL_SIZE_KEY     = "timerWheelSize";
+	public static final String STALE_SENSOR_TIMEOUT_KEY = "staleSensorTimeout";
+	public static final String ACTUATOR_ACK_TIMEOUT_KEY = "actuatorAckTimeout";
+	
+	public static final int DEFAULT_TIMER_TICK_MILLIS    = 100;
+	public static final int DEFAULT_TIMER_WHEEL_SIZE     = 512;
+	public static final int DEFAULT_STALE_SENSOR_TIMEOUT = 0;
+	public static final int DEFAULT_ACTUATOR_ACK_TIMEOUT = 0;
+	
+	public static final String ACTUATION_COALESCE_WINDOW_MILLIS_KEY = "actuationCoalesceWindowMillis";
+	public static final int    DEFAULT_ACTUATION_COALESCE_WINDOW_MILLIS = 0;
+	
+	public static final String DEADBAND_FILTERS_KEY = "deadbandFilters";
+	public static final String DEADBAND_KEY         = "deadband";
+	public static final String MAX_SILENCE_KEY      = "maxSilence";
+	
+	public static final String AGGREGATION_WINDOWS_KEY = "aggregationWindows";
+	public static final String WINDOW_SIZE_KEY         = "windowSize";
+	public static final String WINDOW_SLIDE_KEY        = "windowSlide";
+	public static final String ALLOWED_LATENESS_KEY    = "allowedLateness";
+	
+	public static final String ANOMALY_DETECTORS_KEY = "anomalyDetectors";
+	public static final String EWMA_ALPHA_KEY        = "alpha";
+	public static final String Z_THRESHOLD_KEY       = "zThreshold";
+	public static final String MIN_STDDEV_KEY        = "minStdDev";
+	public static final String WARM_UP_READINGS_KEY  = "warmUpReadings";
+	public static final String STUCK_READINGS_KEY    = "stuckReadings";
+	
 	public static final String AWS_CLOUD_SVC_NAME     = "AWS";
 	public static final String AZURE_CLOUD_SVC_NAME   = "Azure";
 	public static final String GCP_CLOUD_SVC_NAME     = "GCP";
@@ -269,8 +358,14 @@ public class ConfigConst
 	public static final String USE_WEB_ACCESS_KEY   = "useWebAccess";
 	public static final String POLL_CYCLES_KEY      = "pollCycleSecs";
 	public static final String KEEP_ALIVE_KEY       = "keepAlive";
+	public static final String MAX_INFLIGHT_KEY     = "maxInflight";
+	public static final String CONTROL_RESERVED_INFLIGHT_KEY = "controlReservedInflight";
+	public static final String MAX_PUBLISH_WAIT_MILLIS_KEY   = "maxPublishWaitMillis";
 	public static final String DEFAULT_QOS_KEY      = "defaultQos";
 	public static final String ENABLE_CON_MSGS_KEY  = "enableConfirmedMsgs";
+	public static final String ENABLE_SERIES_COMPRESSION_KEY = "enableSeriesCompression";
+	
+	public static final String SERIES_TOPIC_SUFFIX  = "series";
 	
 	public static final String IMAGE_PREPROCESS_PATH_KEY = "imgPreprocessPath";
 	
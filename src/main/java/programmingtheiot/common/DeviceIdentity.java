@@ -0,0 +1,104 @@
+/**
+ * This class is part of the Programming the Internet of Things project.
+ *
+ * It is provided as a simple shell to guide the student and assist with
+ * implementation for the Programming the Internet of Things exercises,
+ * and designed to be modified by the student as needed.
+ */
+
+package programmingtheiot.common;
+
+/**
+ * Immutable identity of the device the GDA is running on, resolved once
+ * from configuration and then shared (lock-free) by the data model and
+ * codecs.
+ * <p>
+ * New IoT data instances use the identity's location ID as their default
+ * location ID, so creating or decoding them never needs to consult
+ * {@link ConfigUtil}, whose getters are synchronized.
+ *
+ */
+public final class DeviceIdentity
+{
+	// static
+
+	/**
+	 * Lazily resolves the default identity the first time it's needed,
+	 * relying on the JVM's class initialization guarantees.
+	 *
+	 */
+	private static final class DefaultHolder
+	{
+		private static final DeviceIdentity _Instance = fromConfig(ConfigUtil.getInstance());
+	}
+
+	/**
+	 * Returns the identity for this device, as configured in the
+	 * {@link ConfigConst#GATEWAY_DEVICE} section. It's resolved once,
+	 * on first use.
+	 *
+	 * @return DeviceIdentity
+	 */
+	public static final DeviceIdentity getDefault()
+	{
+		return DefaultHolder._Instance;
+	}
+
+	/**
+	 * Resolves the identity from the {@link ConfigConst#GATEWAY_DEVICE} section
+	 * of the given configuration.
+	 *
+	 * @param configUtil The configuration to read from.
+	 * @return DeviceIdentity
+	 */
+	public static DeviceIdentity fromConfig(ConfigUtil configUtil)
+	{
+		String locationID =
+			configUtil.getProperty(
+				ConfigConst.GATEWAY_DEVICE, ConfigConst.DEVICE_LOCATION_ID_KEY, ConfigConst.NOT_SET);
+
+		return new DeviceIdentity(locationID);
+	}
+
+
+	// private var's
+
+	private final String locationID;
+
+
+	// constructors
+
+	/**
+	 * Constructor.
+	 *
+	 * @param locationID The location ID of this device. If null or empty,
+	 * {@link ConfigConst#NOT_SET} is used.
+	 */
+	public DeviceIdentity(String locationID)
+	{
+		super();
+
+		this.locationID =
+			(locationID != null && locationID.trim().length() > 0 ? locationID : ConfigConst.NOT_SET);
+	}
+
+
+	// public methods
+
+	/**
+	 * Returns the location ID of this device.
+	 *
+	 * @return String
+	 */
+	public String getLocationID()
+	{
+		return this.locationID;
+	}
+
+	@Override
+	public String toString()
+	{
+		return ConfigConst.LOCATION_ID_PROP + "=" + this.locationID;
+	}
+
+}
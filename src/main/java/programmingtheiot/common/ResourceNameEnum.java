@@ -194,4 +194,14 @@ public enum ResourceNameEnum
 		return this.isObservable;
 	}
 	
+	/**
+	 * 
+	 * @return boolean True if this resource carries control plane messages
+	 * (i.e. commands), which are handled ahead of telemetry; false otherwise.
+	 */
+	public boolean isControlPlane()
+	{
+		return (this == CDA_ACTUATOR_CMD_RESOURCE || this == GDA_MGMT_STATUS_CMD_RESOURCE);
+	}
+	
 }
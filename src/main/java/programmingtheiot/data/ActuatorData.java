@@ -13,6 +13,7 @@ import java.io.Serializable;
 import com.influxdb.client.domain.Config;
 
 import programmingtheiot.common.ConfigConst;
+import programmingtheiot.common.DeviceIdentity;
 
 /**
  * Instantiates the base class and also defines getters and setters for Actuator Data. 
@@ -37,10 +38,17 @@ public class ActuatorData extends BaseIotData implements Serializable
 	 */
 	public ActuatorData()
 	{
-		super();
-
-		
-
+		this(DeviceIdentity.getDefault());
+	}
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param identity The device identity used for the default location ID.
+	 */
+	public ActuatorData(DeviceIdentity identity)
+	{
+		super(identity);
 	}
 	
 	
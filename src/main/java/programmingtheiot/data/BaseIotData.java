@@ -8,12 +8,16 @@
 
 package programmingtheiot.data;
 
+import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.time.Instant;
 import java.time.format.DateTimeFormatter;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import programmingtheiot.common.ConfigConst;
-import programmingtheiot.common.ConfigUtil;
+import programmingtheiot.common.DeviceIdentity;
 
 /**
  * Base class for common properties and helper methods for all
@@ -25,6 +29,9 @@ public abstract class BaseIotData implements Serializable
 {
 	// static
 	
+	private static final Logger _Logger =
+		Logger.getLogger(BaseIotData.class.getName());
+	
 	public static final int DEFAULT_STATUS = 0;
 	
 	/**
@@ -35,7 +42,10 @@ public abstract class BaseIotData implements Serializable
 	// private var's
 	
     private String  name       = ConfigConst.NOT_SET;
-	private String  timeStamp  = "";
+    
+	// ISO 8601 rendering of the timestamp below - null until first requested
+	// via getTimeStamp(), or as received from a peer when decoded
+	private String  timeStamp  = null;
     private int     statusCode = ConfigConst.DEFAULT_STATUS;
     private int     typeID     = ConfigConst.DEFAULT_TYPE_ID;
     
@@ -46,6 +56,9 @@ public abstract class BaseIotData implements Serializable
     
 	// NOTE: This is not used by the CDA
     private long    timeStampMillis = 0L;
+    
+	// sub-millisecond part of the timestamp (0 - 999,999 nanos)
+    private transient int timeStampNanos = 0;
 
     
 	// constructors
@@ -53,18 +66,29 @@ public abstract class BaseIotData implements Serializable
 	/**
 	 * Default.
 	 * 
-	 * Initializes the location ID from the config file and updates the timestamp.
+	 * Initializes the location ID from the default {@link DeviceIdentity}
+	 * (resolved once from the config file) and updates the timestamp.
 	 * 
 	 */
 	protected BaseIotData()
+	{
+		this(DeviceIdentity.getDefault());
+	}
+	
+	/**
+	 * Constructor.
+	 * 
+	 * Initializes the location ID from the given identity and updates the timestamp.
+	 * 
+	 * @param identity The device identity. If null, the location ID is left unset.
+	 */
+	protected BaseIotData(DeviceIdentity identity)
 	{
 		super();
 		
-		String locID =
-			ConfigUtil.getInstance().getProperty(
-				ConfigConst.GATEWAY_DEVICE, ConfigConst.DEVICE_LOCATION_ID_KEY);
-		
-		this.setLocationID(locID);
+		if (identity != null) {
+			this.setLocationID(identity.getLocationID());
+		}
 		
 		updateTimeStamp();
 	}
@@ -139,12 +163,25 @@ public abstract class BaseIotData implements Serializable
 	 * The timestamp is represented as a String in ISO 8601 format, as follows:
 	 * <p>
 	 * e.g. 2020-12-27T10:13:30Z
+	 * <p>
+	 * The String is only formatted the first time it's requested after the
+	 * timestamp changes, and cached until the next change.
 	 * 
 	 * @return A stringified timestamp.
 	 */
 	public String getTimeStamp()
 	{
-		return this.timeStamp;
+		String isoTimeStamp = this.timeStamp;
+		
+		if (isoTimeStamp == null) {
+			Instant instant = Instant.ofEpochMilli(this.timeStampMillis).plusNanos(this.timeStampNanos);
+			
+			// benign race: concurrent readers format the same value
+			isoTimeStamp   = DateTimeFormatter.ISO_INSTANT.format(instant);
+			this.timeStamp = isoTimeStamp;
+		}
+		
+		return isoTimeStamp;
 	}
 	
 	/**
@@ -281,7 +318,7 @@ public abstract class BaseIotData implements Serializable
 		
 		sb.append(ConfigConst.NAME_PROP).append('=').append(this.name).append(',');
 		sb.append(ConfigConst.TYPE_ID_PROP).append('=').append(this.typeID).append(',');
-		sb.append(ConfigConst.TIMESTAMP_PROP).append('=').append(this.timeStamp).append(',');
+		sb.append(ConfigConst.TIMESTAMP_PROP).append('=').append(this.getTimeStamp()).append(',');
 		sb.append(ConfigConst.STATUS_CODE_PROP).append('=').append(this.statusCode).append(',');
 		sb.append(ConfigConst.HAS_ERROR_PROP).append('=').append(this.hasError()).append(',');
 		sb.append(ConfigConst.LOCATION_ID_PROP).append('=').append(this.locationID).append(',');
@@ -324,6 +361,48 @@ public abstract class BaseIotData implements Serializable
 	}
 	
 	
+	// package-private methods
+	
+	/**
+	 * Applies a previously generated timestamp 'as-is', without generating a
+	 * new one. This is used by the codecs in this package when decoding a
+	 * payload, so the timestamp reflects when the data was created rather
+	 * than when it was decoded.
+	 * 
+	 * <p>
+	 * If the payload didn't carry the timestamp in millis, it's parsed from
+	 * the timestamp String once, here, so the analysis only ever compares
+	 * {@see #getTimeStampMillis()}.
+	 * 
+	 * @param timeStamp The ISO 8601 timestamp String, which is kept 'as-is'.
+	 * If null, it will be formatted from 'timeStampMillis' when requested.
+	 * @param timeStampMillis The timestamp in milliseconds since the Epoch,
+	 * or {@link IsoTimeStamp#NO_MILLIS} to parse it from 'timeStamp'.
+	 */
+	void setTimeStamp(String timeStamp, long timeStampMillis)
+	{
+		if (timeStampMillis == IsoTimeStamp.NO_MILLIS) {
+			timeStampMillis = IsoTimeStamp.parseMillis(timeStamp);
+			
+			if (timeStampMillis == IsoTimeStamp.NO_MILLIS) {
+				if (timeStamp != null && _Logger.isLoggable(Level.FINE)) {
+					_Logger.fine("Invalid timestamp. Keeping the time received: " + timeStamp);
+				}
+				
+				// keep the time the data was received, with a matching String
+				timeStamp       = null;
+				timeStampMillis = this.timeStampMillis;
+			}
+		}
+		
+		if (timeStamp != null || timeStampMillis != this.timeStampMillis) {
+			this.timeStamp       = timeStamp;
+			this.timeStampMillis = timeStampMillis;
+			this.timeStampNanos  = 0;
+		}
+	}
+	
+	
 	// protected methods
 	
 	/**
@@ -336,9 +415,10 @@ public abstract class BaseIotData implements Serializable
 	
 	/**
 	 * Stores the latest timestamp in milliseconds (since the Epoch) within
-	 * {@see #timeStampMillis}, then sets the internal time stamp string
-	 * {@see #timeStamp} to represent a new Date based on {@see #timeStampMillis}
-	 * in ISO 8601 format using {@see DateTimeFormatter.ISO_INSTANT}, as follows:
+	 * {@see #timeStampMillis}, along with its sub-millisecond nanos. The
+	 * internal time stamp string {@see #timeStamp} is cleared, and will be
+	 * formatted from these in ISO 8601 format using {@see DateTimeFormatter.ISO_INSTANT}
+	 * the next time {@see #getTimeStamp()} is called, as follows:
 	 * <p>
 	 * e.g. 2020-12-27T10:13:30Z
 	 * 
@@ -348,7 +428,23 @@ public abstract class BaseIotData implements Serializable
 		Instant instant = Instant.now();
 		
 		this.timeStampMillis = instant.toEpochMilli();
-		this.timeStamp       = DateTimeFormatter.ISO_INSTANT.format(instant);
+		this.timeStampNanos  = instant.getNano() % 1_000_000;
+		this.timeStamp       = null;
+	}
+	
+	
+	// private methods
+	
+	/**
+	 * Formats the timestamp before the default serialization, since the
+	 * sub-millisecond nanos aren't serialized on their own.
+	 * 
+	 */
+	private void writeObject(ObjectOutputStream out) throws IOException
+	{
+		getTimeStamp();
+		
+		out.defaultWriteObject();
 	}
 	
 }
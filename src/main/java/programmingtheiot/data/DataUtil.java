@@ -8,18 +8,35 @@
 
 package programmingtheiot.data;
 
-import java.nio.file.FileSystems;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.util.List;
-
-import java.util.logging.Level;
+import java.nio.ByteBuffer;
 import java.util.logging.Logger;
 
 import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapterFactory;
+
+import programmingtheiot.common.ConfigConst;
+import programmingtheiot.common.ConfigUtil;
+import programmingtheiot.common.DeviceIdentity;
+import programmingtheiot.common.ResourceNameEnum;
 
 /**
  * This Class converts Actuator Data, Sensor Data and System Performance Data to and from JSON
+ * <p>
+ * All conversions share a single {@link Gson} engine that's built once, with the
+ * reflection-free adapters from {@link IotDataTypeAdapterFactory} registered.
+ * Gson instances are immutable and thread-safe, so the singleton can be used
+ * concurrently by the MQTT, CoAP and cloud callback threads.
+ * <p>
+ * The byte[] and {@link ByteBuffer} overloads decode raw UTF-8 payloads
+ * directly (see {@link IotDataJsonDecoder}), without first copying them
+ * into a String.
+ * <p>
+ * Payloads can also be encoded as CBOR (see {@link IotDataCborCodec}) using
+ * {@link #encodeData(BaseIotData, int)} and {@link #decodeData(byte[], int, Class)}.
+ * The outbound content-format is configured per resource in PiotConfig.props;
+ * inbound payloads are decoded based on their content-format, or detected
+ * from the first byte when it's not known.
  *
  */
 public class DataUtil
@@ -28,6 +45,8 @@ public class DataUtil
 	private static final Logger _Logger = 
 		Logger.getLogger(DataUtil.class.getName());
 	
+	private static final int MAX_RETAINED_JSON_BUFFER = 64 * 1024;
+	
 	private static final DataUtil _Instance = new DataUtil();
 
 	/**
@@ -40,9 +59,79 @@ public class DataUtil
 		return _Instance;
 	}
 	
+	/**
+	 * Creates a new {@link Gson} engine with the default IoT data adapters
+	 * registered, followed by any additional factories given. Factories
+	 * registered later take precedence for the types they support.
+	 * 
+	 * @param factories Optional additional adapter factories.
+	 * @return Gson
+	 */
+	public static Gson createGsonEngine(TypeAdapterFactory ... factories)
+	{
+		return createGsonEngine(DeviceIdentity.getDefault(), factories);
+	}
+	
+	/**
+	 * Creates a new {@link Gson} engine with the IoT data adapters for the
+	 * given device identity registered, followed by any additional factories
+	 * given. Factories registered later take precedence for the types they support.
+	 * 
+	 * @param identity The device identity used for the default location ID
+	 * of decoded instances.
+	 * @param factories Optional additional adapter factories.
+	 * @return Gson
+	 */
+	public static Gson createGsonEngine(DeviceIdentity identity, TypeAdapterFactory ... factories)
+	{
+		return buildGsonEngine(new IotDataTypeAdapterFactory(identity), factories);
+	}
+	
+	/**
+	 * Detects the content-format of the payload from its leading bytes.
+	 * The buffer is not modified.
+	 * 
+	 * @param payload The payload.
+	 * @return int ConfigConst.CBOR_CONTENT_FORMAT if the payload is CBOR
+	 * encoded; ConfigConst.JSON_CONTENT_FORMAT otherwise.
+	 */
+	public static int detectContentFormat(ByteBuffer payload)
+	{
+		if (payload != null && IotDataCborCodec.isCbor(payload)) {
+			return ConfigConst.CBOR_CONTENT_FORMAT;
+		}
+		
+		return ConfigConst.JSON_CONTENT_FORMAT;
+	}
+	
+	private static Gson buildGsonEngine(IotDataTypeAdapterFactory iotDataFactory, TypeAdapterFactory ... factories)
+	{
+		GsonBuilder builder = new GsonBuilder();
+		
+		builder.registerTypeAdapterFactory(iotDataFactory);
+		
+		if (factories != null) {
+			for (TypeAdapterFactory factory : factories) {
+				builder.registerTypeAdapterFactory(factory);
+			}
+		}
+		
+		return builder.create();
+	}
+	
 	
 	// private var's
 	
+	private final DeviceIdentity deviceIdentity;
+	private final StringDictionary stringDictionary;
+	private final Gson gson;
+	
+	// reused per thread, so encoding JSON doesn't allocate a new buffer each time
+	private final ThreadLocal<Utf8JsonWriter> jsonWriters = ThreadLocal.withInitial(Utf8JsonWriter::new);
+	
+	// outbound content-format, indexed by ResourceNameEnum ordinal
+	private final int[] contentFormats;
+	
 	
 	// constructors
 	
@@ -53,18 +142,127 @@ public class DataUtil
 	private DataUtil()
 	{
 		super();
+		
+		// resolved once, so decoding never needs to consult the configuration
+		this.deviceIdentity = DeviceIdentity.getDefault();
+		
+		// shared by all codecs, so repeated names and location ID's
+		// decode to the same instance regardless of the content-format
+		this.stringDictionary = new StringDictionary();
+		this.gson = buildGsonEngine(new IotDataTypeAdapterFactory(this.deviceIdentity, this.stringDictionary));
+		this.contentFormats = loadContentFormats();
 	}
 	
 	
 	// public methods
 	
+	/**
+	 * Returns the device identity applied to decoded data.
+	 * 
+	 * @return DeviceIdentity
+	 */
+	public DeviceIdentity getDeviceIdentity()
+	{
+		return this.deviceIdentity;
+	}
+	
+	/**
+	 * Returns the dictionary the names and location ID's of decoded data
+	 * are canonicalized through, e.g. to check its hit / miss statistics.
+	 * 
+	 * @return StringDictionary
+	 */
+	public StringDictionary getStringDictionary()
+	{
+		return this.stringDictionary;
+	}
+	
+	/**
+	 * Returns the content-format configured for payloads sent to the
+	 * given resource.
+	 * 
+	 * @param resource The resource.
+	 * @return int Either ConfigConst.JSON_CONTENT_FORMAT or ConfigConst.CBOR_CONTENT_FORMAT.
+	 */
+	public int getContentFormat(ResourceNameEnum resource)
+	{
+		if (resource != null) {
+			return this.contentFormats[resource.ordinal()];
+		}
+		
+		return ConfigConst.DEFAULT_CONTENT_FORMAT;
+	}
+	
+	/**
+	 * Encodes the data using the given content-format.
+	 * 
+	 * @param data The data to encode.
+	 * @param contentFormat ConfigConst.CBOR_CONTENT_FORMAT for CBOR; all
+	 * other values result in UTF-8 encoded JSON.
+	 * @return byte[] The encoded data, or null if data is null.
+	 */
+	public byte[] encodeData(BaseIotData data, int contentFormat)
+	{
+		if (data == null) {
+			return null;
+		}
+		
+		if (contentFormat == ConfigConst.CBOR_CONTENT_FORMAT) {
+			return IotDataCborCodec.encode(data);
+		}
+		
+		return encodeJson(data).toByteArray();
+	}
+	
+	/**
+	 * Decodes the payload using the given content-format.
+	 * 
+	 * @param payload The payload.
+	 * @param contentFormat The payload's content-format. If it's neither
+	 * JSON nor CBOR (e.g. ConfigConst.UNKNOWN_CONTENT_FORMAT), the encoding
+	 * is detected from the payload.
+	 * @param type The target type.
+	 * @return T The decoded data, or null if the payload is empty.
+	 */
+	public <T extends BaseIotData> T decodeData(byte[] payload, int contentFormat, Class<T> type)
+	{
+		return (payload != null ? decodeData(ByteBuffer.wrap(payload), contentFormat, type) : null);
+	}
+	
+	/**
+	 * Decodes the bytes between the buffer's position and limit using the
+	 * given content-format. The buffer itself is not modified.
+	 * 
+	 * @param payload The payload.
+	 * @param contentFormat The payload's content-format. If it's neither
+	 * JSON nor CBOR (e.g. ConfigConst.UNKNOWN_CONTENT_FORMAT), the encoding
+	 * is detected from the payload.
+	 * @param type The target type.
+	 * @return T The decoded data, or null if the payload is empty.
+	 */
+	public <T extends BaseIotData> T decodeData(ByteBuffer payload, int contentFormat, Class<T> type)
+	{
+		if (payload == null || ! payload.hasRemaining()) {
+			return null;
+		}
+		
+		if (contentFormat != ConfigConst.JSON_CONTENT_FORMAT && contentFormat != ConfigConst.CBOR_CONTENT_FORMAT) {
+			contentFormat = detectContentFormat(payload);
+		}
+		
+		if (contentFormat == ConfigConst.CBOR_CONTENT_FORMAT) {
+			return IotDataCborCodec.decode(payload, type, this.deviceIdentity, this.stringDictionary);
+		}
+		
+		return IotDataJsonDecoder.decode(payload, type, this.deviceIdentity, this.stringDictionary);
+	}
+	
 	public String actuatorDataToJson(ActuatorData actuatorData)
 	{
 		String jsonData = null;
 
 		if(actuatorData != null){
-			Gson gson = new Gson();
-			jsonData = gson.toJson(actuatorData);
+			jsonData = encodeJsonString(actuatorData);
 		}
 
 		return jsonData;
@@ -75,8 +273,7 @@ public class DataUtil
 		String jsonData = null;
 
 		if(sensorData != null){
-			Gson gson = new Gson();
-			jsonData = gson.toJson(sensorData);
+			jsonData = encodeJsonString(sensorData);
 		}
 
 		return jsonData;
@@ -87,8 +284,7 @@ public class DataUtil
 		String jsonData = null;
 
 		if(sysPerfData != null){
-			Gson gson = new Gson();
-			jsonData = gson.toJson(sysPerfData);
+			jsonData = encodeJsonString(sysPerfData);
 		}
 
 		return jsonData;
@@ -96,46 +292,200 @@ public class DataUtil
 	
 	public String systemStateDataToJson(SystemStateData sysStateData)
 	{
-		return null;
+		String jsonData = null;
+
+		if(sysStateData != null){
+			jsonData = encodeJsonString(sysStateData);
+		}
+
+		return jsonData;
+	}
+	
+	/**
+	 * Streams the JSON for the given snapshot, including its nested sensor and
+	 * system performance data lists, straight to 'out' in a single pass.
+	 * 
+	 * @param sysStateData The snapshot to write. If null, nothing is written.
+	 * @param out The destination (e.g. a Writer or StringBuilder).
+	 * @throws com.google.gson.JsonIOException If writing to 'out' fails.
+	 */
+	public void systemStateDataToJson(SystemStateData sysStateData, Appendable out)
+	{
+		if(sysStateData != null){
+			this.gson.toJson(sysStateData, SystemStateData.class, out);
+		}
+	}
+	
+	public ActuatorData jsonToActuatorData(byte[] jsonData)
+	{
+		return (jsonData != null ? jsonToActuatorData(ByteBuffer.wrap(jsonData)) : null);
+	}
+	
+	public ActuatorData jsonToActuatorData(ByteBuffer jsonData)
+	{
+		return decodeJson(jsonData, ActuatorData.class);
 	}
 	
 	public ActuatorData jsonToActuatorData(String jsonData)
 	{
 		ActuatorData data = null;
 
-		if(jsonData != null && jsonData.trim().length() >0){
-			Gson gson = new Gson();
-			data = gson.fromJson(jsonData, ActuatorData.class);
+		if(jsonData != null && ! jsonData.isBlank()){
+			data = this.gson.fromJson(jsonData, ActuatorData.class);
 		}
 		return data;
 	}
 	
+	public SensorData jsonToSensorData(byte[] jsonData)
+	{
+		return (jsonData != null ? jsonToSensorData(ByteBuffer.wrap(jsonData)) : null);
+	}
+	
+	public SensorData jsonToSensorData(ByteBuffer jsonData)
+	{
+		return decodeJson(jsonData, SensorData.class);
+	}
+	
 	public SensorData jsonToSensorData(String jsonData)
 	{
 		SensorData data = null;
 
-		if(jsonData != null && jsonData.trim().length() > 0){
-			Gson gson = new Gson();
-			data = gson.fromJson(jsonData, SensorData.class);
+		if(jsonData != null && ! jsonData.isBlank()){
+			data = this.gson.fromJson(jsonData, SensorData.class);
 		}
 
 		return data;
 	}
 	
+	public SystemPerformanceData jsonToSystemPerformanceData(byte[] jsonData)
+	{
+		return (jsonData != null ? jsonToSystemPerformanceData(ByteBuffer.wrap(jsonData)) : null);
+	}
+	
+	public SystemPerformanceData jsonToSystemPerformanceData(ByteBuffer jsonData)
+	{
+		return decodeJson(jsonData, SystemPerformanceData.class);
+	}
+	
 	public SystemPerformanceData jsonToSystemPerformanceData(String jsonData)
 	{
 		SystemPerformanceData data = null;
 
-		if(jsonData != null && jsonData.trim().length() > 0){
-			Gson gson = new Gson();
-			data = gson.fromJson(jsonData, SystemPerformanceData.class);
+		if(jsonData != null && ! jsonData.isBlank()){
+			data = this.gson.fromJson(jsonData, SystemPerformanceData.class);
 		}
 
 		return data;
 	}
 	
+	public SystemStateData jsonToSystemStateData(byte[] jsonData)
+	{
+		return (jsonData != null ? jsonToSystemStateData(ByteBuffer.wrap(jsonData)) : null);
+	}
+	
+	public SystemStateData jsonToSystemStateData(ByteBuffer jsonData)
+	{
+		return decodeJson(jsonData, SystemStateData.class);
+	}
+	
 	public SystemStateData jsonToSystemStateData(String jsonData)
 	{
+		SystemStateData data = null;
+
+		if(jsonData != null && ! jsonData.isBlank()){
+			data = this.gson.fromJson(jsonData, SystemStateData.class);
+		}
+
+		return data;
+	}
+	
+	
+	// private methods
+	
+	private int[] loadContentFormats()
+	{
+		ConfigUtil configUtil = ConfigUtil.getInstance();
+		
+		int defaultFormat =
+			parseContentFormat(
+				configUtil.getProperty(ConfigConst.GATEWAY_DEVICE, ConfigConst.CONTENT_FORMAT_KEY),
+				ConfigConst.DEFAULT_CONTENT_FORMAT);
+		
+		ResourceNameEnum[] resources = ResourceNameEnum.values();
+		int[] formats = new int[resources.length];
+		
+		for (ResourceNameEnum resource : resources) {
+			String propName = resource.getResourceType() + ConfigConst.CONTENT_FORMAT_KEY_SUFFIX;
+			
+			formats[resource.ordinal()] =
+				parseContentFormat(configUtil.getProperty(ConfigConst.GATEWAY_DEVICE, propName), defaultFormat);
+		}
+		
+		return formats;
+	}
+	
+	private int parseContentFormat(String val, int defaultFormat)
+	{
+		if (val == null || val.isBlank()) {
+			return defaultFormat;
+		}
+		
+		val = val.trim();
+		
+		if (val.equalsIgnoreCase(ConfigConst.CBOR_CONTENT_FORMAT_NAME)
+			|| val.equals(Integer.toString(ConfigConst.CBOR_CONTENT_FORMAT))) {
+			return ConfigConst.CBOR_CONTENT_FORMAT;
+		} else if (val.equalsIgnoreCase(ConfigConst.JSON_CONTENT_FORMAT_NAME)
+			|| val.equals(Integer.toString(ConfigConst.JSON_CONTENT_FORMAT))) {
+			return ConfigConst.JSON_CONTENT_FORMAT;
+		}
+		
+		_Logger.warning("Unsupported content-format '" + val + "'. Using default: " + defaultFormat);
+		
+		return defaultFormat;
+	}
+	
+	/**
+	 * Encodes the data into this thread's (reset) JSON writer.
+	 * 
+	 * @param data The data to encode.
+	 * @return Utf8JsonWriter The writer holding the UTF-8 encoded JSON.
+	 */
+	private Utf8JsonWriter encodeJson(BaseIotData data)
+	{
+		Utf8JsonWriter out = this.jsonWriters.get();
+		
+		// don't hold on to the buffer of an unusually large snapshot
+		if (out.capacity() > MAX_RETAINED_JSON_BUFFER) {
+			out = new Utf8JsonWriter();
+			this.jsonWriters.set(out);
+		}
+		
+		out.reset();
+		
+		IotDataJsonEncoder.encode(out, data);
+		
+		return out;
+	}
+	
+	private String encodeJsonString(BaseIotData data)
+	{
+		Utf8JsonWriter out = encodeJson(data);
+		
+		// rare: only Gson can keep unpaired surrogates in the String
+		if (out.hasReplacedChars()) {
+			return this.gson.toJson(data, data.getClass());
+		}
+		
+		return out.toString();
+	}
+	
+	private <T extends BaseIotData> T decodeJson(ByteBuffer jsonData, Class<T> type)
+	{
+		if (jsonData != null && jsonData.hasRemaining()) {
+			return IotDataJsonDecoder.decode(jsonData, type, this.deviceIdentity, this.stringDictionary);
+		}
+		
 		return null;
 	}
 	
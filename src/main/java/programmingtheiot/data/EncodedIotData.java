@@ -0,0 +1,142 @@
+/**
+ * This class is part of the Programming the Internet of Things project.
+ *
+ * It is provided as a simple shell to guide the student and assist with
+ * implementation for the Programming the Internet of Things exercises,
+ * and designed to be modified by the student as needed.
+ */
+
+package programmingtheiot.data;
+
+import programmingtheiot.common.ConfigConst;
+
+/**
+ * An IoT data instance, together with its encoded payloads. Each payload
+ * is encoded the first time it's needed, and then shared, so a message
+ * passed to several sinks (e.g. persistence, MQTT and the cloud) is
+ * encoded at most once per content-format.
+ * <p>
+ * The data must not be modified once wrapped, as the payloads wouldn't
+ * reflect the change. Instances are thread-safe.
+ *
+ */
+public final class EncodedIotData
+{
+	// private var's
+
+	private final BaseIotData data;
+
+	private volatile byte[] jsonPayload = null;
+	private volatile byte[] cborPayload = null;
+
+
+	// constructors
+
+	/**
+	 * Constructor.
+	 *
+	 * @param data The data. Must not be null.
+	 */
+	public EncodedIotData(BaseIotData data)
+	{
+		super();
+
+		if (data == null) {
+			throw new IllegalArgumentException("Data must not be null.");
+		}
+
+		this.data = data;
+	}
+
+
+	// public methods
+
+	public BaseIotData getData()
+	{
+		return this.data;
+	}
+
+	public String getName()
+	{
+		return this.data.getName();
+	}
+
+	/**
+	 * Returns the payload for the given content-format, encoding it on the
+	 * first call. The returned array is shared, and must not be modified.
+	 *
+	 * @param contentFormat ConfigConst.CBOR_CONTENT_FORMAT for CBOR; all
+	 * other values result in UTF-8 encoded JSON.
+	 * @return byte[]
+	 */
+	public byte[] getPayload(int contentFormat)
+	{
+		if (contentFormat == ConfigConst.CBOR_CONTENT_FORMAT) {
+			byte[] payload = this.cborPayload;
+
+			if (payload == null) {
+				payload = encode(ConfigConst.CBOR_CONTENT_FORMAT);
+			}
+
+			return payload;
+		}
+
+		return getJsonPayload();
+	}
+
+	/**
+	 * Returns the UTF-8 encoded JSON payload, encoding it on the first
+	 * call. The returned array is shared, and must not be modified.
+	 *
+	 * @return byte[]
+	 */
+	public byte[] getJsonPayload()
+	{
+		byte[] payload = this.jsonPayload;
+
+		if (payload == null) {
+			payload = encode(ConfigConst.JSON_CONTENT_FORMAT);
+		}
+
+		return payload;
+	}
+
+	/**
+	 * Returns true if the payload for the given content-format has already
+	 * been encoded.
+	 *
+	 * @param contentFormat The content-format.
+	 * @return boolean
+	 */
+	public boolean isEncoded(int contentFormat)
+	{
+		return (contentFormat == ConfigConst.CBOR_CONTENT_FORMAT ? this.cborPayload : this.jsonPayload) != null;
+	}
+
+
+	// private methods
+
+	/**
+	 * Encodes the payload. Synchronized, so concurrent sinks wait for the
+	 * first encoding rather than repeating it.
+	 *
+	 */
+	private synchronized byte[] encode(int contentFormat)
+	{
+		boolean isCbor = (contentFormat == ConfigConst.CBOR_CONTENT_FORMAT);
+		byte[] payload = (isCbor ? this.cborPayload : this.jsonPayload);
+
+		if (payload == null) {
+			payload = DataUtil.getInstance().encodeData(this.data, contentFormat);
+
+			if (isCbor) {
+				this.cborPayload = payload;
+			} else {
+				this.jsonPayload = payload;
+			}
+		}
+
+		return payload;
+	}
+
+}
@@ -0,0 +1,881 @@
+/**
+ * This class is part of the Programming the Internet of Things project.
+ *
+ * It is provided as a simple shell to guide the student and assist with
+ * implementation for the Programming the Internet of Things exercises,
+ * and designed to be modified by the student as needed.
+ */
+
+package programmingtheiot.data;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import programmingtheiot.common.ConfigConst;
+import programmingtheiot.common.DeviceIdentity;
+
+/**
+ * Compact CBOR (RFC 8949, CoAP content-format 60) codec for the IoT data
+ * classes.
+ * <p>
+ * Each record is encoded as a single map, prefixed with the CBOR
+ * self-describe tag (0xD9 0xD9 0xF7) so it can be told apart from JSON by
+ * its first byte. To keep payloads small, the encoder uses the one byte
+ * integer keys listed below, floats are written as half precision when
+ * that's lossless (single precision otherwise), and ints use the shortest
+ * form. The decoder also accepts the JSON property names as text keys, as
+ * well as double precision and integer values for float properties, so a
+ * CDA can simply CBOR-encode its data dictionary.
+ * <p>
+ * Key mapping:
+ * <pre>
+ *  0 name           1 timeStamp      2 statusCode     3 typeID
+ *  4 locationID     5 latitude       6 longitude      7 elevation
+ *  8 timeStampMillis
+ * 16 value         17 command       18 isResponse    19 stateData
+ * 20 cpuUtil       21 diskUtil      22 memUtil
+ * 23 sysPerfDataList               24 sensorDataList
+ * </pre>
+ *
+ */
+final class IotDataCborCodec
+{
+	// static
+
+	static final int NAME_KEY             = 0;
+	static final int TIMESTAMP_KEY        = 1;
+	static final int STATUS_CODE_KEY      = 2;
+	static final int TYPE_ID_KEY          = 3;
+	static final int LOCATION_ID_KEY      = 4;
+	static final int LATITUDE_KEY         = 5;
+	static final int LONGITUDE_KEY        = 6;
+	static final int ELEVATION_KEY        = 7;
+	static final int TIMESTAMP_MILLIS_KEY = 8;
+
+	static final int VALUE_KEY            = 16;
+	static final int COMMAND_KEY          = 17;
+	static final int IS_RESPONSE_KEY      = 18;
+	static final int STATE_DATA_KEY       = 19;
+	static final int CPU_UTIL_KEY         = 20;
+	static final int DISK_UTIL_KEY        = 21;
+	static final int MEM_UTIL_KEY         = 22;
+	static final int SYS_PERF_LIST_KEY    = 23;
+	static final int SENSOR_LIST_KEY      = 24;
+
+	private static final int UNKNOWN_KEY  = -1;
+
+	// major types (already shifted into the top three bits)
+	private static final int MT_UNSIGNED  = 0x00;
+	private static final int MT_NEGATIVE  = 0x20;
+	private static final int MT_BYTES     = 0x40;
+	private static final int MT_TEXT      = 0x60;
+	private static final int MT_ARRAY     = 0x80;
+	private static final int MT_MAP       = 0xA0;
+	private static final int MT_TAG       = 0xC0;
+	private static final int MT_SIMPLE    = 0xE0;
+
+	private static final int FALSE        = 0xF4;
+	private static final int TRUE         = 0xF5;
+	private static final int NULL         = 0xF6;
+	private static final int HALF_FLOAT   = 0xF9;
+	private static final int SINGLE_FLOAT = 0xFA;
+	private static final int DOUBLE_FLOAT = 0xFB;
+	private static final int BREAK        = 0xFF;
+	private static final int INDEFINITE   = 31;
+
+	private static final long INDEFINITE_LENGTH = -1L;
+
+	/**
+	 * The self-describe tag 55799, as encoded on the wire.
+	 */
+	static final byte[] MAGIC = { (byte) 0xD9, (byte) 0xD9, (byte) 0xF7 };
+
+
+	// constructors
+
+	private IotDataCborCodec()
+	{
+		super();
+	}
+
+
+	// package-private methods
+
+	/**
+	 * Returns true if the buffer starts with a CBOR map, optionally preceded
+	 * by the self-describe tag. The buffer is not modified.
+	 *
+	 * @param buf The payload.
+	 * @return boolean
+	 */
+	static boolean isCbor(ByteBuffer buf)
+	{
+		int pos = buf.position();
+
+		if (buf.limit() - pos >= MAGIC.length
+			&& buf.get(pos) == MAGIC[0] && buf.get(pos + 1) == MAGIC[1] && buf.get(pos + 2) == MAGIC[2]) {
+			return true;
+		}
+
+		return (buf.limit() > pos && (buf.get(pos) & 0xE0) == MT_MAP);
+	}
+
+	static byte[] encode(BaseIotData data)
+	{
+		Writer out = new Writer();
+
+		out.writeRaw(MAGIC);
+		writeObject(out, data);
+
+		return out.toByteArray();
+	}
+
+	/**
+	 * Decodes the bytes between the buffer's position and limit into a new
+	 * instance of the given type. The buffer itself is not modified.
+	 *
+	 * @param buf The CBOR payload.
+	 * @param type The target type.
+	 * @param identity The device identity used for the default location ID.
+	 * @param dictionary The dictionary names and location ID's are canonicalized through; may be null.
+	 * @return T The decoded instance, or null if the payload is CBOR null.
+	 * @throws IllegalArgumentException If the payload is malformed.
+	 */
+	static <T extends BaseIotData> T decode(ByteBuffer buf, Class<T> type, DeviceIdentity identity, StringDictionary dictionary)
+	{
+		Reader in = new Reader(buf);
+
+		T data = readObject(in, type, identity, dictionary);
+
+		if (in.pos != in.limit) {
+			throw new IllegalArgumentException("Unexpected trailing data in " + type.getSimpleName() + " payload");
+		}
+
+		return data;
+	}
+
+
+	// private methods - encoding
+
+	private static void writeObject(Writer out, BaseIotData data)
+	{
+		if (data == null) {
+			out.writeByte(NULL);
+			return;
+		}
+
+		String timeStamp = data.getTimeStamp();
+
+		int pairs = 7 + (timeStamp != null ? 1 : 0) + (data.getTimeStampMillis() != 0L ? 1 : 0);
+
+		if (data instanceof SensorData) {
+			pairs += 1;
+		} else if (data instanceof ActuatorData) {
+			pairs += (((ActuatorData) data).getStateData() != null ? 4 : 3);
+		} else if (data instanceof SystemPerformanceData) {
+			pairs += 3;
+		} else if (data instanceof SystemStateData) {
+			SystemStateData ssData = (SystemStateData) data;
+
+			pairs += 1
+				+ (ssData.getSystemPerformanceDataList() != null ? 1 : 0)
+				+ (ssData.getSensorDataList() != null ? 1 : 0);
+		}
+
+		out.writeHeader(MT_MAP, pairs);
+
+		out.writeKeyString(NAME_KEY, data.getName());
+
+		if (timeStamp != null) {
+			out.writeKeyString(TIMESTAMP_KEY, timeStamp);
+		}
+
+		out.writeKeyInt(STATUS_CODE_KEY, data.getStatusCode());
+		out.writeKeyInt(TYPE_ID_KEY, data.getTypeID());
+		out.writeKeyString(LOCATION_ID_KEY, data.getLocationID());
+		out.writeKeyFloat(LATITUDE_KEY, data.getLatitude());
+		out.writeKeyFloat(LONGITUDE_KEY, data.getLongitude());
+		out.writeKeyFloat(ELEVATION_KEY, data.getElevation());
+
+		if (data.getTimeStampMillis() != 0L) {
+			out.writeHeader(MT_UNSIGNED, TIMESTAMP_MILLIS_KEY);
+			out.writeLong(data.getTimeStampMillis());
+		}
+
+		if (data instanceof SensorData) {
+			out.writeKeyFloat(VALUE_KEY, ((SensorData) data).getValue());
+		} else if (data instanceof ActuatorData) {
+			ActuatorData aData = (ActuatorData) data;
+
+			out.writeKeyInt(COMMAND_KEY, aData.getCommand());
+			out.writeKeyFloat(VALUE_KEY, aData.getValue());
+			out.writeHeader(MT_UNSIGNED, IS_RESPONSE_KEY);
+			out.writeByte(aData.isResponseFlagEnabled() ? TRUE : FALSE);
+
+			if (aData.getStateData() != null) {
+				out.writeKeyString(STATE_DATA_KEY, aData.getStateData());
+			}
+		} else if (data instanceof SystemPerformanceData) {
+			SystemPerformanceData spData = (SystemPerformanceData) data;
+
+			out.writeKeyFloat(CPU_UTIL_KEY, spData.getCpuUtilization());
+			out.writeKeyFloat(DISK_UTIL_KEY, spData.getDiskUtilization());
+			out.writeKeyFloat(MEM_UTIL_KEY, spData.getMemoryUtilization());
+		} else if (data instanceof SystemStateData) {
+			SystemStateData ssData = (SystemStateData) data;
+
+			out.writeKeyInt(COMMAND_KEY, ssData.getCommand());
+
+			writeList(out, SYS_PERF_LIST_KEY, ssData.getSystemPerformanceDataList());
+			writeList(out, SENSOR_LIST_KEY, ssData.getSensorDataList());
+		}
+	}
+
+	private static void writeList(Writer out, int key, List<? extends BaseIotData> dataList)
+	{
+		if (dataList != null) {
+			out.writeHeader(MT_UNSIGNED, key);
+			out.writeHeader(MT_ARRAY, dataList.size());
+
+			for (BaseIotData data : dataList) {
+				writeObject(out, data);
+			}
+		}
+	}
+
+
+	// private methods - decoding
+
+	@SuppressWarnings("unchecked")
+	private static <T extends BaseIotData> T readObject(Reader in, Class<T> type, DeviceIdentity identity, StringDictionary dictionary)
+	{
+		in.skipTags();
+
+		if (in.peek() == NULL) {
+			in.pos++;
+			return null;
+		}
+
+		T data;
+
+		if (type == SensorData.class) {
+			data = (T) new SensorData(identity);
+		} else if (type == ActuatorData.class) {
+			data = (T) new ActuatorData(identity);
+		} else if (type == SystemPerformanceData.class) {
+			data = (T) new SystemPerformanceData(identity);
+		} else if (type == SystemStateData.class) {
+			data = (T) new SystemStateData(identity);
+		} else {
+			throw new IllegalArgumentException("Unsupported IoT data type: " + type.getName());
+		}
+
+		// the timestamp is applied last, since some setters
+		// (e.g. SensorData#setValue) refresh it as a side effect
+		String  timeStamp       = null;
+		long    timeStampMillis = IsoTimeStamp.NO_MILLIS;
+
+		long pairs = in.readHeader(MT_MAP);
+
+		while (pairs == INDEFINITE_LENGTH ? ! in.nextIsBreak() : pairs-- > 0) {
+			int key = in.readKey();
+
+			if (in.peek() == NULL) {
+				in.pos++;
+				continue;
+			}
+
+			switch (key) {
+				case NAME_KEY:             data.setName(in.readString(dictionary));       break;
+				case TIMESTAMP_KEY:        timeStamp = in.readString();                   break;
+				case STATUS_CODE_KEY:      data.setStatusCode(in.readInt());              break;
+				case TYPE_ID_KEY:          data.setTypeID(in.readInt());                  break;
+				case LOCATION_ID_KEY:      data.setLocationID(in.readString(dictionary)); break;
+				case LATITUDE_KEY:         data.setLatitude(in.readFloat());              break;
+				case LONGITUDE_KEY:        data.setLongitude(in.readFloat());             break;
+				case ELEVATION_KEY:        data.setElevation(in.readFloat());             break;
+				case TIMESTAMP_MILLIS_KEY: timeStampMillis = in.readLong();               break;
+
+				default:
+					if (! readField(in, key, data, identity, dictionary)) {
+						in.skipValue();
+					}
+			}
+		}
+
+		data.setTimeStamp(timeStamp, timeStampMillis);
+
+		return data;
+	}
+
+	private static boolean readField(Reader in, int key, BaseIotData data, DeviceIdentity identity, StringDictionary dictionary)
+	{
+		if (data instanceof SensorData) {
+			if (key == VALUE_KEY) {
+				((SensorData) data).setValue(in.readFloat());
+				return true;
+			}
+		} else if (data instanceof ActuatorData) {
+			ActuatorData aData = (ActuatorData) data;
+
+			switch (key) {
+				case COMMAND_KEY:    aData.setCommand(in.readInt());      return true;
+				case VALUE_KEY:      aData.setValue(in.readFloat());      return true;
+				case STATE_DATA_KEY: aData.setStateData(in.readString()); return true;
+
+				case IS_RESPONSE_KEY:
+					if (in.readBoolean()) {
+						aData.setAsResponse();
+					}
+
+					return true;
+			}
+		} else if (data instanceof SystemPerformanceData) {
+			SystemPerformanceData spData = (SystemPerformanceData) data;
+
+			switch (key) {
+				case CPU_UTIL_KEY:  spData.setCpuUtilization(in.readFloat());    return true;
+				case DISK_UTIL_KEY: spData.setDiskUtilization(in.readFloat());   return true;
+				case MEM_UTIL_KEY:  spData.setMemoryUtilization(in.readFloat()); return true;
+			}
+		} else if (data instanceof SystemStateData) {
+			SystemStateData ssData = (SystemStateData) data;
+
+			switch (key) {
+				case COMMAND_KEY:
+					ssData.setCommand(in.readInt());
+					return true;
+
+				case SYS_PERF_LIST_KEY:
+					long perfCount = in.readHeader(MT_ARRAY);
+
+					while (perfCount == INDEFINITE_LENGTH ? ! in.nextIsBreak() : perfCount-- > 0) {
+						ssData.addSystemPerformanceData(readObject(in, SystemPerformanceData.class, identity, dictionary));
+					}
+
+					return true;
+
+				case SENSOR_LIST_KEY:
+					long sensorCount = in.readHeader(MT_ARRAY);
+
+					while (sensorCount == INDEFINITE_LENGTH ? ! in.nextIsBreak() : sensorCount-- > 0) {
+						ssData.addSensorData(readObject(in, SensorData.class, identity, dictionary));
+					}
+
+					return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Maps the JSON property names to their integer keys.
+	 *
+	 */
+	private static int keyForName(String name)
+	{
+		switch (name) {
+			case ConfigConst.NAME_PROP:                   return NAME_KEY;
+			case ConfigConst.TIMESTAMP_PROP:              return TIMESTAMP_KEY;
+			case ConfigConst.STATUS_CODE_PROP:            return STATUS_CODE_KEY;
+			case ConfigConst.TYPE_ID_PROP:                return TYPE_ID_KEY;
+			case ConfigConst.LOCATION_ID_PROP:            return LOCATION_ID_KEY;
+			case ConfigConst.LATITUDE_PROP:               return LATITUDE_KEY;
+			case ConfigConst.LONGITUDE_PROP:              return LONGITUDE_KEY;
+			case ConfigConst.ELEVATION_PROP:              return ELEVATION_KEY;
+			case ConfigConst.VALUE_PROP:                  return VALUE_KEY;
+			case ConfigConst.COMMAND_PROP:                return COMMAND_KEY;
+			case ConfigConst.IS_RESPONSE_PROP:            return IS_RESPONSE_KEY;
+			case ConfigConst.STATE_DATA_PROP:             return STATE_DATA_KEY;
+			case ConfigConst.CPU_UTIL_PROP:               return CPU_UTIL_KEY;
+			case ConfigConst.DISK_UTIL_PROP:              return DISK_UTIL_KEY;
+			case ConfigConst.MEM_UTIL_PROP:               return MEM_UTIL_KEY;
+			case ConfigConst.SENSOR_DATA_LIST_PROP:       return SENSOR_LIST_KEY;
+			case ConfigConst.SYSTEM_PERF_DATA_LIST_PROP:  return SYS_PERF_LIST_KEY;
+
+			case IotDataTypeAdapterFactory.TIMESTAMP_MILLIS_PROP:   return TIMESTAMP_MILLIS_KEY;
+			case IotDataTypeAdapterFactory.SYS_PERF_DATA_LIST_PROP: return SYS_PERF_LIST_KEY;
+
+			default:
+				return UNKNOWN_KEY;
+		}
+	}
+
+	/**
+	 * Converts a float to IEEE 754 half precision bits, if (and only if) the
+	 * conversion is lossless; returns -1 otherwise.
+	 *
+	 */
+	private static int toHalfBitsIfExact(float val)
+	{
+		int bits     = Float.floatToRawIntBits(val);
+		int sign     = (bits >>> 16) & 0x8000;
+		int exp      = ((bits >>> 23) & 0xFF) - 127;
+		int mantissa = bits & 0x7FFFFF;
+
+		if ((bits & 0x7FFFFFFF) == 0) {
+			return sign;
+		}
+
+		// normal half range only, and no mantissa bits beyond the 10 available
+		if (exp < -14 || exp > 15 || (mantissa & 0x1FFF) != 0) {
+			return -1;
+		}
+
+		return sign | ((exp + 15) << 10) | (mantissa >>> 13);
+	}
+
+	private static float halfBitsToFloat(int half)
+	{
+		int sign     = (half & 0x8000) << 16;
+		int exp      = (half >>> 10) & 0x1F;
+		int mantissa = half & 0x3FF;
+
+		if (exp == 0) {
+			// zero or subnormal
+			float val = mantissa * 5.9604645E-8f;
+			return (sign != 0 ? -val : val);
+		} else if (exp == 0x1F) {
+			return Float.intBitsToFloat(sign | 0x7F800000 | (mantissa << 13));
+		}
+
+		return Float.intBitsToFloat(sign | ((exp - 15 + 127) << 23) | (mantissa << 13));
+	}
+
+
+	// helpers
+
+	/**
+	 * Growable output buffer.
+	 *
+	 */
+	private static final class Writer
+	{
+		private byte[] buf = new byte[128];
+		private int    len = 0;
+
+		void writeByte(int b)
+		{
+			ensure(1);
+			this.buf[this.len++] = (byte) b;
+		}
+
+		void writeRaw(byte[] bytes)
+		{
+			ensure(bytes.length);
+			System.arraycopy(bytes, 0, this.buf, this.len, bytes.length);
+			this.len += bytes.length;
+		}
+
+		void writeHeader(int majorType, long val)
+		{
+			ensure(9);
+
+			if (val < 24) {
+				this.buf[this.len++] = (byte) (majorType | (int) val);
+			} else if (val < 0x100) {
+				this.buf[this.len++] = (byte) (majorType | 24);
+				this.buf[this.len++] = (byte) val;
+			} else if (val < 0x10000) {
+				this.buf[this.len++] = (byte) (majorType | 25);
+				this.buf[this.len++] = (byte) (val >>> 8);
+				this.buf[this.len++] = (byte) val;
+			} else if (val < 0x100000000L) {
+				this.buf[this.len++] = (byte) (majorType | 26);
+				writeBigEndian(val, 4);
+			} else {
+				this.buf[this.len++] = (byte) (majorType | 27);
+				writeBigEndian(val, 8);
+			}
+		}
+
+		void writeLong(long val)
+		{
+			if (val >= 0) {
+				writeHeader(MT_UNSIGNED, val);
+			} else {
+				writeHeader(MT_NEGATIVE, -1L - val);
+			}
+		}
+
+		void writeKeyInt(int key, int val)
+		{
+			writeHeader(MT_UNSIGNED, key);
+			writeLong(val);
+		}
+
+		void writeKeyFloat(int key, float val)
+		{
+			writeHeader(MT_UNSIGNED, key);
+
+			int half = toHalfBitsIfExact(val);
+
+			ensure(5);
+
+			if (half >= 0) {
+				this.buf[this.len++] = (byte) HALF_FLOAT;
+				writeBigEndian(half, 2);
+			} else {
+				this.buf[this.len++] = (byte) SINGLE_FLOAT;
+				writeBigEndian(Float.floatToIntBits(val), 4);
+			}
+		}
+
+		void writeKeyString(int key, String val)
+		{
+			writeHeader(MT_UNSIGNED, key);
+
+			if (val == null) {
+				writeByte(NULL);
+				return;
+			}
+
+			int strLen = val.length();
+			boolean isAscii = true;
+
+			for (int i = 0; i < strLen && isAscii; i++) {
+				isAscii = (val.charAt(i) < 0x80);
+			}
+
+			if (isAscii) {
+				writeHeader(MT_TEXT, strLen);
+				ensure(strLen);
+
+				for (int i = 0; i < strLen; i++) {
+					this.buf[this.len++] = (byte) val.charAt(i);
+				}
+			} else {
+				byte[] utf8 = val.getBytes(StandardCharsets.UTF_8);
+
+				writeHeader(MT_TEXT, utf8.length);
+				writeRaw(utf8);
+			}
+		}
+
+		byte[] toByteArray()
+		{
+			return Arrays.copyOf(this.buf, this.len);
+		}
+
+		private void writeBigEndian(long val, int byteCount)
+		{
+			ensure(byteCount);
+
+			for (int shift = (byteCount - 1) * 8; shift >= 0; shift -= 8) {
+				this.buf[this.len++] = (byte) (val >>> shift);
+			}
+		}
+
+		private void ensure(int extra)
+		{
+			if (this.len + extra > this.buf.length) {
+				this.buf = Arrays.copyOf(this.buf, Math.max(this.buf.length * 2, this.len + extra));
+			}
+		}
+	}
+
+	/**
+	 * Cursor over the input buffer using absolute reads.
+	 *
+	 */
+	private static final class Reader
+	{
+		private final ByteBuffer buf;
+		private final int        limit;
+		private int              pos;
+
+		Reader(ByteBuffer buf)
+		{
+			this.buf   = buf;
+			this.pos   = buf.position();
+			this.limit = buf.limit();
+		}
+
+		int peek()
+		{
+			if (this.pos >= this.limit) {
+				throw new IllegalArgumentException("Unexpected end of CBOR input at offset " + this.pos);
+			}
+
+			return this.buf.get(this.pos) & 0xFF;
+		}
+
+		int next()
+		{
+			int b = peek();
+			this.pos++;
+			return b;
+		}
+
+		boolean nextIsBreak()
+		{
+			if (peek() == BREAK) {
+				this.pos++;
+				return true;
+			}
+
+			return false;
+		}
+
+		void skipTags()
+		{
+			while ((peek() & 0xE0) == MT_TAG) {
+				readArgument(next());
+			}
+		}
+
+		/**
+		 * Reads an item header of the given major type, returning its argument
+		 * (the length for strings, arrays and maps), or INDEFINITE_LENGTH.
+		 *
+		 */
+		long readHeader(int majorType)
+		{
+			skipTags();
+
+			int initial = next();
+
+			if ((initial & 0xE0) != majorType) {
+				throw new IllegalArgumentException(
+					"Unexpected CBOR major type " + (initial >>> 5) + " at offset " + (this.pos - 1));
+			}
+
+			if ((initial & 0x1F) == INDEFINITE) {
+				return INDEFINITE_LENGTH;
+			}
+
+			return readArgument(initial);
+		}
+
+		int readKey()
+		{
+			skipTags();
+
+			int initial = peek();
+
+			if ((initial & 0xE0) == MT_UNSIGNED) {
+				long key = readArgument(next());
+				return (key <= SENSOR_LIST_KEY ? (int) key : UNKNOWN_KEY);
+			} else if ((initial & 0xE0) == MT_TEXT) {
+				return keyForName(readString());
+			}
+
+			skipValue();
+
+			return UNKNOWN_KEY;
+		}
+
+		String readString()
+		{
+			return readString(null);
+		}
+
+		String readString(StringDictionary dictionary)
+		{
+			long len = readHeader(MT_TEXT);
+
+			if (len == INDEFINITE_LENGTH || len > this.limit - this.pos) {
+				throw new IllegalArgumentException("Unsupported or truncated CBOR text at offset " + this.pos);
+			}
+
+			int    strLen = (int) len;
+			String str;
+
+			if (dictionary != null) {
+				str = dictionary.decode(this.buf, this.pos, strLen);
+			} else if (this.buf.hasArray()) {
+				str = new String(this.buf.array(), this.buf.arrayOffset() + this.pos, strLen, StandardCharsets.UTF_8);
+			} else {
+				byte[] bytes = new byte[strLen];
+
+				for (int i = 0; i < strLen; i++) {
+					bytes[i] = this.buf.get(this.pos + i);
+				}
+
+				str = new String(bytes, StandardCharsets.UTF_8);
+			}
+
+			this.pos += strLen;
+
+			return str;
+		}
+
+		long readLong()
+		{
+			skipTags();
+
+			int initial = peek();
+
+			switch (initial & 0xE0) {
+				case MT_UNSIGNED:
+					return readArgument(next());
+
+				case MT_NEGATIVE:
+					return -1L - readArgument(next());
+
+				default:
+					double val = readDouble();
+					long longVal = (long) val;
+
+					if (longVal != val) {
+						throw new IllegalArgumentException("Expected an integer but was " + val);
+					}
+
+					return longVal;
+			}
+		}
+
+		int readInt()
+		{
+			long val = readLong();
+
+			if (val < Integer.MIN_VALUE || val > Integer.MAX_VALUE) {
+				throw new IllegalArgumentException("Expected an int but was " + val);
+			}
+
+			return (int) val;
+		}
+
+		boolean readBoolean()
+		{
+			int b = next();
+
+			if (b == TRUE) {
+				return true;
+			} else if (b == FALSE) {
+				return false;
+			}
+
+			throw new IllegalArgumentException("Expected a CBOR boolean at offset " + (this.pos - 1));
+		}
+
+		float readFloat()
+		{
+			skipTags();
+
+			int initial = peek();
+
+			if (initial == HALF_FLOAT) {
+				this.pos++;
+				return halfBitsToFloat((int) readBigEndian(2));
+			} else if (initial == SINGLE_FLOAT) {
+				this.pos++;
+				return Float.intBitsToFloat((int) readBigEndian(4));
+			}
+
+			return (float) readDouble();
+		}
+
+		double readDouble()
+		{
+			skipTags();
+
+			int initial = next();
+
+			switch (initial) {
+				case HALF_FLOAT:   return halfBitsToFloat((int) readBigEndian(2));
+				case SINGLE_FLOAT: return Float.intBitsToFloat((int) readBigEndian(4));
+				case DOUBLE_FLOAT: return Double.longBitsToDouble(readBigEndian(8));
+			}
+
+			if ((initial & 0xE0) == MT_UNSIGNED) {
+				return readArgument(initial);
+			} else if ((initial & 0xE0) == MT_NEGATIVE) {
+				return -1.0 - readArgument(initial);
+			}
+
+			throw new IllegalArgumentException("Expected a CBOR number at offset " + (this.pos - 1));
+		}
+
+		void skipValue()
+		{
+			int initial   = next();
+			int majorType = initial & 0xE0;
+
+			if (majorType == MT_SIMPLE) {
+				int info = initial & 0x1F;
+
+				this.pos += (info == 24 ? 1 : info == 25 ? 2 : info == 26 ? 4 : info == 27 ? 8 : 0);
+				return;
+			}
+
+			boolean indefinite = ((initial & 0x1F) == INDEFINITE);
+			long    arg        = (indefinite ? 0 : readArgument(initial));
+
+			switch (majorType) {
+				case MT_BYTES:
+				case MT_TEXT:
+					if (indefinite) {
+						while (! nextIsBreak()) {
+							skipValue();
+						}
+					} else {
+						this.pos += (int) arg;
+					}
+
+					break;
+
+				case MT_ARRAY:
+				case MT_MAP:
+					long items = (majorType == MT_MAP ? arg * 2 : arg);
+
+					if (indefinite) {
+						while (! nextIsBreak()) {
+							skipValue();
+						}
+					} else {
+						for (long i = 0; i < items; i++) {
+							skipValue();
+						}
+					}
+
+					break;
+
+				case MT_TAG:
+					skipValue();
+					break;
+
+				default:
+					// unsigned / negative ints: the argument was all there was
+			}
+		}
+
+		private long readArgument(int initial)
+		{
+			int info = initial & 0x1F;
+
+			if (info < 24) {
+				return info;
+			}
+
+			switch (info) {
+				case 24: return readBigEndian(1);
+				case 25: return readBigEndian(2);
+				case 26: return readBigEndian(4);
+				case 27: return readBigEndian(8);
+
+				default:
+					throw new IllegalArgumentException("Malformed CBOR item header at offset " + (this.pos - 1));
+			}
+		}
+
+		private long readBigEndian(int byteCount)
+		{
+			if (this.pos + byteCount > this.limit) {
+				throw new IllegalArgumentException("Unexpected end of CBOR input at offset " + this.pos);
+			}
+
+			long val = 0L;
+
+			for (int i = 0; i < byteCount; i++) {
+				val = (val << 8) | (this.buf.get(this.pos++) & 0xFF);
+			}
+
+			return val;
+		}
+	}
+
+}
@@ -0,0 +1,199 @@
+/**
+ * This class is part of the Programming the Internet of Things project.
+ *
+ * It is provided as a simple shell to guide the student and assist with
+ * implementation for the Programming the Internet of Things exercises,
+ * and designed to be modified by the student as needed.
+ */
+
+package programmingtheiot.data;
+
+import java.nio.ByteBuffer;
+
+import com.google.gson.JsonSyntaxException;
+
+import programmingtheiot.common.ConfigConst;
+import programmingtheiot.common.DeviceIdentity;
+
+/**
+ * Decodes UTF-8 JSON payloads straight into the IoT data classes using
+ * {@link Utf8JsonReader}, in a single pass over the wire bytes.
+ * <p>
+ * The property mapping mirrors {@link IotDataTypeAdapterFactory}, so the
+ * result is the same as decoding the equivalent String through DataUtil.
+ *
+ */
+final class IotDataJsonDecoder
+{
+	// constructors
+
+	private IotDataJsonDecoder()
+	{
+		super();
+	}
+
+
+	// package-private methods
+
+	/**
+	 * Decodes the bytes between the buffer's position and limit into a new
+	 * instance of the given type. The buffer itself is not modified.
+	 *
+	 * @param buf The UTF-8 encoded JSON payload.
+	 * @param type The target type.
+	 * @param identity The device identity used for the default location ID.
+	 * @param dictionary The dictionary names and location ID's are canonicalized through; may be null.
+	 * @return T The decoded instance, or null if the payload is blank or the JSON literal null.
+	 * @throws JsonSyntaxException If the payload is malformed.
+	 */
+	static <T extends BaseIotData> T decode(ByteBuffer buf, Class<T> type, DeviceIdentity identity, StringDictionary dictionary)
+	{
+		Utf8JsonReader in = new Utf8JsonReader(buf);
+
+		// whitespace-only payloads are treated like blank Strings
+		if (in.isDone()) {
+			return null;
+		}
+
+		T data = readObject(in, type, identity, dictionary);
+
+		if (! in.isDone()) {
+			throw new JsonSyntaxException("Unexpected trailing data in " + type.getSimpleName() + " payload");
+		}
+
+		return data;
+	}
+
+
+	// private methods
+
+	@SuppressWarnings("unchecked")
+	private static <T extends BaseIotData> T readObject(Utf8JsonReader in, Class<T> type, DeviceIdentity identity, StringDictionary dictionary)
+	{
+		if (in.peekNull()) {
+			in.nextNull();
+			return null;
+		}
+
+		T data;
+
+		if (type == SensorData.class) {
+			data = (T) new SensorData(identity);
+		} else if (type == ActuatorData.class) {
+			data = (T) new ActuatorData(identity);
+		} else if (type == SystemPerformanceData.class) {
+			data = (T) new SystemPerformanceData(identity);
+		} else if (type == SystemStateData.class) {
+			data = (T) new SystemStateData(identity);
+		} else {
+			throw new IllegalArgumentException("Unsupported IoT data type: " + type.getName());
+		}
+
+		// the timestamp is applied last, since some setters
+		// (e.g. SensorData#setValue) refresh it as a side effect
+		String  timeStamp       = null;
+		long    timeStampMillis = IsoTimeStamp.NO_MILLIS;
+
+		in.beginObject();
+
+		while (in.hasNext()) {
+			String name = in.nextName();
+
+			if (in.peekNull()) {
+				in.nextNull();
+				continue;
+			}
+
+			switch (name) {
+				case ConfigConst.NAME_PROP:        data.setName(in.nextString(dictionary));        break;
+				case ConfigConst.TIMESTAMP_PROP:   timeStamp = in.nextString();                    break;
+				case ConfigConst.STATUS_CODE_PROP: data.setStatusCode(in.nextInt());               break;
+				case ConfigConst.TYPE_ID_PROP:     data.setTypeID(in.nextInt());                   break;
+				case ConfigConst.LOCATION_ID_PROP: data.setLocationID(in.nextString(dictionary));  break;
+				case ConfigConst.LATITUDE_PROP:    data.setLatitude(in.nextFloat());               break;
+				case ConfigConst.LONGITUDE_PROP:   data.setLongitude(in.nextFloat());              break;
+				case ConfigConst.ELEVATION_PROP:   data.setElevation(in.nextFloat());              break;
+
+				case IotDataTypeAdapterFactory.TIMESTAMP_MILLIS_PROP:
+					timeStampMillis = in.nextLong();
+					break;
+
+				default:
+					if (! readField(in, name, data, identity, dictionary)) {
+						in.skipValue();
+					}
+			}
+		}
+
+		in.endObject();
+
+		data.setTimeStamp(timeStamp, timeStampMillis);
+
+		return data;
+	}
+
+	private static boolean readField(Utf8JsonReader in, String name, BaseIotData data, DeviceIdentity identity, StringDictionary dictionary)
+	{
+		if (data instanceof SensorData) {
+			if (ConfigConst.VALUE_PROP.equals(name)) {
+				((SensorData) data).setValue(in.nextFloat());
+				return true;
+			}
+		} else if (data instanceof ActuatorData) {
+			ActuatorData aData = (ActuatorData) data;
+
+			switch (name) {
+				case ConfigConst.COMMAND_PROP:    aData.setCommand(in.nextInt());      return true;
+				case ConfigConst.VALUE_PROP:      aData.setValue(in.nextFloat());      return true;
+				case ConfigConst.STATE_DATA_PROP: aData.setStateData(in.nextString()); return true;
+
+				case ConfigConst.IS_RESPONSE_PROP:
+					if (in.nextBoolean()) {
+						aData.setAsResponse();
+					}
+
+					return true;
+			}
+		} else if (data instanceof SystemPerformanceData) {
+			SystemPerformanceData spData = (SystemPerformanceData) data;
+
+			switch (name) {
+				case ConfigConst.CPU_UTIL_PROP:  spData.setCpuUtilization(in.nextFloat());    return true;
+				case ConfigConst.DISK_UTIL_PROP: spData.setDiskUtilization(in.nextFloat());   return true;
+				case ConfigConst.MEM_UTIL_PROP:  spData.setMemoryUtilization(in.nextFloat()); return true;
+			}
+		} else if (data instanceof SystemStateData) {
+			SystemStateData ssData = (SystemStateData) data;
+
+			switch (name) {
+				case ConfigConst.COMMAND_PROP:
+					ssData.setCommand(in.nextInt());
+					return true;
+
+				case IotDataTypeAdapterFactory.SYS_PERF_DATA_LIST_PROP:
+				case ConfigConst.SYSTEM_PERF_DATA_LIST_PROP:
+					in.beginArray();
+
+					while (in.hasNext()) {
+						ssData.addSystemPerformanceData(readObject(in, SystemPerformanceData.class, identity, dictionary));
+					}
+
+					in.endArray();
+					return true;
+
+				case ConfigConst.SENSOR_DATA_LIST_PROP:
+					in.beginArray();
+
+					while (in.hasNext()) {
+						ssData.addSensorData(readObject(in, SensorData.class, identity, dictionary));
+					}
+
+					in.endArray();
+					return true;
+			}
+		}
+
+		return false;
+	}
+
+}
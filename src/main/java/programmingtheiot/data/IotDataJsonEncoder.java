@@ -0,0 +1,108 @@
+/**
+ * This class is part of the Programming the Internet of Things project.
+ *
+ * It is provided as a simple shell to guide the student and assist with
+ * implementation for the Programming the Internet of Things exercises,
+ * and designed to be modified by the student as needed.
+ */
+
+package programmingtheiot.data;
+
+import java.util.List;
+
+import programmingtheiot.common.ConfigConst;
+
+/**
+ * Encodes the IoT data classes as UTF-8 JSON using {@link Utf8JsonWriter},
+ * without reflection or an intermediate String.
+ * <p>
+ * The property order and formatting mirror {@link IotDataTypeAdapterFactory},
+ * so the bytes are the same as those of the JSON String created by DataUtil's
+ * Gson engine.
+ *
+ */
+final class IotDataJsonEncoder
+{
+	// constructors
+
+	private IotDataJsonEncoder()
+	{
+		super();
+	}
+
+
+	// package-private methods
+
+	/**
+	 * Appends the JSON for the given instance to 'out'.
+	 *
+	 * @param out The writer.
+	 * @param data The instance to encode; null is written as the JSON literal null.
+	 */
+	static void encode(Utf8JsonWriter out, BaseIotData data)
+	{
+		if (data == null) {
+			out.nullValue();
+			return;
+		}
+
+		out.beginObject();
+
+		// sub-class properties first, as with Gson's reflective adapter
+		if (data instanceof SensorData) {
+			out.property(ConfigConst.VALUE_PROP, ((SensorData) data).getValue());
+		} else if (data instanceof ActuatorData) {
+			ActuatorData aData = (ActuatorData) data;
+
+			out.property(ConfigConst.COMMAND_PROP, aData.getCommand());
+			out.property(ConfigConst.VALUE_PROP, aData.getValue());
+			out.property(ConfigConst.IS_RESPONSE_PROP, aData.isResponseFlagEnabled());
+			out.property(ConfigConst.STATE_DATA_PROP, aData.getStateData());
+		} else if (data instanceof SystemPerformanceData) {
+			SystemPerformanceData spData = (SystemPerformanceData) data;
+
+			out.property(ConfigConst.CPU_UTIL_PROP, spData.getCpuUtilization());
+			out.property(ConfigConst.DISK_UTIL_PROP, spData.getDiskUtilization());
+			out.property(ConfigConst.MEM_UTIL_PROP, spData.getMemoryUtilization());
+		} else if (data instanceof SystemStateData) {
+			SystemStateData ssData = (SystemStateData) data;
+
+			out.property(ConfigConst.COMMAND_PROP, ssData.getCommand());
+
+			writeList(out, IotDataTypeAdapterFactory.SYS_PERF_DATA_LIST_PROP, ssData.getSystemPerformanceDataList());
+			writeList(out, ConfigConst.SENSOR_DATA_LIST_PROP, ssData.getSensorDataList());
+		} else {
+			throw new IllegalArgumentException("Unsupported IoT data type: " + data.getClass().getName());
+		}
+
+		out.property(ConfigConst.NAME_PROP, data.getName());
+		out.property(ConfigConst.TIMESTAMP_PROP, data.getTimeStamp());
+		out.property(ConfigConst.STATUS_CODE_PROP, data.getStatusCode());
+		out.property(ConfigConst.TYPE_ID_PROP, data.getTypeID());
+		out.property(ConfigConst.LOCATION_ID_PROP, data.getLocationID());
+		out.property(ConfigConst.LATITUDE_PROP, data.getLatitude());
+		out.property(ConfigConst.LONGITUDE_PROP, data.getLongitude());
+		out.property(ConfigConst.ELEVATION_PROP, data.getElevation());
+		out.property(IotDataTypeAdapterFactory.TIMESTAMP_MILLIS_PROP, data.getTimeStampMillis());
+
+		out.endObject();
+	}
+
+
+	// private methods
+
+	private static void writeList(Utf8JsonWriter out, String name, List<? extends BaseIotData> dataList)
+	{
+		if (dataList != null) {
+			out.name(name);
+			out.beginArray();
+
+			for (BaseIotData data : dataList) {
+				encode(out, data);
+			}
+
+			out.endArray();
+		}
+	}
+
+}
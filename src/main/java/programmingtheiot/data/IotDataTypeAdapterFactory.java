@@ -0,0 +1,446 @@
+/**
+ * This class is part of the Programming the Internet of Things project.
+ *
+ * It is provided as a simple shell to guide the student and assist with
+ * implementation for the Programming the Internet of Things exercises,
+ * and designed to be modified by the student as needed.
+ */
+
+package programmingtheiot.data;
+
+import java.io.IOException;
+import java.util.List;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import programmingtheiot.common.ConfigConst;
+import programmingtheiot.common.DeviceIdentity;
+
+/**
+ * Gson {@link TypeAdapterFactory} that supplies pre-built, reflection-free
+ * adapters for {@link SensorData}, {@link ActuatorData},
+ * {@link SystemPerformanceData} and {@link SystemStateData}.
+ * <p>
+ * Each adapter is created once when the factory is constructed, holds no
+ * per-call state, and is therefore safe to share across threads (as is the
+ * {@link Gson} instance it's registered with). The JSON produced is field
+ * for field identical to Gson's reflective output for these classes, so CDA
+ * and cloud consumers see no difference on the wire.
+ * <p>
+ * Decoded instances take their default location ID from the
+ * {@link DeviceIdentity} given at construction, so decoding never
+ * consults the configuration.
+ *
+ */
+public final class IotDataTypeAdapterFactory implements TypeAdapterFactory
+{
+	// static
+
+	// property names that only exist as Java field names (no ConfigConst entry)
+	static final String TIMESTAMP_MILLIS_PROP   = "timeStampMillis";
+	static final String SYS_PERF_DATA_LIST_PROP = "sysPerfDataList";
+
+
+	// private var's
+
+	private final SensorDataAdapter            sensorDataAdapter;
+	private final ActuatorDataAdapter          actuatorDataAdapter;
+	private final SystemPerformanceDataAdapter sysPerfDataAdapter;
+	private final SystemStateDataAdapter       sysStateDataAdapter;
+
+
+	// constructors
+
+	/**
+	 * Default. Uses the default {@link DeviceIdentity}.
+	 *
+	 */
+	public IotDataTypeAdapterFactory()
+	{
+		this(DeviceIdentity.getDefault());
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param identity The device identity used for the default location ID
+	 * of decoded instances.
+	 */
+	public IotDataTypeAdapterFactory(DeviceIdentity identity)
+	{
+		this(identity, null);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param identity The device identity used for the default location ID
+	 * of decoded instances.
+	 * @param dictionary The dictionary the names and location ID's of decoded
+	 * instances are canonicalized through. If null, they're not canonicalized.
+	 */
+	public IotDataTypeAdapterFactory(DeviceIdentity identity, StringDictionary dictionary)
+	{
+		super();
+
+		this.sensorDataAdapter   = new SensorDataAdapter(identity, dictionary);
+		this.actuatorDataAdapter = new ActuatorDataAdapter(identity, dictionary);
+		this.sysPerfDataAdapter  = new SystemPerformanceDataAdapter(identity, dictionary);
+		this.sysStateDataAdapter =
+			new SystemStateDataAdapter(identity, dictionary, this.sensorDataAdapter, this.sysPerfDataAdapter);
+	}
+
+
+	// public methods
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type)
+	{
+		Class<? super T> rawType = type.getRawType();
+
+		if (rawType == SensorData.class) {
+			return (TypeAdapter<T>) this.sensorDataAdapter;
+		} else if (rawType == ActuatorData.class) {
+			return (TypeAdapter<T>) this.actuatorDataAdapter;
+		} else if (rawType == SystemPerformanceData.class) {
+			return (TypeAdapter<T>) this.sysPerfDataAdapter;
+		} else if (rawType == SystemStateData.class) {
+			return (TypeAdapter<T>) this.sysStateDataAdapter;
+		}
+
+		return null;
+	}
+
+
+	// adapters
+
+	/**
+	 * Common read / write logic for the {@link BaseIotData} properties.
+	 * Sub-class properties are written first, followed by the base class
+	 * properties, matching the order used by Gson's reflective adapter.
+	 *
+	 */
+	private abstract static class BaseIotDataAdapter<T extends BaseIotData> extends TypeAdapter<T>
+	{
+		protected final DeviceIdentity   identity;
+		protected final StringDictionary dictionary;
+
+		BaseIotDataAdapter(DeviceIdentity identity, StringDictionary dictionary)
+		{
+			this.identity   = identity;
+			this.dictionary = dictionary;
+		}
+
+		@Override
+		public void write(JsonWriter out, T data) throws IOException
+		{
+			if (data == null) {
+				out.nullValue();
+				return;
+			}
+
+			out.beginObject();
+			writeFields(out, data);
+			writeBaseFields(out, data);
+			out.endObject();
+		}
+
+		@Override
+		public T read(JsonReader in) throws IOException
+		{
+			if (in.peek() == JsonToken.NULL) {
+				in.nextNull();
+				return null;
+			}
+
+			T data = createInstance();
+
+			// the timestamp is applied last, since some setters
+			// (e.g. SensorData#setValue) refresh it as a side effect
+			String  timeStamp       = null;
+			long    timeStampMillis = IsoTimeStamp.NO_MILLIS;
+
+			in.beginObject();
+
+			while (in.hasNext()) {
+				String name = in.nextName();
+
+				if (in.peek() == JsonToken.NULL) {
+					in.nextNull();
+					continue;
+				}
+
+				switch (name) {
+					case ConfigConst.NAME_PROP:        data.setName(canonicalize(in.nextString()));       break;
+					case ConfigConst.TIMESTAMP_PROP:   timeStamp = in.nextString();                       break;
+					case ConfigConst.STATUS_CODE_PROP: data.setStatusCode(in.nextInt());                  break;
+					case ConfigConst.TYPE_ID_PROP:     data.setTypeID(in.nextInt());                      break;
+					case ConfigConst.LOCATION_ID_PROP: data.setLocationID(canonicalize(in.nextString())); break;
+					case ConfigConst.LATITUDE_PROP:    data.setLatitude((float) in.nextDouble());         break;
+					case ConfigConst.LONGITUDE_PROP:   data.setLongitude((float) in.nextDouble());        break;
+					case ConfigConst.ELEVATION_PROP:   data.setElevation((float) in.nextDouble());        break;
+					case TIMESTAMP_MILLIS_PROP:        timeStampMillis = in.nextLong();                   break;
+
+					default:
+						if (! readField(in, name, data)) {
+							in.skipValue();
+						}
+				}
+			}
+
+			in.endObject();
+
+			data.setTimeStamp(timeStamp, timeStampMillis);
+
+			return data;
+		}
+
+		/**
+		 * Creates a new, empty instance to decode into.
+		 *
+		 * @return T
+		 */
+		protected abstract T createInstance();
+
+		/**
+		 * Writes the sub-class specific properties.
+		 *
+		 * @param out The writer.
+		 * @param data The non-null data instance.
+		 * @throws IOException
+		 */
+		protected abstract void writeFields(JsonWriter out, T data) throws IOException;
+
+		/**
+		 * Reads the sub-class specific property named 'name', if known.
+		 *
+		 * @param in The reader, positioned at the (non-null) value.
+		 * @param name The property name.
+		 * @param data The instance to update.
+		 * @return boolean True if the property was consumed; false otherwise.
+		 * @throws IOException
+		 */
+		protected abstract boolean readField(JsonReader in, String name, T data) throws IOException;
+
+		private String canonicalize(String str)
+		{
+			return (this.dictionary != null ? this.dictionary.canonicalize(str) : str);
+		}
+
+		private void writeBaseFields(JsonWriter out, T data) throws IOException
+		{
+			out.name(ConfigConst.NAME_PROP).value(data.getName());
+			out.name(ConfigConst.TIMESTAMP_PROP).value(data.getTimeStamp());
+			out.name(ConfigConst.STATUS_CODE_PROP).value(data.getStatusCode());
+			out.name(ConfigConst.TYPE_ID_PROP).value(data.getTypeID());
+			out.name(ConfigConst.LOCATION_ID_PROP).value(data.getLocationID());
+			out.name(ConfigConst.LATITUDE_PROP).value(data.getLatitude());
+			out.name(ConfigConst.LONGITUDE_PROP).value(data.getLongitude());
+			out.name(ConfigConst.ELEVATION_PROP).value(data.getElevation());
+			out.name(TIMESTAMP_MILLIS_PROP).value(data.getTimeStampMillis());
+		}
+	}
+
+	private static final class SensorDataAdapter extends BaseIotDataAdapter<SensorData>
+	{
+		SensorDataAdapter(DeviceIdentity identity, StringDictionary dictionary)
+		{
+			super(identity, dictionary);
+		}
+
+		@Override
+		protected SensorData createInstance()
+		{
+			return new SensorData(this.identity);
+		}
+
+		@Override
+		protected void writeFields(JsonWriter out, SensorData data) throws IOException
+		{
+			out.name(ConfigConst.VALUE_PROP).value(data.getValue());
+		}
+
+		@Override
+		protected boolean readField(JsonReader in, String name, SensorData data) throws IOException
+		{
+			if (ConfigConst.VALUE_PROP.equals(name)) {
+				data.setValue((float) in.nextDouble());
+				return true;
+			}
+
+			return false;
+		}
+	}
+
+	private static final class ActuatorDataAdapter extends BaseIotDataAdapter<ActuatorData>
+	{
+		ActuatorDataAdapter(DeviceIdentity identity, StringDictionary dictionary)
+		{
+			super(identity, dictionary);
+		}
+
+		@Override
+		protected ActuatorData createInstance()
+		{
+			return new ActuatorData(this.identity);
+		}
+
+		@Override
+		protected void writeFields(JsonWriter out, ActuatorData data) throws IOException
+		{
+			out.name(ConfigConst.COMMAND_PROP).value(data.getCommand());
+			out.name(ConfigConst.VALUE_PROP).value(data.getValue());
+			out.name(ConfigConst.IS_RESPONSE_PROP).value(data.isResponseFlagEnabled());
+			out.name(ConfigConst.STATE_DATA_PROP).value(data.getStateData());
+		}
+
+		@Override
+		protected boolean readField(JsonReader in, String name, ActuatorData data) throws IOException
+		{
+			switch (name) {
+				case ConfigConst.COMMAND_PROP:    data.setCommand(in.nextInt());            return true;
+				case ConfigConst.VALUE_PROP:      data.setValue((float) in.nextDouble());   return true;
+				case ConfigConst.STATE_DATA_PROP: data.setStateData(in.nextString());       return true;
+
+				case ConfigConst.IS_RESPONSE_PROP:
+					if (in.nextBoolean()) {
+						data.setAsResponse();
+					}
+
+					return true;
+
+				default:
+					return false;
+			}
+		}
+	}
+
+	private static final class SystemPerformanceDataAdapter extends BaseIotDataAdapter<SystemPerformanceData>
+	{
+		SystemPerformanceDataAdapter(DeviceIdentity identity, StringDictionary dictionary)
+		{
+			super(identity, dictionary);
+		}
+
+		@Override
+		protected SystemPerformanceData createInstance()
+		{
+			return new SystemPerformanceData(this.identity);
+		}
+
+		@Override
+		protected void writeFields(JsonWriter out, SystemPerformanceData data) throws IOException
+		{
+			out.name(ConfigConst.CPU_UTIL_PROP).value(data.getCpuUtilization());
+			out.name(ConfigConst.DISK_UTIL_PROP).value(data.getDiskUtilization());
+			out.name(ConfigConst.MEM_UTIL_PROP).value(data.getMemoryUtilization());
+		}
+
+		@Override
+		protected boolean readField(JsonReader in, String name, SystemPerformanceData data) throws IOException
+		{
+			switch (name) {
+				case ConfigConst.CPU_UTIL_PROP:  data.setCpuUtilization((float) in.nextDouble());    return true;
+				case ConfigConst.DISK_UTIL_PROP: data.setDiskUtilization((float) in.nextDouble());   return true;
+				case ConfigConst.MEM_UTIL_PROP:  data.setMemoryUtilization((float) in.nextDouble()); return true;
+
+				default:
+					return false;
+			}
+		}
+	}
+
+	private static final class SystemStateDataAdapter extends BaseIotDataAdapter<SystemStateData>
+	{
+		private final SensorDataAdapter            sensorDataAdapter;
+		private final SystemPerformanceDataAdapter sysPerfDataAdapter;
+
+		SystemStateDataAdapter(
+			DeviceIdentity identity, StringDictionary dictionary,
+			SensorDataAdapter sensorDataAdapter, SystemPerformanceDataAdapter sysPerfDataAdapter)
+		{
+			super(identity, dictionary);
+
+			this.sensorDataAdapter  = sensorDataAdapter;
+			this.sysPerfDataAdapter = sysPerfDataAdapter;
+		}
+
+		@Override
+		protected SystemStateData createInstance()
+		{
+			return new SystemStateData(this.identity);
+		}
+
+		@Override
+		protected void writeFields(JsonWriter out, SystemStateData data) throws IOException
+		{
+			out.name(ConfigConst.COMMAND_PROP).value(data.getCommand());
+
+			List<SystemPerformanceData> sysPerfDataList = data.getSystemPerformanceDataList();
+
+			if (sysPerfDataList != null) {
+				out.name(SYS_PERF_DATA_LIST_PROP).beginArray();
+
+				for (SystemPerformanceData sysPerfData : sysPerfDataList) {
+					this.sysPerfDataAdapter.write(out, sysPerfData);
+				}
+
+				out.endArray();
+			}
+
+			List<SensorData> sensorDataList = data.getSensorDataList();
+
+			if (sensorDataList != null) {
+				out.name(ConfigConst.SENSOR_DATA_LIST_PROP).beginArray();
+
+				for (SensorData sensorData : sensorDataList) {
+					this.sensorDataAdapter.write(out, sensorData);
+				}
+
+				out.endArray();
+			}
+		}
+
+		@Override
+		protected boolean readField(JsonReader in, String name, SystemStateData data) throws IOException
+		{
+			switch (name) {
+				case ConfigConst.COMMAND_PROP:
+					data.setCommand(in.nextInt());
+					return true;
+
+				case SYS_PERF_DATA_LIST_PROP:
+				case ConfigConst.SYSTEM_PERF_DATA_LIST_PROP:
+					in.beginArray();
+
+					while (in.hasNext()) {
+						data.addSystemPerformanceData(this.sysPerfDataAdapter.read(in));
+					}
+
+					in.endArray();
+					return true;
+
+				case ConfigConst.SENSOR_DATA_LIST_PROP:
+					in.beginArray();
+
+					while (in.hasNext()) {
+						data.addSensorData(this.sensorDataAdapter.read(in));
+					}
+
+					in.endArray();
+					return true;
+
+				default:
+					return false;
+			}
+		}
+	}
+	
+}
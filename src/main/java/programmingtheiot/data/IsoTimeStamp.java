@@ -0,0 +1,234 @@
+/**
+ * This class is part of the Programming the Internet of Things project.
+ *
+ * It is provided as a simple shell to guide the student and assist with
+ * implementation for the Programming the Internet of Things exercises,
+ * and designed to be modified by the student as needed.
+ */
+
+package programmingtheiot.data;
+
+/**
+ * Parses ISO 8601 timestamps with a UTC offset (e.g. 2020-12-27T10:13:30Z,
+ * or 2020-12-27T10:13:30.123456+01:00, as sent by the CDA) into millis
+ * since the Epoch, without allocating.
+ * <p>
+ * This is used at the edges only, when a payload carries the timestamp as
+ * a String but not in millis; from there on, the data is compared by its
+ * {@link BaseIotData#getTimeStampMillis()}.
+ *
+ */
+public final class IsoTimeStamp
+{
+	// static
+
+	/**
+	 * Returned by {@link #parseMillis(CharSequence)} if the timestamp is
+	 * invalid.
+	 */
+	public static final long NO_MILLIS = Long.MIN_VALUE;
+
+	private static final long MILLIS_PER_DAY    = 86400000L;
+	private static final int  MILLIS_PER_HOUR   = 3600000;
+	private static final int  MILLIS_PER_MINUTE = 60000;
+
+
+	// constructors
+
+	private IsoTimeStamp()
+	{
+		super();
+	}
+
+
+	// public methods
+
+	/**
+	 * Parses the timestamp, which is {@code yyyy-MM-dd'T'HH:mm[:ss[.fraction]]}
+	 * followed by 'Z' or an offset ({@code +HH:mm}, {@code +HHmm} or
+	 * {@code +HH}). Timestamps without an offset are invalid, since their
+	 * time zone is unknown. The fraction is truncated to millis.
+	 *
+	 * @param timeStamp The timestamp.
+	 * @return long The millis since the Epoch, or {@link #NO_MILLIS} if
+	 * the timestamp is invalid.
+	 */
+	public static long parseMillis(CharSequence timeStamp)
+	{
+		if (timeStamp == null) {
+			return NO_MILLIS;
+		}
+
+		int length = timeStamp.length();
+
+		// the shortest valid timestamp: yyyy-MM-ddTHH:mmZ
+		if (length < 17
+			|| timeStamp.charAt(4) != '-' || timeStamp.charAt(7) != '-'
+			|| (timeStamp.charAt(10) != 'T' && timeStamp.charAt(10) != 't')
+			|| timeStamp.charAt(13) != ':') {
+			return NO_MILLIS;
+		}
+
+		int year   = parseDigits(timeStamp, 0, 4);
+		int month  = parseDigits(timeStamp, 5, 2);
+		int day    = parseDigits(timeStamp, 8, 2);
+		int hour   = parseDigits(timeStamp, 11, 2);
+		int minute = parseDigits(timeStamp, 14, 2);
+
+		if (year < 0 || month < 1 || month > 12 || day < 1 || day > getDaysInMonth(year, month)
+			|| hour < 0 || hour > 23 || minute < 0 || minute > 59) {
+			return NO_MILLIS;
+		}
+
+		int pos    = 16;
+		int second = 0;
+		int millis = 0;
+
+		if (pos < length && timeStamp.charAt(pos) == ':') {
+			second = parseDigits(timeStamp, pos + 1, 2);
+
+			if (second < 0 || second > 59) {
+				return NO_MILLIS;
+			}
+
+			pos += 3;
+
+			if (pos < length && (timeStamp.charAt(pos) == '.' || timeStamp.charAt(pos) == ',')) {
+				int start = ++pos;
+
+				while (pos < length && isDigit(timeStamp.charAt(pos))) {
+					if (pos - start < 3) {
+						millis = millis * 10 + (timeStamp.charAt(pos) - '0');
+					}
+
+					pos++;
+				}
+
+				int digitCount = pos - start;
+
+				if (digitCount < 1 || digitCount > 9) {
+					return NO_MILLIS;
+				}
+
+				for (int i = digitCount; i < 3; i++) {
+					millis *= 10;
+				}
+			}
+		}
+
+		int offsetMillis = parseOffsetMillis(timeStamp, pos);
+
+		if (offsetMillis == Integer.MIN_VALUE) {
+			return NO_MILLIS;
+		}
+
+		return
+			getEpochDay(year, month, day) * MILLIS_PER_DAY +
+			hour * MILLIS_PER_HOUR + minute * MILLIS_PER_MINUTE + second * 1000 + millis - offsetMillis;
+	}
+
+
+	// private methods
+
+	private static int parseOffsetMillis(CharSequence timeStamp, int pos)
+	{
+		int length = timeStamp.length();
+
+		if (pos >= length) {
+			return Integer.MIN_VALUE;
+		}
+
+		char c = timeStamp.charAt(pos);
+
+		if (c == 'Z' || c == 'z') {
+			return (pos + 1 == length ? 0 : Integer.MIN_VALUE);
+		}
+
+		if (c != '+' && c != '-') {
+			return Integer.MIN_VALUE;
+		}
+
+		int hours   = parseDigits(timeStamp, pos + 1, 2);
+		int minutes = 0;
+		int end     = pos + 3;
+
+		if (end < length) {
+			if (timeStamp.charAt(end) == ':') {
+				end++;
+			}
+
+			minutes = parseDigits(timeStamp, end, 2);
+			end += 2;
+		}
+
+		if (end != length || hours < 0 || hours > 18 || minutes < 0 || minutes > 59) {
+			return Integer.MIN_VALUE;
+		}
+
+		int offsetMillis = hours * MILLIS_PER_HOUR + minutes * MILLIS_PER_MINUTE;
+
+		return (c == '-' ? -offsetMillis : offsetMillis);
+	}
+
+	/**
+	 * Returns the value of the digits, or -1 if any char isn't a digit.
+	 *
+	 */
+	private static int parseDigits(CharSequence s, int pos, int count)
+	{
+		if (pos + count > s.length()) {
+			return -1;
+		}
+
+		int value = 0;
+
+		for (int i = pos; i < pos + count; i++) {
+			char c = s.charAt(i);
+
+			if (! isDigit(c)) {
+				return -1;
+			}
+
+			value = value * 10 + (c - '0');
+		}
+
+		return value;
+	}
+
+	private static boolean isDigit(char c)
+	{
+		return c >= '0' && c <= '9';
+	}
+
+	private static int getDaysInMonth(int year, int month)
+	{
+		switch (month) {
+			case 2:
+				boolean isLeapYear = (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0));
+				return (isLeapYear ? 29 : 28);
+
+			case 4: case 6: case 9: case 11:
+				return 30;
+
+			default:
+				return 31;
+		}
+	}
+
+	/**
+	 * Returns the number of days since 1970-01-01 (proleptic Gregorian).
+	 *
+	 */
+	private static long getEpochDay(int year, int month, int day)
+	{
+		// years start in March, so the leap day is the last day of the year
+		int y = (month <= 2 ? year - 1 : year);
+		int era = Math.floorDiv(y, 400);
+		int yearOfEra = y - era * 400;
+		int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+		int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+
+		return era * 146097L + dayOfEra - 719468L;
+	}
+
+}
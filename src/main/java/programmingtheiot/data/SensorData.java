@@ -13,6 +13,7 @@ import java.io.Serializable;
 import com.influxdb.client.domain.Config;
 
 import programmingtheiot.common.ConfigConst;
+import programmingtheiot.common.DeviceIdentity;
 
 /**
  * Instantiates the base class and also defines getters and setters for Sensor Data.
@@ -39,6 +40,16 @@ public class SensorData extends BaseIotData implements Serializable
 		super();
 	}
 	
+	/**
+	 * Constructor.
+	 * 
+	 * @param identity The device identity used for the default location ID.
+	 */
+	public SensorData(DeviceIdentity identity)
+	{
+		super(identity);
+	}
+	
 	
 	// public methods
 	
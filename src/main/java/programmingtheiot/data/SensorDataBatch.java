@@ -0,0 +1,480 @@
+/**
+ * This class is part of the Programming the Internet of Things project.
+ *
+ * It is provided as a simple shell to guide the student and assist with
+ * implementation for the Programming the Internet of Things exercises,
+ * and designed to be modified by the student as needed.
+ */
+
+package programmingtheiot.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Columnar batch of sensor readings, for moving many readings in bulk
+ * (e.g. windowing, persistence and cloud upload) without one
+ * {@link SensorData} instance per reading.
+ * <p>
+ * Values, timestamps (millis since the Epoch), type ID's and status codes
+ * are stored in parallel primitive arrays. Names and location ID's are
+ * dictionary encoded: each distinct String is stored once, and each
+ * reading stores its int code.
+ * <p>
+ * Readings are accessed by index, or visited via {@link #forEach(ReadingVisitor)};
+ * neither allocates. {@link #slice(int, int)} returns a read-only view that
+ * shares the arrays of this batch, so it doesn't copy either.
+ * <p>
+ * Latitude, longitude and elevation are not carried, and timestamps are
+ * kept at millisecond precision.
+ * <p>
+ * This class is not thread-safe.
+ *
+ */
+public final class SensorDataBatch
+{
+	// static
+
+	public static final int DEFAULT_CAPACITY = 64;
+
+	/**
+	 * Callback for {@link SensorDataBatch#forEach(ReadingVisitor)}. All
+	 * reading properties are passed as primitives (or the shared dictionary
+	 * Strings), so visiting a batch doesn't allocate.
+	 *
+	 */
+	@FunctionalInterface
+	public interface ReadingVisitor
+	{
+		/**
+		 * Called once for each reading, in order.
+		 *
+		 * @param index The reading's index within the batch.
+		 * @param name The name.
+		 * @param locationID The location ID.
+		 * @param typeID The type ID.
+		 * @param statusCode The status code.
+		 * @param value The value.
+		 * @param timeStampMillis The timestamp in millis since the Epoch.
+		 */
+		public void visit(
+			int index, String name, String locationID, int typeID, int statusCode, float value, long timeStampMillis);
+	}
+
+	/**
+	 * Creates a new batch containing the given readings, in order.
+	 *
+	 * @param data The readings. Null entries are skipped.
+	 * @return SensorDataBatch
+	 */
+	public static SensorDataBatch fromSensorData(SensorData ... data)
+	{
+		SensorDataBatch batch = new SensorDataBatch(data != null ? Math.max(data.length, 1) : DEFAULT_CAPACITY);
+
+		batch.appendAll(data);
+
+		return batch;
+	}
+
+
+	// private var's
+
+	private final Dictionary names;
+	private final Dictionary locationIDs;
+	private final boolean    isReadOnly;
+	private final int        offset;
+
+	private float[] values;
+	private long[]  timeStampMillis;
+	private int[]   typeIDs;
+	private int[]   statusCodes;
+	private int[]   nameCodes;
+	private int[]   locationCodes;
+	private int     size = 0;
+
+
+	// constructors
+
+	/**
+	 * Default.
+	 *
+	 */
+	public SensorDataBatch()
+	{
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param initialCapacity The initial number of readings to allocate for.
+	 * The batch grows as needed.
+	 */
+	public SensorDataBatch(int initialCapacity)
+	{
+		super();
+
+		if (initialCapacity < 1) {
+			throw new IllegalArgumentException("Initial capacity must be > 0: " + initialCapacity);
+		}
+
+		this.names           = new Dictionary();
+		this.locationIDs     = new Dictionary();
+		this.isReadOnly      = false;
+		this.offset          = 0;
+
+		this.values          = new float[initialCapacity];
+		this.timeStampMillis = new long[initialCapacity];
+		this.typeIDs         = new int[initialCapacity];
+		this.statusCodes     = new int[initialCapacity];
+		this.nameCodes       = new int[initialCapacity];
+		this.locationCodes   = new int[initialCapacity];
+	}
+
+	/**
+	 * Constructor for slices (read-only views over the parent's arrays).
+	 *
+	 */
+	private SensorDataBatch(SensorDataBatch parent, int from, int to)
+	{
+		super();
+
+		this.names           = parent.names;
+		this.locationIDs     = parent.locationIDs;
+		this.isReadOnly      = true;
+		this.offset          = parent.offset + from;
+		this.size            = to - from;
+
+		this.values          = parent.values;
+		this.timeStampMillis = parent.timeStampMillis;
+		this.typeIDs         = parent.typeIDs;
+		this.statusCodes     = parent.statusCodes;
+		this.nameCodes       = parent.nameCodes;
+		this.locationCodes   = parent.locationCodes;
+	}
+
+
+	// public methods
+
+	/**
+	 * Appends a reading.
+	 *
+	 * @param name The name.
+	 * @param locationID The location ID.
+	 * @param typeID The type ID.
+	 * @param statusCode The status code.
+	 * @param value The value.
+	 * @param timeStampMillis The timestamp in millis since the Epoch.
+	 * @return int The index of the new reading.
+	 * @throws IllegalStateException If this batch is a read-only slice.
+	 */
+	public int append(String name, String locationID, int typeID, int statusCode, float value, long timeStampMillis)
+	{
+		if (this.isReadOnly) {
+			throw new IllegalStateException("Cannot append to a read-only slice.");
+		}
+
+		if (this.size == this.values.length) {
+			grow(this.size + 1);
+		}
+
+		int index = this.size++;
+
+		this.values[index]          = value;
+		this.timeStampMillis[index] = timeStampMillis;
+		this.typeIDs[index]         = typeID;
+		this.statusCodes[index]     = statusCode;
+		this.nameCodes[index]       = this.names.encode(name);
+		this.locationCodes[index]   = this.locationIDs.encode(locationID);
+
+		return index;
+	}
+
+	/**
+	 * Appends the given reading.
+	 *
+	 * @param data The reading.
+	 * @return int The index of the new reading, or -1 if data is null.
+	 * @throws IllegalStateException If this batch is a read-only slice.
+	 */
+	public int append(SensorData data)
+	{
+		if (data == null) {
+			return -1;
+		}
+
+		return append(
+			data.getName(), data.getLocationID(), data.getTypeID(), data.getStatusCode(),
+			data.getValue(), data.getTimeStampMillis());
+	}
+
+	/**
+	 * Appends the given readings, in order.
+	 *
+	 * @param data The readings. Null entries are skipped.
+	 * @throws IllegalStateException If this batch is a read-only slice.
+	 */
+	public void appendAll(SensorData ... data)
+	{
+		if (data != null) {
+			if (this.isReadOnly) {
+				throw new IllegalStateException("Cannot append to a read-only slice.");
+			}
+
+			if (this.size + data.length > this.values.length) {
+				grow(this.size + data.length);
+			}
+
+			for (SensorData sensorData : data) {
+				append(sensorData);
+			}
+		}
+	}
+
+	/**
+	 * Removes all readings. The allocated capacity and the dictionaries are
+	 * retained, so the batch can be refilled without allocating.
+	 * <p>
+	 * NOTE: Slices taken before the call must not be used afterwards.
+	 *
+	 * @throws IllegalStateException If this batch is a read-only slice.
+	 */
+	public void clear()
+	{
+		if (this.isReadOnly) {
+			throw new IllegalStateException("Cannot clear a read-only slice.");
+		}
+
+		this.size = 0;
+	}
+
+	/**
+	 * Returns a read-only view of the readings between 'from' (inclusive)
+	 * and 'to' (exclusive). No readings are copied.
+	 *
+	 * @param from The index of the first reading.
+	 * @param to The index after the last reading.
+	 * @return SensorDataBatch
+	 */
+	public SensorDataBatch slice(int from, int to)
+	{
+		if (from < 0 || to > this.size || from > to) {
+			throw new IndexOutOfBoundsException("Invalid slice [" + from + ", " + to + ") of size " + this.size);
+		}
+
+		return new SensorDataBatch(this, from, to);
+	}
+
+	/**
+	 * Visits each reading, in order, without allocating.
+	 *
+	 * @param visitor The visitor.
+	 */
+	public void forEach(ReadingVisitor visitor)
+	{
+		for (int i = 0; i < this.size; i++) {
+			int pos = this.offset + i;
+
+			visitor.visit(
+				i,
+				this.names.decode(this.nameCodes[pos]),
+				this.locationIDs.decode(this.locationCodes[pos]),
+				this.typeIDs[pos], this.statusCodes[pos], this.values[pos], this.timeStampMillis[pos]);
+		}
+	}
+
+	public int size()
+	{
+		return this.size;
+	}
+
+	public boolean isEmpty()
+	{
+		return (this.size == 0);
+	}
+
+	public boolean isReadOnly()
+	{
+		return this.isReadOnly;
+	}
+
+	public float getValue(int index)
+	{
+		return this.values[position(index)];
+	}
+
+	public long getTimeStampMillis(int index)
+	{
+		return this.timeStampMillis[position(index)];
+	}
+
+	public int getTypeID(int index)
+	{
+		return this.typeIDs[position(index)];
+	}
+
+	public int getStatusCode(int index)
+	{
+		return this.statusCodes[position(index)];
+	}
+
+	public String getName(int index)
+	{
+		return this.names.decode(this.nameCodes[position(index)]);
+	}
+
+	public String getLocationID(int index)
+	{
+		return this.locationIDs.decode(this.locationCodes[position(index)]);
+	}
+
+	/**
+	 * Returns the dictionary code of the reading's name. Readings with
+	 * equal names have equal codes, which makes grouping cheap.
+	 *
+	 * @param index The reading's index.
+	 * @return int The code, or -1 if the name is null.
+	 */
+	public int getNameCode(int index)
+	{
+		return this.nameCodes[position(index)];
+	}
+
+	/**
+	 * Returns the dictionary code of the reading's location ID.
+	 *
+	 * @param index The reading's index.
+	 * @return int The code, or -1 if the location ID is null.
+	 */
+	public int getLocationCode(int index)
+	{
+		return this.locationCodes[position(index)];
+	}
+
+	/**
+	 * Copies the reading at the given index into an existing instance,
+	 * so a single instance can be reused while iterating.
+	 *
+	 * @param index The reading's index.
+	 * @param data The instance to update.
+	 * @return SensorData The updated instance.
+	 */
+	public SensorData copyTo(int index, SensorData data)
+	{
+		int pos = position(index);
+
+		data.setName(this.names.decode(this.nameCodes[pos]));
+		data.setLocationID(this.locationIDs.decode(this.locationCodes[pos]));
+		data.setTypeID(this.typeIDs[pos]);
+		data.setStatusCode(this.statusCodes[pos]);
+		data.setValue(this.values[pos]);
+
+		// applied last, as setValue() refreshes the timestamp
+		data.setTimeStamp(null, this.timeStampMillis[pos]);
+
+		return data;
+	}
+
+	/**
+	 * Creates a new {@link SensorData} instance for the reading at the given index.
+	 *
+	 * @param index The reading's index.
+	 * @return SensorData
+	 */
+	public SensorData toSensorData(int index)
+	{
+		return copyTo(index, new SensorData());
+	}
+
+	/**
+	 * Creates a new {@link SensorData} instance for each reading, in order.
+	 *
+	 * @return SensorData[]
+	 */
+	public SensorData[] toSensorDataArray()
+	{
+		SensorData[] data = new SensorData[this.size];
+
+		for (int i = 0; i < this.size; i++) {
+			data[i] = toSensorData(i);
+		}
+
+		return data;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "SensorDataBatch[size=" + this.size + ",names=" + this.names.size() + ",locations=" + this.locationIDs.size() + "]";
+	}
+
+
+	// private methods
+
+	private int position(int index)
+	{
+		if (index < 0 || index >= this.size) {
+			throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + this.size);
+		}
+
+		return this.offset + index;
+	}
+
+	private void grow(int minCapacity)
+	{
+		int newCapacity = Math.max(minCapacity, this.values.length + (this.values.length >> 1) + 1);
+
+		this.values          = Arrays.copyOf(this.values, newCapacity);
+		this.timeStampMillis = Arrays.copyOf(this.timeStampMillis, newCapacity);
+		this.typeIDs         = Arrays.copyOf(this.typeIDs, newCapacity);
+		this.statusCodes     = Arrays.copyOf(this.statusCodes, newCapacity);
+		this.nameCodes       = Arrays.copyOf(this.nameCodes, newCapacity);
+		this.locationCodes   = Arrays.copyOf(this.locationCodes, newCapacity);
+	}
+
+
+	// helpers
+
+	/**
+	 * Append-only String dictionary. Codes are assigned in order of first
+	 * appearance; null is encoded as -1.
+	 *
+	 */
+	private static final class Dictionary
+	{
+		private final Map<String, Integer> codes   = new HashMap<>();
+		private final List<String>         entries = new ArrayList<>();
+
+		int encode(String entry)
+		{
+			if (entry == null) {
+				return -1;
+			}
+
+			Integer code = this.codes.get(entry);
+
+			if (code == null) {
+				code = this.entries.size();
+
+				this.codes.put(entry, code);
+				this.entries.add(entry);
+			}
+
+			return code;
+		}
+
+		String decode(int code)
+		{
+			return (code >= 0 ? this.entries.get(code) : null);
+		}
+
+		int size()
+		{
+			return this.entries.size();
+		}
+	}
+
+}
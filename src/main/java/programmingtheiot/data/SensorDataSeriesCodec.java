@@ -0,0 +1,585 @@
+/**
+ * This class is part of the Programming the Internet of Things project.
+ *
+ * It is provided as a simple shell to guide the student and assist with
+ * implementation for the Programming the Internet of Things exercises,
+ * and designed to be modified by the student as needed.
+ */
+
+package programmingtheiot.data;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Lossless time series codec for {@link SensorDataBatch} readings, using
+ * the delta-of-delta timestamp and XOR value compression described in
+ * the Gorilla paper (Pelkonen et al., VLDB 2015).
+ * <p>
+ * The readings are grouped into one series per sensor (name and location
+ * ID), which are written once per series. Within a series, a reading taken
+ * at a regular interval with an unchanged value costs four bits, and a
+ * slowly changing value typically only a dozen or so.
+ * <p>
+ * Layout (multi-byte header values are unsigned LEB128 varints):
+ * <pre>
+ * magic 'G' 'S', version, series count, then for each series:
+ *   name, location ID (varint length + 1, 0 for null, then UTF-8 bytes),
+ *   reading count, bit stream (padded to a whole byte)
+ *
+ * first reading:  timestamp (64) value (32) typeID (32) statusCode (32)
+ * other readings: timestamp delta-of-delta
+ *                   '0' | '10' + 7 | '110' + 9 | '1110' + 12 | '11110' + 32 | '11111' + 64
+ *                 value XOR previous
+ *                   '0' (same) | '10' + bits in previous window
+ *                   | '11' + leading zeros (5) + length - 1 (5) + bits
+ *                 typeID and statusCode
+ *                   '0' (same) | '1' + 32
+ * </pre>
+ * Readings are kept in their original order within each series; they
+ * don't need to be sorted by timestamp.
+ *
+ */
+public final class SensorDataSeriesCodec
+{
+	// static
+
+	public static final int VERSION = 1;
+
+	private static final byte[] MAGIC = { 'G', 'S' };
+
+	// timestamp delta-of-delta bucket sizes, in bits, after the prefix
+	private static final int[] DOD_BITS = { 7, 9, 12, 32 };
+
+
+	// constructors
+
+	private SensorDataSeriesCodec()
+	{
+		super();
+	}
+
+
+	// public methods
+
+	/**
+	 * Returns true if the buffer starts with the series magic bytes. The
+	 * buffer is not modified.
+	 *
+	 * @param buf The payload.
+	 * @return boolean
+	 */
+	public static boolean isSeries(ByteBuffer buf)
+	{
+		int pos = buf.position();
+
+		return (buf.limit() - pos > MAGIC.length && buf.get(pos) == MAGIC[0] && buf.get(pos + 1) == MAGIC[1]);
+	}
+
+	/**
+	 * Encodes all readings of the batch, one series per sensor.
+	 *
+	 * @param batch The readings to encode.
+	 * @return byte[]
+	 */
+	public static byte[] encode(SensorDataBatch batch)
+	{
+		int size = batch.size();
+
+		// group the readings by sensor (name and location ID codes),
+		// in order of first appearance, with a counting sort
+		Map<Long, Integer> seriesIDs = new HashMap<>();
+		int[] seriesOf     = new int[size];
+		int[] seriesCounts = new int[Math.max(size, 1)];
+
+		for (int i = 0; i < size; i++) {
+			Long key = ((long) batch.getNameCode(i) << 32) | (batch.getLocationCode(i) & 0xFFFFFFFFL);
+
+			Integer seriesID = seriesIDs.get(key);
+
+			if (seriesID == null) {
+				seriesID = seriesIDs.size();
+				seriesIDs.put(key, seriesID);
+			}
+
+			seriesOf[i] = seriesID;
+			++seriesCounts[seriesID];
+		}
+
+		int   seriesCount  = seriesIDs.size();
+		int[] seriesStarts = new int[seriesCount + 1];
+
+		for (int s = 0; s < seriesCount; s++) {
+			seriesStarts[s + 1] = seriesStarts[s] + seriesCounts[s];
+		}
+
+		int[] order = new int[size];
+		int[] next  = Arrays.copyOf(seriesStarts, seriesCount);
+
+		for (int i = 0; i < size; i++) {
+			order[next[seriesOf[i]]++] = i;
+		}
+
+		BitWriter out = new BitWriter(16 + size * 4);
+
+		out.writeBytes(MAGIC);
+		out.writeByte(VERSION);
+		out.writeVarint(seriesCount);
+
+		for (int s = 0; s < seriesCount; s++) {
+			writeSeries(out, batch, order, seriesStarts[s], seriesStarts[s + 1]);
+		}
+
+		return out.toByteArray();
+	}
+
+	/**
+	 * Decodes a payload created by {@link #encode(SensorDataBatch)}.
+	 *
+	 * @param data The encoded payload.
+	 * @return SensorDataBatch A new batch with the readings, grouped by sensor.
+	 * @throws IllegalArgumentException If the payload is malformed.
+	 */
+	public static SensorDataBatch decode(byte[] data)
+	{
+		return decode(ByteBuffer.wrap(data), new SensorDataBatch());
+	}
+
+	/**
+	 * Decodes the bytes between the buffer's position and limit, appending
+	 * the readings to the given batch. The buffer itself is not modified.
+	 *
+	 * @param buf The encoded payload.
+	 * @param batch The batch to append to.
+	 * @return SensorDataBatch The given batch.
+	 * @throws IllegalArgumentException If the payload is malformed.
+	 */
+	public static SensorDataBatch decode(ByteBuffer buf, SensorDataBatch batch)
+	{
+		if (! isSeries(buf)) {
+			throw new IllegalArgumentException("Not a sensor data series payload");
+		}
+
+		BitReader in = new BitReader(buf);
+
+		in.skipBytes(MAGIC.length);
+
+		int version = in.readByte();
+
+		if (version != VERSION) {
+			throw new IllegalArgumentException("Unsupported sensor data series version: " + version);
+		}
+
+		int seriesCount = in.readVarint();
+
+		for (int s = 0; s < seriesCount; s++) {
+			readSeries(in, batch);
+		}
+
+		return batch;
+	}
+
+
+	// private methods
+
+	private static void writeSeries(BitWriter out, SensorDataBatch batch, int[] order, int from, int to)
+	{
+		int first = order[from];
+
+		out.writeString(batch.getName(first));
+		out.writeString(batch.getLocationID(first));
+		out.writeVarint(to - from);
+
+		long prevTimeStamp  = batch.getTimeStampMillis(first);
+		long prevDelta      = 0L;
+		int  prevValueBits  = Float.floatToRawIntBits(batch.getValue(first));
+		int  prevTypeID     = batch.getTypeID(first);
+		int  prevStatusCode = batch.getStatusCode(first);
+		int  prevLeading    = -1;
+		int  prevTrailing   = 0;
+
+		out.writeBits(prevTimeStamp, 64);
+		out.writeBits(prevValueBits, 32);
+		out.writeBits(prevTypeID, 32);
+		out.writeBits(prevStatusCode, 32);
+
+		for (int n = from + 1; n < to; n++) {
+			int index = order[n];
+
+			// timestamp: delta-of-delta
+			long timeStamp = batch.getTimeStampMillis(index);
+			long delta     = timeStamp - prevTimeStamp;
+			long dod       = delta - prevDelta;
+
+			writeDeltaOfDelta(out, dod);
+
+			prevTimeStamp = timeStamp;
+			prevDelta     = delta;
+
+			// value: XOR with the previous value
+			int valueBits = Float.floatToRawIntBits(batch.getValue(index));
+			int xor       = valueBits ^ prevValueBits;
+
+			if (xor == 0) {
+				out.writeBit(0);
+			} else {
+				int leading  = Integer.numberOfLeadingZeros(xor);
+				int trailing = Integer.numberOfTrailingZeros(xor);
+
+				if (prevLeading >= 0 && leading >= prevLeading && trailing >= prevTrailing) {
+					out.writeBits(0b10, 2);
+					out.writeBits(xor >>> prevTrailing, 32 - prevLeading - prevTrailing);
+				} else {
+					int length = 32 - leading - trailing;
+
+					out.writeBits(0b11, 2);
+					out.writeBits(leading, 5);
+					out.writeBits(length - 1, 5);
+					out.writeBits(xor >>> trailing, length);
+
+					prevLeading  = leading;
+					prevTrailing = trailing;
+				}
+			}
+
+			prevValueBits = valueBits;
+
+			// typeID and statusCode rarely change within a series
+			prevTypeID     = writeIfChanged(out, batch.getTypeID(index), prevTypeID);
+			prevStatusCode = writeIfChanged(out, batch.getStatusCode(index), prevStatusCode);
+		}
+
+		out.alignToByte();
+	}
+
+	private static void readSeries(BitReader in, SensorDataBatch batch)
+	{
+		String name       = in.readString();
+		String locationID = in.readString();
+		int    count      = in.readVarint();
+
+		if (count < 1) {
+			throw new IllegalArgumentException("Invalid sensor data series length: " + count);
+		}
+
+		long timeStamp    = in.readBits(64);
+		long delta        = 0L;
+		int  valueBits    = (int) in.readBits(32);
+		int  typeID       = (int) in.readBits(32);
+		int  statusCode   = (int) in.readBits(32);
+		int  leading      = -1;
+		int  trailing     = 0;
+
+		batch.append(name, locationID, typeID, statusCode, Float.intBitsToFloat(valueBits), timeStamp);
+
+		for (int n = 1; n < count; n++) {
+			delta     += readDeltaOfDelta(in);
+			timeStamp += delta;
+
+			if (in.readBit() != 0) {
+				if (in.readBit() != 0) {
+					leading  = (int) in.readBits(5);
+					trailing = 32 - leading - ((int) in.readBits(5) + 1);
+
+					if (trailing < 0) {
+						throw new IllegalArgumentException("Invalid sensor data series value window");
+					}
+				} else if (leading < 0) {
+					throw new IllegalArgumentException("Sensor data series value window used before being set");
+				}
+
+				valueBits ^= (int) in.readBits(32 - leading - trailing) << trailing;
+			}
+
+			if (in.readBit() != 0) {
+				typeID = (int) in.readBits(32);
+			}
+
+			if (in.readBit() != 0) {
+				statusCode = (int) in.readBits(32);
+			}
+
+			batch.append(name, locationID, typeID, statusCode, Float.intBitsToFloat(valueBits), timeStamp);
+		}
+
+		in.alignToByte();
+	}
+
+	private static void writeDeltaOfDelta(BitWriter out, long dod)
+	{
+		if (dod == 0L) {
+			out.writeBit(0);
+			return;
+		}
+
+		for (int i = 0; i < DOD_BITS.length; i++) {
+			int  bits = DOD_BITS[i];
+			long min  = -(1L << (bits - 1));
+
+			if (dod >= min && dod < -min) {
+				// i + 1 one bits, followed by a zero
+				out.writeBits((1L << (i + 2)) - 2, i + 2);
+				out.writeBits(dod, bits);
+				return;
+			}
+		}
+
+		out.writeBits(0b11111, 5);
+		out.writeBits(dod, 64);
+	}
+
+	private static long readDeltaOfDelta(BitReader in)
+	{
+		int ones = 0;
+
+		while (ones <= DOD_BITS.length && in.readBit() != 0) {
+			++ones;
+		}
+
+		if (ones == 0) {
+			return 0L;
+		} else if (ones > DOD_BITS.length) {
+			return in.readBits(64);
+		}
+
+		int bits = DOD_BITS[ones - 1];
+
+		// sign extend
+		return (in.readBits(bits) << (64 - bits)) >> (64 - bits);
+	}
+
+	private static int writeIfChanged(BitWriter out, int val, int prevVal)
+	{
+		if (val == prevVal) {
+			out.writeBit(0);
+		} else {
+			out.writeBit(1);
+			out.writeBits(val, 32);
+		}
+
+		return val;
+	}
+
+
+	// helpers
+
+	/**
+	 * Growable, MSB first bit stream writer.
+	 *
+	 */
+	private static final class BitWriter
+	{
+		private byte[] bytes;
+		private int    len      = 0;
+		private int    cur      = 0;
+		private int    curCount = 0;
+
+		BitWriter(int initialCapacity)
+		{
+			this.bytes = new byte[initialCapacity];
+		}
+
+		void writeBit(int bit)
+		{
+			this.cur = (this.cur << 1) | (bit & 1);
+
+			if (++this.curCount == 8) {
+				flushCurrent();
+			}
+		}
+
+		/**
+		 * Writes the lowest 'count' bits of 'val', most significant first.
+		 *
+		 * @param val
+		 * @param count Between 0 and 64.
+		 */
+		void writeBits(long val, int count)
+		{
+			while (count > 0) {
+				int take = Math.min(8 - this.curCount, count);
+				int bits = (int) (val >>> (count - take)) & ((1 << take) - 1);
+
+				this.cur       = (this.cur << take) | bits;
+				this.curCount += take;
+				count         -= take;
+
+				if (this.curCount == 8) {
+					flushCurrent();
+				}
+			}
+		}
+
+		void alignToByte()
+		{
+			if (this.curCount > 0) {
+				this.cur <<= (8 - this.curCount);
+				flushCurrent();
+			}
+		}
+
+		void writeByte(int b)
+		{
+			writeBits(b, 8);
+		}
+
+		void writeBytes(byte[] data)
+		{
+			for (byte b : data) {
+				writeByte(b);
+			}
+		}
+
+		void writeVarint(int val)
+		{
+			while ((val & ~0x7F) != 0) {
+				writeByte((val & 0x7F) | 0x80);
+				val >>>= 7;
+			}
+
+			writeByte(val);
+		}
+
+		void writeString(String str)
+		{
+			if (str == null) {
+				writeVarint(0);
+				return;
+			}
+
+			byte[] data = str.getBytes(StandardCharsets.UTF_8);
+
+			writeVarint(data.length + 1);
+			writeBytes(data);
+		}
+
+		byte[] toByteArray()
+		{
+			alignToByte();
+
+			return Arrays.copyOf(this.bytes, this.len);
+		}
+
+		private void flushCurrent()
+		{
+			if (this.len == this.bytes.length) {
+				this.bytes = Arrays.copyOf(this.bytes, this.bytes.length * 2 + 8);
+			}
+
+			this.bytes[this.len++] = (byte) this.cur;
+			this.cur      = 0;
+			this.curCount = 0;
+		}
+	}
+
+	/**
+	 * MSB first bit stream reader, using absolute reads.
+	 *
+	 */
+	private static final class BitReader
+	{
+		private final ByteBuffer buf;
+		private final int        limit;
+		private int              pos;
+		private int              cur      = 0;
+		private int              curCount = 0;
+
+		BitReader(ByteBuffer buf)
+		{
+			this.buf   = buf;
+			this.pos   = buf.position();
+			this.limit = buf.limit();
+		}
+
+		int readBit()
+		{
+			return (int) readBits(1);
+		}
+
+		long readBits(int count)
+		{
+			long val = 0L;
+
+			while (count > 0) {
+				if (this.curCount == 0) {
+					if (this.pos >= this.limit) {
+						throw new IllegalArgumentException("Truncated sensor data series at offset " + this.pos);
+					}
+
+					this.cur      = this.buf.get(this.pos++) & 0xFF;
+					this.curCount = 8;
+				}
+
+				int take = Math.min(this.curCount, count);
+				int bits = (this.cur >>> (this.curCount - take)) & ((1 << take) - 1);
+
+				val            = (val << take) | bits;
+				this.curCount -= take;
+				count         -= take;
+			}
+
+			return val;
+		}
+
+		void alignToByte()
+		{
+			this.curCount = 0;
+		}
+
+		int readByte()
+		{
+			return (int) readBits(8);
+		}
+
+		void skipBytes(int count)
+		{
+			readBits(count * 8);
+		}
+
+		int readVarint()
+		{
+			int val   = 0;
+			int shift = 0;
+			int b;
+
+			do {
+				if (shift > 28) {
+					throw new IllegalArgumentException("Invalid varint at offset " + this.pos);
+				}
+
+				b      = readByte();
+				val   |= (b & 0x7F) << shift;
+				shift += 7;
+			} while ((b & 0x80) != 0);
+
+			return val;
+		}
+
+		String readString()
+		{
+			int lenPlusOne = readVarint();
+
+			if (lenPlusOne == 0) {
+				return null;
+			}
+
+			int len = lenPlusOne - 1;
+
+			if (len < 0 || len > this.limit - this.pos) {
+				throw new IllegalArgumentException("Truncated sensor data series at offset " + this.pos);
+			}
+
+			byte[] data = new byte[len];
+
+			for (int i = 0; i < len; i++) {
+				data[i] = (byte) readByte();
+			}
+
+			return new String(data, StandardCharsets.UTF_8);
+		}
+	}
+
+}
@@ -0,0 +1,270 @@
+/**
+ * This class is part of the Programming the Internet of Things project.
+ *
+ * It is provided as a simple shell to guide the student and assist with
+ * implementation for the Programming the Internet of Things exercises,
+ * and designed to be modified by the student as needed.
+ */
+
+package programmingtheiot.data;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded, thread-safe canonicalization dictionary for the short, highly
+ * repetitive Strings found in IoT data (names and location ID's), so equal
+ * values decoded from different payloads share a single instance.
+ * <p>
+ * The dictionary is a fixed size, direct-mapped table: each String maps to
+ * one slot based on its hash code, and a new String replaces whatever
+ * occupied its slot. Memory use is therefore bounded regardless of the
+ * input, and lookups are lock-free.
+ * <p>
+ * The codecs look up values straight from the payload bytes, so a hit
+ * doesn't allocate a String at all. Only ASCII values up to
+ * {@link #getMaxLength()} chars are cached; others are simply created.
+ *
+ */
+public final class StringDictionary
+{
+	// static
+
+	public static final int DEFAULT_CAPACITY   = 1024;
+	public static final int DEFAULT_MAX_LENGTH = 64;
+
+
+	// private var's
+
+	private final AtomicReferenceArray<String> entries;
+	private final int       mask;
+	private final int       maxLength;
+	private final LongAdder hitCount  = new LongAdder();
+	private final LongAdder missCount = new LongAdder();
+
+
+	// constructors
+
+	/**
+	 * Default.
+	 *
+	 */
+	public StringDictionary()
+	{
+		this(DEFAULT_CAPACITY, DEFAULT_MAX_LENGTH);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param capacity The number of slots; rounded up to a power of 2.
+	 * @param maxLength The maximum length of the Strings to cache.
+	 */
+	public StringDictionary(int capacity, int maxLength)
+	{
+		super();
+
+		if (capacity < 1 || capacity > (1 << 30)) {
+			throw new IllegalArgumentException("Invalid capacity: " + capacity);
+		}
+
+		int size = Integer.highestOneBit(capacity);
+
+		if (size < capacity) {
+			size <<= 1;
+		}
+
+		this.entries   = new AtomicReferenceArray<>(size);
+		this.mask      = size - 1;
+		this.maxLength = maxLength;
+	}
+
+
+	// public methods
+
+	/**
+	 * Returns the canonical instance equal to 'str', caching 'str' as the
+	 * canonical instance if there's none yet.
+	 *
+	 * @param str The String to canonicalize.
+	 * @return String The canonical instance, or 'str' itself if it can't be cached.
+	 */
+	public String canonicalize(String str)
+	{
+		if (str == null || str.length() > this.maxLength || ! isAscii(str)) {
+			return str;
+		}
+
+		int    slot      = str.hashCode() & this.mask;
+		String candidate = this.entries.get(slot);
+
+		if (str.equals(candidate)) {
+			this.hitCount.increment();
+			return candidate;
+		}
+
+		this.missCount.increment();
+		this.entries.set(slot, str);
+
+		return str;
+	}
+
+	/**
+	 * Returns the canonical instance for the UTF-8 bytes between 'start'
+	 * (inclusive) and 'start + len' (exclusive) of the buffer, using
+	 * absolute reads (the buffer's position is not changed). A String is
+	 * only created on a miss.
+	 *
+	 * @param buf The buffer.
+	 * @param start The index of the first byte.
+	 * @param len The number of bytes.
+	 * @return String
+	 */
+	public String decode(ByteBuffer buf, int start, int len)
+	{
+		if (len > this.maxLength) {
+			return createString(buf, start, len, StandardCharsets.UTF_8);
+		}
+
+		// same hash as String#hashCode(), as long as all bytes are ASCII
+		int hash = 0;
+
+		for (int i = 0; i < len; i++) {
+			byte b = buf.get(start + i);
+
+			if (b < 0) {
+				return createString(buf, start, len, StandardCharsets.UTF_8);
+			}
+
+			hash = 31 * hash + b;
+		}
+
+		int    slot      = hash & this.mask;
+		String candidate = this.entries.get(slot);
+
+		if (candidate != null && candidate.length() == len && candidate.hashCode() == hash
+			&& matches(candidate, buf, start)) {
+			this.hitCount.increment();
+			return candidate;
+		}
+
+		String str = createString(buf, start, len, StandardCharsets.US_ASCII);
+
+		this.missCount.increment();
+		this.entries.set(slot, str);
+
+		return str;
+	}
+
+	public long getHitCount()
+	{
+		return this.hitCount.sum();
+	}
+
+	public long getMissCount()
+	{
+		return this.missCount.sum();
+	}
+
+	/**
+	 * Returns the fraction of lookups that were hits.
+	 *
+	 * @return double A value between 0.0 and 1.0, or 0.0 if there were no lookups.
+	 */
+	public double getHitRatio()
+	{
+		long hits  = getHitCount();
+		long total = hits + getMissCount();
+
+		return (total > 0 ? (double) hits / total : 0.0d);
+	}
+
+	public int getCapacity()
+	{
+		return this.entries.length();
+	}
+
+	public int getMaxLength()
+	{
+		return this.maxLength;
+	}
+
+	/**
+	 * Returns the number of occupied slots. This is computed on demand by
+	 * scanning the table.
+	 *
+	 * @return int
+	 */
+	public int size()
+	{
+		int count = 0;
+
+		for (int i = 0; i < this.entries.length(); i++) {
+			if (this.entries.get(i) != null) {
+				++count;
+			}
+		}
+
+		return count;
+	}
+
+	/**
+	 * Resets the hit and miss counts. Cached entries are retained.
+	 *
+	 */
+	public void resetStatistics()
+	{
+		this.hitCount.reset();
+		this.missCount.reset();
+	}
+
+	@Override
+	public String toString()
+	{
+		return "StringDictionary[capacity=" + getCapacity() + ",hits=" + getHitCount() + ",misses=" + getMissCount() + "]";
+	}
+
+
+	// private methods
+
+	private static boolean isAscii(String str)
+	{
+		for (int i = 0; i < str.length(); i++) {
+			if (str.charAt(i) >= 0x80) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private static boolean matches(String candidate, ByteBuffer buf, int start)
+	{
+		for (int i = 0; i < candidate.length(); i++) {
+			if (candidate.charAt(i) != buf.get(start + i)) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private static String createString(ByteBuffer buf, int start, int len, Charset charset)
+	{
+		if (buf.hasArray()) {
+			return new String(buf.array(), buf.arrayOffset() + start, len, charset);
+		}
+
+		byte[] bytes = new byte[len];
+
+		for (int i = 0; i < len; i++) {
+			bytes[i] = buf.get(start + i);
+		}
+
+		return new String(bytes, charset);
+	}
+
+}
@@ -11,6 +11,7 @@ package programmingtheiot.data;
 import java.io.Serializable;
 
 import programmingtheiot.common.ConfigConst;
+import programmingtheiot.common.DeviceIdentity;
 
 /**
  * Instantiates the base class and also defines getters and setters for CPU, Disk and Memory.
@@ -31,7 +32,17 @@ public class SystemPerformanceData extends BaseIotData implements Serializable
 	
 	public SystemPerformanceData()
 	{
-		super();
+		this(DeviceIdentity.getDefault());
+	}
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param identity The device identity used for the default location ID.
+	 */
+	public SystemPerformanceData(DeviceIdentity identity)
+	{
+		super(identity);
 
 		super.setName(ConfigConst.SYS_PERF_DATA);
 	}
@@ -10,9 +10,11 @@ package programmingtheiot.data;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import programmingtheiot.common.ConfigConst;
+import programmingtheiot.common.DeviceIdentity;
 
 /**
  * Convenience wrapper to store system state data, including location
@@ -20,15 +22,23 @@ import programmingtheiot.common.ConfigConst;
  * data items:
  * <p>SystemPerformanceData
  * <p>SensorData
+ * <p>
+ * Each list holds at most {@link #getMaxEntries()} items; adding to a full
+ * list is rejected (the add method returns false), which also applies when
+ * decoding a larger snapshot. The lists returned by the getters are
+ * read-only views.
  * 
  */
 public class SystemStateData extends BaseIotData implements Serializable
 {
 	// static
 	
+	public static final int DEFAULT_MAX_ENTRIES = 4096;
+	
 	
 	// private var's
 	private int command = ConfigConst.DEFAULT_COMMAND;
+	private int maxEntries = DEFAULT_MAX_ENTRIES;
 	private List<SystemPerformanceData> sysPerfDataList = null;
 	private List<SensorData> sensorDataList = null;
 	
@@ -38,10 +48,37 @@ public class SystemStateData extends BaseIotData implements Serializable
 	
 	public SystemStateData()
 	{
-		super();
+		this(DeviceIdentity.getDefault());
+	}
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param identity The device identity used for the default location ID.
+	 */
+	public SystemStateData(DeviceIdentity identity)
+	{
+		this(identity, DEFAULT_MAX_ENTRIES);
+	}
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param identity The device identity used for the default location ID.
+	 * @param maxEntries The maximum number of items in each of the sensor
+	 * and system performance data lists. Must be > 0.
+	 */
+	public SystemStateData(DeviceIdentity identity, int maxEntries)
+	{
+		super(identity);
+		
+		if (maxEntries < 1) {
+			throw new IllegalArgumentException("Max entries must be > 0: " + maxEntries);
+		}
 
 		setName(ConfigConst.SYS_STATE_DATA);
 
+		this.maxEntries = maxEntries;
 		this.sysPerfDataList = new ArrayList<>();
 		this.sensorDataList = new ArrayList<>();
 	}
@@ -49,33 +86,71 @@ public class SystemStateData extends BaseIotData implements Serializable
 	
 	// public methods
 	
+	/**
+	 * Adds the sensor data to this snapshot, unless it's null or the
+	 * sensor data list is full.
+	 * 
+	 * @param data The sensor data to add.
+	 * @return boolean True if added; false otherwise.
+	 */
 	public boolean addSensorData(SensorData data)
 	{
+		if (data != null && this.sensorDataList.size() < this.maxEntries) {
+			return this.sensorDataList.add(data);
+		}
+		
 		return false;
 	}
 	
+	/**
+	 * Adds the system performance data to this snapshot, unless it's null
+	 * or the system performance data list is full.
+	 * 
+	 * @param data The system performance data to add.
+	 * @return boolean True if added; false otherwise.
+	 */
 	public boolean addSystemPerformanceData(SystemPerformanceData data)
 	{
+		if (data != null && this.sysPerfDataList.size() < this.maxEntries) {
+			return this.sysPerfDataList.add(data);
+		}
+		
 		return false;
 	}
 	
+	/**
+	 * Removes all sensor and system performance data from this snapshot.
+	 * 
+	 */
+	public void clearData()
+	{
+		this.sensorDataList.clear();
+		this.sysPerfDataList.clear();
+	}
+	
 	public int getCommand()
 	{
-		return 0;
+		return this.command;
+	}
+	
+	public int getMaxEntries()
+	{
+		return this.maxEntries;
 	}
 	
 	public List<SensorData> getSensorDataList()
 	{
-		return null;
+		return Collections.unmodifiableList(this.sensorDataList);
 	}
 	
 	public List<SystemPerformanceData> getSystemPerformanceDataList()
 	{
-		return null;
+		return Collections.unmodifiableList(this.sysPerfDataList);
 	}
 	
 	public void setCommand(int actionCmd)
 	{
+		this.command = actionCmd;
 	}
 	
 	/**
@@ -104,6 +179,24 @@ public class SystemStateData extends BaseIotData implements Serializable
 	 */
 	protected void handleUpdateData(BaseIotData data)
 	{
+		if (data instanceof SystemStateData && data != this) {
+			SystemStateData ssData = (SystemStateData) data;
+			
+			this.setCommand(ssData.getCommand());
+			this.clearData();
+			
+			for (SensorData sensorData : ssData.sensorDataList) {
+				if (! this.addSensorData(sensorData)) {
+					break;
+				}
+			}
+			
+			for (SystemPerformanceData sysPerfData : ssData.sysPerfDataList) {
+				if (! this.addSystemPerformanceData(sysPerfData)) {
+					break;
+				}
+			}
+		}
 	}
 	
 }
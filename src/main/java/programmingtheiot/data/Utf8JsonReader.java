@@ -0,0 +1,713 @@
+/**
+ * This class is part of the Programming the Internet of Things project.
+ *
+ * It is provided as a simple shell to guide the student and assist with
+ * implementation for the Programming the Internet of Things exercises,
+ * and designed to be modified by the student as needed.
+ */
+
+package programmingtheiot.data;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import com.google.gson.JsonSyntaxException;
+
+/**
+ * Minimal pull-style JSON reader that works directly on UTF-8 encoded
+ * bytes. Unlike {@link com.google.gson.stream.JsonReader}, no intermediate
+ * String or char[] is created for the payload: numbers, booleans and
+ * nulls are parsed in place, and Strings are only materialized for the
+ * values that are actually requested.
+ * <p>
+ * The buffer's position and limit are not modified. Instances are not
+ * thread-safe and are meant to be used for a single decode call.
+ *
+ */
+final class Utf8JsonReader
+{
+	// static
+
+	// exact powers of ten representable as a double
+	private static final double[] POW10 = {
+		1e0,  1e1,  1e2,  1e3,  1e4,  1e5,  1e6,  1e7,  1e8,  1e9,  1e10,
+		1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+	};
+
+	private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+
+	// private var's
+
+	private final ByteBuffer buf;
+	private final int        limit;
+	private int              pos;
+
+	// only used for escaped Strings and non array-backed buffers
+	private byte[] scratch = null;
+
+
+	// constructors
+
+	/**
+	 * Constructor.
+	 *
+	 * @param buf The buffer to read from, between its position and limit.
+	 */
+	Utf8JsonReader(ByteBuffer buf)
+	{
+		this.buf   = buf;
+		this.pos   = buf.position();
+		this.limit = buf.limit();
+	}
+
+
+	// package-private methods
+
+	void beginObject()
+	{
+		expect('{');
+	}
+
+	void endObject()
+	{
+		expect('}');
+	}
+
+	void beginArray()
+	{
+		expect('[');
+	}
+
+	void endArray()
+	{
+		expect(']');
+	}
+
+	/**
+	 * Returns true if the current object or array has another element,
+	 * consuming the separating comma if present.
+	 *
+	 * @return boolean
+	 */
+	boolean hasNext()
+	{
+		byte b = peek();
+
+		if (b == '}' || b == ']') {
+			return false;
+		}
+
+		if (b == ',') {
+			++this.pos;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Returns true if the end of the input has been reached, ignoring
+	 * any trailing whitespace.
+	 *
+	 * @return boolean
+	 */
+	boolean isDone()
+	{
+		skipWhitespace();
+
+		return this.pos >= this.limit;
+	}
+
+	String nextName()
+	{
+		String name = nextString();
+
+		expect(':');
+
+		return name;
+	}
+
+	boolean peekNull()
+	{
+		return peek() == 'n';
+	}
+
+	void nextNull()
+	{
+		expectLiteral("null");
+	}
+
+	boolean nextBoolean()
+	{
+		byte b = peek();
+
+		if (b == 't') {
+			expectLiteral("true");
+			return true;
+		} else if (b == 'f') {
+			expectLiteral("false");
+			return false;
+		}
+
+		throw syntaxError("Expected a boolean");
+	}
+
+	/**
+	 * Returns the next String value. As with Gson, unquoted numbers and
+	 * literals are returned in their String form.
+	 *
+	 * @return String
+	 */
+	String nextString()
+	{
+		byte b = peek();
+
+		if (b == '"') {
+			return readQuotedString();
+		}
+
+		int start = this.pos;
+
+		skipUnquotedValue();
+
+		return createString(start, this.pos - start);
+	}
+
+	/**
+	 * Returns the next String value, canonicalized through the given
+	 * dictionary. Quoted values without escapes are looked up straight
+	 * from the payload bytes, so a dictionary hit doesn't allocate.
+	 *
+	 * @param dictionary The dictionary to canonicalize through; may be null.
+	 * @return String
+	 */
+	String nextString(StringDictionary dictionary)
+	{
+		if (dictionary == null) {
+			return nextString();
+		}
+
+		if (peek() == '"') {
+			int start = this.pos + 1;
+
+			for (int i = start; i < this.limit; i++) {
+				byte b = this.buf.get(i);
+
+				if (b == '"') {
+					this.pos = i + 1;
+					return dictionary.decode(this.buf, start, i - start);
+				} else if (b == '\\') {
+					break;
+				}
+			}
+		}
+
+		return dictionary.canonicalize(nextString());
+	}
+
+	double nextDouble()
+	{
+		if (peek() == '"') {
+			return parseDouble(readQuotedString());
+		}
+
+		return readNumber();
+	}
+
+	float nextFloat()
+	{
+		return (float) nextDouble();
+	}
+
+	long nextLong()
+	{
+		if (peek() == '"') {
+			return toLong(parseDouble(readQuotedString()));
+		}
+
+		int     start    = this.pos;
+		boolean negative = false;
+		long    val      = 0L;
+
+		if (this.buf.get(this.pos) == '-') {
+			negative = true;
+			++this.pos;
+		}
+
+		int digitStart = this.pos;
+
+		while (this.pos < this.limit) {
+			int digit = this.buf.get(this.pos) - '0';
+
+			if (digit < 0 || digit > 9 || val > (Long.MAX_VALUE - digit) / 10) {
+				break;
+			}
+
+			val = val * 10 + digit;
+			++this.pos;
+		}
+
+		if (this.pos == digitStart) {
+			throw syntaxError("Expected a number");
+		}
+
+		// anything other than a plain integer (fraction, exponent or overflow)
+		// goes through the double path, as Gson does
+		if (this.pos < this.limit && isNumberChar(this.buf.get(this.pos))) {
+			this.pos = start;
+			return toLong(readNumber());
+		}
+
+		return (negative ? -val : val);
+	}
+
+	int nextInt()
+	{
+		long val = nextLong();
+
+		if (val < Integer.MIN_VALUE || val > Integer.MAX_VALUE) {
+			throw new JsonSyntaxException("Expected an int but was " + val + " at offset " + this.pos);
+		}
+
+		return (int) val;
+	}
+
+	/**
+	 * Skips the next value, including nested objects and arrays, without
+	 * materializing any of it.
+	 *
+	 */
+	void skipValue()
+	{
+		byte b = peek();
+
+		switch (b) {
+			case '{':
+				beginObject();
+
+				while (hasNext()) {
+					skipQuotedString();
+					expect(':');
+					skipValue();
+				}
+
+				endObject();
+				break;
+
+			case '[':
+				beginArray();
+
+				while (hasNext()) {
+					skipValue();
+				}
+
+				endArray();
+				break;
+
+			case '"':
+				skipQuotedString();
+				break;
+
+			default:
+				skipUnquotedValue();
+		}
+	}
+
+
+	// private methods
+
+	private void skipWhitespace()
+	{
+		while (this.pos < this.limit) {
+			byte b = this.buf.get(this.pos);
+
+			if (b != ' ' && b != '\n' && b != '\r' && b != '\t') {
+				break;
+			}
+
+			++this.pos;
+		}
+	}
+
+	private byte peek()
+	{
+		skipWhitespace();
+
+		if (this.pos >= this.limit) {
+			throw syntaxError("Unexpected end of input");
+		}
+
+		return this.buf.get(this.pos);
+	}
+
+	private void expect(char c)
+	{
+		if (peek() != c) {
+			throw syntaxError("Expected '" + c + "'");
+		}
+
+		++this.pos;
+	}
+
+	private void expectLiteral(String literal)
+	{
+		int len = literal.length();
+
+		if (this.pos + len > this.limit) {
+			throw syntaxError("Expected " + literal);
+		}
+
+		for (int i = 0; i < len; i++) {
+			if (this.buf.get(this.pos + i) != literal.charAt(i)) {
+				throw syntaxError("Expected " + literal);
+			}
+		}
+
+		this.pos += len;
+	}
+
+	private static boolean isNumberChar(byte b)
+	{
+		return (b >= '0' && b <= '9') || b == '.' || b == 'e' || b == 'E' || b == '-' || b == '+';
+	}
+
+	private void skipUnquotedValue()
+	{
+		int start = this.pos;
+
+		while (this.pos < this.limit) {
+			byte b = this.buf.get(this.pos);
+
+			if (b == ',' || b == '}' || b == ']' || b == ':' || b == ' ' || b == '\n' || b == '\r' || b == '\t') {
+				break;
+			}
+
+			++this.pos;
+		}
+
+		if (this.pos == start) {
+			throw syntaxError("Expected a value");
+		}
+	}
+
+	/**
+	 * Parses a JSON number in place. Mantissas of up to 2^53 with a decimal
+	 * exponent within +/- 22 are converted exactly using a single multiply or
+	 * divide (both operands are exact doubles, so the result is correctly
+	 * rounded). Anything else falls back to {@link Double#parseDouble(String)}.
+	 *
+	 * @return double
+	 */
+	private double readNumber()
+	{
+		int     start    = this.pos;
+		boolean negative = false;
+		boolean exact    = true;
+		long    mantissa = 0L;
+		int     exp10    = 0;
+		int     digits   = 0;
+
+		if (this.pos < this.limit && this.buf.get(this.pos) == '-') {
+			negative = true;
+			++this.pos;
+		}
+
+		while (this.pos < this.limit) {
+			int digit = this.buf.get(this.pos) - '0';
+
+			if (digit < 0 || digit > 9) {
+				break;
+			}
+
+			if (mantissa < MAX_EXACT_MANTISSA) {
+				mantissa = mantissa * 10 + digit;
+			} else {
+				exact = false;
+			}
+
+			++digits;
+			++this.pos;
+		}
+
+		if (this.pos < this.limit && this.buf.get(this.pos) == '.') {
+			++this.pos;
+
+			while (this.pos < this.limit) {
+				int digit = this.buf.get(this.pos) - '0';
+
+				if (digit < 0 || digit > 9) {
+					break;
+				}
+
+				if (mantissa < MAX_EXACT_MANTISSA) {
+					mantissa = mantissa * 10 + digit;
+					--exp10;
+				} else {
+					exact = false;
+				}
+
+				++digits;
+				++this.pos;
+			}
+		}
+
+		if (digits == 0) {
+			this.pos = start;
+			throw syntaxError("Expected a number");
+		}
+
+		if (this.pos < this.limit && (this.buf.get(this.pos) == 'e' || this.buf.get(this.pos) == 'E')) {
+			++this.pos;
+
+			boolean negativeExp = false;
+			int     exp         = 0;
+
+			if (this.pos < this.limit && (this.buf.get(this.pos) == '-' || this.buf.get(this.pos) == '+')) {
+				negativeExp = (this.buf.get(this.pos) == '-');
+				++this.pos;
+			}
+
+			int expStart = this.pos;
+
+			while (this.pos < this.limit) {
+				int digit = this.buf.get(this.pos) - '0';
+
+				if (digit < 0 || digit > 9) {
+					break;
+				}
+
+				if (exp < 10000) {
+					exp = exp * 10 + digit;
+				}
+
+				++this.pos;
+			}
+
+			if (this.pos == expStart) {
+				throw syntaxError("Malformed exponent");
+			}
+
+			exp10 += (negativeExp ? -exp : exp);
+		}
+
+		if (exact && mantissa <= MAX_EXACT_MANTISSA && exp10 >= -22 && exp10 <= 22) {
+			double val = (exp10 >= 0 ? mantissa * POW10[exp10] : mantissa / POW10[-exp10]);
+
+			return (negative ? -val : val);
+		}
+
+		return parseDouble(createAsciiString(start, this.pos - start));
+	}
+
+	private double parseDouble(String str)
+	{
+		try {
+			return Double.parseDouble(str);
+		} catch (NumberFormatException e) {
+			throw new JsonSyntaxException("Invalid number '" + str + "' at offset " + this.pos, e);
+		}
+	}
+
+	private long toLong(double val)
+	{
+		long longVal = (long) val;
+
+		if (longVal != val) {
+			throw new JsonSyntaxException("Expected a long but was " + val + " at offset " + this.pos);
+		}
+
+		return longVal;
+	}
+
+	private void skipQuotedString()
+	{
+		expect('"');
+
+		while (this.pos < this.limit) {
+			byte b = this.buf.get(this.pos++);
+
+			if (b == '"') {
+				return;
+			} else if (b == '\\') {
+				++this.pos;
+			}
+		}
+
+		throw syntaxError("Unterminated string");
+	}
+
+	private String readQuotedString()
+	{
+		expect('"');
+
+		int start = this.pos;
+
+		// fast path: no escapes, so the bytes can be decoded as-is
+		while (this.pos < this.limit) {
+			byte b = this.buf.get(this.pos);
+
+			if (b == '"') {
+				String str = createString(start, this.pos - start);
+				++this.pos;
+				return str;
+			} else if (b == '\\') {
+				return readEscapedString(start);
+			}
+
+			++this.pos;
+		}
+
+		throw syntaxError("Unterminated string");
+	}
+
+	private String readEscapedString(int start)
+	{
+		int len = this.pos - start;
+
+		ensureScratch(len + 16);
+
+		for (int i = 0; i < len; i++) {
+			this.scratch[i] = this.buf.get(start + i);
+		}
+
+		while (this.pos < this.limit) {
+			byte b = this.buf.get(this.pos++);
+
+			if (b == '"') {
+				return new String(this.scratch, 0, len, StandardCharsets.UTF_8);
+			}
+
+			ensureScratch(len + 4);
+
+			if (b != '\\') {
+				this.scratch[len++] = b;
+				continue;
+			}
+
+			if (this.pos >= this.limit) {
+				break;
+			}
+
+			byte esc = this.buf.get(this.pos++);
+
+			switch (esc) {
+				case 'b': this.scratch[len++] = '\b'; break;
+				case 'f': this.scratch[len++] = '\f'; break;
+				case 'n': this.scratch[len++] = '\n'; break;
+				case 'r': this.scratch[len++] = '\r'; break;
+				case 't': this.scratch[len++] = '\t'; break;
+
+				case 'u':
+					int codePoint = readHex4();
+
+					if (Character.isHighSurrogate((char) codePoint)
+						&& this.pos + 6 <= this.limit
+						&& this.buf.get(this.pos) == '\\' && this.buf.get(this.pos + 1) == 'u') {
+						this.pos += 2;
+
+						int low = readHex4();
+
+						codePoint = Character.toCodePoint((char) codePoint, (char) low);
+					}
+
+					len = appendUtf8(codePoint, len);
+					break;
+
+				default:
+					// '"', '\\', '/' and anything else are taken literally
+					this.scratch[len++] = esc;
+			}
+		}
+
+		throw syntaxError("Unterminated string");
+	}
+
+	private int readHex4()
+	{
+		if (this.pos + 4 > this.limit) {
+			throw syntaxError("Malformed unicode escape");
+		}
+
+		int val = 0;
+
+		for (int i = 0; i < 4; i++) {
+			int digit = Character.digit(this.buf.get(this.pos++), 16);
+
+			if (digit < 0) {
+				throw syntaxError("Malformed unicode escape");
+			}
+
+			val = (val << 4) | digit;
+		}
+
+		return val;
+	}
+
+	private int appendUtf8(int codePoint, int len)
+	{
+		if (codePoint < 0x80) {
+			this.scratch[len++] = (byte) codePoint;
+		} else if (codePoint < 0x800) {
+			this.scratch[len++] = (byte) (0xC0 | (codePoint >> 6));
+			this.scratch[len++] = (byte) (0x80 | (codePoint & 0x3F));
+		} else if (codePoint < 0x10000) {
+			this.scratch[len++] = (byte) (0xE0 | (codePoint >> 12));
+			this.scratch[len++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+			this.scratch[len++] = (byte) (0x80 | (codePoint & 0x3F));
+		} else {
+			this.scratch[len++] = (byte) (0xF0 | (codePoint >> 18));
+			this.scratch[len++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+			this.scratch[len++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+			this.scratch[len++] = (byte) (0x80 | (codePoint & 0x3F));
+		}
+
+		return len;
+	}
+
+	private void ensureScratch(int size)
+	{
+		if (this.scratch == null) {
+			this.scratch = new byte[Math.max(64, size)];
+		} else if (this.scratch.length < size) {
+			byte[] tmp = new byte[Math.max(this.scratch.length * 2, size)];
+			System.arraycopy(this.scratch, 0, tmp, 0, this.scratch.length);
+			this.scratch = tmp;
+		}
+	}
+
+	private String createString(int start, int len)
+	{
+		if (this.buf.hasArray()) {
+			return new String(this.buf.array(), this.buf.arrayOffset() + start, len, StandardCharsets.UTF_8);
+		}
+
+		ensureScratch(len);
+
+		for (int i = 0; i < len; i++) {
+			this.scratch[i] = this.buf.get(start + i);
+		}
+
+		return new String(this.scratch, 0, len, StandardCharsets.UTF_8);
+	}
+
+	private String createAsciiString(int start, int len)
+	{
+		if (this.buf.hasArray()) {
+			return new String(this.buf.array(), this.buf.arrayOffset() + start, len, StandardCharsets.US_ASCII);
+		}
+
+		ensureScratch(len);
+
+		for (int i = 0; i < len; i++) {
+			this.scratch[i] = this.buf.get(start + i);
+		}
+
+		return new String(this.scratch, 0, len, StandardCharsets.US_ASCII);
+	}
+
+	private JsonSyntaxException syntaxError(String msg)
+	{
+		return new JsonSyntaxException(msg + " at offset " + this.pos);
+	}
+
+}
@@ -0,0 +1,381 @@
+/**
+ * This class is part of the Programming the Internet of Things project.
+ *
+ * It is provided as a simple shell to guide the student and assist with
+ * implementation for the Programming the Internet of Things exercises,
+ * and designed to be modified by the student as needed.
+ */
+
+package programmingtheiot.data;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Minimal JSON writer that writes UTF-8 encoded bytes straight into a
+ * growable buffer, which can be reset and reused for the next document.
+ * <p>
+ * The output matches a default {@link com.google.gson.Gson} instance:
+ * compact, HTML-safe escaping, null properties omitted, and floats
+ * formatted as {@link Float#toString(float)} does.
+ * <p>
+ * Instances are not thread-safe.
+ *
+ */
+final class Utf8JsonWriter
+{
+	// static
+
+	private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+	// escape sequence for each ASCII char, or null if written as-is
+	private static final byte[][] ESCAPES = new byte[128][];
+
+	static {
+		for (int c = 0; c < 0x20; c++) {
+			ESCAPES[c] = unicodeEscape(c);
+		}
+
+		ESCAPES['\t'] = ascii("\\t");
+		ESCAPES['\b'] = ascii("\\b");
+		ESCAPES['\n'] = ascii("\\n");
+		ESCAPES['\r'] = ascii("\\r");
+		ESCAPES['\f'] = ascii("\\f");
+		ESCAPES['"']  = ascii("\\\"");
+		ESCAPES['\\'] = ascii("\\\\");
+
+		// HTML-safe, as with Gson's default settings
+		ESCAPES['<']  = unicodeEscape('<');
+		ESCAPES['>']  = unicodeEscape('>');
+		ESCAPES['&']  = unicodeEscape('&');
+		ESCAPES['=']  = unicodeEscape('=');
+		ESCAPES['\''] = unicodeEscape('\'');
+	}
+
+	// escaped by Gson, as they're line terminators in JavaScript
+	private static final char LINE_SEPARATOR      = 0x2028;
+	private static final char PARAGRAPH_SEPARATOR = 0x2029;
+
+	// Float#toString switches to scientific notation at 10^7
+	private static final float MAX_PLAIN_INTEGRAL = 1.0e7f;
+
+	public static final int DEFAULT_CAPACITY = 512;
+
+
+	// private var's
+
+	private byte[]  buf;
+	private int     len        = 0;
+	private boolean needsComma = false;
+	private boolean replacedChars = false;
+
+
+	// constructors
+
+	Utf8JsonWriter()
+	{
+		this(DEFAULT_CAPACITY);
+	}
+
+	Utf8JsonWriter(int initialCapacity)
+	{
+		this.buf = new byte[Math.max(initialCapacity, 16)];
+	}
+
+
+	// package-private methods
+
+	/**
+	 * Discards the written bytes, keeping the buffer for reuse.
+	 *
+	 */
+	void reset()
+	{
+		this.len           = 0;
+		this.needsComma    = false;
+		this.replacedChars = false;
+	}
+
+	int size()
+	{
+		return this.len;
+	}
+
+	int capacity()
+	{
+		return this.buf.length;
+	}
+
+	/**
+	 * Returns true if a String contained an unpaired surrogate, which can't
+	 * be encoded as UTF-8 and was replaced by '?'. {@link #toString()} then
+	 * differs from the JSON String Gson would create.
+	 *
+	 * @return boolean
+	 */
+	boolean hasReplacedChars()
+	{
+		return this.replacedChars;
+	}
+
+	byte[] toByteArray()
+	{
+		return Arrays.copyOf(this.buf, this.len);
+	}
+
+	@Override
+	public String toString()
+	{
+		return new String(this.buf, 0, this.len, StandardCharsets.UTF_8);
+	}
+
+	void beginObject()
+	{
+		beforeValue();
+		writeByte('{');
+		this.needsComma = false;
+	}
+
+	void endObject()
+	{
+		writeByte('}');
+		this.needsComma = true;
+	}
+
+	void beginArray()
+	{
+		beforeValue();
+		writeByte('[');
+		this.needsComma = false;
+	}
+
+	void endArray()
+	{
+		writeByte(']');
+		this.needsComma = true;
+	}
+
+	/**
+	 * Writes a property name. The name must not need escaping.
+	 *
+	 * @param name
+	 */
+	void name(String name)
+	{
+		beforeValue();
+		ensureCapacity(name.length() + 3);
+
+		this.buf[this.len++] = '"';
+
+		for (int i = 0; i < name.length(); i++) {
+			this.buf[this.len++] = (byte) name.charAt(i);
+		}
+
+		this.buf[this.len++] = '"';
+		this.buf[this.len++] = ':';
+		this.needsComma = false;
+	}
+
+	/**
+	 * Writes the property, unless 'val' is null (matching Gson, which
+	 * omits null properties by default).
+	 *
+	 * @param name
+	 * @param val
+	 */
+	void property(String name, String val)
+	{
+		if (val != null) {
+			name(name);
+			value(val);
+		}
+	}
+
+	void property(String name, long val)
+	{
+		name(name);
+		value(val);
+	}
+
+	void property(String name, float val)
+	{
+		name(name);
+		value(val);
+	}
+
+	void property(String name, boolean val)
+	{
+		name(name);
+		value(val);
+	}
+
+	void nullValue()
+	{
+		beforeValue();
+		writeAscii("null");
+		this.needsComma = true;
+	}
+
+	void value(String str)
+	{
+		beforeValue();
+
+		// worst case: every char a six byte escape
+		ensureCapacity(str.length() * 6 + 2);
+
+		byte[] out = this.buf;
+		int    pos = this.len;
+
+		out[pos++] = '"';
+
+		for (int i = 0; i < str.length(); i++) {
+			char c = str.charAt(i);
+
+			if (c < 0x80) {
+				byte[] escape = ESCAPES[c];
+
+				if (escape == null) {
+					out[pos++] = (byte) c;
+				} else {
+					System.arraycopy(escape, 0, out, pos, escape.length);
+					pos += escape.length;
+				}
+			} else if (c < 0x800) {
+				out[pos++] = (byte) (0xC0 | (c >> 6));
+				out[pos++] = (byte) (0x80 | (c & 0x3F));
+			} else if (c == LINE_SEPARATOR || c == PARAGRAPH_SEPARATOR) {
+				byte[] escape = unicodeEscape(c);
+				System.arraycopy(escape, 0, out, pos, escape.length);
+				pos += escape.length;
+			} else if (Character.isSurrogate(c)) {
+				if (Character.isHighSurrogate(c) && i + 1 < str.length() && Character.isLowSurrogate(str.charAt(i + 1))) {
+					int codePoint = Character.toCodePoint(c, str.charAt(++i));
+
+					out[pos++] = (byte) (0xF0 | (codePoint >> 18));
+					out[pos++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+					out[pos++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+					out[pos++] = (byte) (0x80 | (codePoint & 0x3F));
+				} else {
+					// unpaired surrogate: replaced, as String#getBytes does
+					out[pos++] = '?';
+					this.replacedChars = true;
+				}
+			} else {
+				out[pos++] = (byte) (0xE0 | (c >> 12));
+				out[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+				out[pos++] = (byte) (0x80 | (c & 0x3F));
+			}
+		}
+
+		out[pos++] = '"';
+
+		this.len = pos;
+		this.needsComma = true;
+	}
+
+	void value(long val)
+	{
+		beforeValue();
+		writeLong(val);
+		this.needsComma = true;
+	}
+
+	void value(float val)
+	{
+		beforeValue();
+
+		// integral values are the common case (e.g. 0.0 for unset
+		// coordinates), and don't need Float#toString's String
+		if (val == (long) val && Math.abs(val) < MAX_PLAIN_INTEGRAL
+			&& Float.floatToRawIntBits(val) != Float.floatToRawIntBits(-0.0f)) {
+			writeLong((long) val);
+			writeByte('.');
+			writeByte('0');
+		} else {
+			writeAscii(Float.toString(val));
+		}
+
+		this.needsComma = true;
+	}
+
+	void value(boolean val)
+	{
+		beforeValue();
+		writeAscii(val ? "true" : "false");
+		this.needsComma = true;
+	}
+
+
+	// private methods
+
+	private void beforeValue()
+	{
+		if (this.needsComma) {
+			writeByte(',');
+		}
+	}
+
+	private void writeByte(char c)
+	{
+		ensureCapacity(1);
+		this.buf[this.len++] = (byte) c;
+	}
+
+	private void writeAscii(String str)
+	{
+		ensureCapacity(str.length());
+
+		for (int i = 0; i < str.length(); i++) {
+			this.buf[this.len++] = (byte) str.charAt(i);
+		}
+	}
+
+	private void writeLong(long val)
+	{
+		if (val == Long.MIN_VALUE) {
+			writeAscii(Long.toString(val));
+			return;
+		}
+
+		ensureCapacity(20);
+
+		if (val < 0) {
+			this.buf[this.len++] = '-';
+			val = -val;
+		}
+
+		// digits are written backwards, then put in place
+		int start = this.len;
+
+		do {
+			this.buf[this.len++] = (byte) ('0' + (val % 10));
+			val /= 10;
+		} while (val != 0);
+
+		for (int i = start, j = this.len - 1; i < j; i++, j--) {
+			byte tmp = this.buf[i];
+			this.buf[i] = this.buf[j];
+			this.buf[j] = tmp;
+		}
+	}
+
+	private void ensureCapacity(int extra)
+	{
+		if (this.len + extra > this.buf.length) {
+			this.buf = Arrays.copyOf(this.buf, Math.max(this.buf.length * 2, this.len + extra));
+		}
+	}
+
+	private static byte[] ascii(String str)
+	{
+		return str.getBytes(StandardCharsets.US_ASCII);
+	}
+
+	private static byte[] unicodeEscape(int c)
+	{
+		return new byte[] {
+			'\\', 'u', HEX[(c >> 12) & 0xF], HEX[(c >> 8) & 0xF], HEX[(c >> 4) & 0xF], HEX[c & 0xF]
+		};
+	}
+
+}
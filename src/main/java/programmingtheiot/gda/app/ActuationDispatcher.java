@@ -0,0 +1,349 @@
+/**
+ * This class is part of the Programming the Internet of Things project.
+ *
+ * It is provided as a simple shell to guide the student and assist with
+ * implementation for the Programming the Internet of Things exercises,
+ * and designed to be modified by the student as needed.
+ */
+
+package programmingtheiot.gda.app;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+import programmingtheiot.common.IActuatorDataListener;
+import programmingtheiot.data.ActuatorData;
+
+/**
+ * Coalesces the actuator commands sent to the CDA, per actuator (location
+ * ID and type ID), before they're handed to the downstream listener:
+ * <ul>
+ * <li>A command that wouldn't change the actuator's last known state (the
+ * same command and value as last sent, or as last responded) is dropped.
+ * <li>A command is held for the coalescing window; only the latest command
+ * submitted within the window is sent.
+ * <li>While a command is being sent (i.e. downstream is busy), only the
+ * latest command submitted since is kept, and sent next.
+ * </ul>
+ * The window is tracked on a {@link TimingWheel}, so its resolution is the
+ * wheel's tick. Commands are sent via the given executor once the window
+ * has passed; without a window, they're sent on the submitting thread.
+ *
+ */
+public final class ActuationDispatcher
+{
+	// static
+
+	private static final Logger _Logger =
+		Logger.getLogger(ActuationDispatcher.class.getName());
+
+	/**
+	 * The state of a single actuator. Guarded by its own monitor.
+	 *
+	 */
+	private static final class State
+	{
+		// the latest command not sent yet, if any
+		private ActuatorData pending = null;
+
+		// true while a command is being sent, or waiting to be
+		private boolean isInFlight = false;
+
+		// the actuator's last known state
+		private boolean hasLastKnown   = false;
+		private int     lastCommand    = 0;
+		private float   lastValue      = 0.0f;
+
+		private Runnable flushTask = null;
+	}
+
+
+	// private var's
+
+	private final TimingWheel           timer;
+	private final long                  windowNanos;
+	private final Executor              executor;
+	private final IActuatorDataListener listener;
+
+	private final DeviceStateMap<State> states;
+
+	private final LongAdder submittedCount  = new LongAdder();
+	private final LongAdder dispatchedCount = new LongAdder();
+	private final LongAdder coalescedCount  = new LongAdder();
+	private final LongAdder noOpCount       = new LongAdder();
+	private final LongAdder failedCount     = new LongAdder();
+
+
+	// constructors
+
+	/**
+	 * Constructor.
+	 *
+	 * @param timer The timer, for the coalescing window. May be null if
+	 * there's no window.
+	 * @param window The coalescing window (0 for none).
+	 * @param unit The time unit of 'window'.
+	 * @param executor The executor that sends the commands once the window
+	 * has passed.
+	 * @param listener The downstream listener, which sends the commands, and
+	 * returns false if a command couldn't be sent.
+	 */
+	public ActuationDispatcher(
+		TimingWheel timer, long window, TimeUnit unit, Executor executor, IActuatorDataListener listener)
+	{
+		super();
+
+		if (listener == null || executor == null || window < 0 || (window > 0 && timer == null)) {
+			throw new IllegalArgumentException("Invalid actuation dispatcher: window = " + window);
+		}
+
+		this.timer       = timer;
+		this.windowNanos = unit.toNanos(window);
+		this.executor    = executor;
+		this.listener    = listener;
+		this.states      = DeviceStateMap.createFromConfig(State::new);
+	}
+
+
+	// public methods
+
+	/**
+	 * Submits the command to be sent to the actuator.
+	 *
+	 * @param data The command.
+	 * @return boolean True if the command will be sent (unless replaced by a
+	 * later one); false if it was dropped, as it wouldn't change the
+	 * actuator's state.
+	 */
+	public boolean submit(ActuatorData data)
+	{
+		this.submittedCount.increment();
+
+		State state = this.states.get(data.getLocationID(), data.getTypeID());
+
+		synchronized (state) {
+			if (state.pending != null) {
+				// within the window, or downstream is busy: the latest wins
+				state.pending = data;
+				this.coalescedCount.increment();
+
+				return true;
+			}
+
+			if (isNoOp(state, data)) {
+				this.noOpCount.increment();
+
+				return false;
+			}
+
+			state.pending = data;
+
+			if (state.isInFlight) {
+				// sent once the command in flight has been
+				return true;
+			}
+
+			state.isInFlight = true;
+
+			if (this.windowNanos > 0 && scheduleFlush(state)) {
+				return true;
+			}
+		}
+
+		flush(state);
+
+		return true;
+	}
+
+	/**
+	 * Updates the actuator's last known state from its response.
+	 *
+	 * @param data The actuator's response.
+	 */
+	public void onResponse(ActuatorData data)
+	{
+		State state = this.states.peek(data.getLocationID(), data.getTypeID());
+
+		if (state == null) {
+			return;
+		}
+
+		synchronized (state) {
+			// a later command is on its way, so the response is already stale
+			if (state.isInFlight || state.pending != null) {
+				return;
+			}
+
+			if (data.hasError()) {
+				// unknown, so the next command is sent whatever it is
+				state.hasLastKnown = false;
+			} else {
+				state.hasLastKnown = true;
+				state.lastCommand  = data.getCommand();
+				state.lastValue    = data.getValue();
+			}
+		}
+	}
+
+	public long getWindow(TimeUnit unit)
+	{
+		return unit.convert(this.windowNanos, TimeUnit.NANOSECONDS);
+	}
+
+	public long getSubmittedCount()
+	{
+		return this.submittedCount.sum();
+	}
+
+	public long getDispatchedCount()
+	{
+		return this.dispatchedCount.sum();
+	}
+
+	/**
+	 * Returns the number of commands replaced by a later one before they
+	 * were sent.
+	 *
+	 * @return long
+	 */
+	public long getCoalescedCount()
+	{
+		return this.coalescedCount.sum();
+	}
+
+	/**
+	 * Returns the number of commands dropped, as they wouldn't have changed
+	 * the actuator's state.
+	 *
+	 * @return long
+	 */
+	public long getNoOpCount()
+	{
+		return this.noOpCount.sum();
+	}
+
+	/**
+	 * Returns the number of commands that failed to be sent, or were
+	 * rejected by the executor.
+	 *
+	 * @return long
+	 */
+	public long getFailedCount()
+	{
+		return this.failedCount.sum();
+	}
+
+	@Override
+	public String toString()
+	{
+		return
+			"Actuation: window = " + getWindow(TimeUnit.MILLISECONDS) + " ms" +
+			" | submitted = " + getSubmittedCount() + " | dispatched = " + getDispatchedCount() +
+			" | coalesced = " + getCoalescedCount() + " | no-op = " + getNoOpCount() +
+			" | failed = " + getFailedCount();
+	}
+
+
+	// private methods
+
+	// called with the state's monitor held
+	private boolean isNoOp(State state, ActuatorData data)
+	{
+		return
+			state.hasLastKnown && state.lastCommand == data.getCommand() &&
+			Float.compare(state.lastValue, data.getValue()) == 0;
+	}
+
+	/**
+	 * Schedules the state's pending command to be sent once the window has
+	 * passed. Called with the state's monitor held.
+	 *
+	 * @return boolean False if the timer has been stopped.
+	 */
+	private boolean scheduleFlush(State state)
+	{
+		if (state.flushTask == null) {
+			state.flushTask = () -> onWindowTimeout(state);
+		}
+
+		return ! this.timer.schedule(state.flushTask, this.windowNanos, TimeUnit.NANOSECONDS).isCancelled();
+	}
+
+	private void onWindowTimeout(State state)
+	{
+		// the timer's thread only hands the command off
+		try {
+			this.executor.execute(() -> flush(state));
+		} catch (RejectedExecutionException e) {
+			ActuatorData data;
+
+			synchronized (state) {
+				data = state.pending;
+
+				state.pending    = null;
+				state.isInFlight = false;
+			}
+
+			this.failedCount.increment();
+
+			_Logger.warning("Failed to send actuator command (rejected): " + data);
+		}
+	}
+
+	/**
+	 * Sends the state's pending command, then any command submitted in the
+	 * meantime, until there's none left.
+	 *
+	 */
+	private void flush(State state)
+	{
+		while (true) {
+			ActuatorData data;
+
+			synchronized (state) {
+				data = state.pending;
+
+				state.pending = null;
+
+				if (data == null) {
+					state.isInFlight = false;
+					return;
+				}
+
+				if (isNoOp(state, data)) {
+					// a later command undid the earlier one
+					this.noOpCount.increment();
+					state.isInFlight = false;
+					return;
+				}
+
+				state.hasLastKnown = true;
+				state.lastCommand  = data.getCommand();
+				state.lastValue    = data.getValue();
+			}
+
+			boolean success = false;
+
+			try {
+				success = this.listener.onActuatorDataUpdate(data);
+			} catch (RuntimeException e) {
+				_Logger.warning("Failed to send actuator command: " + data + ". " + e.getMessage());
+			}
+
+			if (success) {
+				this.dispatchedCount.increment();
+			} else {
+				this.failedCount.increment();
+
+				// the actuator's state is unknown now, so the command can be retried
+				synchronized (state) {
+					state.hasLastKnown = false;
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,196 @@
+/**
+ * This class is part of the Programming the Internet of Things project.
+ *
+ * It is provided as a simple shell to guide the student and assist with
+ * implementation for the Programming the Internet of Things exercises,
+ * and designed to be modified by the student as needed.
+ */
+
+package programmingtheiot.gda.app;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+import programmingtheiot.data.ActuatorData;
+
+/**
+ * Detects actuator commands that the CDA doesn't respond to in time, per
+ * actuator (location ID and type ID), via a {@link TimingWheel}.
+ * <p>
+ * Only the latest command sent to an actuator is tracked: a new command
+ * replaces the pending one's timeout.
+ *
+ */
+public final class ActuatorAckMonitor
+{
+	// static
+
+	private static final Logger _Logger =
+		Logger.getLogger(ActuatorAckMonitor.class.getName());
+
+	/**
+	 * The state of a single actuator. Guarded by its own monitor.
+	 *
+	 */
+	private static final class State
+	{
+		private int command = 0;
+
+		// the generation tells a stale expiry apart
+		private TimingWheel.Timeout timeout = null;
+		private long generation = 0L;
+	}
+
+
+	// private var's
+
+	private final TimingWheel timer;
+	private final long        timeoutNanos;
+
+	private final DeviceStateMap<State> states;
+
+	private final LongAdder ackCount     = new LongAdder();
+	private final LongAdder timeoutCount = new LongAdder();
+
+
+	// constructors
+
+	/**
+	 * Constructor.
+	 *
+	 * @param timer The timer.
+	 * @param timeout The time within which a response is expected.
+	 * @param unit The time unit of 'timeout'.
+	 */
+	public ActuatorAckMonitor(TimingWheel timer, long timeout, TimeUnit unit)
+	{
+		super();
+
+		if (timer == null || timeout < 1) {
+			throw new IllegalArgumentException("Invalid actuator ack monitor: timeout = " + timeout);
+		}
+
+		this.timer        = timer;
+		this.timeoutNanos = unit.toNanos(timeout);
+		this.states       = DeviceStateMap.createFromConfig(State::new);
+	}
+
+
+	// public methods
+
+	/**
+	 * Starts waiting for the response to the command.
+	 *
+	 * @param data The command sent to the actuator.
+	 */
+	public void onCommandSent(ActuatorData data)
+	{
+		String locationID = data.getLocationID();
+		int    typeID     = data.getTypeID();
+
+		State state = this.states.get(locationID, typeID);
+
+		synchronized (state) {
+			if (state.timeout != null) {
+				state.timeout.cancel();
+			}
+
+			long generation = ++state.generation;
+
+			state.command = data.getCommand();
+			state.timeout = this.timer.schedule(
+				() -> onTimeout(state, generation, locationID, typeID), this.timeoutNanos, TimeUnit.NANOSECONDS);
+		}
+	}
+
+	/**
+	 * Stops waiting for a response from the actuator.
+	 *
+	 * @param data The actuator's response.
+	 * @return boolean True if a response was pending.
+	 */
+	public boolean onResponse(ActuatorData data)
+	{
+		State state = this.states.peek(data.getLocationID(), data.getTypeID());
+
+		if (state == null) {
+			return false;
+		}
+
+		synchronized (state) {
+			if (state.timeout == null) {
+				return false;
+			}
+
+			state.timeout.cancel();
+			state.timeout = null;
+		}
+
+		this.ackCount.increment();
+
+		return true;
+	}
+
+	/**
+	 * Returns true if a response from the actuator is pending.
+	 *
+	 * @param locationID The actuator's location ID.
+	 * @param typeID The actuator type ID.
+	 * @return boolean
+	 */
+	public boolean isPending(String locationID, int typeID)
+	{
+		State state = this.states.peek(locationID, typeID);
+
+		if (state == null) {
+			return false;
+		}
+
+		synchronized (state) {
+			return state.timeout != null;
+		}
+	}
+
+	public long getAckCount()
+	{
+		return this.ackCount.sum();
+	}
+
+	public long getTimeoutCount()
+	{
+		return this.timeoutCount.sum();
+	}
+
+	@Override
+	public String toString()
+	{
+		return
+			"Actuator responses: timeout = " + TimeUnit.NANOSECONDS.toSeconds(this.timeoutNanos) + " secs" +
+			" | acks = " + getAckCount() + " | timeouts = " + getTimeoutCount();
+	}
+
+
+	// private methods
+
+	private void onTimeout(State state, long generation, String locationID, int typeID)
+	{
+		int command;
+
+		synchronized (state) {
+			if (state.generation != generation || state.timeout == null) {
+				return;
+			}
+
+			command = state.command;
+			state.timeout = null;
+		}
+
+		this.timeoutCount.increment();
+
+		_Logger.warning(
+			"No response from actuator " + locationID + " (type " + typeID + ") to command " + command +
+			" within " + TimeUnit.NANOSECONDS.toMillis(this.timeoutNanos) + " ms.");
+	}
+
+}
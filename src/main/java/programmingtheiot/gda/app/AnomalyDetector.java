@@ -0,0 +1,421 @@
+/**
+ * This class is part of the Programming the Internet of Things project.
+ *
+ * It is provided as a simple shell to guide the student and assist with
+ * implementation for the Programming the Internet of Things exercises,
+ * and designed to be modified by the student as needed.
+ */
+
+package programmingtheiot.gda.app;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+import programmingtheiot.common.ConfigConst;
+import programmingtheiot.common.ConfigUtil;
+import programmingtheiot.data.SensorData;
+
+/**
+ * Streaming anomaly detection for sensor readings, per device (location ID
+ * and type ID), in constant memory per device and without buffering any
+ * readings. Two kinds of anomalies are detected:
+ * <ul>
+ * <li>Spikes: readings whose z-score against the device's baseline exceeds
+ * the threshold. The baseline is an exponentially weighted moving average
+ * (EWMA) and variance, updated with Welford's method. It's robust to the
+ * spikes themselves, as each reading is clamped to the threshold before
+ * it's added (so a spike barely moves the baseline, while a lasting change
+ * in level is adopted over a few readings).
+ * <li>Stuck sensors: a run of at least the given number of readings with
+ * exactly the same value.
+ * </ul>
+ * No spikes are flagged until the baseline has warmed up. Readings with an
+ * error, or a status code already set, are neither checked nor added to the
+ * baseline. Readings of sensor types without a detector are ignored.
+ * <p>
+ * Anomalous readings have their status code set to
+ * {@link ConfigConst#ANOMALY_SPIKE_STATUS} or
+ * {@link ConfigConst#ANOMALY_STUCK_STATUS}, and are passed to the alert
+ * handler.
+ * <p>
+ * The detectors are declared via the {@link ConfigConst#ANOMALY_DETECTORS_KEY}
+ * property in the {@link ConfigConst#GATEWAY_DEVICE} section, as a comma
+ * separated list of configuration sections, each with a sensor type, the
+ * EWMA's smoothing factor, the z-score threshold, a min standard deviation,
+ * the warm-up readings and the stuck readings.
+ *
+ */
+public final class AnomalyDetector
+{
+	// static
+
+	private static final Logger _Logger =
+		Logger.getLogger(AnomalyDetector.class.getName());
+
+	public static final float DEFAULT_ALPHA            = 0.05f;
+	public static final float DEFAULT_Z_THRESHOLD      = 4.0f;
+	public static final int   DEFAULT_WARM_UP_READINGS = 30;
+
+	/**
+	 * Callback for each anomalous reading.
+	 *
+	 */
+	public interface AlertHandler
+	{
+		/**
+		 * Called with the anomalous reading, on the thread that checked it.
+		 *
+		 * @param data The reading, with its status code set to the anomaly.
+		 * @param score The reading's z-score, or the number of readings
+		 * with the same value if the sensor is stuck.
+		 */
+		public void onAnomaly(SensorData data, double score);
+	}
+
+	/**
+	 * The detector for a single sensor type, and its metrics.
+	 *
+	 */
+	public static final class Detector
+	{
+		private final int    sensorType;
+		private final double alpha;
+		private final double zThreshold;
+		private final double minStdDev;
+		private final int    warmUpReadings;
+		private final int    stuckReadings;
+
+		private final LongAdder checkedCount = new LongAdder();
+		private final LongAdder spikeCount   = new LongAdder();
+		private final LongAdder stuckCount   = new LongAdder();
+
+		/**
+		 * Constructor.
+		 *
+		 * @param sensorType The sensor type ID.
+		 * @param alpha The EWMA's smoothing factor, in (0, 1]: the weight of
+		 * the latest reading.
+		 * @param zThreshold The z-score above which a reading is a spike.
+		 * @param minStdDev The min standard deviation of the baseline, so
+		 * the noise of a very steady sensor isn't flagged.
+		 * @param warmUpReadings The number of readings before spikes are
+		 * flagged.
+		 * @param stuckReadings The number of readings with the same value
+		 * after which the sensor is stuck (0 for none).
+		 */
+		public Detector(
+			int sensorType, double alpha, double zThreshold, double minStdDev, int warmUpReadings, int stuckReadings)
+		{
+			if (sensorType < 0 || sensorType > RuleEngine.MAX_SENSOR_TYPE || ! (alpha > 0.0 && alpha <= 1.0)
+				|| ! (zThreshold > 0.0) || ! (minStdDev >= 0.0) || warmUpReadings < 0 || stuckReadings < 0) {
+				throw new IllegalArgumentException(
+					"Invalid anomaly detector for sensor type " + sensorType + ": alpha = " + alpha +
+					", z threshold = " + zThreshold + ", min stddev = " + minStdDev +
+					", warm-up readings = " + warmUpReadings + ", stuck readings = " + stuckReadings);
+			}
+
+			this.sensorType     = sensorType;
+			this.alpha          = alpha;
+			this.zThreshold     = zThreshold;
+			this.minStdDev      = minStdDev;
+			this.warmUpReadings = warmUpReadings;
+			this.stuckReadings  = (stuckReadings > 0 ? stuckReadings : Integer.MAX_VALUE);
+		}
+
+		public int getSensorType()
+		{
+			return this.sensorType;
+		}
+
+		public double getZThreshold()
+		{
+			return this.zThreshold;
+		}
+
+		public long getCheckedCount()
+		{
+			return this.checkedCount.sum();
+		}
+
+		public long getSpikeCount()
+		{
+			return this.spikeCount.sum();
+		}
+
+		/**
+		 * Returns the number of readings flagged as stuck, i.e. from the
+		 * 'stuckReadings'th reading with the same value on.
+		 *
+		 * @return long
+		 */
+		public long getStuckCount()
+		{
+			return this.stuckCount.sum();
+		}
+
+		@Override
+		public String toString()
+		{
+			return String.format(
+				"Anomaly detector for sensor type %d: alpha = %s | z threshold = %s | min stddev = %s | checked = %d | spikes = %d | stuck = %d",
+				this.sensorType, this.alpha, this.zThreshold, this.minStdDev,
+				getCheckedCount(), getSpikeCount(), getStuckCount());
+		}
+	}
+
+	/**
+	 * The baseline of a single device. Guarded by its own monitor.
+	 *
+	 */
+	private static final class State
+	{
+		private long   count          = 0L;
+		private double mean           = 0.0;
+		private double variance       = 0.0;
+		private float  lastValue      = 0.0f;
+		private int    unchangedCount = 0;
+	}
+
+	private static final Detector[] NO_DETECTORS = new Detector[0];
+
+
+	// private var's
+
+	private final Detector[] detectorsByType;
+	private final Detector[] detectors;
+
+	private final DeviceStateMap<State> states;
+	private final AlertHandler          handler;
+
+
+	// constructors
+
+	/**
+	 * Constructor. Creates the detectors declared in the configuration.
+	 *
+	 * @param handler The handler for the anomalous readings.
+	 */
+	public AnomalyDetector(AlertHandler handler)
+	{
+		this(handler, DeviceStateMap.createFromConfig(State::new), createDetectorsFromConfig());
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param handler The handler for the anomalous readings.
+	 * @param maxDevices The max number of devices to keep a baseline for.
+	 * @param detectors The detectors, at most one per sensor type.
+	 */
+	public AnomalyDetector(AlertHandler handler, int maxDevices, Detector ... detectors)
+	{
+		this(
+			handler,
+			new DeviceStateMap<>(State::new, maxDevices, DeviceStateMap.DEFAULT_IDLE_TIMEOUT_SECS, TimeUnit.SECONDS),
+			detectors);
+	}
+
+	private AnomalyDetector(AlertHandler handler, DeviceStateMap<State> states, Detector ... detectors)
+	{
+		super();
+
+		if (handler == null) {
+			throw new IllegalArgumentException("Handler must not be null.");
+		}
+
+		int maxSensorType = -1;
+
+		for (Detector detector : detectors) {
+			maxSensorType = Math.max(maxSensorType, detector.getSensorType());
+		}
+
+		this.handler         = handler;
+		this.states          = states;
+		this.detectorsByType = new Detector[maxSensorType + 1];
+		this.detectors       = detectors.clone();
+
+		for (Detector detector : detectors) {
+			if (this.detectorsByType[detector.getSensorType()] != null) {
+				throw new IllegalArgumentException("Duplicate anomaly detector for sensor type: " + detector.getSensorType());
+			}
+
+			this.detectorsByType[detector.getSensorType()] = detector;
+
+			_Logger.info("Added " + detector);
+		}
+	}
+
+
+	// public methods
+
+	/**
+	 * Checks the reading against its device's baseline, then adds it. If
+	 * it's anomalous, its status code is set, and it's passed to the alert
+	 * handler. Doesn't allocate, except for the first reading from a device.
+	 *
+	 * @param data The reading.
+	 * @return int The reading's status code.
+	 */
+	public int check(SensorData data)
+	{
+		Detector detector = getDetector(data.getTypeID());
+
+		if (detector == null || data.getStatusCode() != ConfigConst.DEFAULT_STATUS) {
+			return data.getStatusCode();
+		}
+
+		detector.checkedCount.increment();
+
+		State state = this.states.get(data.getLocationID(), data.getTypeID());
+		float value = data.getValue();
+
+		int statusCode = ConfigConst.DEFAULT_STATUS;
+		double score = 0.0;
+
+		synchronized (state) {
+			// stuck: the same value, over and over
+			if (state.count > 0 && Float.compare(value, state.lastValue) == 0) {
+				state.unchangedCount++;
+			} else {
+				state.unchangedCount = 1;
+				state.lastValue      = value;
+			}
+
+			double stdDev = Math.max(Math.sqrt(state.variance), detector.minStdDev);
+			double z = (stdDev > 0.0 ? (value - state.mean) / stdDev : 0.0);
+
+			if (state.unchangedCount >= detector.stuckReadings) {
+				// not added to the baseline, as the readings aren't real
+				statusCode = ConfigConst.ANOMALY_STUCK_STATUS;
+				score      = state.unchangedCount;
+			} else {
+				boolean isWarm = (state.count >= detector.warmUpReadings);
+
+				updateBaseline(detector, state, value, stdDev);
+
+				if (isWarm && Math.abs(z) > detector.zThreshold) {
+					statusCode = ConfigConst.ANOMALY_SPIKE_STATUS;
+					score      = z;
+				}
+			}
+		}
+
+		if (statusCode == ConfigConst.DEFAULT_STATUS) {
+			return statusCode;
+		}
+
+		if (statusCode == ConfigConst.ANOMALY_STUCK_STATUS) {
+			detector.stuckCount.increment();
+		} else {
+			detector.spikeCount.increment();
+		}
+
+		data.setStatusCode(statusCode);
+
+		this.handler.onAnomaly(data, score);
+
+		return statusCode;
+	}
+
+	/**
+	 * Returns true if there's a detector for the sensor type.
+	 *
+	 * @param sensorType The sensor type ID.
+	 * @return boolean
+	 */
+	public boolean hasDetector(int sensorType)
+	{
+		return getDetector(sensorType) != null;
+	}
+
+	/**
+	 * Returns the detector for the sensor type, or null if there's none.
+	 *
+	 * @param sensorType The sensor type ID.
+	 * @return Detector
+	 */
+	public Detector getDetector(int sensorType)
+	{
+		return (sensorType >= 0 && sensorType < this.detectorsByType.length ? this.detectorsByType[sensorType] : null);
+	}
+
+	@Override
+	public String toString()
+	{
+		StringBuilder buf = new StringBuilder("Anomaly detection: devices = " + this.states.size());
+
+		for (Detector detector : this.detectors) {
+			buf.append("\n\t").append(detector);
+		}
+
+		return buf.toString();
+	}
+
+
+	// private methods
+
+	/**
+	 * Adds the reading to the baseline. Called with the state's monitor held.
+	 *
+	 */
+	private static void updateBaseline(Detector detector, State state, float value, double stdDev)
+	{
+		double x = value;
+
+		// after the warm-up, spikes are clamped, so they don't skew the baseline
+		if (state.count >= detector.warmUpReadings && stdDev > 0.0) {
+			double limit = detector.zThreshold * stdDev;
+
+			x = Math.max(state.mean - limit, Math.min(state.mean + limit, x));
+		}
+
+		if (state.count++ == 0) {
+			state.mean = x;
+		} else {
+			// Welford's method, exponentially weighted
+			double delta = x - state.mean;
+
+			state.mean     += detector.alpha * delta;
+			state.variance  = (1.0 - detector.alpha) * (state.variance + detector.alpha * delta * delta);
+		}
+	}
+
+	private static Detector[] createDetectorsFromConfig()
+	{
+		ConfigUtil configUtil = ConfigUtil.getInstance();
+
+		List<Detector> detectors = new ArrayList<>();
+
+		String sections = configUtil.getProperty(ConfigConst.GATEWAY_DEVICE, ConfigConst.ANOMALY_DETECTORS_KEY);
+
+		if (sections != null) {
+			for (String sectionName : sections.split(",")) {
+				sectionName = sectionName.trim();
+
+				if (sectionName.isEmpty()) {
+					continue;
+				}
+
+				if (! configUtil.hasSection(sectionName)) {
+					_Logger.warning("Anomaly detector section not found. Ignoring: " + sectionName);
+					continue;
+				}
+
+				detectors.add(
+					new Detector(
+						configUtil.getInteger(sectionName, ConfigConst.RULE_SENSOR_TYPE_KEY),
+						configUtil.getFloat(sectionName, ConfigConst.EWMA_ALPHA_KEY, DEFAULT_ALPHA),
+						configUtil.getFloat(sectionName, ConfigConst.Z_THRESHOLD_KEY, DEFAULT_Z_THRESHOLD),
+						configUtil.getFloat(sectionName, ConfigConst.MIN_STDDEV_KEY, 0.0f),
+						configUtil.getInteger(sectionName, ConfigConst.WARM_UP_READINGS_KEY, DEFAULT_WARM_UP_READINGS),
+						configUtil.getInteger(sectionName, ConfigConst.STUCK_READINGS_KEY, 0)));
+			}
+		}
+
+		return detectors.toArray(NO_DETECTORS);
+	}
+
+}
@@ -0,0 +1,301 @@
+/**
+ * This class is part of the Programming the Internet of Things project.
+ *
+ * It is provided as a simple shell to guide the student and assist with
+ * implementation for the Programming the Internet of Things exercises,
+ * and designed to be modified by the student as needed.
+ */
+
+package programmingtheiot.gda.app;
+
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import programmingtheiot.common.ConfigConst;
+import programmingtheiot.common.IActuatorDataListener;
+import programmingtheiot.data.ActuatorData;
+import programmingtheiot.data.SensorData;
+
+/**
+ * Base class for the rules that send an actuator command once a device's
+ * readings have met the rule's condition for at least the dwell time, and
+ * turn the actuator off again once a reading no longer meets it. A command
+ * isn't sent again while it's still in effect.
+ * <p>
+ * The state is kept per device (location ID), and evaluating a reading
+ * only allocates when a command is sent, or the dwell time starts.
+ * <p>
+ * With a {@link TimingWheel} (see {@link #setTimingWheel(TimingWheel,
+ * IActuatorDataListener)}), the command is sent once the dwell time has
+ * passed, even if the device doesn't send another reading. Without one,
+ * it's sent with the first reading after the dwell time.
+ *
+ */
+public abstract class BaseDwellRule implements IAnalysisRule
+{
+	// static
+
+	private static final Logger _Logger =
+		Logger.getLogger(BaseDwellRule.class.getName());
+
+	/**
+	 * Returned by {@link #getCommand(SensorData)} if the reading doesn't
+	 * meet the condition.
+	 */
+	public static final int NO_COMMAND = Integer.MIN_VALUE;
+
+	private static final long NO_MATCH = Long.MIN_VALUE;
+
+	/**
+	 * The control state of a single device. Guarded by its own monitor.
+	 *
+	 */
+	private static final class State
+	{
+		private long   matchStartMillis = NO_MATCH;
+		private int    pendingCommand   = NO_COMMAND;
+		private int    lastCommand      = ConfigConst.OFF_COMMAND;
+		private String locationID       = null;
+
+		// the dwell timer, if any; the generation tells a stale expiry apart
+		private TimingWheel.Timeout timeout = null;
+		private long timerGeneration = 0L;
+	}
+
+
+	// private var's
+
+	private final String name;
+	private final int    sensorType;
+	private final int    actuatorType;
+	private final String actuatorName;
+	private final float  nominal;
+	private final long   dwellMillis;
+
+	private final DeviceStateMap<State> states;
+
+	private volatile TimingWheel           timer    = null;
+	private volatile IActuatorDataListener listener = null;
+
+
+	// constructors
+
+	/**
+	 * Constructor.
+	 *
+	 * @param name The rule's name.
+	 * @param sensorType The sensor type ID the rule applies to.
+	 * @param actuatorType The type ID of the actuator commands.
+	 * @param actuatorName The name of the actuator commands.
+	 * @param nominal The value sent with each command.
+	 * @param dwellMillis How long the condition must be met before a command
+	 * is sent.
+	 */
+	protected BaseDwellRule(
+		String name, int sensorType, int actuatorType, String actuatorName, float nominal, long dwellMillis)
+	{
+		super();
+
+		this.name         = name;
+		this.sensorType   = sensorType;
+		this.actuatorType = actuatorType;
+		this.actuatorName = actuatorName;
+		this.nominal      = nominal;
+		this.dwellMillis  = Math.max(0L, dwellMillis);
+		this.states       = DeviceStateMap.createFromConfig(State::new);
+	}
+
+
+	// public methods
+
+	@Override
+	public String getName()
+	{
+		return this.name;
+	}
+
+	@Override
+	public int getSensorType()
+	{
+		return this.sensorType;
+	}
+
+	@Override
+	public void setTimingWheel(TimingWheel timer, IActuatorDataListener listener)
+	{
+		this.listener = listener;
+		this.timer    = (listener != null ? timer : null);
+	}
+
+	@Override
+	public final ActuatorData evaluate(SensorData data)
+	{
+		int matchCommand = getCommand(data);
+
+		// keyed by the rule's type, so a rule that joins several types has one state per device
+		State state = this.states.get(data.getLocationID(), this.sensorType);
+
+		int command;
+
+		// only readings for the same device wait on each other
+		synchronized (state) {
+			if (matchCommand != NO_COMMAND) {
+				long timeStampMillis = data.getTimeStampMillis();
+
+				state.pendingCommand = matchCommand;
+
+				if (state.lastCommand == matchCommand) {
+					return null;
+				}
+
+				if (state.matchStartMillis == NO_MATCH) {
+					state.matchStartMillis = timeStampMillis;
+
+					startTimer(state, data.getLocationID());
+				}
+
+				if (timeStampMillis - state.matchStartMillis < this.dwellMillis) {
+					return null;
+				}
+
+				command = matchCommand;
+			} else {
+				// no longer met: restart the dwell time, and turn the actuator off
+				state.matchStartMillis = NO_MATCH;
+				state.pendingCommand   = NO_COMMAND;
+
+				cancelTimer(state);
+
+				if (state.lastCommand == ConfigConst.OFF_COMMAND) {
+					return null;
+				}
+
+				command = ConfigConst.OFF_COMMAND;
+			}
+
+			// a different command (e.g. past the other threshold) waits its own dwell time
+			state.lastCommand      = command;
+			state.matchStartMillis = NO_MATCH;
+
+			cancelTimer(state);
+		}
+
+		return createCommand(data.getLocationID(), command);
+	}
+
+	public long getDwellTime(TimeUnit unit)
+	{
+		return unit.convert(this.dwellMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Returns the number of devices this rule currently keeps state for.
+	 *
+	 * @return int
+	 */
+	public int getTrackedDeviceCount()
+	{
+		return this.states.size();
+	}
+
+	@Override
+	public String toString()
+	{
+		return
+			"Rule '" + this.name + "': sensor type = " + this.sensorType +
+			" | " + getConditionDescription() +
+			" | actuator = " + this.actuatorName + " (" + this.actuatorType + "), nominal = " + this.nominal;
+	}
+
+
+	// protected methods
+
+	/**
+	 * Returns the command to send once the reading's condition has been
+	 * met for the dwell time, or {@link #NO_COMMAND} if the reading doesn't
+	 * meet the condition. This is called for every reading, so it must not
+	 * allocate.
+	 *
+	 * @param data The reading.
+	 * @return int
+	 */
+	protected abstract int getCommand(SensorData data);
+
+	/**
+	 * Returns the condition, for logging.
+	 *
+	 * @return String
+	 */
+	protected abstract String getConditionDescription();
+
+
+	// private methods
+
+	private ActuatorData createCommand(String locationID, int command)
+	{
+		ActuatorData actuatorData = new ActuatorData();
+		actuatorData.setName(this.actuatorName);
+		actuatorData.setLocationID(locationID);
+		actuatorData.setTypeID(this.actuatorType);
+		actuatorData.setValue(this.nominal);
+		actuatorData.setCommand(command);
+
+		_Logger.fine("Rule '" + this.name + "' triggered for " + locationID + ". Command: " + command);
+
+		return actuatorData;
+	}
+
+	// called with the state's monitor held
+	private void startTimer(State state, String locationID)
+	{
+		TimingWheel timer = this.timer;
+
+		if (timer != null && this.dwellMillis > 0) {
+			long generation = ++state.timerGeneration;
+
+			state.locationID = locationID;
+			state.timeout    = timer.schedule(() -> onDwellTimeout(state, generation), this.dwellMillis, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	// called with the state's monitor held
+	private void cancelTimer(State state)
+	{
+		if (state.timeout != null) {
+			state.timeout.cancel();
+			state.timeout = null;
+		}
+	}
+
+	/**
+	 * Sends the pending command, if the device hasn't sent a reading since
+	 * the dwell time started that changed it.
+	 *
+	 */
+	private void onDwellTimeout(State state, long generation)
+	{
+		String locationID;
+		int command;
+
+		synchronized (state) {
+			if (state.timerGeneration != generation || state.timeout == null
+				|| state.pendingCommand == NO_COMMAND || state.pendingCommand == state.lastCommand) {
+				return;
+			}
+
+			command    = state.pendingCommand;
+			locationID = state.locationID;
+
+			state.lastCommand      = command;
+			state.matchStartMillis = NO_MATCH;
+			state.timeout          = null;
+		}
+
+		IActuatorDataListener listener = this.listener;
+
+		if (listener != null) {
+			listener.onActuatorDataUpdate(createCommand(locationID, command));
+		}
+	}
+
+}
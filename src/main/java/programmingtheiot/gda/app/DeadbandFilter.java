@@ -0,0 +1,428 @@
+/**
+ * This class is part of the Programming the Internet of Things project.
+ *
+ * It is provided as a simple shell to guide the student and assist with
+ * implementation for the Programming the Internet of Things exercises,
+ * and designed to be modified by the student as needed.
+ */
+
+package programmingtheiot.gda.app;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+import programmingtheiot.common.ConfigConst;
+import programmingtheiot.common.ConfigUtil;
+import programmingtheiot.data.SensorData;
+
+/**
+ * Change-of-value (deadband) filter for the sensor readings sent upstream
+ * (i.e. to persistence and the cloud). A reading is only sent if:
+ * <ul>
+ * <li>It's the first from its device (location ID and type ID), or
+ * <li>its value differs from the last one sent by more than the deadband,
+ * or
+ * <li>its status code differs from the last one sent, or
+ * <li>the last one was sent at least the max silence ago (the heartbeat),
+ * by the readings' timestamps.
+ * </ul>
+ * Readings of sensor types without a deadband are always sent. The filter
+ * doesn't apply to analysis, which sees every reading.
+ * <p>
+ * Checking a reading ({@link #isSignificant(SensorData)}) and recording it
+ * as sent ({@link #markSent(SensorData)}) are separate, so a reading that
+ * couldn't be handed off (e.g. as a queue was full) isn't treated as sent,
+ * and the next one is compared against the last reading actually sent.
+ * <p>
+ * The deadbands are declared via the {@link ConfigConst#DEADBAND_FILTERS_KEY}
+ * property in the {@link ConfigConst#GATEWAY_DEVICE} section, as a comma
+ * separated list of configuration sections, each with a sensor type, a
+ * deadband and a max silence (in seconds).
+ *
+ */
+public final class DeadbandFilter
+{
+	// static
+
+	private static final Logger _Logger =
+		Logger.getLogger(DeadbandFilter.class.getName());
+
+	/**
+	 * The deadband for a single sensor type, and its metrics.
+	 *
+	 */
+	public static final class Deadband
+	{
+		private final int   sensorType;
+		private final float deadband;
+		private final long  maxSilenceMillis;
+
+		private final LongAdder sentCount       = new LongAdder();
+		private final LongAdder heartbeatCount  = new LongAdder();
+		private final LongAdder suppressedCount = new LongAdder();
+
+		/**
+		 * Constructor.
+		 *
+		 * @param sensorType The sensor type ID.
+		 * @param deadband The change in value a reading must exceed to be sent.
+		 * @param maxSilence The max time between readings sent (0 for none).
+		 * @param unit The time unit of 'maxSilence'.
+		 */
+		public Deadband(int sensorType, float deadband, long maxSilence, TimeUnit unit)
+		{
+			if (sensorType < 0 || sensorType > RuleEngine.MAX_SENSOR_TYPE || ! (deadband >= 0.0f) || maxSilence < 0) {
+				throw new IllegalArgumentException(
+					"Invalid deadband for sensor type " + sensorType + ": deadband = " + deadband +
+					", max silence = " + maxSilence);
+			}
+
+			this.sensorType       = sensorType;
+			this.deadband         = deadband;
+			this.maxSilenceMillis = (maxSilence > 0 ? unit.toMillis(maxSilence) : Long.MAX_VALUE);
+		}
+
+		public int getSensorType()
+		{
+			return this.sensorType;
+		}
+
+		public float getDeadband()
+		{
+			return this.deadband;
+		}
+
+		/**
+		 * Returns the number of readings sent, including heartbeats.
+		 *
+		 * @return long
+		 */
+		public long getSentCount()
+		{
+			return this.sentCount.sum();
+		}
+
+		/**
+		 * Returns the number of readings sent only because of the max
+		 * silence.
+		 *
+		 * @return long
+		 */
+		public long getHeartbeatCount()
+		{
+			return this.heartbeatCount.sum();
+		}
+
+		public long getSuppressedCount()
+		{
+			return this.suppressedCount.sum();
+		}
+
+		/**
+		 * Returns the ratio of readings suppressed, from 0.0 (none) to 1.0.
+		 *
+		 * @return double
+		 */
+		public double getSuppressionRatio()
+		{
+			return DeadbandFilter.getSuppressionRatio(getSentCount(), getSuppressedCount());
+		}
+
+		@Override
+		public String toString()
+		{
+			return String.format(
+				"Deadband for sensor type %d: deadband = %s | max silence = %s | sent = %d (heartbeats %d) | suppressed = %d (%.1f%%)",
+				this.sensorType, this.deadband,
+				(this.maxSilenceMillis != Long.MAX_VALUE ? (this.maxSilenceMillis / 1000L) + " secs" : "none"),
+				getSentCount(), getHeartbeatCount(), getSuppressedCount(), getSuppressionRatio() * 100.0);
+		}
+	}
+
+	/**
+	 * The last reading sent by a single device. Guarded by its own monitor.
+	 *
+	 */
+	private static final class State
+	{
+		private boolean hasSent        = false;
+		private float   lastValue      = 0.0f;
+		private int     lastStatusCode = 0;
+		private long    lastSentMillis = 0L;
+	}
+
+	private static final Deadband[] NO_DEADBANDS = new Deadband[0];
+
+
+	// private var's
+
+	private final Deadband[] deadbandsByType;
+	private final Deadband[] deadbands;
+
+	private final DeviceStateMap<State> states;
+
+
+	// constructors
+
+	/**
+	 * Default. Creates the deadbands declared in the configuration.
+	 *
+	 */
+	public DeadbandFilter()
+	{
+		this(createDeadbandsFromConfig());
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param deadbands The deadbands, at most one per sensor type.
+	 */
+	public DeadbandFilter(Deadband ... deadbands)
+	{
+		super();
+
+		int maxSensorType = -1;
+
+		for (Deadband deadband : deadbands) {
+			maxSensorType = Math.max(maxSensorType, deadband.getSensorType());
+		}
+
+		this.deadbandsByType = new Deadband[maxSensorType + 1];
+		this.deadbands       = deadbands.clone();
+		this.states          = DeviceStateMap.createFromConfig(State::new);
+
+		for (Deadband deadband : deadbands) {
+			if (this.deadbandsByType[deadband.getSensorType()] != null) {
+				throw new IllegalArgumentException("Duplicate deadband for sensor type: " + deadband.getSensorType());
+			}
+
+			this.deadbandsByType[deadband.getSensorType()] = deadband;
+
+			_Logger.info("Added " + deadband);
+		}
+	}
+
+
+	// public methods
+
+	/**
+	 * Returns true if the reading should be sent upstream. Doesn't record
+	 * it as sent; see {@link #markSent(SensorData)}.
+	 *
+	 * @param data The reading.
+	 * @return boolean
+	 */
+	public boolean isSignificant(SensorData data)
+	{
+		return isSignificant(
+			data.getLocationID(), data.getTypeID(), data.getStatusCode(), data.getValue(), data.getTimeStampMillis());
+	}
+
+	/**
+	 * Returns true if the reading should be sent upstream, i.e. it's outside
+	 * the deadband of the device's last reading sent, or that one was sent
+	 * at least the max silence ago. Doesn't record it as sent. Doesn't
+	 * allocate, except for the first reading from a device.
+	 *
+	 * @param locationID The device's location ID.
+	 * @param typeID The sensor type ID.
+	 * @param statusCode The reading's status code.
+	 * @param value The reading's value.
+	 * @param timeStampMillis The reading's timestamp.
+	 * @return boolean
+	 */
+	public boolean isSignificant(String locationID, int typeID, int statusCode, float value, long timeStampMillis)
+	{
+		Deadband deadband = getDeadband(typeID);
+
+		if (deadband == null) {
+			return true;
+		}
+
+		State state = this.states.get(locationID, typeID);
+
+		synchronized (state) {
+			if (isWithinDeadband(state, deadband, statusCode, value)
+				&& timeStampMillis - state.lastSentMillis < deadband.maxSilenceMillis) {
+				deadband.suppressedCount.increment();
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Records the reading as the device's last reading sent. Call once the
+	 * reading, found significant, has been handed off for sending.
+	 *
+	 * @param data The reading.
+	 */
+	public void markSent(SensorData data)
+	{
+		markSent(data.getLocationID(), data.getTypeID(), data.getStatusCode(), data.getValue(), data.getTimeStampMillis());
+	}
+
+	/**
+	 * Records the reading as the device's last reading sent. Doesn't
+	 * allocate, except for the first reading from a device.
+	 *
+	 * @param locationID The device's location ID.
+	 * @param typeID The sensor type ID.
+	 * @param statusCode The reading's status code.
+	 * @param value The reading's value.
+	 * @param timeStampMillis The reading's timestamp.
+	 */
+	public void markSent(String locationID, int typeID, int statusCode, float value, long timeStampMillis)
+	{
+		Deadband deadband = getDeadband(typeID);
+
+		if (deadband == null) {
+			return;
+		}
+
+		State state = this.states.get(locationID, typeID);
+
+		boolean isHeartbeat = false;
+
+		synchronized (state) {
+			// only sent as the max silence was reached
+			isHeartbeat = isWithinDeadband(state, deadband, statusCode, value);
+
+			state.hasSent        = true;
+			state.lastValue      = value;
+			state.lastStatusCode = statusCode;
+			state.lastSentMillis = timeStampMillis;
+		}
+
+		deadband.sentCount.increment();
+
+		if (isHeartbeat) {
+			deadband.heartbeatCount.increment();
+		}
+	}
+
+	/**
+	 * Returns true if the filter has a deadband for the sensor type.
+	 *
+	 * @param sensorType The sensor type ID.
+	 * @return boolean
+	 */
+	public boolean hasDeadband(int sensorType)
+	{
+		return getDeadband(sensorType) != null;
+	}
+
+	/**
+	 * Returns the deadband for the sensor type, or null if there's none.
+	 *
+	 * @param sensorType The sensor type ID.
+	 * @return Deadband
+	 */
+	public Deadband getDeadband(int sensorType)
+	{
+		return (sensorType >= 0 && sensorType < this.deadbandsByType.length ? this.deadbandsByType[sensorType] : null);
+	}
+
+	public long getSentCount()
+	{
+		long count = 0L;
+
+		for (Deadband deadband : this.deadbands) {
+			count += deadband.getSentCount();
+		}
+
+		return count;
+	}
+
+	public long getSuppressedCount()
+	{
+		long count = 0L;
+
+		for (Deadband deadband : this.deadbands) {
+			count += deadband.getSuppressedCount();
+		}
+
+		return count;
+	}
+
+	/**
+	 * Returns the ratio of readings suppressed, from 0.0 (none) to 1.0,
+	 * over the sensor types with a deadband.
+	 *
+	 * @return double
+	 */
+	public double getSuppressionRatio()
+	{
+		return getSuppressionRatio(getSentCount(), getSuppressedCount());
+	}
+
+	@Override
+	public String toString()
+	{
+		StringBuilder buf = new StringBuilder(
+			String.format(
+				"Deadband filter: sent = %d | suppressed = %d (%.1f%%)",
+				getSentCount(), getSuppressedCount(), getSuppressionRatio() * 100.0));
+
+		for (Deadband deadband : this.deadbands) {
+			buf.append("\n\t").append(deadband);
+		}
+
+		return buf.toString();
+	}
+
+
+	// private methods
+
+	private static boolean isWithinDeadband(State state, Deadband deadband, int statusCode, float value)
+	{
+		return state.hasSent && statusCode == state.lastStatusCode
+			&& Math.abs(value - state.lastValue) <= deadband.deadband;
+	}
+
+	private static double getSuppressionRatio(long sentCount, long suppressedCount)
+	{
+		long count = sentCount + suppressedCount;
+
+		return (count > 0 ? (double) suppressedCount / count : 0.0);
+	}
+
+	private static Deadband[] createDeadbandsFromConfig()
+	{
+		ConfigUtil configUtil = ConfigUtil.getInstance();
+
+		List<Deadband> deadbands = new ArrayList<>();
+
+		String sections = configUtil.getProperty(ConfigConst.GATEWAY_DEVICE, ConfigConst.DEADBAND_FILTERS_KEY);
+
+		if (sections != null) {
+			for (String sectionName : sections.split(",")) {
+				sectionName = sectionName.trim();
+
+				if (sectionName.isEmpty()) {
+					continue;
+				}
+
+				if (! configUtil.hasSection(sectionName)) {
+					_Logger.warning("Deadband filter section not found. Ignoring: " + sectionName);
+					continue;
+				}
+
+				deadbands.add(
+					new Deadband(
+						configUtil.getInteger(sectionName, ConfigConst.RULE_SENSOR_TYPE_KEY),
+						configUtil.getFloat(sectionName, ConfigConst.DEADBAND_KEY, 0.0f),
+						configUtil.getInteger(sectionName, ConfigConst.MAX_SILENCE_KEY, 0),
+						TimeUnit.SECONDS));
+			}
+		}
+
+		return deadbands.toArray(NO_DEADBANDS);
+	}
+
+}
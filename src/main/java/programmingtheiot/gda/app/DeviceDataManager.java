@@ -8,8 +8,8 @@
 
 package programmingtheiot.gda.app;
 
-import java.time.OffsetDateTime;
-import java.time.temporal.ChronoUnit;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -29,7 +29,9 @@ import programmingtheiot.common.ResourceNameEnum;
 import programmingtheiot.data.ActuatorData;
 import programmingtheiot.data.BaseIotData;
 import programmingtheiot.data.DataUtil;
+import programmingtheiot.data.EncodedIotData;
 import programmingtheiot.data.SensorData;
+import programmingtheiot.data.SensorDataBatch;
 import programmingtheiot.data.SystemPerformanceData;
 
 import programmingtheiot.gda.connection.CloudClientConnector;
@@ -40,6 +42,8 @@ import programmingtheiot.gda.connection.IRequestResponseClient;
 import programmingtheiot.gda.connection.MqttClientConnector;
 import programmingtheiot.gda.connection.RedisPersistenceAdapter;
 import programmingtheiot.gda.connection.SmtpClientConnector;
+import programmingtheiot.gda.system.MetricsRegistry;
+import programmingtheiot.gda.system.MetricsReportManager;
 import programmingtheiot.gda.system.SystemPerformanceManager;
 
 /**
@@ -67,20 +71,38 @@ public class DeviceDataManager implements IDataMessageListener
 	private IRequestResponseClient smtpClient = null;
 	private CoapServerGateway coapServer = null;
 	private SystemPerformanceManager sysPerfMgr = null;
+	private IngestionPipeline ingestionPipeline = null;
+	private SensorEventRingBuffer sensorEventRing = null;
 
-	private ActuatorData latestHumidifierActuatorData = null;
 	private ActuatorData latestHumidifierActuatorResponse = null;
-	private SensorData latestHumiditySensorData = null;
-	private OffsetDateTime latestHumiditySensorTimeStamp = null;
 
-	private boolean handleHumidityChangeOnDevice = false;
-	private int lastKnownHumidifierCommand = ConfigConst.OFF_COMMAND;
+	// analysis rules, loaded from PiotConfig.props
+	private RuleEngine ruleEngine = null;
 
-	// Load from PiotConfig.props
-	private long humidityMaxTimePastThreshold = 300;
-	private float nominalHumiditySetting = 40.0f;
-	private float triggerHumidifierFloor = 30.0f;
-	private float triggerHumidifierCeiling = 50.0f;
+	// flags spikes and stuck sensors, per device, before the readings are sent upstream
+	private AnomalyDetector anomalyDetector = null;
+
+	// change-of-value filter for the readings sent upstream
+	private DeadbandFilter deadbandFilter = null;
+
+	// per device window aggregates (min/max/mean/...), sent upstream as each window closes
+	private WindowAggregator windowAggregator = null;
+
+	// per device deadlines: rules' dwell times, stale sensors and actuator responses
+	private TimingWheel timingWheel = null;
+	private StaleSensorMonitor staleSensorMonitor = null;
+	private ActuatorAckMonitor actuatorAckMonitor = null;
+
+	// coalesces the commands sent to the CDA, per actuator
+	private ActuationDispatcher actuationDispatcher = null;
+
+	// persistence latency and gateway wide gauges; snapshots are published periodically
+	private final MetricsRegistry metricsRegistry = MetricsRegistry.getInstance();
+	private MetricsReportManager metricsReportMgr = null;
+
+	// sends the commands issued by the rules (created once, so evaluating doesn't allocate)
+	private final IActuatorDataListener ruleCommandListener =
+		(data) -> this.actuationDispatcher.submit(data);
 
 	
 	// constructors
@@ -105,27 +127,6 @@ public class DeviceDataManager implements IDataMessageListener
 		this.enablePersistenceClient = configUtil.getBoolean(
 			ConfigConst.GATEWAY_DEVICE, ConfigConst.ENABLE_PERSISTENCE_CLIENT_KEY);
 
-		this.handleHumidityChangeOnDevice = configUtil.getBoolean(
-			ConfigConst.GATEWAY_DEVICE, "handleHumidityChangeOnDevice");
-
-		this.humidityMaxTimePastThreshold = 
-			configUtil.getInteger(ConfigConst.GATEWAY_DEVICE, "humidityMaxTimePastThreshold");
-
-		this.nominalHumiditySetting = 
-			configUtil.getFloat(
-				ConfigConst.GATEWAY_DEVICE, "nominalHumiditySetting");
-
-		this.triggerHumidifierFloor = 
-			configUtil.getFloat(
-				ConfigConst.GATEWAY_DEVICE, "triggerHumidifierFloor");
-
-		this.triggerHumidifierCeiling = 
-			configUtil.getFloat(ConfigConst.GATEWAY_DEVICE, "triggerHumidifierCeiling");
-
-		if(this.humidityMaxTimePastThreshold < 10 || this.humidityMaxTimePastThreshold > 7200){
-			this.humidityMaxTimePastThreshold = 10;
-		}
-		
 		initConnections();
 	}
 	
@@ -154,6 +155,12 @@ public class DeviceDataManager implements IDataMessageListener
 				_Logger.warning("Error flag set for ActuatorData instance.");
 			}
 
+			if(this.actuatorAckMonitor != null){
+				this.actuatorAckMonitor.onResponse(data);
+			}
+
+			this.actuationDispatcher.onResponse(data);
+
 			return true;
 		
 		}else{
@@ -173,9 +180,11 @@ public class DeviceDataManager implements IDataMessageListener
 				_Logger.warning("Error flag set for ActuatorData instance");
 			}
 
-			int qos = ConfigConst.DEFAULT_QOS;
-
-			this.sendActuatorCommandtoCda(resourceName, data);
+			if(resourceName == ResourceNameEnum.CDA_ACTUATOR_CMD_RESOURCE){
+				this.actuationDispatcher.submit(data);
+			}else{
+				this.sendActuatorCommandtoCda(resourceName, data);
+			}
 
 			return true;
 		}else{
@@ -187,25 +196,21 @@ public class DeviceDataManager implements IDataMessageListener
 	public boolean handleIncomingMessage(ResourceNameEnum resourceName, String msg)
 	{
 		if(resourceName != null && msg != null){
-			try {
-				if(resourceName == ResourceNameEnum.CDA_ACTUATOR_CMD_RESOURCE){
-					
-					_Logger.info("Handling incoming ActuatorData message: "+ msg);
-
-					ActuatorData ad = DataUtil.getInstance().jsonToActuatorData(msg);
-					String jsonData = DataUtil.getInstance().actuatorDataToJson(ad);
-
-					if(this.mqttClient != null){
-						_Logger.fine("Publishing data to MQTT broker: "+ jsonData);
-						return this.mqttClient.publishMessage(resourceName, jsonData, 0);
-					}
-				}else{
-					_Logger.warning("Failed to parse incoming message. Unknown type: "+msg);
-					return false;
-				}
-			} catch (Exception e) {
-				// TODO: handle exception
-				_Logger.log(Level.WARNING, "Failed to process incoming message for resource: "+ resourceName, e);
+			if(resourceName == ResourceNameEnum.CDA_ACTUATOR_CMD_RESOURCE){
+				_Logger.info("Handling incoming ActuatorData message: "+ msg);
+
+				// decoding and publishing happen off the caller's thread, in the
+				// control lane, so the command doesn't wait behind telemetry
+				return this.ingestionPipeline.submit(
+					IngestionPipeline.Stage.CONTROL, () -> handleIncomingActuatorCommand(resourceName, msg));
+			}else if(resourceName == ResourceNameEnum.GDA_MGMT_STATUS_MSG_RESOURCE){
+				_Logger.fine("Handling management status message.");
+
+				return this.ingestionPipeline.submit(
+					IngestionPipeline.Stage.UPSTREAM, () -> handleManagementStatus(resourceName, msg));
+			}else{
+				_Logger.warning("Failed to parse incoming message. Unknown type: "+msg);
+				return false;
 			}
 		}else{
 			_Logger.warning("Incoming message has no data. Ignoring for resource: " + resourceName);
@@ -225,21 +230,59 @@ public class DeviceDataManager implements IDataMessageListener
 				_Logger.warning("Error flag set for SensorData instance.");
 			}
 
-			String jsonData = DataUtil.getInstance().sensorDataToJson(data);
+			if(this.staleSensorMonitor != null){
+				this.staleSensorMonitor.onReading(data);
+			}
+
+			// anomalous readings carry their status code upstream (which the deadband filter always sends)
+			this.anomalyDetector.check(data);
+
+			// readings within their deadband only go to analysis
+			boolean isSignificant = this.deadbandFilter.isSignificant(data);
+
+			// copied into a preallocated slot, for the ring's consumers
+			if(this.sensorEventRing != null){
+				boolean isPublished = this.sensorEventRing.tryPublish(resourceName, data, ! isSignificant);
 
-			_Logger.fine("JSON [SensorData] ->" + jsonData);
+				// a dropped reading isn't compared against by the next one
+				if(isSignificant && isPublished){
+					this.deadbandFilter.markSent(data);
+				}
+
+				return isPublished;
+			}
 
 			int qos = ConfigConst.DEFAULT_QOS;
 
-			if(this.enablePersistenceClient && this.persistenceClient != null){
-				this.persistenceClient.storeData(resourceName.getResourceName(), qos, data);
+			// encoded at most once, by whichever sink needs the payload first
+			EncodedIotData encodedData = new EncodedIotData(data);
+
+			// each stage has its own queue, so a slow persistence or cloud
+			// connection doesn't hold up analysis (or the protocol thread)
+			boolean isSent = isSignificant;
+
+			if(isSignificant && this.enablePersistenceClient && this.persistenceClient != null){
+				isSent &= this.ingestionPipeline.submit(
+					IngestionPipeline.Stage.PERSISTENCE,
+					() -> this.storeData(resourceName, qos, encodedData));
 			}
 
-			this.handleIncomingDataAnalysis(resourceName, data);
+			boolean success = this.ingestionPipeline.submit(
+				IngestionPipeline.Stage.ANALYSIS, () -> this.handleIncomingDataAnalysis(resourceName, data));
 
-			this.handleUpstreamTransmission(resourceName, jsonData, qos);
+			if(isSignificant){
+				isSent &= this.ingestionPipeline.submit(
+					IngestionPipeline.Stage.UPSTREAM, () -> this.handleUpstreamTransmission(resourceName, encodedData, qos));
 
-			return true;
+				// only once handed off, so a rejected reading isn't compared against by the next one
+				if(isSent){
+					this.deadbandFilter.markSent(data);
+				}
+
+				success &= isSent;
+			}
+
+			return success;
 		}else{
 			return false;
 		}
@@ -256,25 +299,39 @@ public class DeviceDataManager implements IDataMessageListener
 				_Logger.warning("Error flag set for SystemPerformancedata instance.");
 			}
 
-			String jsonData = DataUtil.getInstance().systemPerformanceDataToJson(data);
+			int qos = ConfigConst.DEFAULT_QOS;
 
-			_Logger.fine("JSON [SystemPerformanceData] ->" + jsonData);
+			EncodedIotData encodedData = new EncodedIotData(data);
 
-			int qos = ConfigConst.DEFAULT_QOS;
+			boolean success = true;
 
 			if(this.enablePersistenceClient && this.persistenceClient != null){
-				this.persistenceClient.storeData(resourceName.getResourceName(), qos, data);
+				success &= this.ingestionPipeline.submit(
+					IngestionPipeline.Stage.PERSISTENCE,
+					() -> this.storeData(resourceName, qos, encodedData));
 			}
 
-			this.handleUpstreamTransmission(resourceName, jsonData, qos);
+			success &= this.ingestionPipeline.submit(
+				IngestionPipeline.Stage.UPSTREAM, () -> this.handleUpstreamTransmission(resourceName, encodedData, qos));
 
-			return true;
+			if(this.windowAggregator.hasWindow(ConfigConst.CPU_UTIL_TYPE)
+				|| this.windowAggregator.hasWindow(ConfigConst.MEM_UTIL_TYPE)){
+				success &= this.ingestionPipeline.submit(
+					IngestionPipeline.Stage.ANALYSIS, () -> this.handleSystemPerformanceAggregation(resourceName, data));
+			}
+
+			return success;
 		}else{
 			return false;
 		}
 	}
 	
 	
+	public IngestionPipeline getIngestionPipeline()
+	{
+		return this.ingestionPipeline;
+	}
+	
 	public void setActuatorDataListener(String name, IActuatorDataListener listener)
 	{
 		if(listener != null){
@@ -284,6 +341,11 @@ public class DeviceDataManager implements IDataMessageListener
 	
 	public void startManager()
 	{
+		this.timingWheel.start();
+
+		if(this.sensorEventRing != null){
+			this.sensorEventRing.start();
+		}
 
 		//MQTT
 		if(this.mqttClient != null){
@@ -330,6 +392,10 @@ public class DeviceDataManager implements IDataMessageListener
 			this.sysPerfMgr.startManager();
 		}
 
+		if(this.metricsReportMgr != null){
+			this.metricsReportMgr.startManager();
+		}
+
 	}
 	
 	public void stopManager()
@@ -338,6 +404,30 @@ public class DeviceDataManager implements IDataMessageListener
 			this.sysPerfMgr.stopManager();
 		}
 
+		if(this.metricsReportMgr != null){
+			this.metricsReportMgr.stopManager();
+		}
+
+		// stopped first, as its consumers submit to the pipeline's stages
+		if(this.sensorEventRing != null){
+			if(! this.sensorEventRing.stop(SensorEventRingBuffer.DEFAULT_STOP_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)){
+				_Logger.warning("Failed to process all sensor events before shutdown.");
+			}
+
+			_Logger.info(this.sensorEventRing.toString());
+		}
+
+		// drain the queued messages (e.g. actuator commands, and the readings
+		// the ring's consumers just submitted) while the connections are open
+		if(! this.ingestionPipeline.shutdown()){
+			_Logger.warning("Failed to process all queued messages before shutdown.");
+		}
+
+		this.ingestionPipeline.logMetrics();
+
+		// its pending deadlines would submit to the stopped stages
+		this.timingWheel.stop();
+
 		if(this.mqttClient != null){
 			// UNsubscribes
 			this.mqttClient.unsubscribeFromTopic(ResourceNameEnum.GDA_MGMT_STATUS_MSG_RESOURCE);
@@ -362,6 +452,20 @@ public class DeviceDataManager implements IDataMessageListener
 			}
 		}
 
+		if(this.staleSensorMonitor != null){
+			_Logger.info(this.staleSensorMonitor.toString());
+		}
+
+		if(this.actuatorAckMonitor != null){
+			_Logger.info(this.actuatorAckMonitor.toString());
+		}
+
+		_Logger.info(this.actuationDispatcher.toString());
+		_Logger.info(this.anomalyDetector.toString());
+		_Logger.info(this.deadbandFilter.toString());
+		_Logger.info(this.windowAggregator.toString());
+		_Logger.info(this.metricsRegistry.toString());
+
 		// Cloud
 		if(this.enableCloudClient && this.cloudClient != null){
 		
@@ -376,135 +480,89 @@ public class DeviceDataManager implements IDataMessageListener
 	
 	// private methods
 
-	private void handleIncomingDataAnalysis(ResourceNameEnum resourceName, SensorData data){
-		
-		// check if resource or Sensordata for type
-		if(data.getTypeID() == ConfigConst.HUMIDITY_SENSOR_TYPE){
-			handleHumiditySensorAnalysis(resourceName, data);
-			
-		}
-		
-	}
-
-	private void handleHumiditySensorAnalysis(ResourceNameEnum resource, SensorData data){
-		// currently incomplete
-		_Logger.info("Analyzing incoming actuator data: " + data.getName());
-
-		boolean isLow = data.getValue() < this.triggerHumidifierFloor;
-		boolean isHigh = data.getValue() > this.triggerHumidifierCeiling;
+	private void handleIncomingActuatorCommand(ResourceNameEnum resourceName, String msg){
+		try {
+			DataUtil dataUtil = DataUtil.getInstance();
+			ActuatorData ad = dataUtil.jsonToActuatorData(msg);
 
-		// ActuatorData ads = new ActuatorData();
-		// ads.setName(ConfigConst.HUMIDIFIER_ACTUATOR_NAME);
-		// ads.setLocationID(data.getLocationID());
-		// ads.setTypeID(ConfigConst.HUMIDIFIER_ACTUATOR_TYPE);
-		// ads.setValue(this.nominalHumiditySetting);
-		// sendActuatorCommandtoCda(ResourceNameEnum.CDA_ACTUATOR_CMD_RESOURCE, ads);
+			if(this.mqttClient != null){
+				_Logger.fine("Publishing data to MQTT broker: "+ ad);
 
+				byte[] payload = dataUtil.encodeData(ad, dataUtil.getContentFormat(resourceName));
 
-		if(isLow || isHigh){
-				_Logger.info("Humidifier data from CDA exceeded nominal range.");
-	
-				if(this.latestHumiditySensorData == null){
-					// set properties and exit
-					this.latestHumiditySensorData = data;
-					this.latestHumiditySensorTimeStamp = getDateTimeFromData(data);
+				this.mqttClient.publishMessage(resourceName, payload, 0);
+			}
+		} catch (Exception e) {
+			_Logger.log(Level.WARNING, "Failed to process incoming message for resource: "+ resourceName, e);
+		}
+	}
 
-					_Logger.info(
-						"Starting humidity nominal exception timer. Waiting for seconds: " +
-						this.humidityMaxTimePastThreshold
-					);
+	private void handleIncomingDataAnalysis(ResourceNameEnum resourceName, SensorData data){
+		// ignored unless the reading's type has a window
+		this.windowAggregator.add(resourceName, data);
 
-					//return;
-	
-				} else {
-					// _Logger.info(".....................I am Here...................");
-					OffsetDateTime curHumiditySensorTimeStamp = getDateTimeFromData(data);
+		// only the rules for the reading's type are evaluated
+		this.ruleEngine.evaluate(data, this.ruleCommandListener);
+	}
 
-					long diffSeconds = 
-						ChronoUnit.SECONDS.between(
-							this.latestHumiditySensorTimeStamp, curHumiditySensorTimeStamp);
+	private void handleAnomaly(SensorData data, double score){
+		_Logger.warning(
+			"Anomalous reading from " + data.getLocationID() + " (type " + data.getTypeID() + ", status " +
+			data.getStatusCode() + "): value = " + data.getValue() + ", score = " + score);
+	}
 
-					_Logger.fine("Checking Humidity value exception time delta: " + diffSeconds);
+	private void handleSystemPerformanceAggregation(ResourceNameEnum resourceName, SystemPerformanceData data){
+		// each metric is aggregated as a reading of its own type
+		this.windowAggregator.add(
+			resourceName, ConfigConst.CPU_UTIL_NAME, data.getLocationID(), ConfigConst.CPU_UTIL_TYPE,
+			data.getStatusCode(), data.getCpuUtilization(), data.getTimeStampMillis());
 
-					if(diffSeconds >= this.humidityMaxTimePastThreshold){
-						ActuatorData ad = new ActuatorData();
-						ad.setName(ConfigConst.HUMIDIFIER_ACTUATOR_NAME);
-						ad.setLocationID(data.getLocationID());
-						ad.setTypeID(ConfigConst.HUMIDIFIER_ACTUATOR_TYPE);
-						ad.setValue(this.nominalHumiditySetting);
+		this.windowAggregator.add(
+			resourceName, ConfigConst.MEM_UTIL_NAME, data.getLocationID(), ConfigConst.MEM_UTIL_TYPE,
+			data.getStatusCode(), data.getMemoryUtilization(), data.getTimeStampMillis());
+	}
 
-						_Logger.info("******* Hudifier Actuation Triggered ***********");
+	private void handleWindowAggregates(ResourceNameEnum resourceName, SensorDataBatch aggregates){
+		_Logger.fine("Sending window aggregates upstream: " + aggregates.size());
 
-						if(isLow){
-							ad.setCommand(ConfigConst.ON_COMMAND);
-						}else{
-							ad.setCommand(ConfigConst.OFF_COMMAND);
-						}
+		int qos = ConfigConst.DEFAULT_QOS;
 
-						_Logger.info("Humidity exceptional value reached. Sending activation event to CDA:" + ad);
+		// the batch is only read from here on, so the sinks share it
+		if(this.enablePersistenceClient && this.persistenceClient != null){
+			this.ingestionPipeline.submit(
+				IngestionPipeline.Stage.PERSISTENCE,
+				() -> this.storeData(resourceName, qos, aggregates));
+		}
 
-						this.lastKnownHumidifierCommand = ad.getCommand();
-						sendActuatorCommandtoCda(ResourceNameEnum.CDA_ACTUATOR_CMD_RESOURCE, ad);
+		if(this.cloudClient != null){
+			this.ingestionPipeline.submit(
+				IngestionPipeline.Stage.UPSTREAM, () -> this.cloudClient.sendEdgeDataToCloud(resourceName, aggregates));
+		}
+	}
 
-						// set ActuatorData and reset SensorData (and timestamp)
-						this.latestHumidifierActuatorData = ad;
-						this.latestHumiditySensorData = null;
-						this.latestHumiditySensorTimeStamp = null;
-					}
-				}
-			} else if(this.lastKnownHumidifierCommand == ConfigConst.ON_COMMAND){
-				// check if we need to turn off humidifier
-				if(this.latestHumidifierActuatorData != null){
-					// check the value - if the humidifier is on, but not yet at nominal, keep it on
-					if(this.latestHumidifierActuatorData.getValue() >= this.nominalHumiditySetting){
-						this.latestHumidifierActuatorData.setCommand(ConfigConst.OFF_COMMAND);
-
-						_Logger.info("Humidity nominal value reached. Sending OFF actuation event to CDA: " +
-						this.latestHumidifierActuatorData);
-
-						sendActuatorCommandtoCda(
-							ResourceNameEnum.CDA_ACTUATOR_CMD_RESOURCE, this.latestHumidifierActuatorData);
-
-						// resent ActuatorData and SensorData (and timestamp)
-						this.lastKnownHumidifierCommand = this.latestHumidifierActuatorData.getCommand();
-						this.latestHumidifierActuatorData = null;
-						this.latestHumiditySensorData = null;
-						this.latestHumiditySensorTimeStamp = null;
-					}else{
-						_Logger.fine("Humidifier is still on. Not yet at nominal levels(OK).");
-					}
-				}else{
-					// should'nt happen unless other logic
-					// nullifies class scope ActuatorData instance
-					_Logger.warning(
-						"ERROR: ActuatorData for humidifier is null (Shouldn't be). Can't send command."
-					);
-				}
+	private void handleManagementStatus(ResourceNameEnum resourceName, String msg){
+		// published to the broker, for whichever service monitors the gateway
+		if(this.mqttClient != null){
+			if(! this.mqttClient.publishMessage(resourceName, msg, ConfigConst.DEFAULT_QOS)){
+				_Logger.fine("Failed to publish management status message: " + resourceName);
 			}
+		}
 	}
 
-	private void handleUpstreamTransmission(ResourceNameEnum resourceName, String jsonData, int qos){
-		_Logger.info("TODO: Sending JSON data to cloud service: " + resourceName);
+	private void handleUpstreamTransmission(ResourceNameEnum resourceName, EncodedIotData data, int qos){
+		_Logger.fine("Sending data to cloud service: " + resourceName);
 
+		// the typed data (and its shared payload) is passed through as-is
 		if(this.cloudClient != null){
-
-			if(resourceName == ResourceNameEnum.CDA_SENSOR_MSG_RESOURCE){
-				SensorData data = DataUtil.getInstance().jsonToSensorData(jsonData);
-				this.cloudClient.sendEdgeDataToCloud(resourceName, data);
-
-				// return true;
-			}else if(resourceName ==ResourceNameEnum.CDA_SYSTEM_PERF_MSG_RESOURCE){
-				SystemPerformanceData data = DataUtil.getInstance().jsonToSystemPerformanceData(jsonData);
-				this.cloudClient.sendEdgeDataToCloud(resourceName, data);
+			if(resourceName == ResourceNameEnum.CDA_SENSOR_MSG_RESOURCE
+				|| resourceName == ResourceNameEnum.CDA_SYSTEM_PERF_MSG_RESOURCE){
+				if(this.cloudClient.sendEdgeDataToCloud(resourceName, data)){
+					_Logger.fine("Sent data upstream to CSP: " + data.getName());
+				}
 			}
-
-			// if(this.cloudClient.sendEdgeDataToCloud(resourceName, jsonData)){
-			// 	_Logger.fine("Sent JSON data upstream to CSP.");
-			// }
 		}
-
-		// return false;
-	}	
+	}
+	
 	/**
 	 * Initializes the enabled connections. This will NOT start them, but only create the
 	 * instances that will be used in the {@link #startManager() and #stopManager()) methods.
@@ -514,6 +572,19 @@ public class DeviceDataManager implements IDataMessageListener
 	{
 		ConfigUtil configUtil = ConfigUtil.getInstance();
 
+		this.ingestionPipeline = new IngestionPipeline();
+		this.ruleEngine = new RuleEngine();
+		this.deadbandFilter = new DeadbandFilter();
+
+		// the detector only hands the alerts off, to the analysis stage
+		this.anomalyDetector = new AnomalyDetector(
+			(data, score) -> this.ingestionPipeline.submit(
+				IngestionPipeline.Stage.ANALYSIS, () -> this.handleAnomaly(data, score)));
+
+		this.windowAggregator = new WindowAggregator(this::handleWindowAggregates);
+
+		initTimers();
+
 		this.enableSystemPerf = 
 			configUtil.getBoolean(ConfigConst.GATEWAY_DEVICE, ConfigConst.ENABLE_SYSTEM_PERF_KEY);
 
@@ -544,9 +615,185 @@ public class DeviceDataManager implements IDataMessageListener
 		if (this.enablePersistenceClient){
 			// OPTIONAL TODO
 		}
+
+		if(configUtil.getBoolean(ConfigConst.GATEWAY_DEVICE, ConfigConst.ENABLE_SENSOR_EVENT_RING_KEY)){
+			initSensorEventRing(
+				configUtil.getInteger(
+					ConfigConst.GATEWAY_DEVICE, ConfigConst.SENSOR_EVENT_RING_SIZE_KEY,
+					ConfigConst.DEFAULT_SENSOR_EVENT_RING_SIZE));
+		}
+
+		initMetrics();
+	}
+
+	/**
+	 * Registers the gauges of the ingestion stages (and the sensor event
+	 * ring) and the deadband filter, and creates the metrics report manager, unless its report
+	 * interval is 0.
+	 * 
+	 */
+	private void initMetrics()
+	{
+		for(IngestionPipeline.Stage stage : IngestionPipeline.Stage.values()){
+			IngestionStage ingestionStage = this.ingestionPipeline.getStage(stage);
+
+			this.metricsRegistry.registerGauge(
+				ResourceNameEnum.GDA_MGMT_STATUS_MSG_RESOURCE, stage.getName() + "QueueDepth", ingestionStage::getQueueDepth);
+			this.metricsRegistry.registerGauge(
+				ResourceNameEnum.GDA_MGMT_STATUS_MSG_RESOURCE, stage.getName() + "Rejected", ingestionStage::getRejectedCount);
+		}
+
+		if(this.sensorEventRing != null){
+			this.metricsRegistry.registerGauge(
+				ResourceNameEnum.CDA_SENSOR_MSG_RESOURCE, "ringBacklog", this.sensorEventRing::getBacklog);
+		}
+
+		// readings sent upstream, or only analyzed, across all the deadbands
+		this.metricsRegistry.registerGauge(
+			ResourceNameEnum.CDA_SENSOR_MSG_RESOURCE, "deadbandSent", this.deadbandFilter::getSentCount);
+		this.metricsRegistry.registerGauge(
+			ResourceNameEnum.CDA_SENSOR_MSG_RESOURCE, "deadbandSuppressed", this.deadbandFilter::getSuppressedCount);
+
+		int metricsReportSecs = ConfigUtil.getInstance().getInteger(
+			ConfigConst.GATEWAY_DEVICE, ConfigConst.METRICS_REPORT_SECS_KEY, ConfigConst.DEFAULT_METRICS_REPORT_SECS);
+
+		if(metricsReportSecs > 0){
+			this.metricsReportMgr = new MetricsReportManager(this.metricsRegistry);
+			this.metricsReportMgr.setDataMessageListener(this);
+		}
+	}
+
+	/**
+	 * Creates the timing wheel for the per device deadlines, the deadline
+	 * monitors that are enabled (i.e. have a timeout), and the actuation
+	 * dispatcher, whose coalescing window is tracked on the wheel.
+	 * 
+	 */
+	private void initTimers()
+	{
+		ConfigUtil configUtil = ConfigUtil.getInstance();
+
+		this.timingWheel = new TimingWheel(
+			"deadlines",
+			configUtil.getInteger(
+				ConfigConst.GATEWAY_DEVICE, ConfigConst.TIMER_TICK_MILLIS_KEY, ConfigConst.DEFAULT_TIMER_TICK_MILLIS),
+			TimeUnit.MILLISECONDS,
+			configUtil.getInteger(
+				ConfigConst.GATEWAY_DEVICE, ConfigConst.TIMER_WHEEL_SIZE_KEY, ConfigConst.DEFAULT_TIMER_WHEEL_SIZE));
+
+		// the wheel's thread only hands the rules' commands off, to the control lane
+		this.ruleEngine.setTimingWheel(
+			this.timingWheel,
+			(data) -> this.ingestionPipeline.submit(
+				IngestionPipeline.Stage.CONTROL,
+				() -> this.actuationDispatcher.submit(data)));
+
+		int staleSensorTimeout = configUtil.getInteger(
+			ConfigConst.GATEWAY_DEVICE, ConfigConst.STALE_SENSOR_TIMEOUT_KEY, ConfigConst.DEFAULT_STALE_SENSOR_TIMEOUT);
+
+		if(staleSensorTimeout > 0){
+			this.staleSensorMonitor = new StaleSensorMonitor(this.timingWheel, staleSensorTimeout, TimeUnit.SECONDS);
+		}
+
+		int actuatorAckTimeout = configUtil.getInteger(
+			ConfigConst.GATEWAY_DEVICE, ConfigConst.ACTUATOR_ACK_TIMEOUT_KEY, ConfigConst.DEFAULT_ACTUATOR_ACK_TIMEOUT);
+
+		if(actuatorAckTimeout > 0){
+			this.actuatorAckMonitor = new ActuatorAckMonitor(this.timingWheel, actuatorAckTimeout, TimeUnit.SECONDS);
+		}
+
+		int coalesceWindowMillis = configUtil.getInteger(
+			ConfigConst.GATEWAY_DEVICE, ConfigConst.ACTUATION_COALESCE_WINDOW_MILLIS_KEY,
+			ConfigConst.DEFAULT_ACTUATION_COALESCE_WINDOW_MILLIS);
+
+		// the coalesced commands are sent from the control lane, not the wheel's thread
+		this.actuationDispatcher = new ActuationDispatcher(
+			this.timingWheel, Math.max(0, coalesceWindowMillis), TimeUnit.MILLISECONDS,
+			(task) -> {
+				if(! this.ingestionPipeline.submit(IngestionPipeline.Stage.CONTROL, task)){
+					throw new RejectedExecutionException("Control stage is full.");
+				}
+			},
+			(data) -> this.sendActuatorCommandtoCda(ResourceNameEnum.CDA_ACTUATOR_CMD_RESOURCE, data));
 	}
 
-	private void sendActuatorCommandtoCda(ResourceNameEnum resource, ActuatorData data){
+	/**
+	 * Creates the sensor event ring, with a consumer each for persistence,
+	 * analysis and the cloud. Persistence and cloud get whatever readings
+	 * have queued up as one batch.
+	 * 
+	 * @param ringSize The number of ring slots.
+	 */
+	private void initSensorEventRing(int ringSize)
+	{
+		this.sensorEventRing = new SensorEventRingBuffer(ringSize);
+
+		if(this.enablePersistenceClient){
+			this.sensorEventRing.addConsumer("persistence", SensorEventRingBuffer.batching(
+				SensorEventRingBuffer.DEFAULT_MAX_BATCH_SIZE, (resource, batch) -> {
+					if(this.persistenceClient != null){
+						this.storeData(resource, ConfigConst.DEFAULT_QOS, batch);
+					}
+				}));
+		}
+
+		// only readings with analysis rules are copied
+		this.sensorEventRing.addConsumer("analysis", (event, sequence, endOfBatch) -> {
+			this.windowAggregator.add(
+				event.getResource(), event.getName(), event.getLocationID(), event.getTypeID(),
+				event.getStatusCode(), event.getValue(), event.getTimeStampMillis());
+
+			if(this.ruleEngine.hasRules(event.getTypeID())){
+				this.ruleEngine.evaluate(event.toSensorData(), this.ruleCommandListener);
+			}
+		});
+
+		if(this.enableCloudClient){
+			this.sensorEventRing.addConsumer("cloud", SensorEventRingBuffer.batching(
+				SensorEventRingBuffer.DEFAULT_MAX_BATCH_SIZE, (resource, batch) -> {
+					if(this.cloudClient != null){
+						this.cloudClient.sendEdgeDataToCloud(resource, batch);
+					}
+				}));
+		}
+
+		_Logger.info("Sensor readings are handed off through the sensor event ring.");
+	}
+
+	/**
+	 * Writes the data to the persistence client, and records the write time
+	 * in the resource's metrics.
+	 * 
+	 */
+	private boolean storeData(ResourceNameEnum resourceName, int qos, EncodedIotData data){
+		long startNanos = System.nanoTime();
+		boolean success = false;
+
+		try{
+			success = this.persistenceClient.storeData(resourceName.getResourceName(), qos, data);
+		}finally{
+			this.metricsRegistry.getMetrics(resourceName).recordPersistence(System.nanoTime() - startNanos, success);
+		}
+
+		return success;
+	}
+
+	private boolean storeData(ResourceNameEnum resourceName, int qos, SensorDataBatch batch){
+		long startNanos = System.nanoTime();
+		boolean success = false;
+
+		try{
+			success = this.persistenceClient.storeData(resourceName.getResourceName(), qos, batch);
+		}finally{
+			this.metricsRegistry.getMetrics(resourceName).recordPersistence(System.nanoTime() - startNanos, success);
+		}
+
+		return success;
+	}
+
+	private boolean sendActuatorCommandtoCda(ResourceNameEnum resource, ActuatorData data){
+
+		boolean success = true;
 
 		if (this.actuatorDataListener != null){
 			this.actuatorDataListener.onActuatorDataUpdate(data);
@@ -554,34 +801,25 @@ public class DeviceDataManager implements IDataMessageListener
 
 		// when using mqtt to communicate between the GDA and CDA
 		if(this.enableMqttClient && this.mqttClient != null){
-			String jsonData = DataUtil.getInstance().actuatorDataToJson(data);
+			// encoded as JSON or CBOR, per the resource's configured content-format
+			DataUtil dataUtil = DataUtil.getInstance();
+			byte[] payload = dataUtil.encodeData(data, dataUtil.getContentFormat(resource));
 
-			if(this.mqttClient.publishMessage(resource, jsonData, ConfigConst.DEFAULT_QOS)){
+			if(this.mqttClient.publishMessage(resource, payload, ConfigConst.DEFAULT_QOS)){
 				_Logger.info("Published ActuatorData command from GDA to CDA: "+ data.getCommand());
+
+				if(this.actuatorAckMonitor != null){
+					this.actuatorAckMonitor.onCommandSent(data);
+				}
 			}else{
 				_Logger.warning(
 					"Failed to publish ActuatorData command from GDA to CDA: " + data.getCommand());
+
+				success = false;
 			}
 		}
 
-	}
-
-	private OffsetDateTime getDateTimeFromData(BaseIotData data){
-		OffsetDateTime  odt = null;
-
-		try {
-			odt = OffsetDateTime.parse(data.getTimeStamp());
-		} catch (Exception e) {
-			// TODO: handle exception
-			_Logger.warning(
-				"Failed to extract ISO 8601 timestamp from IoT data. Using local current time."
-			);
-
-			odt = OffsetDateTime.now();
-
-		}
-		return odt;
+		return success;
 	}
 	
 }
-
@@ -0,0 +1,375 @@
+/**
+ * This class is part of the Programming the Internet of Things project.
+ *
+ * It is provided as a simple shell to guide the student and assist with
+ * implementation for the Programming the Internet of Things exercises,
+ * and designed to be modified by the student as needed.
+ */
+
+package programmingtheiot.gda.app;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+import programmingtheiot.common.ConfigConst;
+import programmingtheiot.common.ConfigUtil;
+
+/**
+ * Bounded, concurrent map of per device state, keyed by location ID and
+ * type ID, so readings from different devices (e.g. several CDA's) don't
+ * overwrite each other's state.
+ * <p>
+ * Lookups for different devices don't contend, and looking up a known
+ * device doesn't allocate. The state instances are shared, so callers
+ * synchronize on a state while they update it, which only serializes
+ * updates for the same device.
+ * <p>
+ * Devices that haven't been looked up for longer than the idle timeout are
+ * evicted, by a sweep at most once per idle timeout (so after up to twice
+ * the idle timeout), run by whichever lookup finds it due. If the map is
+ * still full, the least recently used devices are evicted too, so the
+ * memory stays bounded however many devices report.
+ * <p>
+ * Finding the least recently used device scans the whole map, so once the
+ * map is full, each new device costs O(max entries). The max entries should
+ * be well above the number of devices expected, so that this only happens
+ * when devices churn (e.g. IDs that change per session).
+ *
+ * @param <S> The state type.
+ */
+public final class DeviceStateMap<S>
+{
+	// static
+
+	private static final Logger _Logger =
+		Logger.getLogger(DeviceStateMap.class.getName());
+
+	public static final int  DEFAULT_MAX_ENTRIES       = 1024;
+	public static final long DEFAULT_IDLE_TIMEOUT_SECS = 3600L;
+
+	// reused per thread to look up existing entries, so lookups don't allocate
+	private static final ThreadLocal<Key> LOOKUP_KEYS = ThreadLocal.withInitial(() -> new Key(null, 0));
+
+	/**
+	 * The map key: the device's location ID and the type ID.
+	 *
+	 */
+	private static final class Key
+	{
+		// only ever changed for the (thread local) lookup keys
+		private String locationID;
+		private int    typeID;
+		private int    hash;
+
+		Key(String locationID, int typeID)
+		{
+			set(locationID, typeID);
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (this == obj) {
+				return true;
+			}
+
+			if (! (obj instanceof Key)) {
+				return false;
+			}
+
+			Key key = (Key) obj;
+
+			return this.typeID == key.typeID && Objects.equals(this.locationID, key.locationID);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return this.hash;
+		}
+
+		@Override
+		public String toString()
+		{
+			return this.locationID + "/" + this.typeID;
+		}
+
+		private Key set(String locationID, int typeID)
+		{
+			this.locationID = locationID;
+			this.typeID     = typeID;
+			this.hash       = 31 * Objects.hashCode(locationID) + typeID;
+
+			return this;
+		}
+	}
+
+	private static final class Entry<S>
+	{
+		private final S state;
+
+		private volatile long lastAccessNanos;
+
+		Entry(S state, long nowNanos)
+		{
+			this.state = state;
+			this.lastAccessNanos = nowNanos;
+		}
+	}
+
+
+	// private var's
+
+	private final ConcurrentHashMap<Key, Entry<S>> entries = new ConcurrentHashMap<>();
+
+	private final Supplier<S> stateFactory;
+	private final int         maxEntries;
+	private final long        idleTimeoutNanos;
+
+	// only written once per idle timeout, so lookups only read it (and don't contend)
+	private final AtomicLong nextSweepNanos;
+	private final LongAdder  evictedCount = new LongAdder();
+
+
+	// constructors
+
+	/**
+	 * Constructor. Uses {@link #DEFAULT_MAX_ENTRIES} and
+	 * {@link #DEFAULT_IDLE_TIMEOUT_SECS}.
+	 *
+	 * @param stateFactory Creates the state for a device seen for the first time.
+	 */
+	public DeviceStateMap(Supplier<S> stateFactory)
+	{
+		this(stateFactory, DEFAULT_MAX_ENTRIES, DEFAULT_IDLE_TIMEOUT_SECS, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param stateFactory Creates the state for a device seen for the first time.
+	 * @param maxEntries The max number of devices to keep state for.
+	 * @param idleTimeout The time after which an idle device is evicted.
+	 * @param unit The time unit of 'idleTimeout'.
+	 */
+	public DeviceStateMap(Supplier<S> stateFactory, int maxEntries, long idleTimeout, TimeUnit unit)
+	{
+		super();
+
+		if (stateFactory == null || maxEntries < 1 || idleTimeout < 1) {
+			throw new IllegalArgumentException(
+				"Invalid device state map: max entries = " + maxEntries + ", idle timeout = " + idleTimeout);
+		}
+
+		this.stateFactory     = stateFactory;
+		this.maxEntries       = maxEntries;
+		this.idleTimeoutNanos = unit.toNanos(idleTimeout);
+		this.nextSweepNanos   = new AtomicLong(System.nanoTime() + this.idleTimeoutNanos);
+	}
+
+
+	// public methods
+
+	/**
+	 * Creates a map with the max entries and idle timeout (in seconds) of the
+	 * {@link ConfigConst#GATEWAY_DEVICE} section, or the defaults.
+	 *
+	 * @param <S> The state type.
+	 * @param stateFactory Creates the state for a device seen for the first time.
+	 * @return DeviceStateMap
+	 */
+	public static <S> DeviceStateMap<S> createFromConfig(Supplier<S> stateFactory)
+	{
+		ConfigUtil configUtil = ConfigUtil.getInstance();
+
+		return new DeviceStateMap<>(
+			stateFactory,
+			configUtil.getInteger(
+				ConfigConst.GATEWAY_DEVICE, ConfigConst.MAX_TRACKED_DEVICES_KEY, DEFAULT_MAX_ENTRIES),
+			configUtil.getInteger(
+				ConfigConst.GATEWAY_DEVICE, ConfigConst.DEVICE_STATE_IDLE_TIMEOUT_KEY, (int) DEFAULT_IDLE_TIMEOUT_SECS),
+			TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Returns the state for the given device, creating it if needed.
+	 *
+	 * @param locationID The device's location ID.
+	 * @param typeID The type ID.
+	 * @return S The (shared) state.
+	 */
+	public S get(String locationID, int typeID)
+	{
+		long nowNanos = System.nanoTime();
+
+		Entry<S> entry = this.entries.get(LOOKUP_KEYS.get().set(locationID, typeID));
+		boolean  isNew = false;
+
+		if (entry == null) {
+			Entry<S> newEntry = new Entry<>(this.stateFactory.get(), nowNanos);
+
+			entry = this.entries.putIfAbsent(new Key(locationID, typeID), newEntry);
+
+			if (entry == null) {
+				entry = newEntry;
+				isNew = true;
+			}
+		}
+
+		entry.lastAccessNanos = nowNanos;
+
+		if (isNew && this.entries.size() > this.maxEntries) {
+			evict(nowNanos, locationID, typeID);
+		} else if (isSweepDue(nowNanos)) {
+			evictIdle(nowNanos);
+		}
+
+		return entry.state;
+	}
+
+	/**
+	 * Returns the state for the given device, without creating it, or
+	 * counting as a lookup.
+	 *
+	 * @param locationID The device's location ID.
+	 * @param typeID The type ID.
+	 * @return S The state, or null if there's none.
+	 */
+	public S peek(String locationID, int typeID)
+	{
+		Entry<S> entry = this.entries.get(LOOKUP_KEYS.get().set(locationID, typeID));
+
+		return (entry != null ? entry.state : null);
+	}
+
+	/**
+	 * Removes the state for the given device.
+	 *
+	 * @param locationID The device's location ID.
+	 * @param typeID The type ID.
+	 * @return S The removed state, or null if there was none.
+	 */
+	public S remove(String locationID, int typeID)
+	{
+		Entry<S> entry = this.entries.remove(LOOKUP_KEYS.get().set(locationID, typeID));
+
+		return (entry != null ? entry.state : null);
+	}
+
+	/**
+	 * Evicts all devices that have been idle for longer than the idle
+	 * timeout.
+	 *
+	 * @return int The number of evicted devices.
+	 */
+	public int evictIdle()
+	{
+		return evictIdle(System.nanoTime());
+	}
+
+	public void clear()
+	{
+		this.entries.clear();
+	}
+
+	public int size()
+	{
+		return this.entries.size();
+	}
+
+	public int getMaxEntries()
+	{
+		return this.maxEntries;
+	}
+
+	public long getEvictedCount()
+	{
+		return this.evictedCount.sum();
+	}
+
+	@Override
+	public String toString()
+	{
+		return "Device state: devices = " + size() + "/" + this.maxEntries + " | evicted = " + getEvictedCount();
+	}
+
+
+	// private methods
+
+	/**
+	 * Returns true if the idle sweep is due, for only one of the threads
+	 * that find it due at the same time.
+	 *
+	 */
+	private boolean isSweepDue(long nowNanos)
+	{
+		long next = this.nextSweepNanos.get();
+
+		return nowNanos - next >= 0 && this.nextSweepNanos.compareAndSet(next, nowNanos + this.idleTimeoutNanos);
+	}
+
+	private void evict(long nowNanos, String keepLocationID, int keepTypeID)
+	{
+		Key keep = new Key(keepLocationID, keepTypeID);
+
+		// evict the least recently used, except the one just used, removing
+		// the idle ones on the same pass
+		while (this.entries.size() > this.maxEntries) {
+			Map.Entry<Key, Entry<S>> oldest = null;
+			int idleCount = 0;
+
+			for (Map.Entry<Key, Entry<S>> mapEntry : this.entries.entrySet()) {
+				if (nowNanos - mapEntry.getValue().lastAccessNanos > this.idleTimeoutNanos
+					&& this.entries.remove(mapEntry.getKey(), mapEntry.getValue())) {
+					idleCount++;
+				} else if (! mapEntry.getKey().equals(keep)
+					&& (oldest == null || mapEntry.getValue().lastAccessNanos - oldest.getValue().lastAccessNanos < 0)) {
+					oldest = mapEntry;
+				}
+			}
+
+			if (idleCount > 0) {
+				this.evictedCount.add(idleCount);
+
+				_Logger.fine("Evicted idle device states: " + idleCount);
+			}
+
+			if (oldest == null || this.entries.size() <= this.maxEntries) {
+				break;
+			}
+
+			if (this.entries.remove(oldest.getKey(), oldest.getValue())) {
+				this.evictedCount.increment();
+
+				_Logger.fine("Evicted least recently used device state: " + oldest.getKey());
+			}
+		}
+	}
+
+	private int evictIdle(long nowNanos)
+	{
+		int count = 0;
+
+		for (Map.Entry<Key, Entry<S>> mapEntry : this.entries.entrySet()) {
+			if (nowNanos - mapEntry.getValue().lastAccessNanos > this.idleTimeoutNanos
+				&& this.entries.remove(mapEntry.getKey(), mapEntry.getValue())) {
+				count++;
+			}
+		}
+
+		if (count > 0) {
+			this.evictedCount.add(count);
+
+			_Logger.fine("Evicted idle device states: " + count);
+		}
+
+		return count;
+	}
+
+}
@@ -0,0 +1,112 @@
+/**
+ * This class is part of the Programming the Internet of Things project.
+ *
+ * It is provided as a simple shell to guide the student and assist with
+ * implementation for the Programming the Internet of Things exercises,
+ * and designed to be modified by the student as needed.
+ */
+
+package programmingtheiot.gda.app;
+
+import programmingtheiot.common.ConfigConst;
+import programmingtheiot.common.ConfigUtil;
+import programmingtheiot.data.SensorData;
+
+/**
+ * Rule that sends an actuator command once a device's readings have met a
+ * {@link RuleExpression} for at least its duration, and turns the actuator
+ * off again once a reading no longer meets it. See {@link BaseDwellRule}.
+ * <p>
+ * The expression is compiled when the rule is created.
+ * <p>
+ * A rule is declared in its own configuration section, e.g.:
+ * <pre>
+ * [Rule.DaytimeHumidity]
+ * sensorType   = 1010
+ * condition    = value &gt; 50 &amp;&amp; duration(300s) &amp;&amp; hour() in 8..20
+ * actuatorType = 1001
+ * actuatorName = HvacActuator
+ * command      = 1
+ * nominal      = 45.0
+ * </pre>
+ *
+ */
+public class ExpressionRule extends BaseDwellRule
+{
+	// private var's
+
+	private final RuleExpression expression;
+	private final int            command;
+
+
+	// constructors
+
+	/**
+	 * Constructor. Reads the rule from the given configuration section.
+	 *
+	 * @param sectionName The configuration section, which is also the rule's name.
+	 * @throws IllegalArgumentException If the condition is invalid.
+	 */
+	public ExpressionRule(String sectionName)
+	{
+		this(
+			sectionName,
+			ConfigUtil.getInstance().getInteger(sectionName, ConfigConst.RULE_SENSOR_TYPE_KEY),
+			RuleExpression.compile(ConfigUtil.getInstance().getProperty(sectionName, ConfigConst.RULE_CONDITION_KEY)),
+			ConfigUtil.getInstance().getInteger(sectionName, ConfigConst.RULE_ACTUATOR_TYPE_KEY),
+			ConfigUtil.getInstance().getProperty(sectionName, ConfigConst.RULE_ACTUATOR_NAME_KEY),
+			ConfigUtil.getInstance().getInteger(sectionName, ConfigConst.RULE_COMMAND_KEY, ConfigConst.ON_COMMAND),
+			ConfigUtil.getInstance().getFloat(sectionName, ConfigConst.RULE_NOMINAL_KEY, 0.0f));
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param name The rule's name.
+	 * @param sensorType The sensor type ID the rule applies to.
+	 * @param expression The compiled condition.
+	 * @param actuatorType The type ID of the actuator commands.
+	 * @param actuatorName The name of the actuator commands.
+	 * @param command The command sent once the condition is met.
+	 * @param nominal The value sent with each command.
+	 */
+	public ExpressionRule(
+		String name, int sensorType, RuleExpression expression,
+		int actuatorType, String actuatorName, int command, float nominal)
+	{
+		super(
+			name, sensorType, actuatorType, actuatorName, nominal,
+			(expression != null ? expression.getDurationMillis() : 0L));
+
+		if (expression == null) {
+			throw new IllegalArgumentException("Invalid rule '" + name + "': no condition");
+		}
+
+		this.expression = expression;
+		this.command    = command;
+	}
+
+
+	// public methods
+
+	public RuleExpression getExpression()
+	{
+		return this.expression;
+	}
+
+
+	// protected methods
+
+	@Override
+	protected int getCommand(SensorData data)
+	{
+		return (this.expression.test(data) ? this.command : NO_COMMAND);
+	}
+
+	@Override
+	protected String getConditionDescription()
+	{
+		return "condition = " + this.expression + ", command = " + this.command;
+	}
+
+}
@@ -0,0 +1,74 @@
+/**
+ * This class is part of the Programming the Internet of Things project.
+ *
+ * It is provided as a simple shell to guide the student and assist with
+ * implementation for the Programming the Internet of Things exercises,
+ * and designed to be modified by the student as needed.
+ */
+
+package programmingtheiot.gda.app;
+
+import programmingtheiot.common.IActuatorDataListener;
+import programmingtheiot.data.ActuatorData;
+import programmingtheiot.data.SensorData;
+
+/**
+ * Interface contract for the rules evaluated by the {@link RuleEngine}.
+ *
+ */
+public interface IAnalysisRule
+{
+	/**
+	 * Returns the rule's name, used for logging.
+	 *
+	 * @return String
+	 */
+	public String getName();
+
+	/**
+	 * Returns the sensor type ID this rule applies to. The rule engine only
+	 * passes readings of this type to the rule.
+	 *
+	 * @return int
+	 */
+	public int getSensorType();
+
+	/**
+	 * Returns the sensor type ID's this rule applies to, for rules that
+	 * join the readings of several types (e.g. {@link PatternRule}). The
+	 * rule engine passes readings of each of these types to the rule.
+	 *
+	 * @return int[] By default, only {@link #getSensorType()}.
+	 */
+	public default int[] getSensorTypes()
+	{
+		return new int[] { getSensorType() };
+	}
+
+	/**
+	 * Evaluates the reading, and returns the actuator command to send, if
+	 * any. This is called for every reading of the rule's sensor types,
+	 * possibly from several threads at once, so it must be thread-safe, and
+	 * must not allocate unless it returns a command.
+	 *
+	 * @param data The reading.
+	 * @return ActuatorData The command to send, or null if there's none.
+	 */
+	public ActuatorData evaluate(SensorData data);
+
+	/**
+	 * Sets the timer for rules that act on deadlines (e.g. how long a
+	 * reading has been out of range), so they don't have to wait for the
+	 * device's next reading. The commands issued on a deadline are passed
+	 * to the listener, on the timer's thread. Rules without deadlines
+	 * ignore it.
+	 *
+	 * @param timer The timer, or null to act on readings only.
+	 * @param listener The listener for the commands issued on a deadline.
+	 */
+	public default void setTimingWheel(TimingWheel timer, IActuatorDataListener listener)
+	{
+		// no deadlines
+	}
+
+}
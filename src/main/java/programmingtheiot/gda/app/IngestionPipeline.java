@@ -0,0 +1,226 @@
+/**
+ * This class is part of the Programming the Internet of Things project.
+ *
+ * It is provided as a simple shell to guide the student and assist with
+ * implementation for the Programming the Internet of Things exercises,
+ * and designed to be modified by the student as needed.
+ */
+
+package programmingtheiot.gda.app;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import programmingtheiot.common.ConfigConst;
+import programmingtheiot.common.ConfigUtil;
+
+/**
+ * Staged, asynchronous processing of the messages received by
+ * {@link DeviceDataManager}. Each {@link Stage} has its own executor and
+ * bounded queue, so the MQTT and CoAP threads that deliver the messages
+ * only decode them and hand them off, and never wait on persistence or
+ * cloud I/O. Decoding stays on those threads, as the CoAP handlers need
+ * its result for their response code.
+ * <p>
+ * Each stage is configured in the {@link ConfigConst#GATEWAY_DEVICE}
+ * section, using the stage name as the property prefix:
+ * <pre>
+ * enableIngestionPipeline  = True
+ * upstreamStageThreads     = 2
+ * upstreamStageQueueSize   = 1024
+ * </pre>
+ * Every stage, analysis included, may have several threads (1 by
+ * default). The analysis state is kept per device, under its own lock, so
+ * that's safe, but with more than one thread a device's readings may be
+ * analyzed out of order.
+ * <p>
+ * If the pipeline is disabled, every stage runs its tasks on the calling
+ * thread (as before), but still collects its metrics.
+ * <p>
+ * The {@link Stage#CONTROL} stage is the priority lane: a command is only
+ * ever queued behind other commands, however busy the telemetry stages are.
+ *
+ */
+public final class IngestionPipeline
+{
+	// static
+
+	private static final Logger _Logger =
+		Logger.getLogger(IngestionPipeline.class.getName());
+
+	/**
+	 * The pipeline stages.
+	 *
+	 */
+	public enum Stage
+	{
+		/** Analysis of sensor data (e.g. humidity actuation). */
+		ANALYSIS("analysis"),
+
+		/**
+		 * Control plane messages (actuator and management commands), which
+		 * have their own threads and queue, so they never wait behind
+		 * telemetry.
+		 */
+		CONTROL("control"),
+
+		/** Writes to the persistence client. */
+		PERSISTENCE("persistence"),
+
+		/** Transmission to the cloud service. */
+		UPSTREAM("upstream");
+
+		private final String name;
+
+		private Stage(String name)
+		{
+			this.name = name;
+		}
+
+		public String getName()
+		{
+			return this.name;
+		}
+	}
+
+	public static final long DEFAULT_SHUTDOWN_TIMEOUT_MILLIS = 5000L;
+
+
+	// private var's
+
+	private final boolean enabled;
+	private final Map<Stage, IngestionStage> stages = new EnumMap<>(Stage.class);
+
+
+	// constructors
+
+	/**
+	 * Default. Configures the stages from the {@link ConfigConst#GATEWAY_DEVICE}
+	 * section of the configuration.
+	 *
+	 */
+	public IngestionPipeline()
+	{
+		super();
+
+		ConfigUtil configUtil = ConfigUtil.getInstance();
+
+		this.enabled =
+			configUtil.getBoolean(ConfigConst.GATEWAY_DEVICE, ConfigConst.ENABLE_INGESTION_PIPELINE_KEY);
+
+		for (Stage stage : Stage.values()) {
+			int threadCount =
+				configUtil.getInteger(
+					ConfigConst.GATEWAY_DEVICE, stage.getName() + ConfigConst.STAGE_THREADS_KEY_SUFFIX,
+					ConfigConst.DEFAULT_STAGE_THREADS);
+
+			int queueSize =
+				configUtil.getInteger(
+					ConfigConst.GATEWAY_DEVICE, stage.getName() + ConfigConst.STAGE_QUEUE_SIZE_KEY_SUFFIX,
+					ConfigConst.DEFAULT_STAGE_QUEUE_SIZE);
+
+			this.stages.put(stage, createStage(stage, threadCount, queueSize));
+		}
+
+		_Logger.info("Ingestion pipeline " + (this.enabled ? "enabled." : "disabled. Messages are processed in-line."));
+	}
+
+	/**
+	 * Constructor. Uses the same thread count and queue size for all stages.
+	 *
+	 * @param threadCount The number of threads per stage. If 0, the pipeline
+	 * is disabled, and tasks run on the submitting thread.
+	 * @param queueSize The queue size per stage.
+	 */
+	public IngestionPipeline(int threadCount, int queueSize)
+	{
+		super();
+
+		this.enabled = (threadCount > 0);
+
+		for (Stage stage : Stage.values()) {
+			this.stages.put(stage, createStage(stage, threadCount, queueSize));
+		}
+	}
+
+
+	// public methods
+
+	/**
+	 * Hands the task off to the given stage, without blocking.
+	 *
+	 * @param stage The stage to run the task.
+	 * @param task The task.
+	 * @return boolean True if the stage accepted the task; false if it was dropped.
+	 */
+	public boolean submit(Stage stage, Runnable task)
+	{
+		return this.stages.get(stage).submit(task);
+	}
+
+	public IngestionStage getStage(Stage stage)
+	{
+		return this.stages.get(stage);
+	}
+
+	public boolean isEnabled()
+	{
+		return this.enabled;
+	}
+
+	/**
+	 * Stops all stages, in pipeline order, waiting for the queued tasks to
+	 * finish.
+	 *
+	 * @return boolean True if all stages finished their queued tasks in time.
+	 */
+	public boolean shutdown()
+	{
+		boolean success = true;
+
+		for (IngestionStage stage : this.stages.values()) {
+			if (! stage.shutdown(DEFAULT_SHUTDOWN_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+				_Logger.warning("Ingestion stage '" + stage.getName() + "' didn't finish its queued tasks in time.");
+				success = false;
+			}
+		}
+
+		return success;
+	}
+
+	/**
+	 * Logs the metrics of each stage.
+	 *
+	 */
+	public void logMetrics()
+	{
+		StringBuilder buf = new StringBuilder("Ingestion pipeline metrics:");
+
+		for (IngestionStage stage : this.stages.values()) {
+			buf.append("\n\t").append(stage);
+		}
+
+		_Logger.info(buf.toString());
+	}
+
+
+	// private methods
+
+	private IngestionStage createStage(Stage stage, int threadCount, int queueSize)
+	{
+		if (! this.enabled) {
+			threadCount = 0;
+		} else if (threadCount < 1) {
+			threadCount = ConfigConst.DEFAULT_STAGE_THREADS;
+		}
+
+		if (queueSize < 1) {
+			queueSize = ConfigConst.DEFAULT_STAGE_QUEUE_SIZE;
+		}
+
+		return new IngestionStage(stage.getName(), threadCount, queueSize);
+	}
+
+}
@@ -0,0 +1,257 @@
+/**
+ * This class is part of the Programming the Internet of Things project.
+ *
+ * It is provided as a simple shell to guide the student and assist with
+ * implementation for the Programming the Internet of Things exercises,
+ * and designed to be modified by the student as needed.
+ */
+
+package programmingtheiot.gda.app;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A single stage of the {@link IngestionPipeline}: a fixed size thread pool
+ * fed by a bounded queue, plus the metrics for the tasks it ran.
+ * <p>
+ * Submitting never blocks. If the queue is full, the task is dropped and
+ * counted as rejected, so a slow stage (e.g. a stalled cloud connection)
+ * can't hold up the protocol threads that deliver the messages.
+ * <p>
+ * A stage with zero threads runs each task on the submitting thread, which
+ * is how the pipeline behaves when it's disabled.
+ *
+ */
+public final class IngestionStage
+{
+	// static
+
+	private static final Logger _Logger =
+		Logger.getLogger(IngestionStage.class.getName());
+
+
+	// private var's
+
+	private final String name;
+	private final int    threadCount;
+	private final int    queueCapacity;
+
+	private final ThreadPoolExecutor executor;
+
+	private final LongAdder       submittedCount    = new LongAdder();
+	private final LongAdder       completedCount    = new LongAdder();
+	private final LongAdder       rejectedCount     = new LongAdder();
+	private final LongAdder       failedCount       = new LongAdder();
+	private final LongAdder       totalLatencyNanos = new LongAdder();
+	private final LongAccumulator maxLatencyNanos   = new LongAccumulator(Math::max, 0L);
+	private final LongAccumulator peakQueueDepth    = new LongAccumulator(Math::max, 0L);
+
+
+	// constructors
+
+	/**
+	 * Constructor.
+	 *
+	 * @param name The stage name, used for its thread names and logging.
+	 * @param threadCount The number of worker threads. If 0, tasks run on
+	 * the submitting thread.
+	 * @param queueCapacity The max number of tasks waiting for a worker.
+	 */
+	public IngestionStage(String name, int threadCount, int queueCapacity)
+	{
+		super();
+
+		if (threadCount < 0 || queueCapacity < 1) {
+			throw new IllegalArgumentException(
+				"Invalid '" + name + "' stage: threads = " + threadCount + ", queue capacity = " + queueCapacity);
+		}
+
+		this.name          = name;
+		this.threadCount   = threadCount;
+		this.queueCapacity = queueCapacity;
+
+		if (threadCount > 0) {
+			AtomicInteger threadNum = new AtomicInteger();
+
+			this.executor =
+				new ThreadPoolExecutor(
+					threadCount, threadCount, 0L, TimeUnit.MILLISECONDS,
+					new ArrayBlockingQueue<>(queueCapacity),
+					(task) -> {
+						Thread thread = new Thread(task, "ingest-" + name + "-" + threadNum.incrementAndGet());
+						thread.setDaemon(true);
+						return thread;
+					},
+					new ThreadPoolExecutor.AbortPolicy());
+		} else {
+			this.executor = null;
+		}
+	}
+
+
+	// public methods
+
+	/**
+	 * Queues the task, without blocking.
+	 *
+	 * @param task The task to run.
+	 * @return boolean True if the task was accepted; false if the queue is
+	 * full or the stage has been shut down.
+	 */
+	public boolean submit(Runnable task)
+	{
+		long enqueueNanos = System.nanoTime();
+
+		this.submittedCount.increment();
+
+		if (this.executor == null) {
+			runTask(task, enqueueNanos);
+			return true;
+		}
+
+		try {
+			this.executor.execute(() -> runTask(task, enqueueNanos));
+			this.peakQueueDepth.accumulate(this.executor.getQueue().size());
+
+			return true;
+		} catch (RejectedExecutionException e) {
+			this.rejectedCount.increment();
+
+			_Logger.log(Level.FINE, "Ingestion stage ''{0}'' is full or stopped. Dropping task.", this.name);
+
+			return false;
+		}
+	}
+
+	/**
+	 * Stops accepting new tasks, and waits for the queued ones to finish.
+	 *
+	 * @param timeout The max time to wait.
+	 * @param unit The time unit of 'timeout'.
+	 * @return boolean True if all queued tasks finished in time.
+	 */
+	public boolean shutdown(long timeout, TimeUnit unit)
+	{
+		if (this.executor == null) {
+			return true;
+		}
+
+		this.executor.shutdown();
+
+		try {
+			return this.executor.awaitTermination(timeout, unit);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	public String getName()
+	{
+		return this.name;
+	}
+
+	public int getThreadCount()
+	{
+		return this.threadCount;
+	}
+
+	public int getQueueCapacity()
+	{
+		return this.queueCapacity;
+	}
+
+	/**
+	 * Returns the number of tasks currently waiting for a worker.
+	 *
+	 * @return int
+	 */
+	public int getQueueDepth()
+	{
+		return (this.executor != null ? this.executor.getQueue().size() : 0);
+	}
+
+	public long getPeakQueueDepth()
+	{
+		return this.peakQueueDepth.get();
+	}
+
+	public long getSubmittedCount()
+	{
+		return this.submittedCount.sum();
+	}
+
+	public long getCompletedCount()
+	{
+		return this.completedCount.sum();
+	}
+
+	public long getRejectedCount()
+	{
+		return this.rejectedCount.sum();
+	}
+
+	public long getFailedCount()
+	{
+		return this.failedCount.sum();
+	}
+
+	/**
+	 * Returns the average time from submission until a task finished
+	 * (queue wait plus run time), in microseconds.
+	 *
+	 * @return long
+	 */
+	public long getAverageLatencyMicros()
+	{
+		long count = this.completedCount.sum() + this.failedCount.sum();
+
+		return (count > 0 ? this.totalLatencyNanos.sum() / count / 1000L : 0L);
+	}
+
+	public long getMaxLatencyMicros()
+	{
+		return this.maxLatencyNanos.get() / 1000L;
+	}
+
+	@Override
+	public String toString()
+	{
+		return
+			"Stage '" + this.name + "': threads = " + this.threadCount +
+			" | queue = " + getQueueDepth() + "/" + this.queueCapacity + " (peak " + getPeakQueueDepth() + ")" +
+			" | submitted = " + getSubmittedCount() + " | completed = " + getCompletedCount() +
+			" | rejected = " + getRejectedCount() + " | failed = " + getFailedCount() +
+			" | latency avg = " + getAverageLatencyMicros() + " us, max = " + getMaxLatencyMicros() + " us";
+	}
+
+
+	// private methods
+
+	private void runTask(Runnable task, long enqueueNanos)
+	{
+		try {
+			task.run();
+
+			this.completedCount.increment();
+		} catch (Throwable t) {
+			this.failedCount.increment();
+
+			_Logger.log(Level.WARNING, "Ingestion stage '" + this.name + "' task failed.", t);
+		} finally {
+			long latencyNanos = System.nanoTime() - enqueueNanos;
+
+			this.totalLatencyNanos.add(latencyNanos);
+			this.maxLatencyNanos.accumulate(latencyNanos);
+		}
+	}
+
+}
@@ -0,0 +1,261 @@
+/**
+ * This class is part of the Programming the Internet of Things project.
+ *
+ * It is provided as a simple shell to guide the student and assist with
+ * implementation for the Programming the Internet of Things exercises,
+ * and designed to be modified by the student as needed.
+ */
+
+package programmingtheiot.gda.app;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import programmingtheiot.common.ConfigConst;
+import programmingtheiot.common.ConfigUtil;
+import programmingtheiot.data.SensorData;
+
+/**
+ * Rule that joins the readings of several sensor types at the same
+ * location, e.g. "humidity low and temperature high, at the same location,
+ * within 60 secs". Each term of the pattern is a {@link RuleExpression}
+ * tested against the readings of its sensor type; the pattern matches
+ * once every term's condition has held, as of its latest reading, within
+ * the last 'within' time (by the readings' timestamps). If the pattern is
+ * ordered, the terms must also have started to hold in the given order
+ * (i.e. it's a sequence).
+ * <p>
+ * The actuator command is sent once the pattern matches, and the actuator
+ * is turned off again once it no longer does. See {@link BaseDwellRule}.
+ * <p>
+ * The partial matches are kept per location ID, as two timestamps per
+ * term, in a bounded {@link DeviceStateMap}, so neither the readings nor
+ * the number of devices are buffered without bound. Evaluating a reading
+ * doesn't allocate, unless a command is sent.
+ * <p>
+ * A rule is declared in its own configuration section, with a condition
+ * per sensor type, separated by ';', e.g.:
+ * <pre>
+ * [Rule.DryAndHot]
+ * sensorTypes  = 1010, 1013
+ * conditions   = value &lt; 30; value &gt; 26
+ * within       = 60
+ * ordered      = False
+ * actuatorType = 1001
+ * actuatorName = HvacActuator
+ * command      = 1
+ * nominal      = 22.0
+ * </pre>
+ *
+ */
+public class PatternRule extends BaseDwellRule
+{
+	// static
+
+	private static final long NO_MATCH = Long.MIN_VALUE;
+
+	/**
+	 * The partial match at a single location: for each term, when its
+	 * condition started to hold, and when it last held. Guarded by its own
+	 * monitor.
+	 *
+	 */
+	private static final class MatchState
+	{
+		private final long[] firstMatchMillis;
+		private final long[] lastMatchMillis;
+
+		private MatchState(int termCount)
+		{
+			this.firstMatchMillis = new long[termCount];
+			this.lastMatchMillis  = new long[termCount];
+
+			Arrays.fill(this.firstMatchMillis, NO_MATCH);
+			Arrays.fill(this.lastMatchMillis, NO_MATCH);
+		}
+	}
+
+
+	// private var's
+
+	private final int[]            sensorTypes;
+	private final RuleExpression[] expressions;
+	private final long             withinMillis;
+	private final boolean          isOrdered;
+	private final int              command;
+
+	private final DeviceStateMap<MatchState> matchStates;
+
+
+	// constructors
+
+	/**
+	 * Constructor. Reads the rule from the given configuration section.
+	 *
+	 * @param sectionName The configuration section, which is also the rule's name.
+	 * @throws IllegalArgumentException If the pattern is invalid.
+	 */
+	public PatternRule(String sectionName)
+	{
+		this(
+			sectionName,
+			parseSensorTypes(ConfigUtil.getInstance().getProperty(sectionName, ConfigConst.RULE_SENSOR_TYPES_KEY)),
+			parseConditions(ConfigUtil.getInstance().getProperty(sectionName, ConfigConst.RULE_CONDITIONS_KEY)),
+			ConfigUtil.getInstance().getInteger(sectionName, ConfigConst.RULE_WITHIN_KEY),
+			TimeUnit.SECONDS,
+			ConfigUtil.getInstance().getBoolean(sectionName, ConfigConst.RULE_ORDERED_KEY),
+			ConfigUtil.getInstance().getInteger(sectionName, ConfigConst.RULE_ACTUATOR_TYPE_KEY),
+			ConfigUtil.getInstance().getProperty(sectionName, ConfigConst.RULE_ACTUATOR_NAME_KEY),
+			ConfigUtil.getInstance().getInteger(sectionName, ConfigConst.RULE_COMMAND_KEY, ConfigConst.ON_COMMAND),
+			ConfigUtil.getInstance().getFloat(sectionName, ConfigConst.RULE_NOMINAL_KEY, 0.0f));
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param name The rule's name.
+	 * @param sensorTypes The sensor type ID of each term.
+	 * @param expressions The compiled condition of each term. Durations
+	 * aren't supported; use 'within' instead.
+	 * @param within How recently each term's condition must have held.
+	 * @param unit The time unit of 'within'.
+	 * @param isOrdered If true, the terms must start to hold in the given order.
+	 * @param actuatorType The type ID of the actuator commands.
+	 * @param actuatorName The name of the actuator commands.
+	 * @param command The command sent once the pattern matches.
+	 * @param nominal The value sent with each command.
+	 */
+	public PatternRule(
+		String name, int[] sensorTypes, RuleExpression[] expressions, long within, TimeUnit unit, boolean isOrdered,
+		int actuatorType, String actuatorName, int command, float nominal)
+	{
+		super(
+			name, (sensorTypes != null && sensorTypes.length > 0 ? sensorTypes[0] : -1),
+			actuatorType, actuatorName, nominal, 0L);
+
+		if (sensorTypes == null || expressions == null || sensorTypes.length < 2
+			|| sensorTypes.length != expressions.length || within <= 0) {
+			throw new IllegalArgumentException(
+				"Invalid rule '" + name + "': a pattern needs a condition for each of at least 2 sensor types, and a time window");
+		}
+
+		for (RuleExpression expression : expressions) {
+			if (expression == null || expression.getDurationMillis() > 0) {
+				throw new IllegalArgumentException(
+					"Invalid rule '" + name + "': pattern conditions can't have a duration: " + expression);
+			}
+		}
+
+		this.sensorTypes  = sensorTypes.clone();
+		this.expressions  = expressions.clone();
+		this.withinMillis = unit.toMillis(within);
+		this.isOrdered    = isOrdered;
+		this.command      = command;
+		this.matchStates  = DeviceStateMap.createFromConfig(() -> new MatchState(this.sensorTypes.length));
+	}
+
+
+	// public methods
+
+	@Override
+	public int[] getSensorTypes()
+	{
+		return this.sensorTypes.clone();
+	}
+
+	public long getWithin(TimeUnit unit)
+	{
+		return unit.convert(this.withinMillis, TimeUnit.MILLISECONDS);
+	}
+
+	public boolean isOrdered()
+	{
+		return this.isOrdered;
+	}
+
+
+	// protected methods
+
+	@Override
+	protected int getCommand(SensorData data)
+	{
+		int typeID = data.getTypeID();
+		long timeStampMillis = data.getTimeStampMillis();
+
+		// keyed by location: all terms share the state of the pattern's first type
+		MatchState state = this.matchStates.get(data.getLocationID(), this.sensorTypes[0]);
+
+		synchronized (state) {
+			for (int i = 0; i < this.sensorTypes.length; i++) {
+				if (this.sensorTypes[i] != typeID) {
+					continue;
+				}
+
+				if (this.expressions[i].test(data)) {
+					if (state.lastMatchMillis[i] == NO_MATCH) {
+						state.firstMatchMillis[i] = timeStampMillis;
+					}
+
+					state.lastMatchMillis[i] = Math.max(state.lastMatchMillis[i], timeStampMillis);
+				} else {
+					state.firstMatchMillis[i] = NO_MATCH;
+					state.lastMatchMillis[i]  = NO_MATCH;
+				}
+			}
+
+			for (int i = 0; i < this.sensorTypes.length; i++) {
+				long lastMatchMillis = state.lastMatchMillis[i];
+
+				if (lastMatchMillis == NO_MATCH || timeStampMillis - lastMatchMillis > this.withinMillis) {
+					return NO_COMMAND;
+				}
+
+				if (this.isOrdered && i > 0 && state.firstMatchMillis[i] < state.firstMatchMillis[i - 1]) {
+					return NO_COMMAND;
+				}
+			}
+		}
+
+		return this.command;
+	}
+
+	@Override
+	protected String getConditionDescription()
+	{
+		StringBuilder buf = new StringBuilder("pattern = ");
+
+		for (int i = 0; i < this.sensorTypes.length; i++) {
+			if (i > 0) {
+				buf.append(this.isOrdered ? " then " : " and ");
+			}
+
+			buf.append(this.sensorTypes[i]).append(": ").append(this.expressions[i]);
+		}
+
+		buf.append(", within = ").append(getWithin(TimeUnit.SECONDS)).append(" secs, command = ").append(this.command);
+
+		return buf.toString();
+	}
+
+
+	// private methods
+
+	private static int[] parseSensorTypes(String sensorTypes)
+	{
+		if (sensorTypes == null) {
+			return null;
+		}
+
+		return Arrays.stream(sensorTypes.split(",")).map(String::trim).mapToInt(Integer::parseInt).toArray();
+	}
+
+	private static RuleExpression[] parseConditions(String conditions)
+	{
+		if (conditions == null) {
+			return null;
+		}
+
+		return Arrays.stream(conditions.split(";")).map(RuleExpression::compile).toArray(RuleExpression[]::new);
+	}
+
+}
@@ -0,0 +1,259 @@
+/**
+ * This class is part of the Programming the Internet of Things project.
+ *
+ * It is provided as a simple shell to guide the student and assist with
+ * implementation for the Programming the Internet of Things exercises,
+ * and designed to be modified by the student as needed.
+ */
+
+package programmingtheiot.gda.app;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+import programmingtheiot.common.ConfigConst;
+import programmingtheiot.common.ConfigUtil;
+import programmingtheiot.common.IActuatorDataListener;
+import programmingtheiot.data.ActuatorData;
+import programmingtheiot.data.SensorData;
+
+/**
+ * Evaluates the configured {@link IAnalysisRule}'s for each sensor reading.
+ * <p>
+ * The rules are compiled into a dispatch table indexed by sensor type ID,
+ * so each reading costs one array lookup, plus the evaluation of the rules
+ * for its type only. Readings of other types don't allocate or lock.
+ * <p>
+ * The rules are declared via the {@link ConfigConst#ANALYSIS_RULES_KEY}
+ * property in the {@link ConfigConst#GATEWAY_DEVICE} section, as a comma
+ * separated list of configuration sections, each of which declares a
+ * {@link PatternRule} (if it has {@link ConfigConst#RULE_SENSOR_TYPES_KEY}),
+ * an {@link ExpressionRule} (if it has a {@link ConfigConst#RULE_CONDITION_KEY})
+ * or a {@link ThresholdRule}. The rules are compiled once, when the engine
+ * is created. If {@link ConfigConst#HANDLE_HUMIDITY_CHANGE_KEY}
+ * is set, the humidity rule is added too, using the humidity properties of
+ * the {@link ConfigConst#GATEWAY_DEVICE} section.
+ *
+ */
+public final class RuleEngine
+{
+	// static
+
+	private static final Logger _Logger =
+		Logger.getLogger(RuleEngine.class.getName());
+
+	// bounds the dispatch table's size
+	public static final int MAX_SENSOR_TYPE = 0xFFFF;
+
+	public static final String HUMIDITY_RULE_NAME = "HumidityRule";
+
+	private static final IAnalysisRule[] NO_RULES = new IAnalysisRule[0];
+
+
+	// private var's
+
+	private final IAnalysisRule[][] rulesByType;
+	private final int ruleCount;
+
+	private final LongAdder commandCount = new LongAdder();
+
+
+	// constructors
+
+	/**
+	 * Default. Creates the rules declared in the configuration.
+	 *
+	 */
+	public RuleEngine()
+	{
+		this(createRulesFromConfig());
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param rules The rules. Rules for the same sensor type are evaluated
+	 * in the given order.
+	 */
+	public RuleEngine(IAnalysisRule ... rules)
+	{
+		super();
+
+		int maxSensorType = -1;
+
+		for (IAnalysisRule rule : rules) {
+			for (int sensorType : rule.getSensorTypes()) {
+				if (sensorType < 0 || sensorType > MAX_SENSOR_TYPE) {
+					throw new IllegalArgumentException(
+						"Invalid sensor type for rule '" + rule.getName() + "': " + sensorType);
+				}
+
+				maxSensorType = Math.max(maxSensorType, sensorType);
+			}
+		}
+
+		this.rulesByType = new IAnalysisRule[maxSensorType + 1][];
+		this.ruleCount   = rules.length;
+
+		for (IAnalysisRule rule : rules) {
+			// a rule that joins several types is dispatched for each of them
+			for (int sensorType : rule.getSensorTypes()) {
+				IAnalysisRule[] typeRules = this.rulesByType[sensorType];
+
+				if (typeRules == null) {
+					typeRules = NO_RULES;
+				}
+
+				typeRules = Arrays.copyOf(typeRules, typeRules.length + 1);
+				typeRules[typeRules.length - 1] = rule;
+
+				this.rulesByType[sensorType] = typeRules;
+			}
+
+			_Logger.info("Added analysis rule: " + rule);
+		}
+	}
+
+
+	// public methods
+
+	/**
+	 * Evaluates the rules for the reading's type, and passes each resulting
+	 * command to the listener.
+	 *
+	 * @param data The reading.
+	 * @param listener The listener for the resulting commands.
+	 * @return int The number of commands sent to the listener.
+	 */
+	public int evaluate(SensorData data, IActuatorDataListener listener)
+	{
+		IAnalysisRule[] rules = getRules(data.getTypeID());
+
+		int count = 0;
+
+		for (int i = 0; i < rules.length; i++) {
+			ActuatorData command = rules[i].evaluate(data);
+
+			if (command != null) {
+				count++;
+				listener.onActuatorDataUpdate(command);
+			}
+		}
+
+		if (count > 0) {
+			this.commandCount.add(count);
+		}
+
+		return count;
+	}
+
+	/**
+	 * Sets the timer for the rules' deadlines. See
+	 * {@link IAnalysisRule#setTimingWheel(TimingWheel, IActuatorDataListener)}.
+	 *
+	 * @param timer The timer, or null to act on readings only.
+	 * @param listener The listener for the commands issued on a deadline.
+	 */
+	public void setTimingWheel(TimingWheel timer, IActuatorDataListener listener)
+	{
+		// counted, like the commands returned from evaluate()
+		IActuatorDataListener countingListener = (data) -> {
+			this.commandCount.increment();
+			return listener.onActuatorDataUpdate(data);
+		};
+
+		for (IAnalysisRule[] rules : this.rulesByType) {
+			if (rules != null) {
+				for (IAnalysisRule rule : rules) {
+					rule.setTimingWheel(timer, (listener != null ? countingListener : null));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns true if there are rules for the given sensor type.
+	 *
+	 * @param sensorType The sensor type ID.
+	 * @return boolean
+	 */
+	public boolean hasRules(int sensorType)
+	{
+		return getRules(sensorType).length > 0;
+	}
+
+	public int getRuleCount()
+	{
+		return this.ruleCount;
+	}
+
+	public long getCommandCount()
+	{
+		return this.commandCount.sum();
+	}
+
+
+	// private methods
+
+	private IAnalysisRule[] getRules(int sensorType)
+	{
+		if (sensorType >= 0 && sensorType < this.rulesByType.length) {
+			IAnalysisRule[] rules = this.rulesByType[sensorType];
+
+			if (rules != null) {
+				return rules;
+			}
+		}
+
+		return NO_RULES;
+	}
+
+	private static IAnalysisRule[] createRulesFromConfig()
+	{
+		ConfigUtil configUtil = ConfigUtil.getInstance();
+		List<IAnalysisRule> rules = new ArrayList<>();
+
+		if (configUtil.getBoolean(ConfigConst.GATEWAY_DEVICE, ConfigConst.HANDLE_HUMIDITY_CHANGE_KEY)) {
+			rules.add(
+				new ThresholdRule(
+					HUMIDITY_RULE_NAME,
+					ConfigConst.HUMIDITY_SENSOR_TYPE,
+					ConfigConst.HUMIDIFIER_ACTUATOR_TYPE,
+					ConfigConst.HUMIDIFIER_ACTUATOR_NAME,
+					configUtil.getFloat(ConfigConst.GATEWAY_DEVICE, ConfigConst.TRIGGER_HUMIDIFIER_FLOOR_KEY),
+					configUtil.getFloat(ConfigConst.GATEWAY_DEVICE, ConfigConst.TRIGGER_HUMIDIFIER_CEILING_KEY),
+					configUtil.getFloat(ConfigConst.GATEWAY_DEVICE, ConfigConst.NOMINAL_HUMIDITY_SETTING_KEY),
+					configUtil.getInteger(ConfigConst.GATEWAY_DEVICE, ConfigConst.HUMIDITY_MAX_TIME_PAST_THRESHOLD_KEY),
+					ConfigConst.ON_COMMAND,
+					ConfigConst.OFF_COMMAND));
+		}
+
+		String ruleSections = configUtil.getProperty(ConfigConst.GATEWAY_DEVICE, ConfigConst.ANALYSIS_RULES_KEY);
+
+		if (ruleSections != null) {
+			for (String sectionName : ruleSections.split(",")) {
+				sectionName = sectionName.trim();
+
+				if (sectionName.isEmpty()) {
+					continue;
+				}
+
+				if (configUtil.hasProperty(sectionName, ConfigConst.RULE_SENSOR_TYPES_KEY)) {
+					rules.add(new PatternRule(sectionName));
+				} else if (configUtil.hasProperty(sectionName, ConfigConst.RULE_CONDITION_KEY)) {
+					rules.add(new ExpressionRule(sectionName));
+				} else if (configUtil.hasSection(sectionName)) {
+					rules.add(new ThresholdRule(sectionName));
+				} else {
+					_Logger.warning("Analysis rule section not found. Ignoring: " + sectionName);
+				}
+			}
+		}
+
+		return rules.toArray(NO_RULES);
+	}
+
+}
@@ -0,0 +1,660 @@
+/**
+ * This class is part of the Programming the Internet of Things project.
+ *
+ * It is provided as a simple shell to guide the student and assist with
+ * implementation for the Programming the Internet of Things exercises,
+ * and designed to be modified by the student as needed.
+ */
+
+package programmingtheiot.gda.app;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.concurrent.TimeUnit;
+
+import programmingtheiot.data.SensorData;
+
+/**
+ * A rule condition, e.g. {@code value > 50 && duration(300s) && hour() in 8..20}.
+ * <p>
+ * The expression is parsed once, and compiled into a tree of closures, so
+ * testing a reading doesn't parse, look up or allocate anything. Constant
+ * sub-expressions are folded, and the common {@code value <op> constant}
+ * comparisons get their own closures, so the JIT can inline them.
+ * <p>
+ * The syntax is:
+ * <pre>
+ * condition  := and ( '||' and )*
+ * and        := unary ( '&amp;&amp;' unary )*
+ * unary      := '!' unary | '(' condition ')' | 'true' | 'false' | comparison
+ * comparison := operand ( '&gt;' | '&gt;=' | '&lt;' | '&lt;=' | '==' | '!=' ) operand
+ *             | operand 'in' number '..' number
+ * operand    := number | 'value' | 'hour()' | 'minute()'
+ * </pre>
+ * {@code value} is the reading's value. {@code hour()} and {@code minute()}
+ * are taken from the reading's timestamp, in the local time zone. Ranges
+ * include both ends.
+ * <p>
+ * {@code duration(<n>[ms|s|m|h])} (seconds by default) can only be used as
+ * a top level {@code &&} term: it doesn't test the reading, but requires
+ * the rest of the condition to have held for the given time. It's up to the
+ * rule to track that, per device; see {@link #getDurationMillis()}.
+ *
+ */
+public final class RuleExpression
+{
+	// static
+
+	/**
+	 * A compiled condition.
+	 *
+	 */
+	@FunctionalInterface
+	public interface Condition
+	{
+		public boolean test(SensorData data);
+	}
+
+	private static final Condition ALWAYS = (data) -> true;
+	private static final Condition NEVER  = (data) -> false;
+
+	private static final long MINUTE_MILLIS = TimeUnit.MINUTES.toMillis(1);
+	private static final long HOUR_MILLIS   = TimeUnit.HOURS.toMillis(1);
+	private static final long DAY_MILLIS    = TimeUnit.DAYS.toMillis(1);
+
+	private static final ZoneRules ZONE_RULES = ZoneId.systemDefault().getRules();
+
+	// the local time zone offset, cached until the next transition
+	private static volatile ZoneOffsetPeriod zoneOffsetPeriod = ZoneOffsetPeriod.of(System.currentTimeMillis());
+
+	/**
+	 * Reads an operand's value from a reading.
+	 *
+	 */
+	@FunctionalInterface
+	private interface Accessor
+	{
+		public float get(SensorData data);
+	}
+
+	private enum OperandType
+	{
+		CONSTANT, VALUE, HOUR, MINUTE
+	}
+
+	private enum Operator
+	{
+		GT(">"), GE(">="), LT("<"), LE("<="), EQ("=="), NE("!=");
+
+		private final String symbol;
+
+		Operator(String symbol)
+		{
+			this.symbol = symbol;
+		}
+
+		boolean test(float left, float right)
+		{
+			switch (this) {
+				case GT: return left >  right;
+				case GE: return left >= right;
+				case LT: return left <  right;
+				case LE: return left <= right;
+				case EQ: return left == right;
+				default: return left != right;
+			}
+		}
+
+		// the operator to use when the operands are swapped
+		Operator mirror()
+		{
+			switch (this) {
+				case GT: return LT;
+				case GE: return LE;
+				case LT: return GT;
+				case LE: return GE;
+				default: return this;
+			}
+		}
+	}
+
+	private static final class Operand
+	{
+		private final OperandType type;
+		private final float       constant;
+
+		Operand(OperandType type, float constant)
+		{
+			this.type     = type;
+			this.constant = constant;
+		}
+	}
+
+	/**
+	 * The local time zone offset for the period between two transitions
+	 * (e.g. daylight saving time changes).
+	 *
+	 */
+	private static final class ZoneOffsetPeriod
+	{
+		private final long startMillis;
+		private final long endMillis;
+		private final long offsetMillis;
+
+		ZoneOffsetPeriod(long startMillis, long endMillis, long offsetMillis)
+		{
+			this.startMillis  = startMillis;
+			this.endMillis    = endMillis;
+			this.offsetMillis = offsetMillis;
+		}
+
+		static ZoneOffsetPeriod of(long millis)
+		{
+			Instant instant = Instant.ofEpochMilli(millis);
+
+			ZoneOffsetTransition previous = ZONE_RULES.previousTransition(instant);
+			ZoneOffsetTransition next     = ZONE_RULES.nextTransition(instant);
+
+			long startMillis = (previous != null ? previous.toEpochSecond() * 1000L : Long.MIN_VALUE);
+			long endMillis   = (next != null ? next.toEpochSecond() * 1000L : Long.MAX_VALUE);
+
+			return new ZoneOffsetPeriod(
+				Math.min(startMillis, millis), endMillis,
+				ZONE_RULES.getOffset(instant).getTotalSeconds() * 1000L);
+		}
+	}
+
+
+	// private var's
+
+	private final String    source;
+	private final Condition condition;
+	private final long      durationMillis;
+
+
+	// constructors
+
+	private RuleExpression(String source, Condition condition, long durationMillis)
+	{
+		super();
+
+		this.source         = source;
+		this.condition      = condition;
+		this.durationMillis = durationMillis;
+	}
+
+
+	// public methods
+
+	/**
+	 * Parses and compiles the given expression.
+	 *
+	 * @param source The expression.
+	 * @return RuleExpression
+	 * @throws IllegalArgumentException If the expression is invalid.
+	 */
+	public static RuleExpression compile(String source)
+	{
+		if (source == null || source.trim().isEmpty()) {
+			throw new IllegalArgumentException("Rule expression is empty.");
+		}
+
+		Parser parser = new Parser(source);
+		Condition condition = parser.parse();
+
+		return new RuleExpression(source.trim(), condition, parser.durationMillis);
+	}
+
+	/**
+	 * Tests the reading against the condition, not including the duration.
+	 *
+	 * @param data The reading.
+	 * @return boolean
+	 */
+	public boolean test(SensorData data)
+	{
+		return this.condition.test(data);
+	}
+
+	/**
+	 * Returns the time the condition must have held for, or 0 if the
+	 * expression has no duration.
+	 *
+	 * @return long
+	 */
+	public long getDurationMillis()
+	{
+		return this.durationMillis;
+	}
+
+	public String getSource()
+	{
+		return this.source;
+	}
+
+	@Override
+	public String toString()
+	{
+		return this.source;
+	}
+
+
+	// private methods
+
+	private static int getHourOfDay(long timeStampMillis)
+	{
+		return (int) (Math.floorMod(toLocalMillis(timeStampMillis), DAY_MILLIS) / HOUR_MILLIS);
+	}
+
+	private static int getMinuteOfHour(long timeStampMillis)
+	{
+		return (int) (Math.floorMod(toLocalMillis(timeStampMillis), HOUR_MILLIS) / MINUTE_MILLIS);
+	}
+
+	private static long toLocalMillis(long millis)
+	{
+		ZoneOffsetPeriod period = zoneOffsetPeriod;
+
+		// only allocates when a reading crosses a time zone transition
+		if (millis < period.startMillis || millis >= period.endMillis) {
+			period = ZoneOffsetPeriod.of(millis);
+			zoneOffsetPeriod = period;
+		}
+
+		return millis + period.offsetMillis;
+	}
+
+	private static Condition and(Condition left, Condition right)
+	{
+		if (left == NEVER || right == NEVER) {
+			return NEVER;
+		}
+
+		if (left == ALWAYS) {
+			return right;
+		}
+
+		if (right == ALWAYS) {
+			return left;
+		}
+
+		return (data) -> left.test(data) && right.test(data);
+	}
+
+	private static Condition or(Condition left, Condition right)
+	{
+		if (left == ALWAYS || right == ALWAYS) {
+			return ALWAYS;
+		}
+
+		if (left == NEVER) {
+			return right;
+		}
+
+		if (right == NEVER) {
+			return left;
+		}
+
+		return (data) -> left.test(data) || right.test(data);
+	}
+
+	private static Condition not(Condition condition)
+	{
+		if (condition == ALWAYS) {
+			return NEVER;
+		}
+
+		if (condition == NEVER) {
+			return ALWAYS;
+		}
+
+		return (data) -> ! condition.test(data);
+	}
+
+	private static Condition compare(Operand left, Operator op, Operand right)
+	{
+		if (left.type == OperandType.CONSTANT && right.type == OperandType.CONSTANT) {
+			return (op.test(left.constant, right.constant) ? ALWAYS : NEVER);
+		}
+
+		// keep the constant (if any) on the right
+		if (left.type == OperandType.CONSTANT) {
+			return compare(right, op.mirror(), left);
+		}
+
+		if (right.type == OperandType.CONSTANT) {
+			float c = right.constant;
+
+			// the most common case, so it gets its own closures
+			if (left.type == OperandType.VALUE) {
+				switch (op) {
+					case GT: return (data) -> data.getValue() >  c;
+					case GE: return (data) -> data.getValue() >= c;
+					case LT: return (data) -> data.getValue() <  c;
+					case LE: return (data) -> data.getValue() <= c;
+					case EQ: return (data) -> data.getValue() == c;
+					default: return (data) -> data.getValue() != c;
+				}
+			}
+
+			Accessor accessor = toAccessor(left);
+
+			return (data) -> op.test(accessor.get(data), c);
+		}
+
+		Accessor leftAccessor  = toAccessor(left);
+		Accessor rightAccessor = toAccessor(right);
+
+		return (data) -> op.test(leftAccessor.get(data), rightAccessor.get(data));
+	}
+
+	private static Condition inRange(Operand operand, float min, float max)
+	{
+		if (operand.type == OperandType.CONSTANT) {
+			return (operand.constant >= min && operand.constant <= max ? ALWAYS : NEVER);
+		}
+
+		if (operand.type == OperandType.VALUE) {
+			return (data) -> {
+				float value = data.getValue();
+				return value >= min && value <= max;
+			};
+		}
+
+		Accessor accessor = toAccessor(operand);
+
+		return (data) -> {
+			float value = accessor.get(data);
+			return value >= min && value <= max;
+		};
+	}
+
+	private static Accessor toAccessor(Operand operand)
+	{
+		switch (operand.type) {
+			case VALUE:  return SensorData::getValue;
+			case HOUR:   return (data) -> getHourOfDay(data.getTimeStampMillis());
+			case MINUTE: return (data) -> getMinuteOfHour(data.getTimeStampMillis());
+			default:
+				float constant = operand.constant;
+				return (data) -> constant;
+		}
+	}
+
+
+	// helpers
+
+	/**
+	 * Recursive descent parser, which compiles while it parses.
+	 *
+	 */
+	private static final class Parser
+	{
+		private final String source;
+
+		private int  pos            = 0;
+		private long durationMillis = 0L;
+		private boolean hasDuration = false;
+
+		Parser(String source)
+		{
+			this.source = source;
+		}
+
+		Condition parse()
+		{
+			Condition condition = parseOr(true);
+
+			skipWhitespace();
+
+			if (this.pos < this.source.length()) {
+				throw error("Unexpected '" + this.source.charAt(this.pos) + "'");
+			}
+
+			return condition;
+		}
+
+		private Condition parseOr(boolean isTopLevel)
+		{
+			Condition condition = parseAnd(isTopLevel);
+
+			while (accept("||")) {
+				if (isTopLevel && this.hasDuration) {
+					throw error("duration() can't be combined with '||'");
+				}
+
+				condition = or(condition, parseAnd(false));
+			}
+
+			return condition;
+		}
+
+		private Condition parseAnd(boolean allowDuration)
+		{
+			Condition condition = ALWAYS;
+
+			do {
+				if (acceptWord("duration")) {
+					if (! allowDuration || this.hasDuration) {
+						throw error("duration() can only be used once, as a top level '&&' term");
+					}
+
+					parseDuration();
+				} else {
+					condition = and(condition, parseUnary());
+				}
+			} while (accept("&&"));
+
+			return condition;
+		}
+
+		private Condition parseUnary()
+		{
+			if (accept("!")) {
+				return not(parseUnary());
+			}
+
+			if (accept("(")) {
+				Condition condition = parseOr(false);
+				expect(")");
+
+				return condition;
+			}
+
+			if (acceptWord("true")) {
+				return ALWAYS;
+			}
+
+			if (acceptWord("false")) {
+				return NEVER;
+			}
+
+			return parseComparison();
+		}
+
+		private Condition parseComparison()
+		{
+			Operand left = parseOperand();
+
+			if (acceptWord("in")) {
+				float min = parseNumber();
+				expect("..");
+				float max = parseNumber();
+
+				if (min > max) {
+					throw error("Invalid range " + min + ".." + max);
+				}
+
+				return inRange(left, min, max);
+			}
+
+			Operator op = parseOperator();
+
+			return compare(left, op, parseOperand());
+		}
+
+		private Operator parseOperator()
+		{
+			// the two character operators first
+			for (Operator op : new Operator[] { Operator.GE, Operator.LE, Operator.EQ, Operator.NE, Operator.GT, Operator.LT }) {
+				if (accept(op.symbol)) {
+					return op;
+				}
+			}
+
+			throw error("Expected a comparison operator");
+		}
+
+		private Operand parseOperand()
+		{
+			skipWhitespace();
+
+			if (this.pos < this.source.length() && isNumberStart(this.source.charAt(this.pos))) {
+				return new Operand(OperandType.CONSTANT, parseNumber());
+			}
+
+			if (acceptWord("value")) {
+				return new Operand(OperandType.VALUE, 0.0f);
+			}
+
+			if (acceptWord("hour")) {
+				expect("(");
+				expect(")");
+
+				return new Operand(OperandType.HOUR, 0.0f);
+			}
+
+			if (acceptWord("minute")) {
+				expect("(");
+				expect(")");
+
+				return new Operand(OperandType.MINUTE, 0.0f);
+			}
+
+			throw error("Expected a number, 'value', 'hour()' or 'minute()'");
+		}
+
+		private void parseDuration()
+		{
+			expect("(");
+
+			skipWhitespace();
+
+			int start = this.pos;
+
+			while (this.pos < this.source.length() && Character.isDigit(this.source.charAt(this.pos))) {
+				this.pos++;
+			}
+
+			if (start == this.pos) {
+				throw error("Expected a whole number");
+			}
+
+			long amount = Long.parseLong(this.source.substring(start, this.pos));
+			TimeUnit unit = TimeUnit.SECONDS;
+
+			if (accept("ms")) {
+				unit = TimeUnit.MILLISECONDS;
+			} else if (accept("s")) {
+				unit = TimeUnit.SECONDS;
+			} else if (accept("m")) {
+				unit = TimeUnit.MINUTES;
+			} else if (accept("h")) {
+				unit = TimeUnit.HOURS;
+			}
+
+			expect(")");
+
+			this.durationMillis = unit.toMillis(amount);
+			this.hasDuration    = true;
+		}
+
+		private float parseNumber()
+		{
+			skipWhitespace();
+
+			int start = this.pos;
+
+			if (this.pos < this.source.length() && this.source.charAt(this.pos) == '-') {
+				this.pos++;
+			}
+
+			while (this.pos < this.source.length() && Character.isDigit(this.source.charAt(this.pos))) {
+				this.pos++;
+			}
+
+			// a fraction, but not the start of a range ('..')
+			if (this.pos + 1 < this.source.length()
+				&& this.source.charAt(this.pos) == '.' && Character.isDigit(this.source.charAt(this.pos + 1))) {
+				this.pos++;
+
+				while (this.pos < this.source.length() && Character.isDigit(this.source.charAt(this.pos))) {
+					this.pos++;
+				}
+			}
+
+			try {
+				return Float.parseFloat(this.source.substring(start, this.pos));
+			} catch (NumberFormatException e) {
+				this.pos = start;
+				throw error("Expected a number");
+			}
+		}
+
+		private boolean isNumberStart(char c)
+		{
+			return Character.isDigit(c) || c == '-';
+		}
+
+		private boolean accept(String token)
+		{
+			skipWhitespace();
+
+			if (this.source.startsWith(token, this.pos)) {
+				this.pos += token.length();
+				return true;
+			}
+
+			return false;
+		}
+
+		// a keyword, so 'value' doesn't match 'values'
+		private boolean acceptWord(String word)
+		{
+			skipWhitespace();
+
+			int end = this.pos + word.length();
+
+			if (this.source.startsWith(word, this.pos)
+				&& (end == this.source.length() || ! Character.isJavaIdentifierPart(this.source.charAt(end)))) {
+				this.pos = end;
+				return true;
+			}
+
+			return false;
+		}
+
+		private void expect(String token)
+		{
+			if (! accept(token)) {
+				throw error("Expected '" + token + "'");
+			}
+		}
+
+		private void skipWhitespace()
+		{
+			while (this.pos < this.source.length() && Character.isWhitespace(this.source.charAt(this.pos))) {
+				this.pos++;
+			}
+		}
+
+		private IllegalArgumentException error(String msg)
+		{
+			return new IllegalArgumentException(
+				"Invalid rule expression: " + msg + " at position " + this.pos + ": " + this.source);
+		}
+	}
+
+}
@@ -0,0 +1,667 @@
+/**
+ * This class is part of the Programming the Internet of Things project.
+ *
+ * It is provided as a simple shell to guide the student and assist with
+ * implementation for the Programming the Internet of Things exercises,
+ * and designed to be modified by the student as needed.
+ */
+
+package programmingtheiot.gda.app;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import programmingtheiot.common.ResourceNameEnum;
+import programmingtheiot.data.SensorData;
+import programmingtheiot.data.SensorDataBatch;
+
+/**
+ * Preallocated ring of mutable sensor event slots, used to hand sensor
+ * readings from the protocol threads to the consumers (e.g. persistence,
+ * analysis and the cloud uploader) without allocating, and without locks.
+ * <p>
+ * Each consumer runs on its own thread and tracks its own sequence. It
+ * processes all events published since its last pass in one go, so it
+ * batches naturally when it falls behind. The producer never overwrites a
+ * slot that a consumer hasn't processed yet: if the slowest consumer is a
+ * full ring behind, {@link #tryPublish(ResourceNameEnum, SensorData)} drops
+ * the event and returns false, rather than waiting.
+ * <p>
+ * The ring is meant for a single writer (e.g. the MQTT callback thread).
+ * Concurrent writers (e.g. CoAP handlers) are still safe, as sequences are
+ * claimed atomically and published in order, but they may briefly spin on
+ * each other.
+ *
+ */
+public final class SensorEventRingBuffer
+{
+	// static
+
+	private static final Logger _Logger =
+		Logger.getLogger(SensorEventRingBuffer.class.getName());
+
+	public static final int DEFAULT_CAPACITY       = 4096;
+	public static final int DEFAULT_MAX_BATCH_SIZE = 256;
+
+	public static final long DEFAULT_STOP_TIMEOUT_MILLIS = 5000L;
+
+	// idle consumers spin, then yield, then park
+	private static final int  SPIN_TRIES  = 100;
+	private static final int  YIELD_TRIES = 100;
+	private static final long PARK_NANOS  = 50000L;
+
+	private static final long INITIAL_SEQUENCE = -1L;
+
+	/**
+	 * A ring slot. Slots are reused, so a consumer must copy anything it
+	 * wants to keep (e.g. with {@link #toSensorData()}) before returning.
+	 *
+	 */
+	public static final class SensorEvent
+	{
+		private ResourceNameEnum resource;
+		private String  name;
+		private String  locationID;
+		private int     typeID;
+		private int     statusCode;
+		private float   value;
+		private long    timeStampMillis;
+		private boolean isSuppressed;
+
+		private SensorEvent()
+		{
+			super();
+		}
+
+		public ResourceNameEnum getResource()
+		{
+			return this.resource;
+		}
+
+		public String getName()
+		{
+			return this.name;
+		}
+
+		public String getLocationID()
+		{
+			return this.locationID;
+		}
+
+		public int getTypeID()
+		{
+			return this.typeID;
+		}
+
+		public int getStatusCode()
+		{
+			return this.statusCode;
+		}
+
+		public float getValue()
+		{
+			return this.value;
+		}
+
+		public long getTimeStampMillis()
+		{
+			return this.timeStampMillis;
+		}
+
+		/**
+		 * Returns true if the reading isn't to be sent upstream (see
+		 * {@link DeadbandFilter}). Such events are skipped by the
+		 * {@link SensorEventRingBuffer#batching(int, BatchHandler)} handlers.
+		 *
+		 * @return boolean
+		 */
+		public boolean isSuppressed()
+		{
+			return this.isSuppressed;
+		}
+
+		/**
+		 * Appends this event to the given batch.
+		 *
+		 * @param batch The batch.
+		 * @return int The index of the new reading.
+		 */
+		public int appendTo(SensorDataBatch batch)
+		{
+			return batch.append(
+				this.name, this.locationID, this.typeID, this.statusCode, this.value, this.timeStampMillis);
+		}
+
+		/**
+		 * Creates a new {@link SensorData} instance from this event.
+		 *
+		 * @return SensorData
+		 */
+		public SensorData toSensorData()
+		{
+			// the batch restores the original timestamp, which setValue() would refresh
+			SensorDataBatch batch = new SensorDataBatch(1);
+			appendTo(batch);
+
+			return batch.toSensorData(0);
+		}
+
+		private void set(ResourceNameEnum resource, SensorData data, boolean isSuppressed)
+		{
+			this.isSuppressed    = isSuppressed;
+			this.resource        = resource;
+			this.name            = data.getName();
+			this.locationID      = data.getLocationID();
+			this.typeID          = data.getTypeID();
+			this.statusCode      = data.getStatusCode();
+			this.value           = data.getValue();
+			this.timeStampMillis = data.getTimeStampMillis();
+		}
+	}
+
+	/**
+	 * Callback for each event, on the consumer's thread.
+	 *
+	 */
+	public interface EventHandler
+	{
+		/**
+		 * Called for each event, in sequence order.
+		 *
+		 * @param event The event. Only valid until this call returns.
+		 * @param sequence The event's sequence number.
+		 * @param endOfBatch True if this is the last event currently available.
+		 */
+		public void onEvent(SensorEvent event, long sequence, boolean endOfBatch);
+	}
+
+	/**
+	 * Callback for a batch of events, as collected by
+	 * {@link SensorEventRingBuffer#batching(int, BatchHandler)}.
+	 *
+	 */
+	public interface BatchHandler
+	{
+		/**
+		 * Called with the readings collected for a resource.
+		 *
+		 * @param resource The resource of all readings in the batch.
+		 * @param batch The readings. Cleared and reused after this call returns.
+		 */
+		public void onBatch(ResourceNameEnum resource, SensorDataBatch batch);
+	}
+
+	/**
+	 * Creates an {@link EventHandler} that collects consecutive events for
+	 * the same resource into a reused {@link SensorDataBatch}, and passes it
+	 * to the given handler at the end of each available run of events, or
+	 * once it reaches 'maxBatchSize'. Suppressed events are skipped.
+	 *
+	 * @param maxBatchSize The max number of readings per batch.
+	 * @param handler The batch handler.
+	 * @return EventHandler
+	 */
+	public static EventHandler batching(int maxBatchSize, BatchHandler handler)
+	{
+		return new BatchingEventHandler(maxBatchSize, handler);
+	}
+
+
+	// private var's
+
+	private final SensorEvent[] slots;
+	private final int           mask;
+
+	// the last claimed and last published sequences
+	private final AtomicLong claimSequence = new AtomicLong(INITIAL_SEQUENCE);
+	private final Sequence   cursor        = new Sequence(INITIAL_SEQUENCE);
+
+	private final List<Consumer> consumers = new ArrayList<>();
+
+	private final LongAdder droppedCount = new LongAdder();
+
+	private volatile Sequence[] gatingSequences = new Sequence[0];
+	private volatile boolean    isStarted       = false;
+	private volatile boolean    isStopped       = false;
+
+
+	// constructors
+
+	/**
+	 * Default. Uses {@link #DEFAULT_CAPACITY}.
+	 *
+	 */
+	public SensorEventRingBuffer()
+	{
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param capacity The number of slots, rounded up to a power of 2.
+	 */
+	public SensorEventRingBuffer(int capacity)
+	{
+		super();
+
+		if (capacity < 1 || capacity > (1 << 30)) {
+			throw new IllegalArgumentException("Invalid ring capacity: " + capacity);
+		}
+
+		int size = Integer.highestOneBit(capacity);
+
+		if (size < capacity) {
+			size <<= 1;
+		}
+
+		this.slots = new SensorEvent[size];
+		this.mask  = size - 1;
+
+		for (int i = 0; i < size; i++) {
+			this.slots[i] = new SensorEvent();
+		}
+	}
+
+
+	// public methods
+
+	/**
+	 * Adds a consumer, which will run on its own thread once the ring is
+	 * started.
+	 *
+	 * @param name The consumer name, used for its thread name and logging.
+	 * @param handler The event handler.
+	 * @throws IllegalStateException If the ring has already been started.
+	 */
+	public synchronized void addConsumer(String name, EventHandler handler)
+	{
+		if (this.isStarted) {
+			throw new IllegalStateException("Cannot add a consumer to a started ring: " + name);
+		}
+
+		this.consumers.add(new Consumer(name, handler, this.cursor.get()));
+	}
+
+	/**
+	 * Starts the consumer threads. Events published before are dropped.
+	 *
+	 * @throws IllegalStateException If the ring has been stopped, as it
+	 * can't be restarted.
+	 */
+	public synchronized void start()
+	{
+		if (this.isStopped) {
+			throw new IllegalStateException("Cannot restart a stopped ring.");
+		}
+
+		if (this.isStarted) {
+			return;
+		}
+
+		Sequence[] sequences = new Sequence[this.consumers.size()];
+
+		for (int i = 0; i < sequences.length; i++) {
+			sequences[i] = this.consumers.get(i).sequence;
+		}
+
+		this.gatingSequences = sequences;
+		this.isStarted = true;
+
+		for (Consumer consumer : this.consumers) {
+			consumer.thread.start();
+		}
+
+		_Logger.info("Sensor event ring started: " + this.slots.length + " slots, consumers = " + this.consumers.size());
+	}
+
+	/**
+	 * Waits for the consumers to process all published events, then stops
+	 * them.
+	 *
+	 * @param timeout The max time to wait.
+	 * @param unit The time unit of 'timeout'.
+	 * @return boolean True if all published events were processed in time.
+	 */
+	public synchronized boolean stop(long timeout, TimeUnit unit)
+	{
+		if (! this.isStarted) {
+			return true;
+		}
+
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		boolean drained = true;
+
+		while (getMinimumSequence(this.cursor.get()) < this.cursor.get()) {
+			if (System.nanoTime() > deadline) {
+				drained = false;
+				break;
+			}
+
+			LockSupport.parkNanos(PARK_NANOS);
+		}
+
+		for (Consumer consumer : this.consumers) {
+			consumer.isRunning = false;
+			LockSupport.unpark(consumer.thread);
+		}
+
+		for (Consumer consumer : this.consumers) {
+			try {
+				consumer.thread.join(TimeUnit.NANOSECONDS.toMillis(Math.max(deadline - System.nanoTime(), 0L)) + 1L);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				drained = false;
+			}
+		}
+
+		this.isStarted = false;
+		this.isStopped = true;
+
+		return drained;
+	}
+
+	/**
+	 * Copies the reading into the next slot and publishes it to the
+	 * consumers. Never blocks on the consumers, and doesn't allocate.
+	 *
+	 * @param resource The resource the reading was received for.
+	 * @param data The reading.
+	 * @return boolean True if published; false if the ring is full (the
+	 * slowest consumer is a full ring behind) or not running, in which case
+	 * the reading is dropped.
+	 */
+	public boolean tryPublish(ResourceNameEnum resource, SensorData data)
+	{
+		return tryPublish(resource, data, false);
+	}
+
+	/**
+	 * Behaves the same as {@link #tryPublish(ResourceNameEnum, SensorData)},
+	 * but marks the event as suppressed (i.e. not to be sent upstream).
+	 *
+	 * @param resource The resource the reading was received for.
+	 * @param data The reading.
+	 * @param isSuppressed True if the reading isn't to be sent upstream.
+	 * @return boolean True if published; false if dropped.
+	 */
+	public boolean tryPublish(ResourceNameEnum resource, SensorData data, boolean isSuppressed)
+	{
+		if (! this.isStarted) {
+			this.droppedCount.increment();
+			return false;
+		}
+
+		long current;
+		long next;
+
+		do {
+			current = this.claimSequence.get();
+			next    = current + 1;
+
+			if (next - this.slots.length > getMinimumSequence(current)) {
+				this.droppedCount.increment();
+				return false;
+			}
+		} while (! this.claimSequence.compareAndSet(current, next));
+
+		this.slots[(int) (next & this.mask)].set(resource, data, isSuppressed);
+
+		// earlier claims must be visible first, as consumers read up to the cursor
+		while (this.cursor.get() != current) {
+			Thread.onSpinWait();
+		}
+
+		this.cursor.set(next);
+
+		return true;
+	}
+
+	public int getCapacity()
+	{
+		return this.slots.length;
+	}
+
+	/**
+	 * Returns the sequence of the last published event.
+	 *
+	 * @return long
+	 */
+	public long getCursor()
+	{
+		return this.cursor.get();
+	}
+
+	/**
+	 * Returns the number of published events the slowest consumer hasn't
+	 * processed yet.
+	 *
+	 * @return long
+	 */
+	public long getBacklog()
+	{
+		long cursorSeq = this.cursor.get();
+
+		return cursorSeq - getMinimumSequence(cursorSeq);
+	}
+
+	public long getDroppedCount()
+	{
+		return this.droppedCount.sum();
+	}
+
+	@Override
+	public String toString()
+	{
+		StringBuilder buf = new StringBuilder("Sensor event ring: slots = ").append(this.slots.length)
+			.append(" | published = ").append(this.cursor.get() + 1)
+			.append(" | dropped = ").append(getDroppedCount())
+			.append(" | backlog = ").append(getBacklog());
+
+		for (Consumer consumer : this.consumers) {
+			buf.append("\n\t").append(consumer);
+		}
+
+		return buf.toString();
+	}
+
+
+	// private methods
+
+	private long getMinimumSequence(long defaultVal)
+	{
+		long minSeq = defaultVal;
+
+		for (Sequence sequence : this.gatingSequences) {
+			minSeq = Math.min(minSeq, sequence.get());
+		}
+
+		return minSeq;
+	}
+
+
+	// helpers
+
+	private static class LhsPadding
+	{
+		protected long p1, p2, p3, p4, p5, p6, p7;
+	}
+
+	private static class SequenceValue extends LhsPadding
+	{
+		protected volatile long value;
+	}
+
+	private static class RhsPadding extends SequenceValue
+	{
+		protected long p9, p10, p11, p12, p13, p14, p15;
+	}
+
+	/**
+	 * A sequence number, padded to its own cache line so the producer and
+	 * each consumer don't invalidate each other's.
+	 *
+	 */
+	private static final class Sequence extends RhsPadding
+	{
+		private static final VarHandle VALUE;
+
+		static {
+			try {
+				VALUE = MethodHandles.lookup().findVarHandle(SequenceValue.class, "value", long.class);
+			} catch (ReflectiveOperationException e) {
+				throw new ExceptionInInitializerError(e);
+			}
+		}
+
+		Sequence(long initialValue)
+		{
+			VALUE.setRelease(this, initialValue);
+		}
+
+		long get()
+		{
+			return (long) VALUE.getAcquire(this);
+		}
+
+		void set(long val)
+		{
+			VALUE.setRelease(this, val);
+		}
+	}
+
+	private final class Consumer implements Runnable
+	{
+		private final String       name;
+		private final EventHandler handler;
+		private final Sequence     sequence;
+		private final Thread       thread;
+
+		private volatile boolean isRunning = true;
+
+		// written by the consumer thread only
+		private volatile long batchCount  = 0L;
+		private volatile long failedCount = 0L;
+
+		Consumer(String name, EventHandler handler, long initialSequence)
+		{
+			this.name     = name;
+			this.handler  = handler;
+			this.sequence = new Sequence(initialSequence);
+			this.thread   = new Thread(this, "ring-" + name);
+
+			this.thread.setDaemon(true);
+		}
+
+		@Override
+		public void run()
+		{
+			long nextSeq = this.sequence.get() + 1;
+			int  idleCount = 0;
+
+			while (this.isRunning) {
+				long availableSeq = cursor.get();
+
+				if (availableSeq < nextSeq) {
+					idle(idleCount++);
+					continue;
+				}
+
+				idleCount = 0;
+
+				for (long seq = nextSeq; seq <= availableSeq; seq++) {
+					try {
+						this.handler.onEvent(slots[(int) (seq & mask)], seq, seq == availableSeq);
+					} catch (Throwable t) {
+						this.failedCount++;
+
+						_Logger.log(Level.WARNING, "Sensor event consumer '" + this.name + "' failed.", t);
+					}
+				}
+
+				this.batchCount++;
+				this.sequence.set(availableSeq);
+
+				nextSeq = availableSeq + 1;
+			}
+		}
+
+		@Override
+		public String toString()
+		{
+			long processed = this.sequence.get() + 1;
+
+			return
+				"Consumer '" + this.name + "': processed = " + processed +
+				" | batches = " + this.batchCount +
+				" | avg batch = " + (this.batchCount > 0 ? processed / this.batchCount : 0) +
+				" | failed = " + this.failedCount;
+		}
+
+		private void idle(int idleCount)
+		{
+			if (idleCount < SPIN_TRIES) {
+				Thread.onSpinWait();
+			} else if (idleCount < SPIN_TRIES + YIELD_TRIES) {
+				Thread.yield();
+			} else {
+				LockSupport.parkNanos(PARK_NANOS);
+			}
+		}
+	}
+
+	private static final class BatchingEventHandler implements EventHandler
+	{
+		private final int             maxBatchSize;
+		private final BatchHandler    handler;
+		private final SensorDataBatch batch;
+
+		private ResourceNameEnum batchResource = null;
+
+		BatchingEventHandler(int maxBatchSize, BatchHandler handler)
+		{
+			if (maxBatchSize < 1) {
+				throw new IllegalArgumentException("Invalid max batch size: " + maxBatchSize);
+			}
+
+			this.maxBatchSize = maxBatchSize;
+			this.handler      = handler;
+			this.batch        = new SensorDataBatch(maxBatchSize);
+		}
+
+		@Override
+		public void onEvent(SensorEvent event, long sequence, boolean endOfBatch)
+		{
+			if (! event.isSuppressed()) {
+				if (! this.batch.isEmpty() && event.getResource() != this.batchResource) {
+					flush();
+				}
+
+				this.batchResource = event.getResource();
+				event.appendTo(this.batch);
+			}
+
+			if (! this.batch.isEmpty() && (endOfBatch || this.batch.size() >= this.maxBatchSize)) {
+				flush();
+			}
+		}
+
+		private void flush()
+		{
+			try {
+				this.handler.onBatch(this.batchResource, this.batch);
+			} finally {
+				this.batch.clear();
+			}
+		}
+	}
+
+}
@@ -0,0 +1,185 @@
+/**
+ * This class is part of the Programming the Internet of Things project.
+ *
+ * It is provided as a simple shell to guide the student and assist with
+ * implementation for the Programming the Internet of Things exercises,
+ * and designed to be modified by the student as needed.
+ */
+
+package programmingtheiot.gda.app;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+import programmingtheiot.data.SensorData;
+
+/**
+ * Detects sensors that have stopped sending readings, per device (location
+ * ID and type ID), via a {@link TimingWheel}.
+ * <p>
+ * A reading only records when it arrived; it doesn't reschedule the
+ * device's timeout. When the timeout expires, it's rescheduled for the
+ * time left since the latest reading, so there's at most one timeout per
+ * device and timeout period, however often the device reports.
+ *
+ */
+public final class StaleSensorMonitor
+{
+	// static
+
+	private static final Logger _Logger =
+		Logger.getLogger(StaleSensorMonitor.class.getName());
+
+	/**
+	 * The state of a single device. Guarded by its own monitor.
+	 *
+	 */
+	private static final class State
+	{
+		private long     lastReadingNanos = 0L;
+		private String   locationID       = null;
+		private int      typeID           = 0;
+		private Runnable timeoutTask      = null;
+
+		private TimingWheel.Timeout timeout = null;
+
+		private volatile boolean isStale = false;
+	}
+
+
+	// private var's
+
+	private final TimingWheel timer;
+	private final long        timeoutNanos;
+
+	private final DeviceStateMap<State> states;
+
+	private final LongAdder staleCount = new LongAdder();
+
+
+	// constructors
+
+	/**
+	 * Constructor.
+	 *
+	 * @param timer The timer.
+	 * @param timeout The time without readings after which a sensor is stale.
+	 * @param unit The time unit of 'timeout'.
+	 */
+	public StaleSensorMonitor(TimingWheel timer, long timeout, TimeUnit unit)
+	{
+		super();
+
+		if (timer == null || timeout < 1) {
+			throw new IllegalArgumentException("Invalid stale sensor monitor: timeout = " + timeout);
+		}
+
+		this.timer        = timer;
+		this.timeoutNanos = unit.toNanos(timeout);
+		this.states       = DeviceStateMap.createFromConfig(State::new);
+	}
+
+
+	// public methods
+
+	/**
+	 * Records a reading from the device.
+	 *
+	 * @param data The reading.
+	 */
+	public void onReading(SensorData data)
+	{
+		State state = this.states.get(data.getLocationID(), data.getTypeID());
+
+		boolean wasStale = false;
+
+		synchronized (state) {
+			state.lastReadingNanos = System.nanoTime();
+
+			if (state.isStale) {
+				state.isStale = false;
+				wasStale = true;
+			}
+
+			if (state.timeout == null) {
+				if (state.timeoutTask == null) {
+					state.locationID  = data.getLocationID();
+					state.typeID      = data.getTypeID();
+					state.timeoutTask = () -> onTimeout(state);
+				}
+
+				state.timeout = this.timer.schedule(state.timeoutTask, this.timeoutNanos, TimeUnit.NANOSECONDS);
+			}
+		}
+
+		if (wasStale) {
+			_Logger.info("Sensor is reporting again: " + data.getLocationID() + " (type " + data.getTypeID() + ")");
+		}
+	}
+
+	/**
+	 * Returns true if the device's sensor has stopped sending readings.
+	 *
+	 * @param locationID The device's location ID.
+	 * @param typeID The sensor type ID.
+	 * @return boolean
+	 */
+	public boolean isStale(String locationID, int typeID)
+	{
+		State state = this.states.peek(locationID, typeID);
+
+		return (state != null && state.isStale);
+	}
+
+	/**
+	 * Returns the number of times a sensor was found stale.
+	 *
+	 * @return long
+	 */
+	public long getStaleCount()
+	{
+		return this.staleCount.sum();
+	}
+
+	public long getTimeout(TimeUnit unit)
+	{
+		return unit.convert(this.timeoutNanos, TimeUnit.NANOSECONDS);
+	}
+
+	@Override
+	public String toString()
+	{
+		return
+			"Stale sensors: timeout = " + getTimeout(TimeUnit.SECONDS) + " secs" +
+			" | devices = " + this.states.size() + " | stale count = " + getStaleCount();
+	}
+
+
+	// private methods
+
+	private void onTimeout(State state)
+	{
+		long idleNanos;
+
+		synchronized (state) {
+			idleNanos = System.nanoTime() - state.lastReadingNanos;
+
+			if (idleNanos < this.timeoutNanos) {
+				// there's been a reading since: wait for the rest of the timeout
+				state.timeout = this.timer.schedule(state.timeoutTask, this.timeoutNanos - idleNanos, TimeUnit.NANOSECONDS);
+				return;
+			}
+
+			state.timeout = null;
+			state.isStale = true;
+		}
+
+		this.staleCount.increment();
+
+		_Logger.warning(
+			"No readings from sensor " + state.locationID + " (type " + state.typeID + ") for " +
+			TimeUnit.NANOSECONDS.toMillis(idleNanos) + " ms.");
+	}
+
+}
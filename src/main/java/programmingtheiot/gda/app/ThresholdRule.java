@@ -0,0 +1,160 @@
+/**
+ * This class is part of the Programming the Internet of Things project.
+ *
+ * It is provided as a simple shell to guide the student and assist with
+ * implementation for the Programming the Internet of Things exercises,
+ * and designed to be modified by the student as needed.
+ */
+
+package programmingtheiot.gda.app;
+
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import programmingtheiot.common.ConfigConst;
+import programmingtheiot.common.ConfigUtil;
+import programmingtheiot.data.SensorData;
+
+/**
+ * Rule that sends an actuator command once a device's readings have stayed
+ * below the floor (or above the ceiling) for at least the max time past
+ * threshold, and turns the actuator off again once a reading is back
+ * within range. See {@link BaseDwellRule}.
+ * <p>
+ * The commands carry the nominal setting as their value.
+ * <p>
+ * A rule is declared in its own configuration section, e.g.:
+ * <pre>
+ * [Rule.Temperature]
+ * sensorType           = 1013
+ * actuatorType         = 1001
+ * actuatorName         = HvacActuator
+ * floor                = 18.0
+ * ceiling              = 24.0
+ * nominal              = 21.0
+ * maxTimePastThreshold = 30
+ * lowCommand           = 1
+ * highCommand          = 1
+ * </pre>
+ *
+ */
+public class ThresholdRule extends BaseDwellRule
+{
+	// static
+
+	private static final Logger _Logger =
+		Logger.getLogger(ThresholdRule.class.getName());
+
+	public static final int MIN_TIME_PAST_THRESHOLD_SECS = 10;
+	public static final int MAX_TIME_PAST_THRESHOLD_SECS = 7200;
+
+
+	// private var's
+
+	private final float floor;
+	private final float ceiling;
+	private final int   lowCommand;
+	private final int   highCommand;
+
+
+	// constructors
+
+	/**
+	 * Constructor. Reads the rule from the given configuration section.
+	 *
+	 * @param sectionName The configuration section, which is also the rule's name.
+	 */
+	public ThresholdRule(String sectionName)
+	{
+		this(
+			sectionName,
+			ConfigUtil.getInstance().getInteger(sectionName, ConfigConst.RULE_SENSOR_TYPE_KEY),
+			ConfigUtil.getInstance().getInteger(sectionName, ConfigConst.RULE_ACTUATOR_TYPE_KEY),
+			ConfigUtil.getInstance().getProperty(sectionName, ConfigConst.RULE_ACTUATOR_NAME_KEY),
+			ConfigUtil.getInstance().getFloat(sectionName, ConfigConst.RULE_FLOOR_KEY),
+			ConfigUtil.getInstance().getFloat(sectionName, ConfigConst.RULE_CEILING_KEY),
+			ConfigUtil.getInstance().getFloat(sectionName, ConfigConst.RULE_NOMINAL_KEY),
+			ConfigUtil.getInstance().getInteger(
+				sectionName, ConfigConst.RULE_MAX_TIME_PAST_THRESHOLD_KEY, MIN_TIME_PAST_THRESHOLD_SECS),
+			ConfigUtil.getInstance().getInteger(sectionName, ConfigConst.RULE_LOW_COMMAND_KEY, ConfigConst.ON_COMMAND),
+			ConfigUtil.getInstance().getInteger(sectionName, ConfigConst.RULE_HIGH_COMMAND_KEY, ConfigConst.OFF_COMMAND));
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param name The rule's name.
+	 * @param sensorType The sensor type ID the rule applies to.
+	 * @param actuatorType The type ID of the actuator commands.
+	 * @param actuatorName The name of the actuator commands.
+	 * @param floor Readings below this value are too low.
+	 * @param ceiling Readings above this value are too high.
+	 * @param nominal The value sent with each command.
+	 * @param maxTimePastThresholdSecs How long readings must stay out of
+	 * range before a command is sent. Clamped to 10 - 7200 secs.
+	 * @param lowCommand The command sent when readings are too low.
+	 * @param highCommand The command sent when readings are too high.
+	 */
+	public ThresholdRule(
+		String name, int sensorType, int actuatorType, String actuatorName,
+		float floor, float ceiling, float nominal, int maxTimePastThresholdSecs,
+		int lowCommand, int highCommand)
+	{
+		super(
+			name, sensorType, actuatorType, actuatorName, nominal,
+			TimeUnit.SECONDS.toMillis(checkTimePastThreshold(name, maxTimePastThresholdSecs)));
+
+		if (floor > ceiling) {
+			throw new IllegalArgumentException(
+				"Invalid rule '" + name + "': floor " + floor + " is above ceiling " + ceiling);
+		}
+
+		this.floor       = floor;
+		this.ceiling     = ceiling;
+		this.lowCommand  = lowCommand;
+		this.highCommand = highCommand;
+	}
+
+
+	// protected methods
+
+	@Override
+	protected int getCommand(SensorData data)
+	{
+		float value = data.getValue();
+
+		if (value < this.floor) {
+			return this.lowCommand;
+		}
+
+		if (value > this.ceiling) {
+			return this.highCommand;
+		}
+
+		return NO_COMMAND;
+	}
+
+	@Override
+	protected String getConditionDescription()
+	{
+		return "range = [" + this.floor + ", " + this.ceiling + "] for " + getDwellTime(TimeUnit.SECONDS) + " secs";
+	}
+
+
+	// private methods
+
+	private static int checkTimePastThreshold(String name, int maxTimePastThresholdSecs)
+	{
+		if (maxTimePastThresholdSecs < MIN_TIME_PAST_THRESHOLD_SECS
+			|| maxTimePastThresholdSecs > MAX_TIME_PAST_THRESHOLD_SECS) {
+			_Logger.warning(
+				"Rule '" + name + "' max time past threshold out of range. Using " +
+				MIN_TIME_PAST_THRESHOLD_SECS + " secs instead of: " + maxTimePastThresholdSecs);
+
+			return MIN_TIME_PAST_THRESHOLD_SECS;
+		}
+
+		return maxTimePastThresholdSecs;
+	}
+
+}
@@ -0,0 +1,509 @@
+/**
+ * This class is part of the Programming the Internet of Things project.
+ *
+ * It is provided as a simple shell to guide the student and assist with
+ * implementation for the Programming the Internet of Things exercises,
+ * and designed to be modified by the student as needed.
+ */
+
+package programmingtheiot.gda.app;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Hierarchical timing wheel, for the deadlines of many devices (e.g. how
+ * long a reading has been out of range, stale sensors, or actuator
+ * responses), on a single thread.
+ * <p>
+ * Scheduling and cancelling a timeout are O(1): a timeout is queued, and
+ * the wheel's thread links it into the slot of the tick it expires in.
+ * Each level has {@code wheelSize} slots; the first level's slots are one
+ * tick each, and each level's slots span the whole of the level below, so
+ * far away deadlines move down a level at a time, as their slot comes up.
+ * <p>
+ * Timeouts expire on the tick after their deadline at the latest, whether
+ * or not anything else happens. Their tasks run on the wheel's thread, so
+ * they should be short, or hand off their work.
+ *
+ */
+public final class TimingWheel
+{
+	// static
+
+	private static final Logger _Logger =
+		Logger.getLogger(TimingWheel.class.getName());
+
+	public static final long DEFAULT_TICK_MILLIS = 100L;
+	public static final int  DEFAULT_WHEEL_SIZE  = 512;
+
+	// with the defaults, the top level spans ~200 years
+	public static final int LEVEL_COUNT = 4;
+
+	private static final int PENDING   = 0;
+	private static final int CANCELLED = 1;
+	private static final int EXPIRED   = 2;
+
+	private static final VarHandle STATE;
+
+	static {
+		try {
+			STATE = MethodHandles.lookup().findVarHandle(Timeout.class, "state", int.class);
+		} catch (ReflectiveOperationException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	/**
+	 * The handle for a scheduled task.
+	 *
+	 */
+	public static final class Timeout
+	{
+		private final TimingWheel wheel;
+		private final Runnable    task;
+		private final long        deadlineNanos;
+
+		private volatile int state = PENDING;
+
+		// only used by the wheel's thread
+		private long    deadlineTick;
+		private Slot    slot;
+		private Timeout prev;
+		private Timeout next;
+
+		private Timeout(TimingWheel wheel, Runnable task, long deadlineNanos)
+		{
+			this.wheel         = wheel;
+			this.task          = task;
+			this.deadlineNanos = deadlineNanos;
+		}
+
+		/**
+		 * Cancels the timeout, unless it has already expired.
+		 *
+		 * @return boolean True if the timeout was cancelled by this call.
+		 */
+		public boolean cancel()
+		{
+			if (STATE.compareAndSet(this, PENDING, CANCELLED)) {
+				this.wheel.cancelledTimeouts.add(this);
+				this.wheel.pendingCount.decrement();
+				this.wheel.cancelledCount.increment();
+
+				return true;
+			}
+
+			return false;
+		}
+
+		public boolean isCancelled()
+		{
+			return this.state == CANCELLED;
+		}
+
+		public boolean isExpired()
+		{
+			return this.state == EXPIRED;
+		}
+
+		/**
+		 * Returns the time left until the deadline (negative once it has
+		 * passed).
+		 *
+		 * @param unit The time unit of the result.
+		 * @return long
+		 */
+		public long getDelay(TimeUnit unit)
+		{
+			return unit.convert(this.deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+		}
+	}
+
+	/**
+	 * A doubly linked list of timeouts, so any of them can be unlinked in
+	 * O(1).
+	 *
+	 */
+	private static final class Slot
+	{
+		private Timeout head;
+		private Timeout tail;
+
+		void add(Timeout timeout)
+		{
+			timeout.slot = this;
+			timeout.prev = this.tail;
+			timeout.next = null;
+
+			if (this.tail == null) {
+				this.head = timeout;
+			} else {
+				this.tail.next = timeout;
+			}
+
+			this.tail = timeout;
+		}
+
+		void remove(Timeout timeout)
+		{
+			if (timeout.prev == null) {
+				this.head = timeout.next;
+			} else {
+				timeout.prev.next = timeout.next;
+			}
+
+			if (timeout.next == null) {
+				this.tail = timeout.prev;
+			} else {
+				timeout.next.prev = timeout.prev;
+			}
+
+			timeout.slot = null;
+			timeout.prev = null;
+			timeout.next = null;
+		}
+
+		// unlinks and returns all timeouts
+		Timeout clear()
+		{
+			Timeout head = this.head;
+
+			this.head = null;
+			this.tail = null;
+
+			return head;
+		}
+	}
+
+
+	// private var's
+
+	private final String name;
+	private final long   tickNanos;
+	private final int    wheelSize;
+	private final int    wheelBits;
+	private final int    wheelMask;
+
+	// only used by the wheel's thread
+	private final Slot[][] levels;
+	private long currentTick = 0L;
+
+	private final Queue<Timeout> scheduledTimeouts = new ConcurrentLinkedQueue<>();
+	private final Queue<Timeout> cancelledTimeouts = new ConcurrentLinkedQueue<>();
+
+	private final LongAdder pendingCount   = new LongAdder();
+	private final LongAdder expiredCount   = new LongAdder();
+	private final LongAdder cancelledCount = new LongAdder();
+
+	private volatile boolean isRunning  = false;
+	private volatile boolean isStopped  = false;
+	private volatile long    startNanos = 0L;
+
+	private Thread thread = null;
+
+
+	// constructors
+
+	/**
+	 * Constructor. Uses {@link #DEFAULT_TICK_MILLIS} and
+	 * {@link #DEFAULT_WHEEL_SIZE}.
+	 *
+	 * @param name The name, used for the thread and logging.
+	 */
+	public TimingWheel(String name)
+	{
+		this(name, DEFAULT_TICK_MILLIS, TimeUnit.MILLISECONDS, DEFAULT_WHEEL_SIZE);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param name The name, used for the thread and logging.
+	 * @param tickDuration The resolution of the timeouts.
+	 * @param unit The time unit of 'tickDuration'.
+	 * @param wheelSize The number of slots per level. Rounded up to a power of 2.
+	 */
+	public TimingWheel(String name, long tickDuration, TimeUnit unit, int wheelSize)
+	{
+		super();
+
+		// the levels' spans must fit in a long
+		if (tickDuration < 1 || wheelSize < 2 || wheelSize > (1 << 15)) {
+			throw new IllegalArgumentException(
+				"Invalid timing wheel: tick duration = " + tickDuration + ", wheel size = " + wheelSize);
+		}
+
+		this.name      = name;
+		this.tickNanos = unit.toNanos(tickDuration);
+		this.wheelSize = Integer.highestOneBit(wheelSize - 1) << 1;
+		this.wheelBits = Integer.numberOfTrailingZeros(this.wheelSize);
+		this.wheelMask = this.wheelSize - 1;
+		this.levels    = new Slot[LEVEL_COUNT][this.wheelSize];
+
+		for (Slot[] slots : this.levels) {
+			for (int i = 0; i < slots.length; i++) {
+				slots[i] = new Slot();
+			}
+		}
+	}
+
+
+	// public methods
+
+	/**
+	 * Schedules the task to run once the delay has passed.
+	 *
+	 * @param task The task, run on the wheel's thread.
+	 * @param delay The delay.
+	 * @param unit The time unit of 'delay'.
+	 * @return Timeout The handle, for cancelling the task. If the wheel is
+	 * already stopped, the timeout is cancelled.
+	 */
+	public Timeout schedule(Runnable task, long delay, TimeUnit unit)
+	{
+		Timeout timeout = new Timeout(this, task, System.nanoTime() + unit.toNanos(Math.max(0L, delay)));
+
+		if (this.isStopped) {
+			timeout.state = CANCELLED;
+
+			_Logger.fine("Timing wheel '" + this.name + "' is stopped. Ignoring timeout.");
+
+			return timeout;
+		}
+
+		this.pendingCount.increment();
+		this.scheduledTimeouts.add(timeout);
+
+		return timeout;
+	}
+
+	/**
+	 * Starts the wheel's thread. The timeouts scheduled before are kept.
+	 *
+	 */
+	public synchronized void start()
+	{
+		if (this.isStopped) {
+			throw new IllegalStateException("Timing wheel '" + this.name + "' can't be restarted.");
+		}
+
+		if (! this.isRunning) {
+			this.startNanos = System.nanoTime();
+			this.isRunning  = true;
+
+			this.thread = new Thread(this::run, "timer-" + this.name);
+			this.thread.setDaemon(true);
+			this.thread.start();
+
+			_Logger.info("Timing wheel '" + this.name + "' started: " + this);
+		}
+	}
+
+	/**
+	 * Stops the wheel's thread. The pending timeouts don't expire.
+	 *
+	 */
+	public synchronized void stop()
+	{
+		this.isStopped = true;
+
+		if (this.isRunning) {
+			this.isRunning = false;
+
+			LockSupport.unpark(this.thread);
+
+			try {
+				this.thread.join(TimeUnit.NANOSECONDS.toMillis(this.tickNanos) + 1000L);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+
+			_Logger.info("Timing wheel '" + this.name + "' stopped: " + this);
+		}
+	}
+
+	public boolean isRunning()
+	{
+		return this.isRunning;
+	}
+
+	public long getTickDuration(TimeUnit unit)
+	{
+		return unit.convert(this.tickNanos, TimeUnit.NANOSECONDS);
+	}
+
+	public int getWheelSize()
+	{
+		return this.wheelSize;
+	}
+
+	public long getPendingCount()
+	{
+		return this.pendingCount.sum();
+	}
+
+	public long getExpiredCount()
+	{
+		return this.expiredCount.sum();
+	}
+
+	public long getCancelledCount()
+	{
+		return this.cancelledCount.sum();
+	}
+
+	@Override
+	public String toString()
+	{
+		return
+			"Timing wheel '" + this.name + "': tick = " + TimeUnit.NANOSECONDS.toMillis(this.tickNanos) + " ms" +
+			" | wheel size = " + this.wheelSize +
+			" | pending = " + getPendingCount() + " | expired = " + getExpiredCount() +
+			" | cancelled = " + getCancelledCount();
+	}
+
+
+	// private methods
+
+	private void run()
+	{
+		while (this.isRunning) {
+			long tickNanos = this.startNanos + (this.currentTick + 1) * this.tickNanos;
+			long waitNanos;
+
+			while (this.isRunning && (waitNanos = tickNanos - System.nanoTime()) > 0) {
+				LockSupport.parkNanos(this, waitNanos);
+			}
+
+			if (! this.isRunning) {
+				break;
+			}
+
+			this.currentTick++;
+
+			removeCancelledTimeouts();
+			addScheduledTimeouts();
+			cascade();
+			expire();
+		}
+	}
+
+	private void addScheduledTimeouts()
+	{
+		Timeout timeout;
+
+		while ((timeout = this.scheduledTimeouts.poll()) != null) {
+			if (timeout.state == PENDING) {
+				// rounded up, so a timeout never expires early
+				long deadlineTick = Math.floorDiv(timeout.deadlineNanos - this.startNanos + this.tickNanos - 1, this.tickNanos);
+
+				timeout.deadlineTick = deadlineTick;
+
+				add(timeout);
+			}
+		}
+	}
+
+	private void removeCancelledTimeouts()
+	{
+		Timeout timeout;
+
+		while ((timeout = this.cancelledTimeouts.poll()) != null) {
+			// still in the scheduled queue, if it has no slot yet
+			if (timeout.slot != null) {
+				timeout.slot.remove(timeout);
+			}
+		}
+	}
+
+	/**
+	 * Adds the timeout to the lowest level whose span covers its deadline.
+	 *
+	 */
+	private void add(Timeout timeout)
+	{
+		if (timeout.deadlineTick < this.currentTick) {
+			timeout.deadlineTick = this.currentTick;
+		}
+
+		long delta = timeout.deadlineTick - this.currentTick;
+
+		for (int level = 0; level < LEVEL_COUNT; level++) {
+			int shift = this.wheelBits * level;
+
+			if (delta < (1L << (shift + this.wheelBits))) {
+				this.levels[level][(int) ((timeout.deadlineTick >>> shift) & this.wheelMask)].add(timeout);
+				return;
+			}
+		}
+
+		// beyond the top level: re-added from its last slot
+		int shift = this.wheelBits * (LEVEL_COUNT - 1);
+
+		this.levels[LEVEL_COUNT - 1][(int) (((this.currentTick >>> shift) + this.wheelMask) & this.wheelMask)].add(timeout);
+	}
+
+	/**
+	 * Moves the timeouts of each upper level slot that comes up on this
+	 * tick down (top level first, so they can move down several levels).
+	 *
+	 */
+	private void cascade()
+	{
+		for (int level = LEVEL_COUNT - 1; level > 0; level--) {
+			int shift = this.wheelBits * level;
+
+			if ((this.currentTick & ((1L << shift) - 1)) == 0) {
+				Timeout timeout = this.levels[level][(int) ((this.currentTick >>> shift) & this.wheelMask)].clear();
+
+				while (timeout != null) {
+					Timeout next = timeout.next;
+
+					timeout.slot = null;
+					timeout.prev = null;
+					timeout.next = null;
+
+					add(timeout);
+
+					timeout = next;
+				}
+			}
+		}
+	}
+
+	private void expire()
+	{
+		Slot slot = this.levels[0][(int) (this.currentTick & this.wheelMask)];
+		Timeout timeout = slot.head;
+
+		while (timeout != null) {
+			Timeout next = timeout.next;
+
+			if (timeout.deadlineTick <= this.currentTick) {
+				slot.remove(timeout);
+
+				if (STATE.compareAndSet(timeout, PENDING, EXPIRED)) {
+					this.pendingCount.decrement();
+					this.expiredCount.increment();
+
+					try {
+						timeout.task.run();
+					} catch (Throwable t) {
+						_Logger.log(Level.WARNING, "Timing wheel '" + this.name + "' task failed.", t);
+					}
+				}
+			}
+
+			timeout = next;
+		}
+	}
+
+}
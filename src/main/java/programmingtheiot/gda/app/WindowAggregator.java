@@ -0,0 +1,636 @@
+/**
+ * This class is part of the Programming the Internet of Things project.
+ *
+ * It is provided as a simple shell to guide the student and assist with
+ * implementation for the Programming the Internet of Things exercises,
+ * and designed to be modified by the student as needed.
+ */
+
+package programmingtheiot.gda.app;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+import programmingtheiot.common.ConfigConst;
+import programmingtheiot.common.ConfigUtil;
+import programmingtheiot.common.ResourceNameEnum;
+import programmingtheiot.data.SensorData;
+import programmingtheiot.data.SensorDataBatch;
+
+/**
+ * Streaming, event time window aggregation of readings, per device
+ * (location ID and type ID). For each window, the min, max, mean, count,
+ * last value and (population) standard deviation of the readings are
+ * emitted, as readings named after the device's readings with the
+ * aggregate's suffix (e.g. TempSensor.mean), timestamped at the window's
+ * end.
+ * <p>
+ * Windows are tumbling if their slide equals their size, or sliding if the
+ * slide is shorter (it must divide the size). Readings are accumulated in
+ * panes of one slide each, with primitive accumulators (Welford's method
+ * for the mean and variance), so adding a reading is O(1); a window's
+ * aggregates are merged from its panes when it closes.
+ * <p>
+ * A window closes once the device's watermark (the latest reading's
+ * timestamp, less the allowed lateness) passes its end, so readings
+ * arriving out of order within the allowed lateness are still counted.
+ * Later ones are dropped (and counted as late). Windows without readings
+ * aren't emitted. Since windows only close as readings arrive, the last
+ * windows of a device that stops reporting aren't emitted.
+ * <p>
+ * The windows are declared via the {@link ConfigConst#AGGREGATION_WINDOWS_KEY}
+ * property in the {@link ConfigConst#GATEWAY_DEVICE} section, as a comma
+ * separated list of configuration sections, each with a sensor type, a
+ * window size, a slide and an allowed lateness (in seconds).
+ *
+ */
+public final class WindowAggregator
+{
+	// static
+
+	private static final Logger _Logger =
+		Logger.getLogger(WindowAggregator.class.getName());
+
+	/**
+	 * The max number of panes (i.e. size / slide) per window, and of panes
+	 * within the allowed lateness.
+	 */
+	public static final int MAX_PANES_PER_WINDOW = 1024;
+
+	public static final String MIN_SUFFIX    = ".min";
+	public static final String MAX_SUFFIX    = ".max";
+	public static final String MEAN_SUFFIX   = ".mean";
+	public static final String COUNT_SUFFIX  = ".count";
+	public static final String LAST_SUFFIX   = ".last";
+	public static final String STDDEV_SUFFIX = ".stddev";
+
+	private static final String[] SUFFIXES =
+		{ MIN_SUFFIX, MAX_SUFFIX, MEAN_SUFFIX, COUNT_SUFFIX, LAST_SUFFIX, STDDEV_SUFFIX };
+
+	/**
+	 * The window for a single sensor type, and its metrics.
+	 *
+	 */
+	public static final class Window
+	{
+		private final int  sensorType;
+		private final long sizeMillis;
+		private final long slideMillis;
+		private final long allowedLatenessMillis;
+		private final int  panesPerWindow;
+		private final int  paneCount;
+
+		private final DeviceStateMap<State> states;
+
+		private final LongAdder readingCount = new LongAdder();
+		private final LongAdder lateCount    = new LongAdder();
+		private final LongAdder emittedCount = new LongAdder();
+
+		/**
+		 * Constructor.
+		 *
+		 * @param sensorType The sensor type ID.
+		 * @param size The window size.
+		 * @param slide The window slide; equal to 'size' for tumbling windows,
+		 * and must divide it.
+		 * @param allowedLateness How long a window is kept open after its end,
+		 * for readings arriving out of order.
+		 * @param unit The time unit of 'size', 'slide' and 'allowedLateness'.
+		 */
+		public Window(int sensorType, long size, long slide, long allowedLateness, TimeUnit unit)
+		{
+			long sizeMillis            = unit.toMillis(size);
+			long slideMillis           = unit.toMillis(slide);
+			long allowedLatenessMillis = unit.toMillis(allowedLateness);
+
+			if (sensorType < 0 || sensorType > RuleEngine.MAX_SENSOR_TYPE
+				|| slideMillis <= 0 || sizeMillis < slideMillis || sizeMillis % slideMillis != 0
+				|| sizeMillis / slideMillis > MAX_PANES_PER_WINDOW
+				|| allowedLatenessMillis < 0 || allowedLatenessMillis / slideMillis >= MAX_PANES_PER_WINDOW) {
+				throw new IllegalArgumentException(
+					"Invalid window for sensor type " + sensorType + ": size = " + size + ", slide = " + slide +
+					", allowed lateness = " + allowedLateness);
+			}
+
+			this.sensorType            = sensorType;
+			this.sizeMillis            = sizeMillis;
+			this.slideMillis           = slideMillis;
+			this.allowedLatenessMillis = allowedLatenessMillis;
+			this.panesPerWindow        = (int) (sizeMillis / slideMillis);
+
+			// the panes of the oldest open window, up to the latest reading's
+			long latenessPanes = (allowedLatenessMillis + slideMillis - 1) / slideMillis;
+
+			this.paneCount = (int) (this.panesPerWindow + latenessPanes + 1);
+			this.states    = DeviceStateMap.createFromConfig(() -> new State(this.paneCount));
+		}
+
+		public int getSensorType()
+		{
+			return this.sensorType;
+		}
+
+		public long getSize(TimeUnit unit)
+		{
+			return unit.convert(this.sizeMillis, TimeUnit.MILLISECONDS);
+		}
+
+		public long getSlide(TimeUnit unit)
+		{
+			return unit.convert(this.slideMillis, TimeUnit.MILLISECONDS);
+		}
+
+		public long getAllowedLateness(TimeUnit unit)
+		{
+			return unit.convert(this.allowedLatenessMillis, TimeUnit.MILLISECONDS);
+		}
+
+		public boolean isTumbling()
+		{
+			return this.panesPerWindow == 1;
+		}
+
+		public long getReadingCount()
+		{
+			return this.readingCount.sum();
+		}
+
+		/**
+		 * Returns the number of readings dropped, as they arrived after all
+		 * windows they belong to had closed.
+		 *
+		 * @return long
+		 */
+		public long getLateCount()
+		{
+			return this.lateCount.sum();
+		}
+
+		/**
+		 * Returns the number of windows emitted, for all devices.
+		 *
+		 * @return long
+		 */
+		public long getEmittedCount()
+		{
+			return this.emittedCount.sum();
+		}
+
+		@Override
+		public String toString()
+		{
+			return String.format(
+				"%s window for sensor type %d: size = %d secs | slide = %d secs | allowed lateness = %d secs | readings = %d | late = %d | emitted = %d",
+				(isTumbling() ? "Tumbling" : "Sliding"), this.sensorType,
+				getSize(TimeUnit.SECONDS), getSlide(TimeUnit.SECONDS), getAllowedLateness(TimeUnit.SECONDS),
+				getReadingCount(), getLateCount(), getEmittedCount());
+		}
+	}
+
+	/**
+	 * The panes of a single device's open windows, in a ring indexed by the
+	 * pane number (the pane's start / slide). Guarded by its own monitor.
+	 *
+	 */
+	private static final class State
+	{
+		private final long[]   paneNumbers;
+		private final int[]    counts;
+		private final double[] means;
+		private final double[] m2s;
+		private final float[]  mins;
+		private final float[]  maxs;
+		private final float[]  lastValues;
+		private final long[]   lastTimeStamps;
+		private final int[]    lastStatusCodes;
+
+		private int nonEmptyPaneCount = 0;
+
+		private boolean  hasReadings    = false;
+		private long     maxTimeStamp   = 0L;
+		private long     nextWindowEnd  = 0L;
+		private String   name           = null;
+		private String   locationID     = null;
+		private String[] aggregateNames = null;
+
+		private State(int paneCount)
+		{
+			this.paneNumbers     = new long[paneCount];
+			this.counts          = new int[paneCount];
+			this.means           = new double[paneCount];
+			this.m2s             = new double[paneCount];
+			this.mins            = new float[paneCount];
+			this.maxs            = new float[paneCount];
+			this.lastValues      = new float[paneCount];
+			this.lastTimeStamps  = new long[paneCount];
+			this.lastStatusCodes = new int[paneCount];
+		}
+	}
+
+	private static final Window[] NO_WINDOWS = new Window[0];
+
+
+	// private var's
+
+	private final Window[] windowsByType;
+	private final Window[] windows;
+
+	private final SensorEventRingBuffer.BatchHandler handler;
+
+
+	// constructors
+
+	/**
+	 * Constructor. Creates the windows declared in the configuration.
+	 *
+	 * @param handler The handler for the aggregates; see
+	 * {@link #add(ResourceNameEnum, String, String, int, int, float, long)}.
+	 */
+	public WindowAggregator(SensorEventRingBuffer.BatchHandler handler)
+	{
+		this(handler, createWindowsFromConfig());
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param handler The handler for the aggregates; see
+	 * {@link #add(ResourceNameEnum, String, String, int, int, float, long)}.
+	 * @param windows The windows, at most one per sensor type.
+	 */
+	public WindowAggregator(SensorEventRingBuffer.BatchHandler handler, Window ... windows)
+	{
+		super();
+
+		if (handler == null) {
+			throw new IllegalArgumentException("Handler must not be null.");
+		}
+
+		int maxSensorType = -1;
+
+		for (Window window : windows) {
+			maxSensorType = Math.max(maxSensorType, window.getSensorType());
+		}
+
+		this.handler       = handler;
+		this.windowsByType = new Window[maxSensorType + 1];
+		this.windows       = windows.clone();
+
+		for (Window window : windows) {
+			if (this.windowsByType[window.getSensorType()] != null) {
+				throw new IllegalArgumentException("Duplicate window for sensor type: " + window.getSensorType());
+			}
+
+			this.windowsByType[window.getSensorType()] = window;
+
+			_Logger.info("Added " + window);
+		}
+	}
+
+
+	// public methods
+
+	/**
+	 * Adds the reading to its device's windows.
+	 *
+	 * @param resource The resource the reading was received on.
+	 * @param data The reading.
+	 * @return boolean False if the reading was late; true otherwise.
+	 */
+	public boolean add(ResourceNameEnum resource, SensorData data)
+	{
+		return add(
+			resource, data.getName(), data.getLocationID(), data.getTypeID(), data.getStatusCode(),
+			data.getValue(), data.getTimeStampMillis());
+	}
+
+	/**
+	 * Adds the reading to its device's windows. Readings of sensor types
+	 * without a window are ignored.
+	 * <p>
+	 * If the reading closes any windows, their aggregates are passed to the
+	 * handler, on the calling thread, as a new batch (which the handler may
+	 * keep), along with the reading's resource.
+	 * Doesn't allocate otherwise, except for the first reading from a
+	 * device.
+	 *
+	 * @param resource The resource the reading was received on.
+	 * @param name The reading's name.
+	 * @param locationID The device's location ID.
+	 * @param typeID The sensor type ID.
+	 * @param statusCode The reading's status code.
+	 * @param value The reading's value.
+	 * @param timeStampMillis The reading's timestamp.
+	 * @return boolean False if the reading was late; true otherwise.
+	 */
+	public boolean add(
+		ResourceNameEnum resource, String name, String locationID, int typeID, int statusCode,
+		float value, long timeStampMillis)
+	{
+		Window window = getWindow(typeID);
+
+		if (window == null) {
+			return true;
+		}
+
+		window.readingCount.increment();
+
+		State state = window.states.get(locationID, typeID);
+		SensorDataBatch aggregates = null;
+		boolean isLate = false;
+
+		synchronized (state) {
+			if (! state.hasReadings) {
+				state.hasReadings   = true;
+				state.maxTimeStamp  = timeStampMillis;
+				state.nextWindowEnd = getFirstWindowEnd(window, timeStampMillis);
+				state.locationID    = locationID;
+			}
+
+			if (name != null && ! name.equals(state.name)) {
+				state.name           = name;
+				state.aggregateNames = null;
+			}
+
+			if (timeStampMillis > state.maxTimeStamp) {
+				state.maxTimeStamp = timeStampMillis;
+
+				aggregates = closeWindows(window, state);
+			}
+
+			long pane = Math.floorDiv(timeStampMillis, window.slideMillis);
+
+			// the last window the reading belongs to has already closed
+			isLate = ((pane + window.panesPerWindow) * window.slideMillis < state.nextWindowEnd);
+
+			if (isLate) {
+				window.lateCount.increment();
+			} else {
+				addToPane(state, pane, statusCode, value, timeStampMillis);
+			}
+		}
+
+		if (aggregates != null) {
+			this.handler.onBatch(resource, aggregates);
+		}
+
+		return ! isLate;
+	}
+
+	/**
+	 * Returns true if the aggregator has a window for the sensor type.
+	 *
+	 * @param sensorType The sensor type ID.
+	 * @return boolean
+	 */
+	public boolean hasWindow(int sensorType)
+	{
+		return getWindow(sensorType) != null;
+	}
+
+	/**
+	 * Returns the window for the sensor type, or null if there's none.
+	 *
+	 * @param sensorType The sensor type ID.
+	 * @return Window
+	 */
+	public Window getWindow(int sensorType)
+	{
+		return (sensorType >= 0 && sensorType < this.windowsByType.length ? this.windowsByType[sensorType] : null);
+	}
+
+	@Override
+	public String toString()
+	{
+		StringBuilder buf = new StringBuilder("Window aggregator: windows = " + this.windows.length);
+
+		for (Window window : this.windows) {
+			buf.append("\n\t").append(window);
+		}
+
+		return buf.toString();
+	}
+
+
+	// private methods
+
+	private static long getFirstWindowEnd(Window window, long timeStampMillis)
+	{
+		// the first window that hasn't passed the watermark yet
+		long watermark = timeStampMillis - window.allowedLatenessMillis;
+
+		return (Math.floorDiv(watermark, window.slideMillis) + 1) * window.slideMillis;
+	}
+
+	/**
+	 * Adds the reading to its pane, resetting the pane's slot if it was last
+	 * used by an earlier pane. Called with the state's monitor held.
+	 *
+	 */
+	private static void addToPane(State state, long pane, int statusCode, float value, long timeStampMillis)
+	{
+		int slot = (int) Math.floorMod(pane, (long) state.paneNumbers.length);
+
+		if (state.paneNumbers[slot] != pane || state.counts[slot] == 0) {
+			if (state.counts[slot] == 0) {
+				state.nonEmptyPaneCount++;
+			}
+
+			state.paneNumbers[slot] = pane;
+			state.counts[slot]      = 0;
+			state.means[slot]       = 0.0;
+			state.m2s[slot]         = 0.0;
+			state.mins[slot]        = value;
+			state.maxs[slot]        = value;
+			state.lastTimeStamps[slot] = Long.MIN_VALUE;
+		}
+
+		// Welford's method, so the variance doesn't lose precision
+		int count = ++state.counts[slot];
+		double delta = value - state.means[slot];
+
+		state.means[slot] += delta / count;
+		state.m2s[slot]   += delta * (value - state.means[slot]);
+
+		if (value < state.mins[slot]) {
+			state.mins[slot] = value;
+		}
+
+		if (value > state.maxs[slot]) {
+			state.maxs[slot] = value;
+		}
+
+		// the last by timestamp, not by arrival
+		if (timeStampMillis >= state.lastTimeStamps[slot]) {
+			state.lastValues[slot]      = value;
+			state.lastTimeStamps[slot]  = timeStampMillis;
+			state.lastStatusCodes[slot] = statusCode;
+		}
+	}
+
+	/**
+	 * Closes the windows that have ended before the watermark, and returns
+	 * the aggregates of those with readings, or null if there are none.
+	 * Called with the state's monitor held.
+	 *
+	 */
+	private SensorDataBatch closeWindows(Window window, State state)
+	{
+		long watermark = state.maxTimeStamp - window.allowedLatenessMillis;
+		SensorDataBatch aggregates = null;
+
+		while (state.nextWindowEnd <= watermark) {
+			if (state.nonEmptyPaneCount == 0) {
+				// nothing left to aggregate, so skip to the watermark
+				state.nextWindowEnd = getFirstWindowEnd(window, state.maxTimeStamp);
+				break;
+			}
+
+			long endPane   = state.nextWindowEnd / window.slideMillis;
+			long startPane = endPane - window.panesPerWindow;
+
+			if (aggregates == null) {
+				aggregates = new SensorDataBatch(SUFFIXES.length);
+			}
+
+			if (appendAggregates(window, state, startPane, endPane, aggregates)) {
+				window.emittedCount.increment();
+			}
+
+			// the window's first pane isn't part of any later window
+			clearPane(state, startPane);
+
+			state.nextWindowEnd += window.slideMillis;
+		}
+
+		return (aggregates != null && ! aggregates.isEmpty() ? aggregates : null);
+	}
+
+	/**
+	 * Merges the panes [startPane, endPane) and appends the aggregates, if
+	 * there were any readings. Called with the state's monitor held.
+	 *
+	 */
+	private boolean appendAggregates(
+		Window window, State state, long startPane, long endPane, SensorDataBatch aggregates)
+	{
+		int    count         = 0;
+		double mean          = 0.0;
+		double m2            = 0.0;
+		float  min           = Float.POSITIVE_INFINITY;
+		float  max           = Float.NEGATIVE_INFINITY;
+		float  lastValue     = 0.0f;
+		long   lastTimeStamp = Long.MIN_VALUE;
+		int    statusCode    = 0;
+
+		for (long pane = startPane; pane < endPane; pane++) {
+			int slot = (int) Math.floorMod(pane, (long) state.paneNumbers.length);
+			int paneCount = state.counts[slot];
+
+			if (paneCount == 0 || state.paneNumbers[slot] != pane) {
+				continue;
+			}
+
+			// Chan et al.'s parallel merge of the panes' means and variances
+			int    mergedCount = count + paneCount;
+			double delta       = state.means[slot] - mean;
+
+			mean += delta * paneCount / mergedCount;
+			m2   += state.m2s[slot] + delta * delta * ((double) count * paneCount / mergedCount);
+			count = mergedCount;
+
+			min = Math.min(min, state.mins[slot]);
+			max = Math.max(max, state.maxs[slot]);
+
+			if (state.lastTimeStamps[slot] >= lastTimeStamp) {
+				lastValue     = state.lastValues[slot];
+				lastTimeStamp = state.lastTimeStamps[slot];
+				statusCode    = state.lastStatusCodes[slot];
+			}
+		}
+
+		if (count == 0) {
+			return false;
+		}
+
+		String[] names = getAggregateNames(state);
+		long endMillis = endPane * window.slideMillis;
+		int typeID = window.sensorType;
+
+		aggregates.append(names[0], state.locationID, typeID, statusCode, min, endMillis);
+		aggregates.append(names[1], state.locationID, typeID, statusCode, max, endMillis);
+		aggregates.append(names[2], state.locationID, typeID, statusCode, (float) mean, endMillis);
+		aggregates.append(names[3], state.locationID, typeID, statusCode, count, endMillis);
+		aggregates.append(names[4], state.locationID, typeID, statusCode, lastValue, endMillis);
+		aggregates.append(names[5], state.locationID, typeID, statusCode, (float) Math.sqrt(m2 / count), endMillis);
+
+		return true;
+	}
+
+	private static void clearPane(State state, long pane)
+	{
+		int slot = (int) Math.floorMod(pane, (long) state.paneNumbers.length);
+
+		if (state.paneNumbers[slot] == pane && state.counts[slot] > 0) {
+			state.counts[slot] = 0;
+			state.nonEmptyPaneCount--;
+		}
+	}
+
+	private static String[] getAggregateNames(State state)
+	{
+		// created once per device (unless its readings' name changes)
+		if (state.aggregateNames == null) {
+			String name = (state.name != null ? state.name : ConfigConst.NOT_SET);
+			String[] names = new String[SUFFIXES.length];
+
+			for (int i = 0; i < SUFFIXES.length; i++) {
+				names[i] = name + SUFFIXES[i];
+			}
+
+			state.aggregateNames = names;
+		}
+
+		return state.aggregateNames;
+	}
+
+	private static Window[] createWindowsFromConfig()
+	{
+		ConfigUtil configUtil = ConfigUtil.getInstance();
+
+		List<Window> windows = new ArrayList<>();
+
+		String sections = configUtil.getProperty(ConfigConst.GATEWAY_DEVICE, ConfigConst.AGGREGATION_WINDOWS_KEY);
+
+		if (sections != null) {
+			for (String sectionName : sections.split(",")) {
+				sectionName = sectionName.trim();
+
+				if (sectionName.isEmpty()) {
+					continue;
+				}
+
+				if (! configUtil.hasSection(sectionName)) {
+					_Logger.warning("Aggregation window section not found. Ignoring: " + sectionName);
+					continue;
+				}
+
+				int size = configUtil.getInteger(sectionName, ConfigConst.WINDOW_SIZE_KEY);
+
+				windows.add(
+					new Window(
+						configUtil.getInteger(sectionName, ConfigConst.RULE_SENSOR_TYPE_KEY),
+						size,
+						configUtil.getInteger(sectionName, ConfigConst.WINDOW_SLIDE_KEY, size),
+						configUtil.getInteger(sectionName, ConfigConst.ALLOWED_LATENESS_KEY, 0),
+						TimeUnit.SECONDS));
+			}
+		}
+
+		return windows.toArray(NO_WINDOWS);
+	}
+
+}
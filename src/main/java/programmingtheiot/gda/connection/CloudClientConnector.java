@@ -8,6 +8,7 @@
 
 package programmingtheiot.gda.connection;
 
+import java.util.concurrent.atomic.LongAdder;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -24,8 +25,12 @@ import programmingtheiot.common.IDataMessageListener;
 import programmingtheiot.common.ResourceNameEnum;
 import programmingtheiot.data.ActuatorData;
 import programmingtheiot.data.DataUtil;
+import programmingtheiot.data.EncodedIotData;
 import programmingtheiot.data.SensorData;
+import programmingtheiot.data.SensorDataBatch;
+import programmingtheiot.data.SensorDataSeriesCodec;
 import programmingtheiot.data.SystemPerformanceData;
+import programmingtheiot.gda.system.MetricsRegistry;
 
 /**
  * Shell representation of class for student implementation.
@@ -44,6 +49,13 @@ public class CloudClientConnector implements ICloudClient, IConnectionListener
 	private IDataMessageListener dataMsgListener = null;
 
 	private int qosLevel = 1;
+	private boolean enableSeriesCompression = false;
+
+	// readings of a batch not published, as the in-flight window was full
+	private final LongAdder droppedReadingCount = new LongAdder();
+
+	// cloud publish latency and errors, per resource
+	private final MetricsRegistry metricsRegistry = MetricsRegistry.getInstance();
 
 	
 	// constructors
@@ -61,6 +73,12 @@ public class CloudClientConnector implements ICloudClient, IConnectionListener
 		this.topicPrefix = 
 			configUtil.getProperty(ConfigConst.CLOUD_GATEWAY_SERVICE, ConfigConst.BASE_TOPIC_KEY);
 
+		this.enableSeriesCompression =
+			configUtil.getBoolean(ConfigConst.CLOUD_GATEWAY_SERVICE, ConfigConst.ENABLE_SERIES_COMPRESSION_KEY);
+
+		this.metricsRegistry.registerGauge(
+			ResourceNameEnum.GDA_MGMT_STATUS_MSG_RESOURCE, "cloudDroppedReadings", this.droppedReadingCount::sum);
+
 		// depending on cloud service, topic name may or may not begin with a "/"
 		if(topicPrefix == null){
 			topicPrefix = "/";
@@ -121,19 +139,40 @@ public class CloudClientConnector implements ICloudClient, IConnectionListener
 		// return this.topicPrefix + deviceName + "/" + resourceTypeName;
 	}
 
-	private boolean publishMessageToCloud(ResourceNameEnum resource, String itemName, String payload){
+	private boolean publishMessageToCloud(ResourceNameEnum resource, String itemName, byte[] payload){
 		String topicName = createTopicName(resource) + "-" + itemName;
 
-		return publishMessageToCloud(topicName, payload);
+		return publishMessageToCloudTopic(resource, topicName, payload);
+	}
+
+	private boolean publishMessageToCloud(ResourceNameEnum resource, String itemName, byte[] payload, long maxWaitMillis){
+		String topicName = createTopicName(resource) + "-" + itemName;
+
+		try {
+			_Logger.finest("Publishing payload values to CSP: " + topicName);
+
+			return this.mqttClient.publishMessage(
+				topicName, payload, this.qosLevel, this.metricsRegistry.getMetrics(resource), maxWaitMillis);
+		} catch (Exception e) {
+			_Logger.warning("Failed to publish message to CSP: "+ topicName);
+		}
+
+		return false;
 	}
 
 	private boolean publishMessageToCloud(String topicName, String payload){
+		return publishMessageToCloudTopic(null, topicName, payload.getBytes());
+	}
+
+	private boolean publishMessageToCloudTopic(ResourceNameEnum resource, String topicName, byte[] payload){
 		try {
 			_Logger.finest("Publishing payload values to CSP: " + topicName);
 
-			this.mqttClient.publishMessage(topicName, payload.getBytes(), this.qosLevel);
+			// the MQTT client records the delivery (or failure) in the resource's metrics
+			MetricsRegistry.ResourceMetrics resourceMetrics =
+				(resource != null ? this.metricsRegistry.getMetrics(resource) : null);
 
-			return true;
+			return this.mqttClient.publishMessage(topicName, payload, this.qosLevel, resourceMetrics);
 		} catch (Exception e) {
 			// TODO: handle exception
 			_Logger.warning("Failed to publish message to CSP: "+ topicName);
@@ -159,9 +198,64 @@ public class CloudClientConnector implements ICloudClient, IConnectionListener
 	public boolean sendEdgeDataToCloud(ResourceNameEnum resource, SensorData data)
 	{
 		if(resource != null && data != null){
-			String payload = DataUtil.getInstance().sensorDataToJson(data);
+			return sendEdgeDataToCloud(resource, new EncodedIotData(data));
+		}
+
+		return false;
+	}
+
+	@Override
+	public boolean sendEdgeDataToCloud(ResourceNameEnum resource, EncodedIotData data)
+	{
+		if(resource != null && data != null){
+			// system performance data is split into one message per metric
+			if(data.getData() instanceof SystemPerformanceData){
+				return sendEdgeDataToCloud(resource, (SystemPerformanceData) data.getData());
+			}
 
-			return publishMessageToCloud(resource, data.getName(), payload);
+			// the JSON payload is shared with the other sinks, so it's encoded once
+			return publishMessageToCloud(resource, data.getName(), data.getJsonPayload());
+		}
+
+		return false;
+	}
+
+	@Override
+	public boolean sendEdgeDataToCloud(ResourceNameEnum resource, SensorDataBatch batch)
+	{
+		if(resource != null && batch != null && ! batch.isEmpty()){
+			if(this.enableSeriesCompression){
+				// all readings in one payload, a few bits each
+				byte[] payload = SensorDataSeriesCodec.encode(batch);
+
+				return publishMessageToCloudTopic(resource, createTopicName(resource, ConfigConst.SERIES_TOPIC_SUFFIX), payload);
+			}
+
+			DataUtil dataUtil = DataUtil.getInstance();
+
+			// one instance is reused for all readings in the batch
+			SensorData data = new SensorData();
+
+			// the caller's thread (e.g. the upstream stage's) never waits for an
+			// in-flight slot: once the window is full, the rest of the batch is dropped
+			for(int i = 0; i < batch.size(); i++){
+				batch.copyTo(i, data);
+
+				byte[] payload = dataUtil.encodeData(data, ConfigConst.JSON_CONTENT_FORMAT);
+
+				if(! publishMessageToCloud(resource, data.getName(), payload, 0L)){
+					int droppedCount = batch.size() - i;
+
+					this.droppedReadingCount.add(droppedCount);
+
+					_Logger.warning(
+						"Failed to publish " + droppedCount + " of " + batch.size() + " readings of the batch to CSP: " + resource);
+
+					return false;
+				}
+			}
+
+			return true;
 		}
 
 		return false;
@@ -269,47 +363,54 @@ public class CloudClientConnector implements ICloudClient, IConnectionListener
 		@Override
 		public void messageArrived(String topic, MqttMessage message) throws Exception
 		{
+			MetricsRegistry.ResourceMetrics resourceMetrics = metricsRegistry.getMetrics(this.resource);
+			resourceMetrics.onMessageIn();
+
 			try{
-				String jsonData = new String(message.getPayload());
+				long startNanos = System.nanoTime();
 
 				ActuatorData actuatorData = 
-					DataUtil.getInstance().jsonToActuatorData(jsonData);
-
-					actuatorData.setLocationID("constraineddevice001");
-					actuatorData.setCommand(1);
-					actuatorData.setTypeID(this.typeID);
-					actuatorData.setName(this.itemName);
-
-					int val = (int) actuatorData.getValue();
-					//_Logger.info("............LED VAL: "+ val+".......");
-
-					switch(val){
-						case ConfigConst.ON_COMMAND:
-							_Logger.info("Received LED enablement message [ON]/");
-							actuatorData.setStateData("LED switching ON");
-							break;
-
-						case ConfigConst.OFF_COMMAND:
-							_Logger.info("Received LED enablement message [OFF]/");
-							actuatorData.setStateData("LED switching OFF");
-							break;
-
-						default:
-							return;
-						}
-
-					//Passing ActuatorData messages from this method to I
-					//DataMessageListener (DeviceDataManager)
-					
+					DataUtil.getInstance().jsonToActuatorData(message.getPayload());
+
+				resourceMetrics.recordDecode(System.nanoTime() - startNanos, actuatorData != null);
+
+				actuatorData.setLocationID("constraineddevice001");
+				actuatorData.setCommand(1);
+				actuatorData.setTypeID(this.typeID);
+				actuatorData.setName(this.itemName);
+
+				int val = (int) actuatorData.getValue();
+				//_Logger.info("............LED VAL: "+ val+".......");
+
+				switch(val){
+					case ConfigConst.ON_COMMAND:
+						_Logger.info("Received LED enablement message [ON]/");
+						actuatorData.setStateData("LED switching ON");
+						break;
+
+					case ConfigConst.OFF_COMMAND:
+						_Logger.info("Received LED enablement message [OFF]/");
+						actuatorData.setStateData("LED switching OFF");
+						break;
+
+					default:
+						return;
+				}
+
+				//Passing ActuatorData messages from this method to I
+				//DataMessageListener (DeviceDataManager)
+				
+				
+				if(this.dataMsgListener != null){
 					
-					if(this.dataMsgListener != null){
-						
-						jsonData = DataUtil.getInstance().actuatorDataToJson(actuatorData);
+					String jsonData = DataUtil.getInstance().actuatorDataToJson(actuatorData);
 
-						this.dataMsgListener.handleIncomingMessage(
-							ResourceNameEnum.CDA_ACTUATOR_CMD_RESOURCE, jsonData);
-					}
+					this.dataMsgListener.handleIncomingMessage(
+						ResourceNameEnum.CDA_ACTUATOR_CMD_RESOURCE, jsonData);
+				}
 			}catch (Exception e){
+				resourceMetrics.onError();
+
 				_Logger.warning("Failed to convert message payload to ActuatorData.");
 			}
 		}
@@ -10,7 +10,9 @@ package programmingtheiot.gda.connection;
 
 import programmingtheiot.common.IDataMessageListener;
 import programmingtheiot.common.ResourceNameEnum;
+import programmingtheiot.data.EncodedIotData;
 import programmingtheiot.data.SensorData;
+import programmingtheiot.data.SensorDataBatch;
 import programmingtheiot.data.SystemPerformanceData;
 
 /**
@@ -57,6 +59,29 @@ public interface ICloudClient
 	 */
 	public boolean sendEdgeDataToCloud(ResourceNameEnum resource, SystemPerformanceData data);
 
+	/**
+	 * Attempts to send each reading in the given batch to the remote cloud
+	 * service, in order. This will default to the pre-configured QoS level
+	 * set in the configuration for the cloud service.
+	 * 
+	 * @param resource The resource enum to use for this send request.
+	 * @param batch The batch of readings to publish to the remote cloud service.
+	 * @return bool True if all readings were sent, False otherwise.
+	 */
+	public boolean sendEdgeDataToCloud(ResourceNameEnum resource, SensorDataBatch batch);
+
+	/**
+	 * Attempts to send the given data instance to the remote cloud service,
+	 * re-using its already encoded payload where possible. This will default
+	 * to the pre-configured QoS level set in the configuration for the cloud
+	 * service.
+	 * 
+	 * @param resource The resource enum to use for this send request.
+	 * @param data The data instance, and its shared payloads.
+	 * @return bool True on success, False otherwise.
+	 */
+	public boolean sendEdgeDataToCloud(ResourceNameEnum resource, EncodedIotData data);
+
 	/**
 	 * Attempts to subscribe to events destined for edge consumption that are
 	 * sent by the remote cloud service.
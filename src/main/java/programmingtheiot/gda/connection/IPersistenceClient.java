@@ -11,7 +11,9 @@ package programmingtheiot.gda.connection;
 import java.util.Date;
 
 import programmingtheiot.data.ActuatorData;
+import programmingtheiot.data.EncodedIotData;
 import programmingtheiot.data.SensorData;
+import programmingtheiot.data.SensorDataBatch;
 import programmingtheiot.data.SystemPerformanceData;
 
 /**
@@ -89,6 +91,16 @@ public interface IPersistenceClient
 	 */
 	public boolean storeData(String topic, int qos, SensorData ... data);
 	
+	/**
+	 * Attempts to write the batch of sensor readings to the persistence server.
+	 * 
+	 * @param topic The target topic name.
+	 * @param qos The intended target QoS.
+	 * @param batch The batch of readings to store.
+	 * @return boolean True on success; false otherwise.
+	 */
+	public boolean storeData(String topic, int qos, SensorDataBatch batch);
+	
 	/**
 	 * Attempts to write the source data instance to the persistence server.
 	 * 
@@ -99,4 +111,15 @@ public interface IPersistenceClient
 	 */
 	public boolean storeData(String topic, int qos, SystemPerformanceData ... data);
 	
+	/**
+	 * Attempts to write the data instance to the persistence server, using
+	 * its already encoded payload where possible.
+	 * 
+	 * @param topic The target topic name.
+	 * @param qos The intended target QoS.
+	 * @param data The data instance, and its shared payloads.
+	 * @return boolean True on success; false otherwise.
+	 */
+	public boolean storeData(String topic, int qos, EncodedIotData data);
+	
 }
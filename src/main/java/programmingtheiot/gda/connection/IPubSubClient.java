@@ -46,6 +46,19 @@ public interface IPubSubClient
 	 */
 	public boolean publishMessage(ResourceNameEnum topicName, String msg, int qos);
 
+	/**
+	 * Attempts to publish an already encoded payload (e.g. JSON or CBOR, as
+	 * returned by DataUtil#encodeData()) to the given topic with the given qos.
+	 * Behaves the same as {@link #publishMessage(ResourceNameEnum, String, int)}
+	 * otherwise.
+	 * 
+	 * @param topicEnum The topic Enum containing the topic value to publish the message to.
+	 * @param payload The encoded message payload.
+	 * @param qos The QoS level. This is expected to be 0 - 2.
+	 * @return bool True on success, False otherwise.
+	 */
+	public boolean publishMessage(ResourceNameEnum topicName, byte[] payload, int qos);
+
 	/**
 	 * Attempts to subscribe to a topic with the given qos hosted by the
 	 * pub/sub broker / server. If not already connected, the sub-class
@@ -20,8 +20,11 @@ import java.util.logging.Logger;
 import programmingtheiot.common.ConfigConst;
 import programmingtheiot.common.ConfigUtil;
 import programmingtheiot.data.ActuatorData;
+import programmingtheiot.data.BaseIotData;
 import programmingtheiot.data.DataUtil;
+import programmingtheiot.data.EncodedIotData;
 import programmingtheiot.data.SensorData;
+import programmingtheiot.data.SensorDataBatch;
 import programmingtheiot.data.SystemPerformanceData;
 
 import com.influxdb.client.InfluxDBClient;
@@ -122,6 +125,19 @@ public class InfluxPersistenceAdapter implements IPersistenceClient
 		return false;
 	}
 
+	/**
+	 *
+	 */
+	@Override
+	public boolean storeData(String topic, int qos, SensorDataBatch batch)
+	{
+		if (batch == null || batch.isEmpty()) {
+			return false;
+		}
+		
+		return storeData(topic, qos, batch.toSensorDataArray());
+	}
+
 	/**
 	 *
 	 */
@@ -130,6 +146,30 @@ public class InfluxPersistenceAdapter implements IPersistenceClient
 	{
 		return false;
 	}
+
+	/**
+	 *
+	 */
+	@Override
+	public boolean storeData(String topic, int qos, EncodedIotData data)
+	{
+		if (data == null) {
+			return false;
+		}
+		
+		// points are written from the typed data, not the JSON payload
+		BaseIotData iotData = data.getData();
+		
+		if (iotData instanceof SensorData) {
+			return storeData(topic, qos, (SensorData) iotData);
+		} else if (iotData instanceof SystemPerformanceData) {
+			return storeData(topic, qos, (SystemPerformanceData) iotData);
+		} else if (iotData instanceof ActuatorData) {
+			return storeData(topic, qos, (ActuatorData) iotData);
+		}
+		
+		return false;
+	}
 	
 	
 	// private methods
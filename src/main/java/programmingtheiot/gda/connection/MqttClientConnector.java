@@ -9,11 +9,16 @@
 package programmingtheiot.gda.connection;
 
 import java.util.Properties;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import org.eclipse.paho.client.mqttv3.IMqttActionListener;
 import org.eclipse.paho.client.mqttv3.IMqttDeliveryToken;
 import org.eclipse.paho.client.mqttv3.IMqttMessageListener;
+import org.eclipse.paho.client.mqttv3.IMqttToken;
 import org.eclipse.paho.client.mqttv3.MqttAsyncClient;
 import org.eclipse.paho.client.mqttv3.MqttCallbackExtended;
 import org.eclipse.paho.client.mqttv3.MqttClient;
@@ -37,8 +42,12 @@ import java.io.ObjectInputFilter.Config;
 import javax.net.ssl.SSLSocketFactory;
 
 import programmingtheiot.common.SimpleCertManagementUtil;
+import programmingtheiot.data.ActuatorData;
+import programmingtheiot.data.BaseIotData;
 import programmingtheiot.data.DataUtil;
 import programmingtheiot.data.SensorData;
+import programmingtheiot.data.SystemPerformanceData;
+import programmingtheiot.gda.system.MetricsRegistry;
 
 
 
@@ -72,11 +81,72 @@ public class MqttClientConnector implements IPubSubClient, MqttCallbackExtended
 
 	private IConnectionListener connListener = null;
 	private boolean useCloudGatewayConfig = false;
+
+	// control plane messages (commands) always get an in-flight slot; the
+	// others share what's left (only QoS 1 and 2 messages are held in flight,
+	// until acknowledged), and wait up to the max publish wait for a slot,
+	// before they're rejected
+	private Semaphore bulkInflightPermits =
+		new Semaphore(ConfigConst.DEFAULT_MAX_INFLIGHT - ConfigConst.DEFAULT_CONTROL_RESERVED_INFLIGHT);
+	private long maxPublishWaitMillis = ConfigConst.DEFAULT_MAX_PUBLISH_WAIT_MILLIS;
+	private final LongAdder bulkRejectedCount = new LongAdder();
+
+	private final IMqttActionListener bulkDeliveryListener = new IMqttActionListener()
+	{
+		@Override
+		public void onSuccess(IMqttToken token)
+		{
+			bulkInflightPermits.release();
+			recordDelivery(token, true);
+		}
+
+		@Override
+		public void onFailure(IMqttToken token, Throwable t)
+		{
+			bulkInflightPermits.release();
+			recordDelivery(token, false);
+		}
+	};
+
+	// publishes without an in-flight slot (commands, and QoS 0) are still measured
+	private final IMqttActionListener deliveryListener = new IMqttActionListener()
+	{
+		@Override
+		public void onSuccess(IMqttToken token)
+		{
+			recordDelivery(token, true);
+		}
+
+		@Override
+		public void onFailure(IMqttToken token, Throwable t)
+		{
+			recordDelivery(token, false);
+		}
+	};
+
+	// messages in / out, decode and publish latencies, per resource
+	private final MetricsRegistry metricsRegistry = MetricsRegistry.getInstance();
 	
 	// static
 	
 	private static final Logger _Logger =
 		Logger.getLogger(MqttClientConnector.class.getName());
+
+	/**
+	 * Passed along with a publish, so its delivery can be recorded.
+	 * 
+	 */
+	private static final class PublishContext
+	{
+		private final MetricsRegistry.ResourceMetrics resourceMetrics;
+		private final long startNanos;
+
+		private PublishContext(MetricsRegistry.ResourceMetrics resourceMetrics)
+		{
+			this.resourceMetrics = resourceMetrics;
+			this.startNanos = System.nanoTime();
+		}
+	}
 	
 	// params
 	
@@ -210,7 +280,61 @@ public class MqttClientConnector implements IPubSubClient, MqttCallbackExtended
 		return (this.mqttClient != null && this.mqttClient.isConnected());
 	}
 
+	/**
+	 * Returns the number of publishes rejected, as all in-flight slots not
+	 * reserved for control plane messages were in use for longer than the
+	 * max publish wait.
+	 * 
+	 * @return long
+	 */
+	public long getBulkRejectedCount()
+	{
+		return this.bulkRejectedCount.sum();
+	}
+
 	protected boolean publishMessage(String topicName, byte[] payload, int qos){
+		return publishMessage(topicName, payload, qos, false, null);
+	}
+
+	/**
+	 * Publishes the message, and records it (once delivered) in the given
+	 * resource's metrics.
+	 * 
+	 * @param topicName The topic.
+	 * @param payload The payload.
+	 * @param qos The QoS level.
+	 * @param resourceMetrics The metrics to record the message in; if null, it isn't recorded.
+	 * @return boolean True if the message was handed to the MQTT client.
+	 */
+	protected boolean publishMessage(String topicName, byte[] payload, int qos, MetricsRegistry.ResourceMetrics resourceMetrics){
+		return publishMessage(topicName, payload, qos, false, resourceMetrics, this.maxPublishWaitMillis);
+	}
+
+	/**
+	 * Publishes the message, waiting up to the given time (instead of the
+	 * max publish wait) for an in-flight slot, e.g. not at all, for callers
+	 * that mustn't block.
+	 * 
+	 * @param topicName The topic.
+	 * @param payload The payload.
+	 * @param qos The QoS level.
+	 * @param resourceMetrics The metrics to record the message in; if null, it isn't recorded.
+	 * @param maxWaitMillis The max time to wait for an in-flight slot; if 0, it doesn't wait.
+	 * @return boolean True if the message was handed to the MQTT client.
+	 */
+	protected boolean publishMessage(
+		String topicName, byte[] payload, int qos, MetricsRegistry.ResourceMetrics resourceMetrics, long maxWaitMillis){
+		return publishMessage(topicName, payload, qos, false, resourceMetrics, Math.max(0L, maxWaitMillis));
+	}
+
+	private boolean publishMessage(
+		String topicName, byte[] payload, int qos, boolean isControlPlane, MetricsRegistry.ResourceMetrics resourceMetrics){
+		return publishMessage(topicName, payload, qos, isControlPlane, resourceMetrics, this.maxPublishWaitMillis);
+	}
+
+	private boolean publishMessage(
+		String topicName, byte[] payload, int qos, boolean isControlPlane,
+		MetricsRegistry.ResourceMetrics resourceMetrics, long maxWaitMillis){
 		if (topicName == null){
 			_Logger.warning("Resource is null. Unable to publish message: "+ this.brokerAddr);
 			return false;
@@ -227,17 +351,47 @@ public class MqttClientConnector implements IPubSubClient, MqttCallbackExtended
 			qos = ConfigConst.DEFAULT_QOS;
 		}
 
+		boolean holdsPermit = (! isControlPlane && qos > 0);
+
+		if(holdsPermit){
+			if(! acquireBulkInflightPermit(maxWaitMillis)){
+				this.bulkRejectedCount.increment();
+
+				if(resourceMetrics != null){
+					resourceMetrics.onError();
+				}
+
+				_Logger.fine("Too many messages in flight. Unable to publish message to topic: " + topicName);
+
+				return false;
+			}
+		}
+
 		try {
 			
 			MqttMessage mqttMsg = new MqttMessage();
 			mqttMsg.setQos(qos);
 			mqttMsg.setPayload(payload);
 
-			this.mqttClient.publish(topicName, mqttMsg);
+			// timed until the client reports the message delivered
+			PublishContext context = (resourceMetrics != null ? new PublishContext(resourceMetrics) : null);
+
+			if(holdsPermit){
+				this.mqttClient.publish(topicName, mqttMsg, context, this.bulkDeliveryListener);
+			}else{
+				this.mqttClient.publish(topicName, mqttMsg, context, this.deliveryListener);
+			}
 
 			return true;
 		} catch (Exception e) {
-			// TODO: handle exception
+			if(holdsPermit){
+				this.bulkInflightPermits.release();
+			}
+
+			if(resourceMetrics != null){
+				resourceMetrics.onError();
+			}
+
 			_Logger.log(Level.SEVERE, "Failed to publish message to topic: "+ topicName, e);
 		}
 
@@ -258,7 +412,22 @@ public class MqttClientConnector implements IPubSubClient, MqttCallbackExtended
 			return false;
 		}
 
-		return publishMessage(topicName.getResourceName(), msg.getBytes(), qos);
+		return publishMessage(
+			topicName.getResourceName(), msg.getBytes(), qos, topicName.isControlPlane(),
+			this.metricsRegistry.getMetrics(topicName));
+	}
+
+	@Override
+	public boolean publishMessage(ResourceNameEnum topicName, byte[] payload, int qos)
+	{
+		if (topicName == null){
+			_Logger.warning("Resource is null. Unable to publish message: "+ this.brokerAddr);
+			return false;
+		}
+
+		return publishMessage(
+			topicName.getResourceName(), payload, qos, topicName.isControlPlane(),
+			this.metricsRegistry.getMetrics(topicName));
 	}
 
 	protected boolean subscribeToTopic(String topicName, int qos){
@@ -413,19 +582,91 @@ public class MqttClientConnector implements IPubSubClient, MqttCallbackExtended
 	@Override
 	public void messageArrived(String topic, MqttMessage msg) throws Exception
 	{
-		_Logger.info("MQTT message arrived on topic: "+ topic + "'");
+		_Logger.fine("MQTT message arrived on topic: "+ topic + "'");
 
-		SensorData sensorData = DataUtil.getInstance().jsonToSensorData(new String(msg.getPayload()));
-		
-		if(this.dataMsgListener != null){
-			_Logger.info("................Handling Sensor Data.................");
-			this.dataMsgListener.handleSensorMessage(ResourceNameEnum.CDA_SENSOR_MSG_RESOURCE, sensorData);
+		// anything other than actuator responses and system performance is handled as sensor data
+		ResourceNameEnum resource = ResourceNameEnum.getEnumFromValue(topic);
+
+		if(resource != ResourceNameEnum.CDA_ACTUATOR_RESPONSE_RESOURCE && resource != ResourceNameEnum.CDA_SYSTEM_PERF_MSG_RESOURCE){
+			resource = ResourceNameEnum.CDA_SENSOR_MSG_RESOURCE;
+		}
+
+		MetricsRegistry.ResourceMetrics resourceMetrics = this.metricsRegistry.getMetrics(resource);
+		resourceMetrics.onMessageIn();
+
+		if(this.dataMsgListener == null){
+			return;
+		}
+
+		if(resource == ResourceNameEnum.CDA_ACTUATOR_RESPONSE_RESOURCE){
+			ActuatorData actuatorData = decodeData(msg, ActuatorData.class, resourceMetrics);
+
+			this.dataMsgListener.handleActuatorCommandResponse(resource, actuatorData);
+		}else if(resource == ResourceNameEnum.CDA_SYSTEM_PERF_MSG_RESOURCE){
+			SystemPerformanceData sysPerfData = decodeData(msg, SystemPerformanceData.class, resourceMetrics);
+
+			this.dataMsgListener.handleSystemPerformanceMessage(resource, sysPerfData);
+		}else{
+			SensorData sensorData = decodeData(msg, SensorData.class, resourceMetrics);
+
+			this.dataMsgListener.handleSensorMessage(resource, sensorData);
 		}
 
 	}
 
 	
 	// private methods
+
+	/**
+	 * Decodes the message, and records the decode time. Decodes straight from
+	 * the payload bytes (no intermediate String); MQTT 3.1.1 has no
+	 * content-type property, so JSON vs. CBOR is detected from the payload.
+	 * 
+	 */
+	private <T extends BaseIotData> T decodeData(
+		MqttMessage msg, Class<T> type, MetricsRegistry.ResourceMetrics resourceMetrics)
+	{
+		long startNanos = System.nanoTime();
+		boolean success = false;
+
+		try {
+			T data = DataUtil.getInstance().decodeData(msg.getPayload(), ConfigConst.UNKNOWN_CONTENT_FORMAT, type);
+
+			success = (data != null);
+
+			return data;
+		} finally {
+			resourceMetrics.recordDecode(System.nanoTime() - startNanos, success);
+		}
+	}
+
+	/**
+	 * Waits up to the given time for an in-flight slot. The slot is
+	 * released once the message is acknowledged (or fails), on the client's
+	 * callback thread, so the wait is bounded rather than blocking for good.
+	 * 
+	 */
+	private boolean acquireBulkInflightPermit(long maxWaitMillis)
+	{
+		try {
+			return this.bulkInflightPermits.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+
+			return false;
+		}
+	}
+
+	private void recordDelivery(IMqttToken token, boolean success)
+	{
+		Object context = token.getUserContext();
+
+		if(context instanceof PublishContext){
+			PublishContext publishContext = (PublishContext) context;
+
+			publishContext.resourceMetrics.recordPublish(System.nanoTime() - publishContext.startNanos, success);
+		}
+	}
 	
 	/**
 	 * Called by the constructor to set the MQTT client parameters to be used for the connection.
@@ -467,6 +708,19 @@ public class MqttClientConnector implements IPubSubClient, MqttCallbackExtended
 		this.connOpts.setCleanSession(this.useCleanSession);
 		this.connOpts.setAutomaticReconnect(this.enableAutoReconnect);
 
+		int maxInflight = 
+			configUtil.getInteger(configSectionName, ConfigConst.MAX_INFLIGHT_KEY, ConfigConst.DEFAULT_MAX_INFLIGHT);
+		int controlReservedInflight = 
+			configUtil.getInteger(
+				configSectionName, ConfigConst.CONTROL_RESERVED_INFLIGHT_KEY, ConfigConst.DEFAULT_CONTROL_RESERVED_INFLIGHT);
+
+		this.connOpts.setMaxInflight(Math.max(1, maxInflight));
+		this.bulkInflightPermits = new Semaphore(Math.max(1, maxInflight - Math.max(0, controlReservedInflight)));
+
+		this.maxPublishWaitMillis = Math.max(0,
+			configUtil.getInteger(
+				configSectionName, ConfigConst.MAX_PUBLISH_WAIT_MILLIS_KEY, ConfigConst.DEFAULT_MAX_PUBLISH_WAIT_MILLIS));
+
 		// if encryption enabled, try to load and apply certs
 		if(this.enableEncryption){
 			initSecureConnectionParameters(configSectionName);
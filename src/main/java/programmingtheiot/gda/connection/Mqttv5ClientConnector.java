@@ -80,6 +80,12 @@ public class Mqttv5ClientConnector implements IPubSubClient, MqttCallback
 	{
 		return false;
 	}
+	
+	@Override
+	public boolean publishMessage(ResourceNameEnum topicName, byte[] payload, int qos)
+	{
+		return false;
+	}
 
 	@Override
 	public boolean subscribeToTopic(ResourceNameEnum topicName, int qos)
@@ -8,6 +8,7 @@
 
 package programmingtheiot.gda.connection;
 
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
@@ -20,11 +21,15 @@ import programmingtheiot.common.ConfigConst;
 import programmingtheiot.common.ConfigUtil;
 import programmingtheiot.data.ActuatorData;
 import programmingtheiot.data.DataUtil;
+import programmingtheiot.data.EncodedIotData;
 import programmingtheiot.data.SensorData;
+import programmingtheiot.data.SensorDataBatch;
+import programmingtheiot.data.SensorDataSeriesCodec;
 import programmingtheiot.data.SystemPerformanceData;
 
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.jedis.exceptions.JedisException;
 
 /**
  * Shell representation of class for student implementation.
@@ -39,6 +44,12 @@ public class RedisPersistenceAdapter implements IPersistenceClient
 	
 	// private var's
 	
+	private String host = ConfigConst.DEFAULT_HOST;
+	private int    port = ConfigConst.DEFAULT_REDIS_PORT;
+	
+	// not thread-safe, so it's only used while holding its monitor
+	private Jedis redisClient = null;
+	
 	
 	// constructors
 	
@@ -62,8 +73,27 @@ public class RedisPersistenceAdapter implements IPersistenceClient
 	 *
 	 */
 	@Override
-	public boolean connectClient()
+	public synchronized boolean connectClient()
 	{
+		if (this.redisClient != null && this.redisClient.isConnected()) {
+			_Logger.info("Redis client is already connected: " + this.host + ":" + this.port);
+			
+			return true;
+		}
+		
+		try {
+			Jedis client = new Jedis(this.host, this.port);
+			client.connect();
+			
+			this.redisClient = client;
+			
+			_Logger.info("Redis client connected: " + this.host + ":" + this.port);
+			
+			return true;
+		} catch (JedisConnectionException e) {
+			_Logger.log(Level.WARNING, "Failed to connect Redis client: " + this.host + ":" + this.port, e);
+		}
+		
 		return false;
 	}
 
@@ -71,8 +101,24 @@ public class RedisPersistenceAdapter implements IPersistenceClient
 	 *
 	 */
 	@Override
-	public boolean disconnectClient()
+	public synchronized boolean disconnectClient()
 	{
+		if (this.redisClient == null) {
+			return false;
+		}
+		
+		try {
+			this.redisClient.close();
+			
+			_Logger.info("Redis client disconnected.");
+			
+			return true;
+		} catch (JedisException e) {
+			_Logger.log(Level.WARNING, "Failed to disconnect Redis client.", e);
+		} finally {
+			this.redisClient = null;
+		}
+		
 		return false;
 	}
 
@@ -120,6 +166,21 @@ public class RedisPersistenceAdapter implements IPersistenceClient
 		return false;
 	}
 
+	/**
+	 *
+	 */
+	@Override
+	public boolean storeData(String topic, int qos, SensorDataBatch batch)
+	{
+		if (batch == null || batch.isEmpty()) {
+			return false;
+		}
+		
+		// stored as a single compressed time series value, rather
+		// than one JSON document per reading
+		return storeSeries(topic, SensorDataSeriesCodec.encode(batch));
+	}
+
 	/**
 	 *
 	 */
@@ -128,6 +189,20 @@ public class RedisPersistenceAdapter implements IPersistenceClient
 	{
 		return false;
 	}
+
+	/**
+	 *
+	 */
+	@Override
+	public boolean storeData(String topic, int qos, EncodedIotData data)
+	{
+		if (data == null) {
+			return false;
+		}
+		
+		// stored as-is, sharing the JSON payload sent to the other sinks
+		return storePayload(topic, data.getJsonPayload());
+	}
 	
 	
 	// private methods
@@ -137,6 +212,70 @@ public class RedisPersistenceAdapter implements IPersistenceClient
 	 */
 	private void initConfig()
 	{
+		ConfigUtil configUtil = ConfigUtil.getInstance();
+		
+		this.host =
+			configUtil.getProperty(ConfigConst.REDIS_DATA_GATEWAY_SERVICE, ConfigConst.HOST_KEY, ConfigConst.DEFAULT_HOST);
+		this.port =
+			configUtil.getInteger(ConfigConst.REDIS_DATA_GATEWAY_SERVICE, ConfigConst.PORT_KEY, ConfigConst.DEFAULT_REDIS_PORT);
+	}
+	
+	/**
+	 * Appends the encoded series to the list stored at 'topic'.
+	 * 
+	 * @param topic The target topic name, used as the key.
+	 * @param series The output of {@link SensorDataSeriesCodec#encode(SensorDataBatch)}.
+	 * @return boolean True on success; false if not connected, or the write failed.
+	 */
+	private boolean storeSeries(String topic, byte[] series)
+	{
+		_Logger.fine("Storing " + series.length + " byte sensor data series: " + topic);
+		
+		return appendToList(topic, series);
+	}
+	
+	/**
+	 * Appends the encoded JSON payload to the list stored at 'topic'.
+	 * 
+	 * @param topic The target topic name, used as the key.
+	 * @param payload The UTF-8 encoded JSON payload.
+	 * @return boolean True on success; false if not connected, or the write failed.
+	 */
+	private boolean storePayload(String topic, byte[] payload)
+	{
+		_Logger.fine("Storing " + payload.length + " byte payload: " + topic);
+		
+		return appendToList(topic, payload);
+	}
+	
+	/**
+	 * Appends the value to the list stored at 'topic' (RPUSH), so the
+	 * list keeps the order the values were stored in.
+	 * 
+	 */
+	private synchronized boolean appendToList(String topic, byte[] value)
+	{
+		if (topic == null) {
+			_Logger.warning("Topic is null. Unable to store data.");
+			
+			return false;
+		}
+		
+		if (this.redisClient == null) {
+			_Logger.warning("Redis client isn't connected. Unable to store data: " + topic);
+			
+			return false;
+		}
+		
+		try {
+			this.redisClient.rpush(topic.getBytes(StandardCharsets.UTF_8), value);
+			
+			return true;
+		} catch (JedisException e) {
+			_Logger.log(Level.WARNING, "Failed to store data: " + topic, e);
+		}
+		
+		return false;
 	}
 
 }
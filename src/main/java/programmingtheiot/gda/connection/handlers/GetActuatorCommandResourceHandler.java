@@ -6,7 +6,9 @@ import org.eclipse.californium.core.CoapResource;
 import org.eclipse.californium.core.coap.CoAP.ResponseCode;
 import org.eclipse.californium.core.server.resources.CoapExchange;
 
+import programmingtheiot.common.ConfigConst;
 import programmingtheiot.common.IActuatorDataListener;
+import programmingtheiot.common.ResourceNameEnum;
 import programmingtheiot.data.ActuatorData;
 import programmingtheiot.data.DataUtil;
 
@@ -48,11 +50,20 @@ public class GetActuatorCommandResourceHandler extends
         //accept the request
         context.accept();
 
-        //locally stored actuator data to json data
-        String jsonData = DataUtil.getInstance().actuatorDataToJson(this.actuatorData);
+        // honor the client's Accept option if it asks for JSON or CBOR;
+        // otherwise use the content-format configured for actuator commands
+        DataUtil dataUtil = DataUtil.getInstance();
+        int contentFormat = context.getRequestOptions().getAccept();
+
+        if(contentFormat != ConfigConst.JSON_CONTENT_FORMAT && contentFormat != ConfigConst.CBOR_CONTENT_FORMAT){
+            contentFormat = dataUtil.getContentFormat(ResourceNameEnum.CDA_ACTUATOR_CMD_RESOURCE);
+        }
+
+        //locally stored actuator data to encoded payload
+        byte[] payload = dataUtil.encodeData(this.actuatorData, contentFormat);
 
         //send response
-        context.respond(ResponseCode.CONTENT, jsonData);
+        context.respond(ResponseCode.CONTENT, payload, contentFormat);
     }
 
 
@@ -10,12 +10,17 @@ import programmingtheiot.common.IDataMessageListener;
 import programmingtheiot.common.ResourceNameEnum;
 import programmingtheiot.data.DataUtil;
 import programmingtheiot.data.SystemPerformanceData;
+import programmingtheiot.gda.system.MetricsRegistry;
 import programmingtheiot.gda.connection.CoapClientConnector;
 
 public class UpdateSystemPerformanceResourceHandler extends CoapResource {
     
     private IDataMessageListener dataMsgListener = null;
 
+    // messages in and decode latency
+    private final MetricsRegistry.ResourceMetrics resourceMetrics =
+        MetricsRegistry.getInstance().getMetrics(ResourceNameEnum.CDA_SYSTEM_PERF_MSG_RESOURCE);
+
     private static final Logger _Logger =
 		Logger.getLogger(UpdateSystemPerformanceResourceHandler.class.getName());
 
@@ -36,11 +41,21 @@ public class UpdateSystemPerformanceResourceHandler extends CoapResource {
         // notify client that data is being processed
         context.accept();
 
+        this.resourceMetrics.onMessageIn();
+
         if(this.dataMsgListener != null){
             try {
-                String jsonData = new String(context.getRequestPayload());
-
-                SystemPerformanceData sysPerfData = DataUtil.getInstance().jsonToSystemPerformanceData(jsonData);
+                // JSON or CBOR, per the request's content-format (detected if not set)
+                long startNanos = System.nanoTime();
+                SystemPerformanceData sysPerfData = null;
+
+                try {
+                    sysPerfData =
+                        DataUtil.getInstance().decodeData(
+                            context.getRequestPayload(), context.getRequestOptions().getContentFormat(), SystemPerformanceData.class);
+                } finally {
+                    this.resourceMetrics.recordDecode(System.nanoTime() - startNanos, sysPerfData != null);
+                }
 
                 this.dataMsgListener.handleSystemPerformanceMessage(ResourceNameEnum.CDA_SYSTEM_PERF_MSG_RESOURCE, sysPerfData);
 
@@ -3,14 +3,24 @@ package programmingtheiot.gda.connection.handlers;
 import java.util.logging.Logger;
 
 import org.eclipse.californium.core.CoapResource;
+import org.eclipse.californium.core.coap.CoAP.ResponseCode;
+import org.eclipse.californium.core.server.resources.CoapExchange;
 
 import programmingtheiot.common.IDataMessageListener;
+import programmingtheiot.common.ResourceNameEnum;
+import programmingtheiot.data.DataUtil;
+import programmingtheiot.data.SensorData;
+import programmingtheiot.gda.system.MetricsRegistry;
 
 public class UpdateTelemetryResourceHandler extends CoapResource {
     private IDataMessageListener dataMsgListener = null;
 
+    // messages in and decode latency
+    private final MetricsRegistry.ResourceMetrics resourceMetrics =
+        MetricsRegistry.getInstance().getMetrics(ResourceNameEnum.CDA_SENSOR_MSG_RESOURCE);
+
     private static final Logger _Logger =
-		Logger.getLogger(UpdateSystemPerformanceResourceHandler.class.getName());
+		Logger.getLogger(UpdateTelemetryResourceHandler.class.getName());
 
     public UpdateTelemetryResourceHandler(String resourceName){
         super(resourceName);
@@ -22,4 +32,47 @@ public class UpdateTelemetryResourceHandler extends CoapResource {
         }
     }
 
+    @Override
+    public void handlePUT(CoapExchange context){
+        ResponseCode code = ResponseCode.NOT_ACCEPTABLE;
+
+        // notify client that data is being processed
+        context.accept();
+
+        this.resourceMetrics.onMessageIn();
+
+        if(this.dataMsgListener != null){
+            try {
+                // JSON or CBOR, per the request's content-format (detected if not set)
+                long startNanos = System.nanoTime();
+                SensorData sensorData = null;
+
+                try {
+                    sensorData =
+                        DataUtil.getInstance().decodeData(
+                            context.getRequestPayload(), context.getRequestOptions().getContentFormat(), SensorData.class);
+                } finally {
+                    this.resourceMetrics.recordDecode(System.nanoTime() - startNanos, sensorData != null);
+                }
+
+                this.dataMsgListener.handleSensorMessage(ResourceNameEnum.CDA_SENSOR_MSG_RESOURCE, sensorData);
+
+                code = ResponseCode.CHANGED;
+            } catch (Exception e) {
+                _Logger.warning(
+                    "Failed to handle PUT request. Message: "+ e.getMessage());
+
+                code = ResponseCode.BAD_REQUEST;
+            }
+        }else{
+            _Logger.info("No callback listener for request. Ignoring PUT.");
+
+            code = ResponseCode.CONTINUE;
+        }
+
+        String msg = "Update telemetry data request handled:" + super.getName();
+
+        context.respond(code, msg);
+    }
+
 }
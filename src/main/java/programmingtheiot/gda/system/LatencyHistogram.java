@@ -0,0 +1,226 @@
+/**
+ * This class is part of the Programming the Internet of Things project.
+ *
+ * It is provided as a simple shell to guide the student and assist with
+ * implementation for the Programming the Internet of Things exercises,
+ * and designed to be modified by the student as needed.
+ */
+
+package programmingtheiot.gda.system;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histogram with log-linear buckets, as in HdrHistogram: each
+ * power of 2 is split into {@link #SUB_BUCKET_COUNT} equal sub-buckets, so
+ * a recorded latency is off by at most 1 / {@link #SUB_BUCKET_COUNT} (about
+ * 3%), from 1 ns up to {@link #MAX_TRACKABLE_NANOS}. Longer latencies are
+ * counted as the max trackable one.
+ * <p>
+ * Recording doesn't allocate or lock: it's an atomic increment of the
+ * bucket, plus the sum and the max. The buckets are striped by thread, so
+ * threads recording similar latencies don't contend on the same counter.
+ * The percentiles are computed when read, from a (non-atomic) pass over
+ * the buckets, so they're meant for periodic snapshots, not the hot path.
+ *
+ */
+public final class LatencyHistogram
+{
+	// static
+
+	public static final int  SUB_BUCKET_BITS     = 5;
+	public static final int  SUB_BUCKET_COUNT    = 1 << SUB_BUCKET_BITS;
+	public static final long MAX_TRACKABLE_NANOS = (1L << 36) - 1L;
+
+	// 1024 buckets (8 KB) per stripe
+	public static final int BUCKET_COUNT = getBucketIndex(MAX_TRACKABLE_NANOS) + 1;
+
+	private static final int MAX_STRIPE_COUNT = 4;
+
+
+	// private var's
+
+	private final int             stripeMask;
+	private final AtomicLongArray buckets;
+	private final LongAdder       sumNanos = new LongAdder();
+	private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0L);
+
+
+	// constructors
+
+	/**
+	 * Default. Stripes the buckets by the number of processors (up to 4).
+	 *
+	 */
+	public LatencyHistogram()
+	{
+		this(Math.min(MAX_STRIPE_COUNT, Runtime.getRuntime().availableProcessors()));
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param stripeCount The number of bucket stripes (rounded up to a power of 2).
+	 */
+	public LatencyHistogram(int stripeCount)
+	{
+		super();
+
+		int stripes = Integer.highestOneBit(Math.max(1, stripeCount));
+
+		if (stripes < stripeCount) {
+			stripes <<= 1;
+		}
+
+		this.stripeMask = stripes - 1;
+		this.buckets    = new AtomicLongArray(stripes * BUCKET_COUNT);
+	}
+
+
+	// public methods
+
+	/**
+	 * Records a latency. Negative latencies (e.g. from a clock adjustment)
+	 * are recorded as 0.
+	 *
+	 * @param nanos The latency, in nanoseconds.
+	 */
+	public void record(long nanos)
+	{
+		if (nanos < 0L) {
+			nanos = 0L;
+		} else if (nanos > MAX_TRACKABLE_NANOS) {
+			nanos = MAX_TRACKABLE_NANOS;
+		}
+
+		int stripe = (int) Thread.currentThread().getId() & this.stripeMask;
+
+		this.buckets.getAndIncrement(stripe * BUCKET_COUNT + getBucketIndex(nanos));
+		this.sumNanos.add(nanos);
+		this.maxNanos.accumulate(nanos);
+	}
+
+	/**
+	 * Records the time elapsed since the given start time.
+	 *
+	 * @param startNanos The start time, from {@link System#nanoTime()}.
+	 */
+	public void recordSince(long startNanos)
+	{
+		record(System.nanoTime() - startNanos);
+	}
+
+	public long getCount()
+	{
+		long count = 0L;
+
+		for (int i = 0; i < this.buckets.length(); i++) {
+			count += this.buckets.get(i);
+		}
+
+		return count;
+	}
+
+	public long getMax(TimeUnit unit)
+	{
+		return unit.convert(this.maxNanos.get(), TimeUnit.NANOSECONDS);
+	}
+
+	public double getMeanNanos()
+	{
+		long count = getCount();
+
+		return (count > 0L ? (double) this.sumNanos.sum() / count : 0.0);
+	}
+
+	/**
+	 * Returns the latency at the given percentile, i.e. the highest latency
+	 * equivalent to the bucket holding it, but not above the max recorded.
+	 *
+	 * @param percentile The percentile, from 0.0 to 1.0 (e.g. 0.99).
+	 * @param unit The time unit of the latency returned.
+	 * @return long The latency, or 0 if none has been recorded.
+	 */
+	public long getPercentile(double percentile, TimeUnit unit)
+	{
+		long[] counts = getBucketCounts();
+		long count = 0L;
+
+		for (long bucketCount : counts) {
+			count += bucketCount;
+		}
+
+		if (count == 0L) {
+			return 0L;
+		}
+
+		long rank = Math.max(1L, (long) Math.ceil(Math.min(1.0, Math.max(0.0, percentile)) * count));
+		long seen = 0L;
+
+		for (int i = 0; i < counts.length; i++) {
+			seen += counts[i];
+
+			if (seen >= rank) {
+				long nanos = Math.min(getHighestEquivalentNanos(i), this.maxNanos.get());
+
+				return unit.convert(nanos, TimeUnit.NANOSECONDS);
+			}
+		}
+
+		return getMax(unit);
+	}
+
+	@Override
+	public String toString()
+	{
+		return String.format(
+			"count = %d | mean = %.1f us | p50 = %d us | p99 = %d us | max = %d us",
+			getCount(), getMeanNanos() / 1000.0,
+			getPercentile(0.50, TimeUnit.MICROSECONDS), getPercentile(0.99, TimeUnit.MICROSECONDS),
+			getMax(TimeUnit.MICROSECONDS));
+	}
+
+
+	// private methods
+
+	/**
+	 * Returns the bucket of the latency: latencies below
+	 * 2 * {@link #SUB_BUCKET_COUNT} have a bucket each; above, each power
+	 * of 2 has {@link #SUB_BUCKET_COUNT} buckets, indexed by the top
+	 * {@link #SUB_BUCKET_BITS} + 1 bits of the latency.
+	 *
+	 */
+	private static int getBucketIndex(long nanos)
+	{
+		int shift = Math.max(0, (63 - SUB_BUCKET_BITS) - Long.numberOfLeadingZeros(nanos));
+
+		return (shift << SUB_BUCKET_BITS) + (int) (nanos >>> shift);
+	}
+
+	private static long getHighestEquivalentNanos(int bucketIndex)
+	{
+		int shift = Math.max(0, (bucketIndex >>> SUB_BUCKET_BITS) - 1);
+		long mantissa = bucketIndex - (shift << SUB_BUCKET_BITS);
+
+		return ((mantissa + 1L) << shift) - 1L;
+	}
+
+	/**
+	 * Sums the stripes of each bucket.
+	 *
+	 */
+	private long[] getBucketCounts()
+	{
+		long[] counts = new long[BUCKET_COUNT];
+
+		for (int i = 0; i < this.buckets.length(); i++) {
+			counts[i % BUCKET_COUNT] += this.buckets.get(i);
+		}
+
+		return counts;
+	}
+
+}
@@ -0,0 +1,405 @@
+/**
+ * This class is part of the Programming the Internet of Things project.
+ *
+ * It is provided as a simple shell to guide the student and assist with
+ * implementation for the Programming the Internet of Things exercises,
+ * and designed to be modified by the student as needed.
+ */
+
+package programmingtheiot.gda.system;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import programmingtheiot.common.ResourceNameEnum;
+import programmingtheiot.data.SensorData;
+import programmingtheiot.data.SystemStateData;
+
+/**
+ * Registry of the gateway's metrics, keyed by {@link ResourceNameEnum}.
+ * Each resource has:
+ * <ul>
+ * <li>Counters of the messages received, sent, and the errors (failed
+ * decodes, writes and publishes);
+ * <li>latency histograms for decoding, persistence and publishing (until
+ * the MQTT client reports the message delivered);
+ * <li>gauges, sampled when a snapshot is taken (e.g. queue depths).
+ * </ul>
+ * Gateway wide gauges are registered under
+ * {@link ResourceNameEnum#GDA_MGMT_STATUS_MSG_RESOURCE}.
+ * <p>
+ * The counters are {@link LongAdder}s, and the histograms are
+ * {@link LatencyHistogram}s, so recording neither locks nor allocates,
+ * and costs tens of nanoseconds. A resource's metrics are created the
+ * first time they're looked up.
+ * <p>
+ * The connectors share the instance returned by {@link #getInstance()}.
+ *
+ */
+public final class MetricsRegistry
+{
+	// static
+
+	public static final String MESSAGES_IN_NAME         = "messagesIn";
+	public static final String MESSAGES_OUT_NAME        = "messagesOut";
+	public static final String ERRORS_NAME              = "errors";
+	public static final String DECODE_LATENCY_NAME      = "decodeLatency";
+	public static final String PERSISTENCE_LATENCY_NAME = "persistenceLatency";
+	public static final String PUBLISH_LATENCY_NAME     = "publishLatency";
+
+	private static final MetricsRegistry _Instance = new MetricsRegistry();
+
+	/**
+	 * Returns the registry shared by the gateway's connectors.
+	 *
+	 * @return MetricsRegistry
+	 */
+	public static final MetricsRegistry getInstance()
+	{
+		return _Instance;
+	}
+
+	/**
+	 * The metrics of a single resource.
+	 *
+	 */
+	public static final class ResourceMetrics
+	{
+		private final ResourceNameEnum resource;
+
+		private final LongAdder messagesInCount  = new LongAdder();
+		private final LongAdder messagesOutCount = new LongAdder();
+		private final LongAdder errorCount       = new LongAdder();
+
+		private final LatencyHistogram decodeLatency      = new LatencyHistogram();
+		private final LatencyHistogram persistenceLatency = new LatencyHistogram();
+		private final LatencyHistogram publishLatency     = new LatencyHistogram();
+
+		private final List<Gauge> gauges = new CopyOnWriteArrayList<>();
+
+		private ResourceMetrics(ResourceNameEnum resource)
+		{
+			this.resource = resource;
+		}
+
+		public ResourceNameEnum getResource()
+		{
+			return this.resource;
+		}
+
+		public void onMessageIn()
+		{
+			this.messagesInCount.increment();
+		}
+
+		public void onError()
+		{
+			this.errorCount.increment();
+		}
+
+		/**
+		 * Records the time taken to decode a message received.
+		 *
+		 * @param nanos The decode time, in nanoseconds.
+		 * @param success False if the payload couldn't be decoded.
+		 */
+		public void recordDecode(long nanos, boolean success)
+		{
+			this.decodeLatency.record(nanos);
+
+			if (! success) {
+				this.errorCount.increment();
+			}
+		}
+
+		/**
+		 * Records the time taken to write data to the persistence client.
+		 *
+		 * @param nanos The write time, in nanoseconds.
+		 * @param success False if the write failed.
+		 */
+		public void recordPersistence(long nanos, boolean success)
+		{
+			this.persistenceLatency.record(nanos);
+
+			if (! success) {
+				this.errorCount.increment();
+			}
+		}
+
+		/**
+		 * Records a message sent, or its failure, and the time taken to
+		 * deliver it.
+		 *
+		 * @param nanos The delivery time, in nanoseconds.
+		 * @param success False if the message wasn't delivered.
+		 */
+		public void recordPublish(long nanos, boolean success)
+		{
+			this.publishLatency.record(nanos);
+
+			if (success) {
+				this.messagesOutCount.increment();
+			} else {
+				this.errorCount.increment();
+			}
+		}
+
+		public long getMessagesInCount()
+		{
+			return this.messagesInCount.sum();
+		}
+
+		public long getMessagesOutCount()
+		{
+			return this.messagesOutCount.sum();
+		}
+
+		public long getErrorCount()
+		{
+			return this.errorCount.sum();
+		}
+
+		public LatencyHistogram getDecodeLatency()
+		{
+			return this.decodeLatency;
+		}
+
+		public LatencyHistogram getPersistenceLatency()
+		{
+			return this.persistenceLatency;
+		}
+
+		public LatencyHistogram getPublishLatency()
+		{
+			return this.publishLatency;
+		}
+
+		/**
+		 * Returns the gauge's current value, or -1 if there's no gauge by
+		 * that name.
+		 *
+		 * @param name The gauge's name.
+		 * @return long
+		 */
+		public long getGaugeValue(String name)
+		{
+			for (Gauge gauge : this.gauges) {
+				if (gauge.name.equals(name)) {
+					return gauge.supplier.getAsLong();
+				}
+			}
+
+			return -1L;
+		}
+
+		@Override
+		public String toString()
+		{
+			StringBuilder buf = new StringBuilder(
+				String.format(
+					"%s: in = %d | out = %d | errors = %d",
+					this.resource.getResourceName(), getMessagesInCount(), getMessagesOutCount(), getErrorCount()));
+
+			for (Gauge gauge : this.gauges) {
+				buf.append(" | ").append(gauge.name).append(" = ").append(gauge.supplier.getAsLong());
+			}
+
+			appendLatency(buf, DECODE_LATENCY_NAME, this.decodeLatency);
+			appendLatency(buf, PERSISTENCE_LATENCY_NAME, this.persistenceLatency);
+			appendLatency(buf, PUBLISH_LATENCY_NAME, this.publishLatency);
+
+			return buf.toString();
+		}
+
+		private synchronized void addGauge(String name, LongSupplier supplier)
+		{
+			// a gauge registered again (e.g. by a new manager instance) replaces the old one
+			this.gauges.removeIf(gauge -> gauge.name.equals(name));
+			this.gauges.add(new Gauge(name, supplier));
+		}
+
+		private boolean isEmpty()
+		{
+			return this.gauges.isEmpty()
+				&& getMessagesInCount() == 0L && getMessagesOutCount() == 0L && getErrorCount() == 0L
+				&& this.decodeLatency.getCount() == 0L && this.persistenceLatency.getCount() == 0L
+				&& this.publishLatency.getCount() == 0L;
+		}
+
+		private static void appendLatency(StringBuilder buf, String name, LatencyHistogram latency)
+		{
+			if (latency.getCount() > 0L) {
+				buf.append("\n\t\t").append(name).append(": ").append(latency);
+			}
+		}
+	}
+
+	private static final class Gauge
+	{
+		private final String       name;
+		private final LongSupplier supplier;
+
+		private Gauge(String name, LongSupplier supplier)
+		{
+			this.name     = name;
+			this.supplier = supplier;
+		}
+	}
+
+
+	// private var's
+
+	private final AtomicReferenceArray<ResourceMetrics> metrics =
+		new AtomicReferenceArray<>(ResourceNameEnum.values().length);
+
+
+	// constructors
+
+	/**
+	 * Default. Creates a registry separate from the shared one (e.g. for
+	 * testing).
+	 *
+	 */
+	public MetricsRegistry()
+	{
+		super();
+	}
+
+
+	// public methods
+
+	/**
+	 * Returns the resource's metrics, creating them on first use.
+	 *
+	 * @param resource The resource (not null).
+	 * @return ResourceMetrics
+	 */
+	public ResourceMetrics getMetrics(ResourceNameEnum resource)
+	{
+		int index = resource.ordinal();
+		ResourceMetrics resourceMetrics = this.metrics.get(index);
+
+		if (resourceMetrics == null) {
+			this.metrics.compareAndSet(index, null, new ResourceMetrics(resource));
+
+			resourceMetrics = this.metrics.get(index);
+		}
+
+		return resourceMetrics;
+	}
+
+	/**
+	 * Registers a gauge, sampled when a snapshot is taken. A gauge with the
+	 * same name replaces the one registered before.
+	 *
+	 * @param resource The resource the gauge is reported under.
+	 * @param name The gauge's name.
+	 * @param supplier Returns the gauge's value. Called from the reporting thread.
+	 */
+	public void registerGauge(ResourceNameEnum resource, String name, LongSupplier supplier)
+	{
+		if (resource == null || name == null || supplier == null) {
+			throw new IllegalArgumentException("Invalid gauge: " + resource + ", " + name);
+		}
+
+		getMetrics(resource).addGauge(name, supplier);
+	}
+
+	/**
+	 * Creates a snapshot of the metrics of each resource that has any, as
+	 * one {@link SensorData} per value, named after the resource (device
+	 * name and type) and the metric, e.g.
+	 * 'ConstrainedDevice/SensorMsg.decodeLatency.p99'. Counts and gauges
+	 * are cumulative; latencies are in microseconds.
+	 *
+	 * @param locationID The location ID of the snapshot's readings.
+	 * @return SystemStateData
+	 */
+	public SystemStateData createSnapshot(String locationID)
+	{
+		SystemStateData snapshot = new SystemStateData();
+		snapshot.setLocationID(locationID);
+
+		for (ResourceMetrics resourceMetrics : getAllMetrics()) {
+			String prefix =
+				resourceMetrics.resource.getDeviceName() + "/" + resourceMetrics.resource.getResourceType() + ".";
+
+			addValue(snapshot, locationID, prefix + MESSAGES_IN_NAME, resourceMetrics.getMessagesInCount());
+			addValue(snapshot, locationID, prefix + MESSAGES_OUT_NAME, resourceMetrics.getMessagesOutCount());
+			addValue(snapshot, locationID, prefix + ERRORS_NAME, resourceMetrics.getErrorCount());
+
+			for (Gauge gauge : resourceMetrics.gauges) {
+				addValue(snapshot, locationID, prefix + gauge.name, gauge.supplier.getAsLong());
+			}
+
+			addLatency(snapshot, locationID, prefix + DECODE_LATENCY_NAME, resourceMetrics.decodeLatency);
+			addLatency(snapshot, locationID, prefix + PERSISTENCE_LATENCY_NAME, resourceMetrics.persistenceLatency);
+			addLatency(snapshot, locationID, prefix + PUBLISH_LATENCY_NAME, resourceMetrics.publishLatency);
+		}
+
+		return snapshot;
+	}
+
+	@Override
+	public String toString()
+	{
+		StringBuilder buf = new StringBuilder("Metrics:");
+
+		for (ResourceMetrics resourceMetrics : getAllMetrics()) {
+			buf.append("\n\t").append(resourceMetrics);
+		}
+
+		return buf.toString();
+	}
+
+
+	// private methods
+
+	/**
+	 * Returns the metrics of the resources that have any.
+	 *
+	 */
+	private List<ResourceMetrics> getAllMetrics()
+	{
+		List<ResourceMetrics> allMetrics = new ArrayList<>();
+
+		for (int i = 0; i < this.metrics.length(); i++) {
+			ResourceMetrics resourceMetrics = this.metrics.get(i);
+
+			if (resourceMetrics != null && ! resourceMetrics.isEmpty()) {
+				allMetrics.add(resourceMetrics);
+			}
+		}
+
+		return allMetrics;
+	}
+
+	private static void addLatency(SystemStateData snapshot, String locationID, String name, LatencyHistogram latency)
+	{
+		long count = latency.getCount();
+
+		if (count > 0L) {
+			addValue(snapshot, locationID, name + ".count", count);
+			addValue(snapshot, locationID, name + ".p50", latency.getPercentile(0.50, TimeUnit.MICROSECONDS));
+			addValue(snapshot, locationID, name + ".p99", latency.getPercentile(0.99, TimeUnit.MICROSECONDS));
+			addValue(snapshot, locationID, name + ".max", latency.getMax(TimeUnit.MICROSECONDS));
+		}
+	}
+
+	private static void addValue(SystemStateData snapshot, String locationID, String name, long value)
+	{
+		SensorData data = new SensorData();
+		data.setName(name);
+		data.setLocationID(locationID);
+		data.setValue(value);
+
+		snapshot.addSensorData(data);
+	}
+
+}
@@ -0,0 +1,156 @@
+/**
+ * This class is part of the Programming the Internet of Things project.
+ *
+ * It is provided as a simple shell to guide the student and assist with
+ * implementation for the Programming the Internet of Things exercises,
+ * and designed to be modified by the student as needed.
+ */
+
+package programmingtheiot.gda.system;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import programmingtheiot.common.ConfigConst;
+import programmingtheiot.common.ConfigUtil;
+import programmingtheiot.common.IDataMessageListener;
+import programmingtheiot.common.ResourceNameEnum;
+import programmingtheiot.data.DataUtil;
+import programmingtheiot.data.SystemStateData;
+
+/**
+ * Periodically takes a snapshot of the {@link MetricsRegistry}, and passes
+ * it to the data message listener as a JSON encoded {@link SystemStateData}
+ * message for {@link ResourceNameEnum#GDA_MGMT_STATUS_MSG_RESOURCE}.
+ * <p>
+ * The report interval (in seconds) is set via the
+ * {@link ConfigConst#METRICS_REPORT_SECS_KEY} property in the
+ * {@link ConfigConst#GATEWAY_DEVICE} section.
+ *
+ */
+public class MetricsReportManager
+{
+	// static
+
+	private static final Logger _Logger =
+		Logger.getLogger(MetricsReportManager.class.getName());
+
+
+	// private var's
+
+	private final MetricsRegistry registry;
+
+	private ScheduledExecutorService schedExecSvc = null;
+	private boolean isStarted = false;
+
+	private int reportRate = ConfigConst.DEFAULT_METRICS_REPORT_SECS;
+	private String locationID = ConfigConst.NOT_SET;
+	private IDataMessageListener dataMsgListener = null;
+
+
+	// constructors
+
+	/**
+	 * Default. Reports the metrics of the shared registry.
+	 *
+	 */
+	public MetricsReportManager()
+	{
+		this(MetricsRegistry.getInstance());
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param registry The registry to report.
+	 */
+	public MetricsReportManager(MetricsRegistry registry)
+	{
+		super();
+
+		ConfigUtil configUtil = ConfigUtil.getInstance();
+
+		this.registry = registry;
+
+		this.reportRate =
+			configUtil.getInteger(
+				ConfigConst.GATEWAY_DEVICE, ConfigConst.METRICS_REPORT_SECS_KEY, ConfigConst.DEFAULT_METRICS_REPORT_SECS);
+
+		if (this.reportRate <= 0) {
+			this.reportRate = ConfigConst.DEFAULT_METRICS_REPORT_SECS;
+		}
+
+		this.locationID =
+			configUtil.getProperty(ConfigConst.GATEWAY_DEVICE, ConfigConst.LOCATION_ID_PROP, ConfigConst.NOT_SET);
+	}
+
+
+	// public methods
+
+	/**
+	 * Takes a snapshot of the metrics, and passes it on to the listener.
+	 *
+	 */
+	public void handleMetricsReport()
+	{
+		try {
+			SystemStateData snapshot = this.registry.createSnapshot(this.locationID);
+
+			_Logger.fine("Reporting metrics: " + snapshot.getSensorDataList().size() + " values.");
+
+			if (this.dataMsgListener != null) {
+				String jsonData = DataUtil.getInstance().systemStateDataToJson(snapshot);
+
+				this.dataMsgListener.handleIncomingMessage(ResourceNameEnum.GDA_MGMT_STATUS_MSG_RESOURCE, jsonData);
+			}
+		} catch (Exception e) {
+			// an exception would cancel the scheduled task
+			_Logger.log(Level.WARNING, "Failed to report metrics.", e);
+		}
+	}
+
+	public void setDataMessageListener(IDataMessageListener listener)
+	{
+		if (listener != null) {
+			this.dataMsgListener = listener;
+		}
+	}
+
+	public int getReportRate()
+	{
+		return this.reportRate;
+	}
+
+	public synchronized boolean startManager()
+	{
+		if (! this.isStarted) {
+			_Logger.info("MetricsReportManager is starting. Report rate: " + this.reportRate + " secs.");
+
+			this.schedExecSvc = Executors.newSingleThreadScheduledExecutor();
+			this.schedExecSvc.scheduleAtFixedRate(
+				this::handleMetricsReport, this.reportRate, this.reportRate, TimeUnit.SECONDS);
+
+			this.isStarted = true;
+		} else {
+			_Logger.info("MetricsReportManager is already started.");
+		}
+
+		return this.isStarted;
+	}
+
+	public synchronized boolean stopManager()
+	{
+		if (this.isStarted) {
+			this.schedExecSvc.shutdown();
+			this.isStarted = false;
+
+			_Logger.info("MetricsReportManager is stopped.");
+		}
+
+		return true;
+	}
+
+}
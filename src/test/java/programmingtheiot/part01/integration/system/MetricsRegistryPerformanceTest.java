@@ -0,0 +1,99 @@
+/**
+ * This class is part of the Programming the Internet of Things
+ * project, and is available via the MIT License, which can be
+ * found in the LICENSE file at the top level of this repository.
+ *
+ * Copyright (c) 2020 by Andrew D. King
+ */
+
+package programmingtheiot.part01.integration.system;
+
+import static org.junit.Assert.*;
+
+import java.util.logging.Logger;
+
+import org.junit.Test;
+
+import programmingtheiot.common.ResourceNameEnum;
+import programmingtheiot.gda.system.MetricsRegistry;
+
+/**
+ * This test case class contains very basic performance tests for
+ * MetricsRegistry.
+ *
+ * It logs the cost (in nanoseconds) of recording a message received and
+ * its decode latency, as the connectors do per message, from a single
+ * thread, and from several threads recording into the same resource.
+ * The counts are checked afterwards, so no concurrent record is lost.
+ *
+ */
+public class MetricsRegistryPerformanceTest
+{
+	// static
+
+	private static final Logger _Logger =
+		Logger.getLogger(MetricsRegistryPerformanceTest.class.getName());
+
+	public static final int RECORD_COUNT = 5000000;
+	public static final int RUN_COUNT    = 5;
+	public static final int THREAD_COUNT = 4;
+
+
+	// test methods
+
+	@Test
+	public void testRecordingCost() throws Exception
+	{
+		for (int run = 1; run <= RUN_COUNT; run++) {
+			boolean isLogged = (run == RUN_COUNT);
+
+			execRecords("Single thread", 1, isLogged);
+			execRecords(THREAD_COUNT + " threads    ", THREAD_COUNT, isLogged);
+		}
+	}
+
+
+	// private methods
+
+	private void execRecords(String name, int threadCount, boolean isLogged) throws Exception
+	{
+		MetricsRegistry registry = new MetricsRegistry();
+		MetricsRegistry.ResourceMetrics resourceMetrics =
+			registry.getMetrics(ResourceNameEnum.CDA_SENSOR_MSG_RESOURCE);
+
+		Thread[] threads = new Thread[threadCount];
+
+		for (int i = 0; i < threadCount; i++) {
+			threads[i] = new Thread(() -> {
+				for (int j = 0; j < RECORD_COUNT; j++) {
+					resourceMetrics.onMessageIn();
+					resourceMetrics.recordDecode(1000L + (j & 0xFFF), true);
+				}
+			});
+		}
+
+		long startNanos = System.nanoTime();
+
+		for (Thread thread : threads) {
+			thread.start();
+		}
+
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		long elapsedNanos = System.nanoTime() - startNanos;
+
+		// per thread, since they record concurrently
+		if (isLogged) {
+			_Logger.info(
+				String.format(
+					"%s: %.1f ns per message (%d messages per thread)\n\tdecode latency: %s",
+					name, (double) elapsedNanos / RECORD_COUNT, RECORD_COUNT, resourceMetrics.getDecodeLatency()));
+		}
+
+		assertEquals((long) threadCount * RECORD_COUNT, resourceMetrics.getMessagesInCount());
+		assertEquals((long) threadCount * RECORD_COUNT, resourceMetrics.getDecodeLatency().getCount());
+	}
+
+}
@@ -0,0 +1,139 @@
+/**
+ * This class is part of the Programming the Internet of Things
+ * project, and is available via the MIT License, which can be
+ * found in the LICENSE file at the top level of this repository.
+ *
+ * Copyright (c) 2020 by Andrew D. King
+ */
+
+package programmingtheiot.part01.unit.system;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import org.junit.Test;
+
+import programmingtheiot.gda.system.LatencyHistogram;
+
+/**
+ * This test case class contains very basic unit tests for
+ * LatencyHistogram. It should not be considered complete,
+ * but serve as a starting point for the student implementing
+ * additional functionality within their Programming the IoT
+ * environment.
+ *
+ */
+public class LatencyHistogramTest
+{
+	// static
+
+	private static final Logger _Logger =
+		Logger.getLogger(LatencyHistogramTest.class.getName());
+
+	// max relative error of a recorded latency
+	private static final double MAX_ERROR = 1.0 / LatencyHistogram.SUB_BUCKET_COUNT;
+
+
+	// test methods
+
+	@Test
+	public void testEmptyHistogram()
+	{
+		LatencyHistogram histogram = new LatencyHistogram();
+
+		assertEquals(0L, histogram.getCount());
+		assertEquals(0L, histogram.getPercentile(0.99, TimeUnit.NANOSECONDS));
+		assertEquals(0.0, histogram.getMeanNanos(), 0.0);
+	}
+
+	@Test
+	public void testSmallLatenciesAreExact()
+	{
+		LatencyHistogram histogram = new LatencyHistogram(1);
+
+		for (long nanos = 0L; nanos < 2 * LatencyHistogram.SUB_BUCKET_COUNT; nanos++) {
+			histogram.record(nanos);
+		}
+
+		assertEquals(2 * LatencyHistogram.SUB_BUCKET_COUNT, histogram.getCount());
+		assertEquals(31L, histogram.getPercentile(0.50, TimeUnit.NANOSECONDS));
+		assertEquals(63L, histogram.getPercentile(1.00, TimeUnit.NANOSECONDS));
+	}
+
+	@Test
+	public void testPercentilesWithinError()
+	{
+		LatencyHistogram histogram = new LatencyHistogram();
+
+		// 1 us to 10 ms, evenly
+		for (long micros = 1L; micros <= 10000L; micros++) {
+			histogram.record(TimeUnit.MICROSECONDS.toNanos(micros));
+		}
+
+		_Logger.info("Histogram: " + histogram);
+
+		assertEquals(10000L, histogram.getCount());
+		assertEquals(5000.5 * 1000.0, histogram.getMeanNanos(), 1.0);
+		assertEquals(10000L, histogram.getMax(TimeUnit.MICROSECONDS));
+
+		assertWithinError(5000000L, histogram.getPercentile(0.50, TimeUnit.NANOSECONDS));
+		assertWithinError(9900000L, histogram.getPercentile(0.99, TimeUnit.NANOSECONDS));
+
+		// never above the max recorded
+		assertEquals(10000000L, histogram.getPercentile(1.00, TimeUnit.NANOSECONDS));
+	}
+
+	@Test
+	public void testOutOfRangeLatencies()
+	{
+		LatencyHistogram histogram = new LatencyHistogram();
+
+		histogram.record(-5L);
+		histogram.record(Long.MAX_VALUE);
+
+		assertEquals(2L, histogram.getCount());
+		assertEquals(0L, histogram.getPercentile(0.50, TimeUnit.NANOSECONDS));
+		assertEquals(LatencyHistogram.MAX_TRACKABLE_NANOS, histogram.getPercentile(1.00, TimeUnit.NANOSECONDS));
+	}
+
+	@Test
+	public void testConcurrentRecording() throws Exception
+	{
+		LatencyHistogram histogram = new LatencyHistogram(4);
+
+		int threadCount = 4;
+		int recordCount = 100000;
+
+		Thread[] threads = new Thread[threadCount];
+
+		for (int i = 0; i < threadCount; i++) {
+			threads[i] = new Thread(() -> {
+				for (int j = 0; j < recordCount; j++) {
+					histogram.record(1000L);
+				}
+			});
+
+			threads[i].start();
+		}
+
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		assertEquals((long) threadCount * recordCount, histogram.getCount());
+		assertWithinError(1000L, histogram.getPercentile(0.99, TimeUnit.NANOSECONDS));
+	}
+
+
+	// private methods
+
+	private void assertWithinError(long expectedNanos, long actualNanos)
+	{
+		assertTrue(
+			"Expected " + expectedNanos + " ns, but was " + actualNanos + " ns.",
+			Math.abs(actualNanos - expectedNanos) <= expectedNanos * MAX_ERROR);
+	}
+
+}
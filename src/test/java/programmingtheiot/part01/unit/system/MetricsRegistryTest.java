@@ -0,0 +1,161 @@
+/**
+ * This class is part of the Programming the Internet of Things
+ * project, and is available via the MIT License, which can be
+ * found in the LICENSE file at the top level of this repository.
+ *
+ * Copyright (c) 2020 by Andrew D. King
+ */
+
+package programmingtheiot.part01.unit.system;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import org.junit.Test;
+
+import programmingtheiot.common.ResourceNameEnum;
+import programmingtheiot.data.DataUtil;
+import programmingtheiot.data.SensorData;
+import programmingtheiot.data.SystemStateData;
+import programmingtheiot.gda.system.MetricsRegistry;
+
+/**
+ * This test case class contains very basic unit tests for
+ * MetricsRegistry. It should not be considered complete,
+ * but serve as a starting point for the student implementing
+ * additional functionality within their Programming the IoT
+ * environment.
+ *
+ */
+public class MetricsRegistryTest
+{
+	// static
+
+	private static final Logger _Logger =
+		Logger.getLogger(MetricsRegistryTest.class.getName());
+
+	public static final String LOCATION_ID = "gatewaydevice001";
+
+
+	// test methods
+
+	@Test
+	public void testMetricsPerResource()
+	{
+		MetricsRegistry registry = new MetricsRegistry();
+
+		MetricsRegistry.ResourceMetrics sensorMetrics =
+			registry.getMetrics(ResourceNameEnum.CDA_SENSOR_MSG_RESOURCE);
+
+		assertSame(sensorMetrics, registry.getMetrics(ResourceNameEnum.CDA_SENSOR_MSG_RESOURCE));
+
+		sensorMetrics.onMessageIn();
+		sensorMetrics.onMessageIn();
+		sensorMetrics.recordDecode(2000L, true);
+		sensorMetrics.recordDecode(3000L, false);
+		sensorMetrics.recordPersistence(50000L, true);
+		sensorMetrics.recordPublish(100000L, true);
+		sensorMetrics.recordPublish(200000L, false);
+
+		assertEquals(2L, sensorMetrics.getMessagesInCount());
+		assertEquals(1L, sensorMetrics.getMessagesOutCount());
+		assertEquals(2L, sensorMetrics.getErrorCount());
+		assertEquals(2L, sensorMetrics.getDecodeLatency().getCount());
+		assertEquals(1L, sensorMetrics.getPersistenceLatency().getCount());
+		assertEquals(2L, sensorMetrics.getPublishLatency().getCount());
+
+		MetricsRegistry.ResourceMetrics perfMetrics =
+			registry.getMetrics(ResourceNameEnum.CDA_SYSTEM_PERF_MSG_RESOURCE);
+
+		assertEquals(0L, perfMetrics.getMessagesInCount());
+		assertEquals(0L, perfMetrics.getErrorCount());
+
+		_Logger.info(registry.toString());
+	}
+
+	@Test
+	public void testGaugeReplacedByName()
+	{
+		MetricsRegistry registry = new MetricsRegistry();
+
+		AtomicLong depth = new AtomicLong(7L);
+
+		registry.registerGauge(ResourceNameEnum.GDA_MGMT_STATUS_MSG_RESOURCE, "queueDepth", () -> 1L);
+		registry.registerGauge(ResourceNameEnum.GDA_MGMT_STATUS_MSG_RESOURCE, "queueDepth", depth::get);
+
+		MetricsRegistry.ResourceMetrics mgmtMetrics =
+			registry.getMetrics(ResourceNameEnum.GDA_MGMT_STATUS_MSG_RESOURCE);
+
+		assertEquals(7L, mgmtMetrics.getGaugeValue("queueDepth"));
+
+		depth.set(9L);
+
+		assertEquals(9L, mgmtMetrics.getGaugeValue("queueDepth"));
+		assertEquals(-1L, mgmtMetrics.getGaugeValue("unknown"));
+	}
+
+	@Test
+	public void testSnapshot()
+	{
+		MetricsRegistry registry = new MetricsRegistry();
+
+		MetricsRegistry.ResourceMetrics sensorMetrics =
+			registry.getMetrics(ResourceNameEnum.CDA_SENSOR_MSG_RESOURCE);
+
+		sensorMetrics.onMessageIn();
+		sensorMetrics.recordDecode(TimeUnit.MICROSECONDS.toNanos(20L), true);
+
+		registry.registerGauge(ResourceNameEnum.GDA_MGMT_STATUS_MSG_RESOURCE, "analysisQueueDepth", () -> 3L);
+
+		// looked up, but nothing recorded
+		registry.getMetrics(ResourceNameEnum.CDA_ACTUATOR_CMD_RESOURCE);
+
+		SystemStateData snapshot = registry.createSnapshot(LOCATION_ID);
+
+		assertEquals(LOCATION_ID, snapshot.getLocationID());
+		assertEquals(1.0f, getValue(snapshot, "ConstrainedDevice/SensorMsg.messagesIn"), 0.0f);
+		assertEquals(0.0f, getValue(snapshot, "ConstrainedDevice/SensorMsg.errors"), 0.0f);
+		assertEquals(1.0f, getValue(snapshot, "ConstrainedDevice/SensorMsg.decodeLatency.count"), 0.0f);
+		assertEquals(20.0f, getValue(snapshot, "ConstrainedDevice/SensorMsg.decodeLatency.max"), 0.0f);
+		assertEquals(3.0f, getValue(snapshot, "GatewayDevice/MgmtStatusMsg.analysisQueueDepth"), 0.0f);
+
+		// no latencies recorded, and resources without metrics are left out
+		assertNull(findData(snapshot, "ConstrainedDevice/SensorMsg.publishLatency.count"));
+		assertNull(findData(snapshot, "ConstrainedDevice/ActuatorCmd.messagesIn"));
+
+		String jsonData = DataUtil.getInstance().systemStateDataToJson(snapshot);
+
+		_Logger.info("Snapshot: " + jsonData);
+
+		SystemStateData decodedSnapshot = DataUtil.getInstance().jsonToSystemStateData(jsonData);
+
+		assertEquals(snapshot.getSensorDataList().size(), decodedSnapshot.getSensorDataList().size());
+	}
+
+
+	// private methods
+
+	private float getValue(SystemStateData snapshot, String name)
+	{
+		SensorData data = findData(snapshot, name);
+
+		assertNotNull("No value named " + name, data);
+
+		return data.getValue();
+	}
+
+	private SensorData findData(SystemStateData snapshot, String name)
+	{
+		for (SensorData data : snapshot.getSensorDataList()) {
+			if (name.equals(data.getName())) {
+				return data;
+			}
+		}
+
+		return null;
+	}
+
+}
@@ -0,0 +1,133 @@
+/**
+ * This class is part of the Programming the Internet of Things
+ * project, and is available via the MIT License, which can be
+ * found in the LICENSE file at the top level of this repository.
+ *
+ * Copyright (c) 2020 by Andrew D. King
+ */
+
+package programmingtheiot.part02.integration.app;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+import org.junit.Test;
+
+import programmingtheiot.common.ConfigConst;
+import programmingtheiot.data.SensorData;
+import programmingtheiot.gda.app.AnomalyDetector;
+
+/**
+ * This test case class contains very basic performance tests for
+ * AnomalyDetector.
+ *
+ * It logs the cost per reading (in nanoseconds) of checking readings
+ * from a single stream, and from 10k concurrent streams (devices), each
+ * with its own baseline, with an occasional spike in each. The spikes
+ * are expected to raise alerts, so a detector that never fires isn't
+ * mistaken for a fast one.
+ *
+ */
+public class AnomalyDetectorPerformanceTest
+{
+	// static
+
+	private static final Logger _Logger =
+		Logger.getLogger(AnomalyDetectorPerformanceTest.class.getName());
+
+	public static final int READING_COUNT = 2000000;
+	public static final int RUN_COUNT     = 5;
+	public static final int STREAM_COUNT  = 10000;
+	public static final int SPIKE_RATE    = 1000;
+
+	// prime, so each stream gets different values
+	public static final int VALUE_COUNT = 8191;
+
+
+	// test methods
+
+	@Test
+	public void testCheckCost()
+	{
+		for (int run = 1; run <= RUN_COUNT; run++) {
+			boolean isLogged = (run == RUN_COUNT);
+
+			execChecks("Single stream ", 1, isLogged);
+			execChecks("10k streams   ", STREAM_COUNT, isLogged);
+		}
+	}
+
+
+	// private methods
+
+	private void execChecks(String name, int streamCount, boolean isLogged)
+	{
+		LongAdder alertCount = new LongAdder();
+
+		AnomalyDetector detector = new AnomalyDetector(
+			(data, score) -> alertCount.increment(), streamCount,
+			new AnomalyDetector.Detector(
+				ConfigConst.HUMIDITY_SENSOR_TYPE, AnomalyDetector.DEFAULT_ALPHA, AnomalyDetector.DEFAULT_Z_THRESHOLD,
+				0.1, AnomalyDetector.DEFAULT_WARM_UP_READINGS, 60));
+
+		SensorData[] readings = createReadings(streamCount);
+		float[] values = createValues(VALUE_COUNT);
+
+		long startNanos = System.nanoTime();
+
+		for (int i = 0; i < READING_COUNT; i++) {
+			SensorData data = readings[i % readings.length];
+
+			data.setStatusCode(ConfigConst.DEFAULT_STATUS);
+			data.setValue(values[i % values.length]);
+
+			detector.check(data);
+		}
+
+		long elapsedNanos = System.nanoTime() - startNanos;
+
+		if (isLogged) {
+			_Logger.info(
+				String.format(
+					"%s: %.1f ns per reading (%d readings, %d streams, %d alerts)",
+					name, (double) elapsedNanos / READING_COUNT, READING_COUNT, streamCount, alertCount.sum()));
+		}
+
+		assertTrue(alertCount.sum() > 0);
+	}
+
+	private SensorData[] createReadings(int streamCount)
+	{
+		SensorData[] readings = new SensorData[streamCount];
+
+		for (int i = 0; i < streamCount; i++) {
+			SensorData data = new SensorData();
+			data.setLocationID("device" + i);
+			data.setTypeID(ConfigConst.HUMIDITY_SENSOR_TYPE);
+
+			readings[i] = data;
+		}
+
+		return readings;
+	}
+
+	/**
+	 * Creates noisy values around a level, with an occasional spike.
+	 *
+	 */
+	private float[] createValues(int count)
+	{
+		Random random = new Random(42L);
+		float[] values = new float[count];
+
+		for (int i = 0; i < count; i++) {
+			values[i] = 40.0f + (float) (0.5 * random.nextGaussian()) + (i % SPIKE_RATE == SPIKE_RATE - 1 ? 30.0f : 0.0f);
+		}
+
+		return values;
+	}
+
+}
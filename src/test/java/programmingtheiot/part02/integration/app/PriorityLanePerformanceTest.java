@@ -0,0 +1,191 @@
+/**
+ * This class is part of the Programming the Internet of Things
+ * project, and is available via the MIT License, which can be
+ * found in the LICENSE file at the top level of this repository.
+ *
+ * Copyright (c) 2020 by Andrew D. King
+ */
+
+package programmingtheiot.part02.integration.app;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+import org.junit.Test;
+
+import programmingtheiot.gda.app.IngestionPipeline;
+
+/**
+ * This test case class contains very basic performance tests for the
+ * control lane of IngestionPipeline. It should not be considered complete.
+ *
+ * The analysis stage is saturated with telemetry (its queue is kept
+ * full), while commands are submitted at a fixed rate. With a shared
+ * lane (as DeviceDataManager did originally), each command waits behind
+ * the queued telemetry, or is dropped once the queue is full. With the
+ * control lane, it only waits for a thread.
+ *
+ * No command may be dropped from the control lane, and its p99 latency
+ * must be at most a tenth of the shared lane's. Both lanes run on the
+ * same host under the same load, so the ratio holds on a loaded host,
+ * where an absolute bound wouldn't (it's usually a few hundred times
+ * lower).
+ *
+ */
+public class PriorityLanePerformanceTest
+{
+	// static
+
+	private static final Logger _Logger =
+		Logger.getLogger(PriorityLanePerformanceTest.class.getName());
+
+	public static final int  QUEUE_SIZE              = 4096;
+	public static final long TELEMETRY_COST_NANOS    = 20000L;
+	public static final int  COMMAND_COUNT           = 200;
+	public static final long COMMAND_INTERVAL_MILLIS = 5L;
+
+	// of the shared lane's p99
+	public static final double MAX_CONTROL_P99_FRACTION = 0.1;
+
+
+	// test methods
+
+	@Test
+	public void testCommandLatencyUnderSaturation() throws Exception
+	{
+		long[] sharedLatencies  = execCommands(IngestionPipeline.Stage.ANALYSIS);
+		long[] controlLatencies = execCommands(IngestionPipeline.Stage.CONTROL);
+
+		logResults("Shared lane ", sharedLatencies);
+		logResults("Control lane", controlLatencies);
+
+		assertEquals(0, countDropped(controlLatencies));
+
+		// some commands must have run on the shared lane, for its p99 to compare against
+		assertTrue(countDropped(sharedLatencies) < COMMAND_COUNT);
+
+		long sharedP99  = getPercentile(sharedLatencies, 0.99);
+		long controlP99 = getPercentile(controlLatencies, 0.99);
+
+		assertTrue(
+			"Control lane p99 " + controlP99 + " ns, shared lane p99 " + sharedP99 + " ns.",
+			controlP99 <= sharedP99 * MAX_CONTROL_P99_FRACTION);
+	}
+
+
+	// private methods
+
+	/**
+	 * Submits the commands to the given stage, while the analysis stage is
+	 * kept saturated with telemetry, and returns each command's latency
+	 * (from submission until it ran), or -1 if it was dropped.
+	 *
+	 */
+	private long[] execCommands(IngestionPipeline.Stage commandStage) throws Exception
+	{
+		IngestionPipeline pipeline = new IngestionPipeline(1, QUEUE_SIZE);
+		AtomicBoolean isFlooding = new AtomicBoolean(true);
+
+		Thread flooder = new Thread(() -> {
+			Runnable telemetry = () -> awaitNanos(System.nanoTime() + TELEMETRY_COST_NANOS);
+
+			while (isFlooding.get()) {
+				if (! pipeline.submit(IngestionPipeline.Stage.ANALYSIS, telemetry)) {
+					// full: top it up again shortly
+					sleepQuietly(1L);
+				}
+			}
+		}, "flooder");
+
+		flooder.start();
+
+		// let the queue fill up
+		Thread.sleep(200L);
+
+		long[] latencies = new long[COMMAND_COUNT];
+		CountDownLatch doneLatch = new CountDownLatch(COMMAND_COUNT);
+
+		for (int i = 0; i < COMMAND_COUNT; i++) {
+			int index = i;
+			long submitNanos = System.nanoTime();
+
+			boolean isAccepted = pipeline.submit(commandStage, () -> {
+				latencies[index] = System.nanoTime() - submitNanos;
+				doneLatch.countDown();
+			});
+
+			if (! isAccepted) {
+				latencies[index] = -1L;
+				doneLatch.countDown();
+			}
+
+			Thread.sleep(COMMAND_INTERVAL_MILLIS);
+		}
+
+		isFlooding.set(false);
+		flooder.join();
+
+		assertTrue(doneLatch.await(30, TimeUnit.SECONDS));
+
+		pipeline.shutdown();
+
+		return latencies;
+	}
+
+	private void logResults(String name, long[] latencies)
+	{
+		String msg =
+			String.format(
+				"\n\t%s: commands = %s | dropped = %s | p50 = %.2f ms | p99 = %.2f ms | max = %.2f ms",
+				name, latencies.length, countDropped(latencies),
+				getPercentile(latencies, 0.50) / 1.0e6,
+				getPercentile(latencies, 0.99) / 1.0e6,
+				getPercentile(latencies, 1.00) / 1.0e6);
+
+		_Logger.info(msg);
+	}
+
+	/**
+	 * Returns the percentile of the latencies of the commands that ran.
+	 *
+	 */
+	private long getPercentile(long[] latencies, double percentile)
+	{
+		long[] sorted = Arrays.stream(latencies).filter(latency -> latency >= 0).sorted().toArray();
+
+		if (sorted.length == 0) {
+			return 0L;
+		}
+
+		int index = (int) Math.ceil(percentile * sorted.length) - 1;
+
+		return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+	}
+
+	private long countDropped(long[] latencies)
+	{
+		return Arrays.stream(latencies).filter(latency -> latency < 0).count();
+	}
+
+	private void awaitNanos(long deadlineNanos)
+	{
+		while (System.nanoTime() < deadlineNanos) {
+			Thread.onSpinWait();
+		}
+	}
+
+	private void sleepQuietly(long millis)
+	{
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
@@ -0,0 +1,180 @@
+/**
+ * This class is part of the Programming the Internet of Things
+ * project, and is available via the MIT License, which can be
+ * found in the LICENSE file at the top level of this repository.
+ *
+ * Copyright (c) 2020 by Andrew D. King
+ */
+
+package programmingtheiot.part02.integration.app;
+
+import static org.junit.Assert.*;
+
+import java.util.logging.Logger;
+
+import org.junit.Test;
+
+import programmingtheiot.common.ConfigConst;
+import programmingtheiot.common.IActuatorDataListener;
+import programmingtheiot.data.SensorData;
+import programmingtheiot.gda.app.ExpressionRule;
+import programmingtheiot.gda.app.RuleEngine;
+import programmingtheiot.gda.app.RuleExpression;
+import programmingtheiot.gda.app.ThresholdRule;
+
+/**
+ * This test case class contains very basic performance tests for
+ * RuleExpression, over readings of which only some match.
+ *
+ * It logs the cost per reading (in nanoseconds) of testing a compiled
+ * expression, of evaluating it as a rule via the RuleEngine (with a
+ * ThresholdRule for comparison), and of parsing the expression for each
+ * reading, which is what compiling it once avoids.
+ *
+ */
+public class RuleExpressionPerformanceTest
+{
+	// static
+
+	private static final Logger _Logger =
+		Logger.getLogger(RuleExpressionPerformanceTest.class.getName());
+
+	public static final String CONDITION = "value > 50 && duration(300s) && hour() in 8..20";
+
+	public static final int READING_COUNT        = 2000000;
+	public static final int PARSED_READING_COUNT = 100000;
+	public static final int RUN_COUNT            = 5;
+	public static final int DEVICE_COUNT         = 16;
+
+
+	// test methods
+
+	@Test
+	public void testRuleEvaluationCost()
+	{
+		SensorData[] readings = createReadings();
+		RuleExpression expression = RuleExpression.compile(CONDITION);
+
+		RuleEngine expressionEngine = new RuleEngine(
+			new ExpressionRule(
+				"DaytimeHumidity", ConfigConst.HUMIDITY_SENSOR_TYPE, expression,
+				ConfigConst.HVAC_ACTUATOR_TYPE, ConfigConst.HVAC_ACTUATOR_NAME, ConfigConst.ON_COMMAND, 45.0f));
+
+		RuleEngine thresholdEngine = new RuleEngine(
+			new ThresholdRule(
+				"Humidity", ConfigConst.HUMIDITY_SENSOR_TYPE,
+				ConfigConst.HUMIDIFIER_ACTUATOR_TYPE, ConfigConst.HUMIDIFIER_ACTUATOR_NAME,
+				30.0f, 50.0f, 40.0f, 300, ConfigConst.ON_COMMAND, ConfigConst.OFF_COMMAND));
+
+		IActuatorDataListener listener = (data) -> true;
+
+		// the last run of each is logged, once the JIT has compiled it all
+		for (int run = 1; run <= RUN_COUNT; run++) {
+			boolean isLogged = (run == RUN_COUNT);
+
+			execCompiledExpression(expression, readings, isLogged);
+			execRuleEngine("Rule engine, expression rule", expressionEngine, listener, readings, isLogged);
+			execRuleEngine("Rule engine, threshold rule ", thresholdEngine, listener, readings, isLogged);
+		}
+
+		execParsedExpression(readings);
+	}
+
+
+	// private methods
+
+	private void execCompiledExpression(RuleExpression expression, SensorData[] readings, boolean isLogged)
+	{
+		int matchCount = 0;
+		long startNanos = System.nanoTime();
+
+		for (int i = 0; i < READING_COUNT; i++) {
+			if (expression.test(readings[i % readings.length])) {
+				matchCount++;
+			}
+		}
+
+		logResult("Compiled expression          ", System.nanoTime() - startNanos, READING_COUNT, isLogged);
+
+		assertTrue(matchCount > 0 && matchCount < READING_COUNT);
+	}
+
+	private void execRuleEngine(
+		String name, RuleEngine engine, IActuatorDataListener listener, SensorData[] readings, boolean isLogged)
+	{
+		long startNanos = System.nanoTime();
+
+		for (int i = 0; i < READING_COUNT; i++) {
+			engine.evaluate(readings[i % readings.length], listener);
+		}
+
+		logResult(name, System.nanoTime() - startNanos, READING_COUNT, isLogged);
+	}
+
+	/**
+	 * Parses the expression for each reading, as an interpreter would.
+	 *
+	 */
+	private void execParsedExpression(SensorData[] readings)
+	{
+		int matchCount = 0;
+
+		for (int i = 0; i < PARSED_READING_COUNT; i++) {
+			if (RuleExpression.compile(CONDITION).test(readings[i % readings.length])) {
+				matchCount++;
+			}
+		}
+
+		long startNanos = System.nanoTime();
+
+		for (int i = 0; i < PARSED_READING_COUNT; i++) {
+			if (RuleExpression.compile(CONDITION).test(readings[i % readings.length])) {
+				matchCount++;
+			}
+		}
+
+		logResult("Parsed per reading           ", System.nanoTime() - startNanos, PARSED_READING_COUNT, true);
+
+		assertTrue(matchCount > 0);
+	}
+
+	/**
+	 * Creates readings for several devices, over a day, with values that
+	 * cross the thresholds.
+	 *
+	 */
+	private SensorData[] createReadings()
+	{
+		SensorData[] readings = new SensorData[1024];
+		long startMillis = System.currentTimeMillis();
+
+		for (int i = 0; i < readings.length; i++) {
+			long timeStampMillis = startMillis + i * 90000L;
+
+			SensorData data = new SensorData() {
+				@Override
+				public long getTimeStampMillis()
+				{
+					return timeStampMillis;
+				}
+			};
+
+			data.setLocationID("device" + (i % DEVICE_COUNT));
+			data.setTypeID(ConfigConst.HUMIDITY_SENSOR_TYPE);
+			data.setValue(20.0f + (i * 7) % 50);
+
+			readings[i] = data;
+		}
+
+		return readings;
+	}
+
+	private void logResult(String name, long elapsedNanos, int readingCount, boolean isLogged)
+	{
+		if (isLogged) {
+			_Logger.info(
+				String.format("%s: %.1f ns per reading (%d readings)", name, (double) elapsedNanos / readingCount, readingCount));
+		}
+	}
+
+}
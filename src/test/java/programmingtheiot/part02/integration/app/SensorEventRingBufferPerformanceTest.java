@@ -0,0 +1,220 @@
+/**
+ * This class is part of the Programming the Internet of Things
+ * project, and is available via the MIT License, which can be
+ * found in the LICENSE file at the top level of this repository.
+ *
+ * Copyright (c) 2020 by Andrew D. King
+ */
+
+package programmingtheiot.part02.integration.app;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+import org.junit.Test;
+
+import programmingtheiot.common.ConfigConst;
+import programmingtheiot.common.ResourceNameEnum;
+import programmingtheiot.data.SensorData;
+import programmingtheiot.data.SensorDataBatch;
+import programmingtheiot.gda.app.SensorEventRingBuffer;
+
+/**
+ * This test case class contains very basic performance tests for
+ * SensorEventRingBuffer. It logs the producer's cost per reading and
+ * the consumers' batch sizes, and checks that every reading not
+ * dropped reaches all three sinks.
+ *
+ * Sensor readings are offered at a fixed rate (100k msgs/s) to three
+ * simulated sinks: persistence and cloud, which have a fixed cost per
+ * call (e.g. a network round trip) plus a small cost per reading, and
+ * analysis, which only has the per reading cost.
+ *
+ * With direct calls (as DeviceDataManager did originally), the
+ * producer pays for every sink on every message. With the ring, it
+ * only copies the reading into a slot, and the persistence and cloud
+ * consumers pay the per call cost once per batch.
+ *
+ */
+public class SensorEventRingBufferPerformanceTest
+{
+	// static
+
+	private static final Logger _Logger =
+		Logger.getLogger(SensorEventRingBufferPerformanceTest.class.getName());
+
+	public static final int  MSGS_PER_SEC      = 100000;
+	public static final int  MSG_COUNT         = 200000;
+	public static final int  WARMUP_MSG_COUNT  = 50000;
+	public static final int  RING_SIZE         = 16384;
+	public static final long CALL_COST_NANOS   = 5000L;
+	public static final long RECORD_COST_NANOS = 50L;
+
+	private static final ResourceNameEnum RESOURCE = ResourceNameEnum.CDA_SENSOR_MSG_RESOURCE;
+
+
+	// test methods
+
+	@Test
+	public void testRingBufferVersusDirectCalls() throws Exception
+	{
+		// warm up both paths first
+		execDirectCalls(WARMUP_MSG_COUNT);
+		execRingBuffer(WARMUP_MSG_COUNT);
+
+		long[] directLatencies = execDirectCalls(MSG_COUNT);
+		long[] ringLatencies   = execRingBuffer(MSG_COUNT);
+
+		logResults("Direct calls", directLatencies);
+		logResults("Ring buffer ", ringLatencies);
+	}
+
+
+	// private methods
+
+	/**
+	 * Calls all sinks on the producer thread, for each message.
+	 *
+	 */
+	private long[] execDirectCalls(int msgCount)
+	{
+		SensorData data = createSensorData();
+		LongAdder recordCount = new LongAdder();
+		long[] latencies = new long[msgCount];
+
+		long intervalNanos = TimeUnit.SECONDS.toNanos(1) / MSGS_PER_SEC;
+		long startNanos = System.nanoTime();
+
+		for (int i = 0; i < msgCount; i++) {
+			long dueNanos = startNanos + i * intervalNanos;
+
+			awaitNanos(dueNanos);
+			data.setValue(i);
+
+			// persistence, analysis, cloud
+			simulateSink(1);
+			simulateRecord();
+			simulateSink(1);
+			recordCount.add(3);
+
+			latencies[i] = System.nanoTime() - dueNanos;
+		}
+
+		assertEquals(msgCount * 3L, recordCount.sum());
+
+		return latencies;
+	}
+
+	/**
+	 * Publishes each message to the ring, and lets the consumers batch.
+	 *
+	 */
+	private long[] execRingBuffer(int msgCount) throws Exception
+	{
+		SensorEventRingBuffer ring = new SensorEventRingBuffer(RING_SIZE);
+		SensorData data = createSensorData();
+		LongAdder recordCount = new LongAdder();
+		long[] latencies = new long[msgCount];
+
+		ring.addConsumer("persistence", SensorEventRingBuffer.batching(
+			SensorEventRingBuffer.DEFAULT_MAX_BATCH_SIZE, (resource, batch) -> {
+				simulateSink(batch.size());
+				recordCount.add(batch.size());
+			}));
+
+		ring.addConsumer("analysis", (event, sequence, endOfBatch) -> {
+			simulateRecord();
+			recordCount.increment();
+		});
+
+		ring.addConsumer("cloud", SensorEventRingBuffer.batching(
+			SensorEventRingBuffer.DEFAULT_MAX_BATCH_SIZE, (resource, batch) -> {
+				simulateSink(batch.size());
+				recordCount.add(batch.size());
+			}));
+
+		ring.start();
+
+		long intervalNanos = TimeUnit.SECONDS.toNanos(1) / MSGS_PER_SEC;
+		long startNanos = System.nanoTime();
+
+		for (int i = 0; i < msgCount; i++) {
+			long dueNanos = startNanos + i * intervalNanos;
+
+			awaitNanos(dueNanos);
+			data.setValue(i);
+
+			ring.tryPublish(RESOURCE, data);
+
+			latencies[i] = System.nanoTime() - dueNanos;
+		}
+
+		assertTrue(ring.stop(10, TimeUnit.SECONDS));
+
+		_Logger.info(ring.toString());
+
+		assertEquals((msgCount - ring.getDroppedCount()) * 3L, recordCount.sum());
+
+		return latencies;
+	}
+
+	private SensorData createSensorData()
+	{
+		SensorData data = new SensorData();
+
+		data.setName(ConfigConst.TEMP_SENSOR_NAME);
+		data.setLocationID("SensorEventRingLocation");
+		data.setTypeID(ConfigConst.TEMP_SENSOR_TYPE);
+
+		return data;
+	}
+
+	private void simulateSink(int recordCount)
+	{
+		awaitNanos(System.nanoTime() + CALL_COST_NANOS + recordCount * RECORD_COST_NANOS);
+	}
+
+	private void simulateRecord()
+	{
+		awaitNanos(System.nanoTime() + RECORD_COST_NANOS);
+	}
+
+	private void awaitNanos(long deadlineNanos)
+	{
+		while (System.nanoTime() < deadlineNanos) {
+			Thread.onSpinWait();
+		}
+	}
+
+	/**
+	 * Logs the producer's latency (the time from when a message was due
+	 * until the producer was done with it) and the achieved rate. A
+	 * producer that can't keep up falls further behind with each message.
+	 *
+	 */
+	private void logResults(String name, long[] latencies)
+	{
+		long[] sorted = latencies.clone();
+		Arrays.sort(sorted);
+
+		long lastNanos = latencies[latencies.length - 1];
+		double durationSecs = (latencies.length * (double) TimeUnit.SECONDS.toNanos(1) / MSGS_PER_SEC + lastNanos) / 1.0e9d;
+
+		_Logger.info(
+			String.format(
+				"%s: offered %d msgs/s, achieved %.0f msgs/s | producer latency p50 = %.1f us, p99 = %.1f us, max = %.1f us",
+				name, MSGS_PER_SEC, latencies.length / durationSecs,
+				percentile(sorted, 0.50d) / 1000.0d, percentile(sorted, 0.99d) / 1000.0d,
+				sorted[sorted.length - 1] / 1000.0d));
+	}
+
+	private long percentile(long[] sorted, double percentile)
+	{
+		return sorted[(int) Math.min(sorted.length - 1, Math.round(percentile * (sorted.length - 1)))];
+	}
+
+}
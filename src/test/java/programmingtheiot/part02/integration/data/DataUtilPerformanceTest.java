@@ -0,0 +1,251 @@
+/**
+ * This class is part of the Programming the Internet of Things
+ * project, and is available via the MIT License, which can be
+ * found in the LICENSE file at the top level of this repository.
+ *
+ * Copyright (c) 2020 by Andrew D. King
+ */
+
+package programmingtheiot.part02.integration.data;
+
+import static org.junit.Assert.*;
+
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.gson.Gson;
+
+import programmingtheiot.common.ConfigConst;
+import programmingtheiot.data.DataUtil;
+import programmingtheiot.data.IsoTimeStamp;
+import programmingtheiot.data.SensorData;
+
+/**
+ * This test case class contains very basic performance tests for
+ * DataUtil's JSON encoding and decoding.
+ *
+ * The hand-rolled JSON encoder and decoder are compared against a
+ * Gson engine with the same adapters, on a single thread, after
+ * checking that both encode a reading to the same bytes.
+ *
+ * The decode throughput is measured with an increasing number of
+ * threads. As decoding shares no locks (the device identity is
+ * resolved once, and not looked up per instance), the throughput
+ * should scale with the thread count up to the number of cores.
+ *
+ * The cost of parsing a timestamp String per reading is compared
+ * against reading the timestamp millis carried by the data.
+ *
+ */
+public class DataUtilPerformanceTest
+{
+	// static
+
+	private static final Logger _Logger =
+		Logger.getLogger(DataUtilPerformanceTest.class.getName());
+
+	public static final int   MAX_TEST_RUNS   = 200000;
+	public static final int   WARMUP_RUNS     = 50000;
+	public static final int[] THREAD_COUNTS   = {1, 2, 4, 8};
+
+
+	// member var's
+
+	private DataUtil dataUtil = null;
+	private byte[]   payload  = null;
+
+
+	// test setup methods
+
+	@Before
+	public void setUp() throws Exception
+	{
+		this.dataUtil = DataUtil.getInstance();
+
+		SensorData sensorData = new SensorData();
+		sensorData.setName("TempSensor");
+		sensorData.setValue(21.5f);
+
+		this.payload = this.dataUtil.sensorDataToJson(sensorData).getBytes(StandardCharsets.UTF_8);
+	}
+
+
+	// test methods
+
+	@Test
+	public void testDecodeThroughputByThreadCount() throws Exception
+	{
+		execTestDecode(1, WARMUP_RUNS);
+
+		for (int threadCount : THREAD_COUNTS) {
+			long elapsedNanos = execTestDecode(threadCount, MAX_TEST_RUNS);
+			long totalDecodes = (long) threadCount * MAX_TEST_RUNS;
+
+			String msg =
+				String.format(
+					"\n\tTesting Decode: threads = %s | decodes = %s | payload size = %s | elapsed = %s ms | throughput = %s decodes/s",
+					threadCount, totalDecodes, this.payload.length,
+					elapsedNanos / 1000000L, (long) (totalDecodes * 1.0e9 / elapsedNanos));
+
+			_Logger.info(msg);
+		}
+	}
+
+
+	@Test
+	public void testHandRolledJsonVersusGson()
+	{
+		Gson gson = DataUtil.createGsonEngine();
+
+		SensorData sensorData = this.dataUtil.jsonToSensorData(this.payload);
+		String     jsonData   = new String(this.payload, StandardCharsets.UTF_8);
+
+		// same bytes either way
+		assertArrayEquals(
+			gson.toJson(sensorData, SensorData.class).getBytes(StandardCharsets.UTF_8),
+			this.dataUtil.encodeData(sensorData, ConfigConst.JSON_CONTENT_FORMAT));
+
+		Runnable gsonEncode =
+			() -> gson.toJson(sensorData, SensorData.class).getBytes(StandardCharsets.UTF_8);
+		Runnable handRolledEncode =
+			() -> this.dataUtil.encodeData(sensorData, ConfigConst.JSON_CONTENT_FORMAT);
+		Runnable gsonDecode =
+			() -> gson.fromJson(jsonData, SensorData.class);
+		Runnable handRolledDecode =
+			() -> this.dataUtil.jsonToSensorData(this.payload);
+
+		// warm up all paths before measuring any of them
+		for (Runnable task : new Runnable[] {gsonEncode, handRolledEncode, gsonDecode, handRolledDecode}) {
+			execTestRuns(task, WARMUP_RUNS);
+		}
+
+		logComparison("Encode", execTestRuns(gsonEncode, MAX_TEST_RUNS), execTestRuns(handRolledEncode, MAX_TEST_RUNS));
+		logComparison("Decode", execTestRuns(gsonDecode, MAX_TEST_RUNS), execTestRuns(handRolledDecode, MAX_TEST_RUNS));
+	}
+
+
+	@Test
+	public void testTimeStampParsing()
+	{
+		// as sent by the CDA, with the timestamp String only
+		String timeStamp = "2020-12-27T10:13:30.123456+01:00";
+		SensorData sensorData = this.dataUtil.jsonToSensorData(
+			"{\"name\":\"TempSensor\",\"timeStamp\":\"" + timeStamp + "\",\"value\":21.5}");
+
+		long[] sink = new long[1];
+
+		// what the analysis did per reading before, what the decoder does
+		// once per payload now, and what the analysis does per reading now
+		Runnable offsetDateTimeParse =
+			() -> sink[0] += OffsetDateTime.parse(sensorData.getTimeStamp()).toInstant().toEpochMilli();
+		Runnable isoTimeStampParse =
+			() -> sink[0] += IsoTimeStamp.parseMillis(sensorData.getTimeStamp());
+		Runnable timeStampMillis =
+			() -> sink[0] += sensorData.getTimeStampMillis();
+
+		assertEquals(
+			OffsetDateTime.parse(timeStamp).toInstant().toEpochMilli(), sensorData.getTimeStampMillis());
+
+		for (Runnable task : new Runnable[] {offsetDateTimeParse, isoTimeStampParse, timeStampMillis}) {
+			execTestRuns(task, WARMUP_RUNS);
+		}
+
+		long offsetDateTimeNanos = execTestRuns(offsetDateTimeParse, MAX_TEST_RUNS);
+		long isoTimeStampNanos   = execTestRuns(isoTimeStampParse, MAX_TEST_RUNS);
+		long millisNanos         = execTestRuns(timeStampMillis, MAX_TEST_RUNS);
+
+		String msg =
+			String.format(
+				"\n\tTesting Timestamps: runs = %s | OffsetDateTime.parse = %s ns/op | IsoTimeStamp.parseMillis = %s ns/op | getTimeStampMillis = %s ns/op",
+				MAX_TEST_RUNS,
+				offsetDateTimeNanos / MAX_TEST_RUNS, isoTimeStampNanos / MAX_TEST_RUNS, millisNanos / MAX_TEST_RUNS);
+
+		_Logger.info(msg + " (" + (sink[0] != 0 ? "ok" : "-") + ")");
+	}
+
+
+	// private methods
+
+	/**
+	 * Runs the task 'runs' times on the current thread, and returns the
+	 * elapsed time in nanos.
+	 *
+	 * @param task
+	 * @param runs
+	 */
+	private long execTestRuns(Runnable task, int runs)
+	{
+		long startNanos = System.nanoTime();
+
+		for (int i = 0; i < runs; i++) {
+			task.run();
+		}
+
+		return System.nanoTime() - startNanos;
+	}
+
+	private void logComparison(String operation, long gsonNanos, long handRolledNanos)
+	{
+		String msg =
+			String.format(
+				"\n\tTesting %s: runs = %s | Gson = %s ns/op | hand-rolled = %s ns/op | speedup = %.2fx",
+				operation, MAX_TEST_RUNS,
+				gsonNanos / MAX_TEST_RUNS, handRolledNanos / MAX_TEST_RUNS, (double) gsonNanos / handRolledNanos);
+
+		_Logger.info(msg);
+	}
+
+	/**
+	 * Decodes the payload 'runs' times on each of 'threadCount' threads,
+	 * all started together, and returns the elapsed time in nanos.
+	 *
+	 * @param threadCount
+	 * @param runs
+	 */
+	private long execTestDecode(int threadCount, int runs) throws InterruptedException
+	{
+		CountDownLatch startLatch = new CountDownLatch(1);
+		CountDownLatch doneLatch  = new CountDownLatch(threadCount);
+		AtomicBoolean  success    = new AtomicBoolean(true);
+
+		for (int i = 0; i < threadCount; i++) {
+			Thread thread = new Thread(() -> {
+				try {
+					startLatch.await();
+
+					for (int j = 0; j < runs; j++) {
+						SensorData data = this.dataUtil.jsonToSensorData(this.payload);
+
+						if (data.getValue() != 21.5f) {
+							success.set(false);
+						}
+					}
+				} catch (InterruptedException e) {
+					success.set(false);
+				} finally {
+					doneLatch.countDown();
+				}
+			});
+
+			thread.start();
+		}
+
+		long startNanos = System.nanoTime();
+
+		startLatch.countDown();
+		doneLatch.await();
+
+		long elapsedNanos = System.nanoTime() - startNanos;
+
+		assertTrue(success.get());
+
+		return elapsedNanos;
+	}
+
+}
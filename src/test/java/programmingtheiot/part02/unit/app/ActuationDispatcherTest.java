@@ -0,0 +1,204 @@
+/**
+ * This class is part of the Programming the Internet of Things
+ * project, and is available via the MIT License, which can be
+ * found in the LICENSE file at the top level of this repository.
+ *
+ * Copyright (c) 2020 by Andrew D. King
+ */
+
+package programmingtheiot.part02.unit.app;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import programmingtheiot.common.ConfigConst;
+import programmingtheiot.data.ActuatorData;
+import programmingtheiot.gda.app.ActuationDispatcher;
+import programmingtheiot.gda.app.TimingWheel;
+
+/**
+ * This test case class contains very basic unit tests for
+ * ActuationDispatcher. It should not be considered complete,
+ * but serve as a starting point for the student implementing
+ * additional functionality within their Programming the IoT
+ * environment.
+ *
+ */
+public class ActuationDispatcherTest
+{
+	// static
+
+	public static final long TICK_MILLIS   = 5L;
+	public static final long WINDOW_MILLIS = 50L;
+
+
+	// member var's
+
+	private TimingWheel        timer = null;
+	private List<ActuatorData> sent  = null;
+
+
+	// test setup methods
+
+	@Before
+	public void setUp() throws Exception
+	{
+		this.timer = new TimingWheel("test", TICK_MILLIS, TimeUnit.MILLISECONDS, 64);
+		this.timer.start();
+
+		this.sent = new CopyOnWriteArrayList<>();
+	}
+
+	@After
+	public void tearDown() throws Exception
+	{
+		this.timer.stop();
+	}
+
+
+	// test methods
+
+	@Test
+	public void testNoOpCommandsAreDropped()
+	{
+		ActuationDispatcher dispatcher = createDispatcher(0L);
+
+		assertTrue(dispatcher.submit(createCommand(ConfigConst.ON_COMMAND, 40.0f)));
+		assertFalse(dispatcher.submit(createCommand(ConfigConst.ON_COMMAND, 40.0f)));
+		assertFalse(dispatcher.submit(createCommand(ConfigConst.ON_COMMAND, 40.0f)));
+		assertTrue(dispatcher.submit(createCommand(ConfigConst.ON_COMMAND, 45.0f)));
+		assertTrue(dispatcher.submit(createCommand(ConfigConst.OFF_COMMAND, 45.0f)));
+
+		assertEquals(3, this.sent.size());
+		assertEquals(2, dispatcher.getNoOpCount());
+		assertEquals(3, dispatcher.getDispatchedCount());
+
+		// another actuator has its own state
+		ActuatorData command = createCommand(ConfigConst.OFF_COMMAND, 45.0f);
+		command.setLocationID("device002");
+
+		assertTrue(dispatcher.submit(command));
+	}
+
+	@Test
+	public void testCommandsAreCoalescedWithinWindow() throws Exception
+	{
+		ActuationDispatcher dispatcher = createDispatcher(WINDOW_MILLIS);
+
+		for (int i = 0; i < 10; i++) {
+			dispatcher.submit(createCommand(i % 2 == 0 ? ConfigConst.ON_COMMAND : ConfigConst.OFF_COMMAND, i));
+		}
+
+		assertEquals(0, this.sent.size());
+
+		Thread.sleep(WINDOW_MILLIS * 4);
+
+		// only the latest is sent
+		assertEquals(1, this.sent.size());
+		assertEquals(9.0f, this.sent.get(0).getValue(), 0.0f);
+		assertEquals(9, dispatcher.getCoalescedCount());
+
+		// a command that undoes the pending one within the window sends nothing
+		dispatcher.submit(createCommand(ConfigConst.ON_COMMAND, 1.0f));
+		dispatcher.submit(createCommand(ConfigConst.OFF_COMMAND, 9.0f));
+
+		Thread.sleep(WINDOW_MILLIS * 4);
+
+		assertEquals(1, this.sent.size());
+		assertEquals(1, dispatcher.getNoOpCount());
+	}
+
+	@Test
+	public void testLatestCommandIsKeptWhileBusy() throws Exception
+	{
+		CountDownLatch sending = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+
+		ActuationDispatcher dispatcher = new ActuationDispatcher(
+			null, 0L, TimeUnit.MILLISECONDS, Runnable::run,
+			(data) -> {
+				this.sent.add(data);
+				sending.countDown();
+
+				try {
+					release.await(5, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+
+				return true;
+			});
+
+		Thread sender = new Thread(() -> dispatcher.submit(createCommand(ConfigConst.ON_COMMAND, 0.0f)));
+		sender.start();
+
+		assertTrue(sending.await(5, TimeUnit.SECONDS));
+
+		// downstream is busy: these don't block, and only the latest is kept
+		for (int i = 1; i <= 5; i++) {
+			assertTrue(dispatcher.submit(createCommand(ConfigConst.ON_COMMAND, i)));
+		}
+
+		release.countDown();
+		sender.join(5000L);
+
+		assertEquals(2, this.sent.size());
+		assertEquals(5.0f, this.sent.get(1).getValue(), 0.0f);
+		assertEquals(4, dispatcher.getCoalescedCount());
+	}
+
+	@Test
+	public void testResponseUpdatesLastKnownState()
+	{
+		ActuationDispatcher dispatcher = createDispatcher(0L);
+
+		dispatcher.submit(createCommand(ConfigConst.ON_COMMAND, 40.0f));
+
+		// the actuator reports it's off
+		ActuatorData response = createCommand(ConfigConst.OFF_COMMAND, 40.0f);
+		response.setAsResponse();
+		dispatcher.onResponse(response);
+
+		assertFalse(dispatcher.submit(createCommand(ConfigConst.OFF_COMMAND, 40.0f)));
+		assertTrue(dispatcher.submit(createCommand(ConfigConst.ON_COMMAND, 40.0f)));
+
+		// an error leaves the state unknown, so the command is sent again
+		response = createCommand(ConfigConst.ON_COMMAND, 40.0f);
+		response.setStatusCode(-1);
+		dispatcher.onResponse(response);
+
+		assertTrue(dispatcher.submit(createCommand(ConfigConst.ON_COMMAND, 40.0f)));
+		assertEquals(3, this.sent.size());
+	}
+
+
+	// private methods
+
+	private ActuationDispatcher createDispatcher(long windowMillis)
+	{
+		return new ActuationDispatcher(
+			this.timer, windowMillis, TimeUnit.MILLISECONDS, Runnable::run,
+			(data) -> this.sent.add(data));
+	}
+
+	private ActuatorData createCommand(int command, float value)
+	{
+		ActuatorData data = new ActuatorData();
+		data.setName(ConfigConst.HUMIDIFIER_ACTUATOR_NAME);
+		data.setLocationID("device001");
+		data.setTypeID(ConfigConst.HUMIDIFIER_ACTUATOR_TYPE);
+		data.setCommand(command);
+		data.setValue(value);
+
+		return data;
+	}
+
+}
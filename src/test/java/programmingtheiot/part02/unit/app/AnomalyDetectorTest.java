@@ -0,0 +1,178 @@
+/**
+ * This class is part of the Programming the Internet of Things
+ * project, and is available via the MIT License, which can be
+ * found in the LICENSE file at the top level of this repository.
+ *
+ * Copyright (c) 2020 by Andrew D. King
+ */
+
+package programmingtheiot.part02.unit.app;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import programmingtheiot.common.ConfigConst;
+import programmingtheiot.data.SensorData;
+import programmingtheiot.gda.app.AnomalyDetector;
+
+/**
+ * This test case class contains very basic unit tests for
+ * AnomalyDetector. It should not be considered complete,
+ * but serve as a starting point for the student implementing
+ * additional functionality within their Programming the IoT
+ * environment.
+ *
+ */
+public class AnomalyDetectorTest
+{
+	// static
+
+	public static final double ALPHA            = 0.05;
+	public static final double Z_THRESHOLD      = 4.0;
+	public static final double MIN_STDDEV       = 0.1;
+	public static final int    WARM_UP_READINGS = 30;
+	public static final int    STUCK_READINGS   = 20;
+
+	private static final String LOCATION_ID = "device001";
+
+
+	// member var's
+
+	private List<SensorData> alerts   = null;
+	private AnomalyDetector  detector = null;
+	private Random           random   = null;
+
+
+	// test setup methods
+
+	@Before
+	public void setUp() throws Exception
+	{
+		this.alerts = new CopyOnWriteArrayList<>();
+		this.random = new Random(42L);
+
+		this.detector = new AnomalyDetector(
+			(data, score) -> this.alerts.add(data), 16,
+			new AnomalyDetector.Detector(
+				ConfigConst.HUMIDITY_SENSOR_TYPE, ALPHA, Z_THRESHOLD, MIN_STDDEV, WARM_UP_READINGS, STUCK_READINGS));
+	}
+
+
+	// test methods
+
+	@Test
+	public void testSpikeIsFlagged()
+	{
+		checkNoisyReadings(LOCATION_ID, 40.0f, 200);
+
+		assertTrue(this.alerts.isEmpty());
+
+		SensorData spike = createReading(LOCATION_ID, 70.0f);
+
+		assertEquals(ConfigConst.ANOMALY_SPIKE_STATUS, this.detector.check(spike));
+		assertEquals(ConfigConst.ANOMALY_SPIKE_STATUS, spike.getStatusCode());
+		assertFalse(spike.hasError());
+		assertEquals(1, this.alerts.size());
+
+		// the spike hasn't skewed the baseline
+		checkNoisyReadings(LOCATION_ID, 40.0f, 50);
+
+		assertEquals(1, this.alerts.size());
+		assertEquals(1, this.detector.getDetector(ConfigConst.HUMIDITY_SENSOR_TYPE).getSpikeCount());
+	}
+
+	@Test
+	public void testLevelShiftIsAdopted()
+	{
+		checkNoisyReadings(LOCATION_ID, 40.0f, 200);
+
+		// a lasting change in level is flagged at first, then becomes the baseline
+		checkNoisyReadings(LOCATION_ID, 45.0f, 300);
+
+		int alertCount = this.alerts.size();
+
+		assertTrue(alertCount > 0);
+
+		checkNoisyReadings(LOCATION_ID, 45.0f, 100);
+
+		assertEquals(alertCount, this.alerts.size());
+	}
+
+	@Test
+	public void testStuckSensorIsFlagged()
+	{
+		checkNoisyReadings(LOCATION_ID, 40.0f, 100);
+
+		for (int i = 1; i <= STUCK_READINGS + 5; i++) {
+			int statusCode = this.detector.check(createReading(LOCATION_ID, 40.5f));
+
+			assertEquals(
+				(i >= STUCK_READINGS ? ConfigConst.ANOMALY_STUCK_STATUS : ConfigConst.DEFAULT_STATUS), statusCode);
+		}
+
+		assertEquals(6, this.detector.getDetector(ConfigConst.HUMIDITY_SENSOR_TYPE).getStuckCount());
+
+		// once the value changes, it's no longer stuck
+		assertEquals(ConfigConst.DEFAULT_STATUS, this.detector.check(createReading(LOCATION_ID, 40.4f)));
+	}
+
+	@Test
+	public void testNoSpikesDuringWarmUp()
+	{
+		this.detector.check(createReading(LOCATION_ID, 40.0f));
+		this.detector.check(createReading(LOCATION_ID, 80.0f));
+
+		assertTrue(this.alerts.isEmpty());
+	}
+
+	@Test
+	public void testDevicesTypesAndErrorsAreSeparate()
+	{
+		checkNoisyReadings(LOCATION_ID, 40.0f, 100);
+
+		// another device has its own baseline
+		checkNoisyReadings("device002", 70.0f, 100);
+
+		assertTrue(this.alerts.isEmpty());
+
+		// readings with an error aren't checked
+		SensorData error = createReading(LOCATION_ID, 90.0f);
+		error.setStatusCode(-1);
+
+		assertEquals(-1, this.detector.check(error));
+
+		// nor are types without a detector
+		SensorData temperature = createReading(LOCATION_ID, 90.0f);
+		temperature.setTypeID(ConfigConst.TEMP_SENSOR_TYPE);
+
+		assertEquals(ConfigConst.DEFAULT_STATUS, this.detector.check(temperature));
+		assertTrue(this.alerts.isEmpty());
+	}
+
+
+	// private methods
+
+	private void checkNoisyReadings(String locationID, float level, int count)
+	{
+		for (int i = 0; i < count; i++) {
+			this.detector.check(createReading(locationID, level + (float) (0.3 * this.random.nextGaussian())));
+		}
+	}
+
+	private SensorData createReading(String locationID, float value)
+	{
+		SensorData data = new SensorData();
+		data.setLocationID(locationID);
+		data.setTypeID(ConfigConst.HUMIDITY_SENSOR_TYPE);
+		data.setValue(value);
+
+		return data;
+	}
+
+}
@@ -0,0 +1,168 @@
+/**
+ * This class is part of the Programming the Internet of Things
+ * project, and is available via the MIT License, which can be
+ * found in the LICENSE file at the top level of this repository.
+ *
+ * Copyright (c) 2020 by Andrew D. King
+ */
+
+package programmingtheiot.part02.unit.app;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import org.junit.Test;
+
+import programmingtheiot.common.ConfigConst;
+import programmingtheiot.gda.app.DeadbandFilter;
+
+/**
+ * This test case class contains very basic unit tests for
+ * DeadbandFilter. It should not be considered complete,
+ * but serve as a starting point for the student implementing
+ * additional functionality within their Programming the IoT
+ * environment.
+ *
+ */
+public class DeadbandFilterTest
+{
+	// static
+
+	private static final Logger _Logger =
+		Logger.getLogger(DeadbandFilterTest.class.getName());
+
+	public static final float DEADBAND           = 0.5f;
+	public static final long  MAX_SILENCE_SECS   = 300L;
+	public static final int   READING_COUNT      = 10000;
+	public static final long  READING_INTERVAL   = 1000L;
+
+	private static final String LOCATION_ID = "device001";
+
+
+	// test methods
+
+	@Test
+	public void testReadingsWithinDeadbandAreSuppressed()
+	{
+		DeadbandFilter filter = createFilter();
+
+		assertTrue(isSent(filter, 20.0f, 0L));
+		assertFalse(isSent(filter, 20.4f, 1000L));
+		assertFalse(isSent(filter, 19.5f, 2000L));
+		assertTrue(isSent(filter, 20.6f, 3000L));
+
+		// compared against the last reading sent, so a slow drift is sent too
+		assertFalse(isSent(filter, 20.9f, 4000L));
+		assertTrue(isSent(filter, 21.2f, 5000L));
+
+		// a change in status is always sent
+		assertTrue(isSent(filter, LOCATION_ID, ConfigConst.TEMP_SENSOR_TYPE, -1, 21.2f, 6000L));
+
+		// other devices and types have their own state, or no deadband
+		assertTrue(isSent(filter, "device002", ConfigConst.TEMP_SENSOR_TYPE, 0, 20.4f, 1000L));
+		assertTrue(isSent(filter, LOCATION_ID, ConfigConst.HUMIDITY_SENSOR_TYPE, 0, 20.4f, 1000L));
+		assertTrue(isSent(filter, LOCATION_ID, ConfigConst.HUMIDITY_SENSOR_TYPE, 0, 20.4f, 2000L));
+
+		DeadbandFilter.Deadband deadband = filter.getDeadband(ConfigConst.TEMP_SENSOR_TYPE);
+
+		assertEquals(5, deadband.getSentCount());
+		assertEquals(3, deadband.getSuppressedCount());
+		assertFalse(filter.hasDeadband(ConfigConst.HUMIDITY_SENSOR_TYPE));
+	}
+
+	@Test
+	public void testHeartbeatAfterMaxSilence()
+	{
+		DeadbandFilter filter = createFilter();
+		long maxSilenceMillis = TimeUnit.SECONDS.toMillis(MAX_SILENCE_SECS);
+
+		assertTrue(isSent(filter, 20.0f, 0L));
+		assertFalse(isSent(filter, 20.0f, maxSilenceMillis - 1));
+		assertTrue(isSent(filter, 20.0f, maxSilenceMillis));
+		assertFalse(isSent(filter, 20.0f, maxSilenceMillis + 1));
+
+		assertEquals(1, filter.getDeadband(ConfigConst.TEMP_SENSOR_TYPE).getHeartbeatCount());
+	}
+
+	@Test
+	public void testReadingNotMarkedSentIsNotComparedAgainst()
+	{
+		DeadbandFilter filter = createFilter();
+
+		assertTrue(isSent(filter, 20.0f, 0L));
+
+		// e.g. rejected by a full queue, so never marked as sent
+		assertTrue(filter.isSignificant(LOCATION_ID, ConfigConst.TEMP_SENSOR_TYPE, 0, 20.6f, 1000L));
+
+		// still compared against 20.0, so the change isn't lost
+		assertTrue(isSent(filter, 20.6f, 2000L));
+		assertFalse(isSent(filter, 20.9f, 3000L));
+
+		DeadbandFilter.Deadband deadband = filter.getDeadband(ConfigConst.TEMP_SENSOR_TYPE);
+
+		assertEquals(2, deadband.getSentCount());
+		assertEquals(1, deadband.getSuppressedCount());
+	}
+
+	@Test
+	public void testNoisySignalIsReducedWithoutLosingChanges()
+	{
+		DeadbandFilter filter = createFilter();
+		Random random = new Random(42L);
+
+		float lastSentValue = 0.0f;
+		float maxDeviation = 0.0f;
+
+		// a slow daily swing of +/- 3 degrees, with sensor noise well within the deadband
+		for (int i = 0; i < READING_COUNT; i++) {
+			long timeStampMillis = i * READING_INTERVAL;
+			float value =
+				(float) (21.0 + 3.0 * Math.sin(2.0 * Math.PI * timeStampMillis / TimeUnit.DAYS.toMillis(1)) +
+				0.05 * random.nextGaussian());
+
+			if (isSent(filter, value, timeStampMillis)) {
+				lastSentValue = value;
+			}
+
+			maxDeviation = Math.max(maxDeviation, Math.abs(value - lastSentValue));
+		}
+
+		_Logger.info(filter.toString());
+
+		// an order of magnitude fewer readings, and upstream never more than a deadband off
+		assertTrue(filter.getSuppressionRatio() >= 0.9);
+		assertTrue(maxDeviation <= DEADBAND);
+		assertEquals(READING_COUNT, filter.getSentCount() + filter.getSuppressedCount());
+	}
+
+
+	// private methods
+
+	private DeadbandFilter createFilter()
+	{
+		return new DeadbandFilter(
+			new DeadbandFilter.Deadband(ConfigConst.TEMP_SENSOR_TYPE, DEADBAND, MAX_SILENCE_SECS, TimeUnit.SECONDS));
+	}
+
+	private boolean isSent(DeadbandFilter filter, float value, long timeStampMillis)
+	{
+		return isSent(filter, LOCATION_ID, ConfigConst.TEMP_SENSOR_TYPE, 0, value, timeStampMillis);
+	}
+
+	// checks the reading, and if significant, marks it as sent (as the device data manager does)
+	private boolean isSent(
+		DeadbandFilter filter, String locationID, int typeID, int statusCode, float value, long timeStampMillis)
+	{
+		if (filter.isSignificant(locationID, typeID, statusCode, value, timeStampMillis)) {
+			filter.markSent(locationID, typeID, statusCode, value, timeStampMillis);
+
+			return true;
+		}
+
+		return false;
+	}
+
+}
@@ -0,0 +1,172 @@
+/**
+ * This class is part of the Programming the Internet of Things
+ * project, and is available via the MIT License, which can be
+ * found in the LICENSE file at the top level of this repository.
+ *
+ * Copyright (c) 2020 by Andrew D. King
+ */
+
+package programmingtheiot.part02.unit.app;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import org.junit.Test;
+
+import programmingtheiot.common.ConfigConst;
+import programmingtheiot.gda.app.DeviceStateMap;
+
+/**
+ * This test case class contains very basic unit tests for
+ * DeviceStateMap. It should not be considered complete,
+ * but serve as a starting point for the student implementing
+ * additional functionality within their Programming the IoT
+ * environment.
+ *
+ */
+public class DeviceStateMapTest
+{
+	// static
+
+	private static final Logger _Logger =
+		Logger.getLogger(DeviceStateMapTest.class.getName());
+
+	public static final int DEVICE_COUNT     = 200;
+	public static final int THREAD_COUNT     = 8;
+	public static final int UPDATES_PER_TYPE = 1000;
+
+	private static final int TYPE_ID = ConfigConst.HUMIDITY_SENSOR_TYPE;
+
+	/**
+	 * Simple per device state, for counting updates.
+	 *
+	 */
+	private static class Counter
+	{
+		private int count = 0;
+	}
+
+
+	// test methods
+
+	@Test
+	public void testStateIsKeptPerDevice()
+	{
+		DeviceStateMap<Counter> states = new DeviceStateMap<>(Counter::new);
+
+		Counter counter1 = states.get("device001", TYPE_ID);
+		Counter counter2 = states.get("device002", TYPE_ID);
+		Counter counter3 = states.get("device001", ConfigConst.TEMP_SENSOR_TYPE);
+
+		assertNotSame(counter1, counter2);
+		assertNotSame(counter1, counter3);
+		assertSame(counter1, states.get("device001", TYPE_ID));
+		assertSame(counter2, states.peek("device002", TYPE_ID));
+		assertNull(states.peek("device003", TYPE_ID));
+		assertEquals(3, states.size());
+
+		assertSame(counter2, states.remove("device002", TYPE_ID));
+		assertEquals(2, states.size());
+	}
+
+	@Test
+	public void testConcurrentUpdates() throws Exception
+	{
+		DeviceStateMap<Counter> states = new DeviceStateMap<>(Counter::new);
+		CountDownLatch startLatch = new CountDownLatch(1);
+		Thread[] threads = new Thread[THREAD_COUNT];
+
+		// all threads update all devices, in a different order
+		for (int i = 0; i < THREAD_COUNT; i++) {
+			int offset = i;
+
+			threads[i] = new Thread(() -> {
+				try {
+					startLatch.await();
+				} catch (InterruptedException e) {
+					return;
+				}
+
+				for (int n = 0; n < UPDATES_PER_TYPE; n++) {
+					Counter counter = states.get("device" + ((n + offset) % DEVICE_COUNT), TYPE_ID);
+
+					synchronized (counter) {
+						counter.count++;
+					}
+				}
+			});
+
+			threads[i].start();
+		}
+
+		startLatch.countDown();
+
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		int total = 0;
+
+		for (int i = 0; i < DEVICE_COUNT; i++) {
+			total += states.peek("device" + i, TYPE_ID).count;
+		}
+
+		assertEquals(DEVICE_COUNT, states.size());
+		assertEquals(THREAD_COUNT * UPDATES_PER_TYPE, total);
+	}
+
+	@Test
+	public void testMemoryIsBounded()
+	{
+		AtomicInteger createdCount = new AtomicInteger();
+
+		DeviceStateMap<Counter> states =
+			new DeviceStateMap<>(() -> {
+				createdCount.incrementAndGet();
+				return new Counter();
+			}, DEVICE_COUNT / 2, 1, TimeUnit.HOURS);
+
+		for (int i = 0; i < DEVICE_COUNT; i++) {
+			states.get("device" + i, TYPE_ID);
+		}
+
+		assertEquals(DEVICE_COUNT / 2, states.size());
+		assertEquals(DEVICE_COUNT / 2, states.getEvictedCount());
+		assertEquals(DEVICE_COUNT, createdCount.get());
+
+		// the most recently used devices are kept
+		assertNotNull(states.peek("device" + (DEVICE_COUNT - 1), TYPE_ID));
+		assertNull(states.peek("device0", TYPE_ID));
+
+		_Logger.info(states.toString());
+	}
+
+	@Test
+	public void testIdleDevicesAreEvicted() throws Exception
+	{
+		DeviceStateMap<Counter> states = new DeviceStateMap<>(Counter::new, DEVICE_COUNT, 50, TimeUnit.MILLISECONDS);
+
+		states.get("device001", TYPE_ID);
+		states.get("device002", TYPE_ID);
+
+		Thread.sleep(100L);
+
+		// the sweep is due, so the lookup evicts the idle devices
+		states.get("device003", TYPE_ID);
+
+		assertEquals(1, states.size());
+		assertEquals(2, states.getEvictedCount());
+		assertNotNull(states.peek("device003", TYPE_ID));
+
+		Thread.sleep(100L);
+
+		// a peek isn't a lookup, so it doesn't keep the device
+		assertEquals(1, states.evictIdle());
+		assertEquals(0, states.size());
+	}
+
+}
@@ -0,0 +1,135 @@
+/**
+ * This class is part of the Programming the Internet of Things
+ * project, and is available via the MIT License, which can be
+ * found in the LICENSE file at the top level of this repository.
+ *
+ * Copyright (c) 2020 by Andrew D. King
+ */
+
+package programmingtheiot.part02.unit.app;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import org.junit.Test;
+
+import programmingtheiot.gda.app.IngestionPipeline;
+import programmingtheiot.gda.app.IngestionStage;
+
+/**
+ * This test case class contains very basic unit tests for
+ * IngestionStage and IngestionPipeline. It should not be considered
+ * complete, but serve as a starting point for the student implementing
+ * additional functionality within their Programming the IoT
+ * environment.
+ *
+ */
+public class IngestionStageTest
+{
+	// static
+
+	private static final Logger _Logger =
+		Logger.getLogger(IngestionStageTest.class.getName());
+
+	public static final int QUEUE_SIZE = 4;
+
+
+	// test methods
+
+	@Test
+	public void testSubmitDoesNotBlockOnStalledStage() throws Exception
+	{
+		IngestionStage stage = new IngestionStage("test", 1, QUEUE_SIZE);
+		CountDownLatch release = new CountDownLatch(1);
+		AtomicInteger  runCount = new AtomicInteger();
+
+		// the first task stalls the only worker, the next fill the queue
+		assertTrue(stage.submit(() -> awaitQuietly(release)));
+
+		long startNanos = System.nanoTime();
+		int  acceptedCount = 0;
+
+		for (int i = 0; i < QUEUE_SIZE * 2; i++) {
+			if (stage.submit(() -> runCount.incrementAndGet())) {
+				acceptedCount++;
+			}
+		}
+
+		long elapsedMillis = (System.nanoTime() - startNanos) / 1000000L;
+
+		assertTrue(elapsedMillis < 1000L);
+		assertEquals(QUEUE_SIZE, acceptedCount);
+		assertEquals(QUEUE_SIZE, stage.getRejectedCount());
+		assertEquals(QUEUE_SIZE, stage.getPeakQueueDepth());
+
+		release.countDown();
+
+		assertTrue(stage.shutdown(5, TimeUnit.SECONDS));
+		assertEquals(QUEUE_SIZE, runCount.get());
+		assertEquals(QUEUE_SIZE + 1, stage.getCompletedCount());
+		assertEquals(QUEUE_SIZE * 2 + 1, stage.getSubmittedCount());
+
+		_Logger.info(stage.toString());
+	}
+
+	@Test
+	public void testFailedTaskIsCounted() throws Exception
+	{
+		IngestionStage stage = new IngestionStage("test", 1, QUEUE_SIZE);
+
+		stage.submit(() -> { throw new IllegalStateException("Expected failure."); });
+		stage.submit(() -> { });
+
+		assertTrue(stage.shutdown(5, TimeUnit.SECONDS));
+		assertEquals(1, stage.getFailedCount());
+		assertEquals(1, stage.getCompletedCount());
+
+		// stopped stages reject new tasks
+		assertFalse(stage.submit(() -> { }));
+	}
+
+	@Test
+	public void testDisabledPipelineRunsInline()
+	{
+		IngestionPipeline pipeline = new IngestionPipeline(0, QUEUE_SIZE);
+		Thread[] runThread = new Thread[1];
+
+		assertFalse(pipeline.isEnabled());
+		assertTrue(pipeline.submit(IngestionPipeline.Stage.UPSTREAM, () -> runThread[0] = Thread.currentThread()));
+		assertSame(Thread.currentThread(), runThread[0]);
+		assertEquals(1, pipeline.getStage(IngestionPipeline.Stage.UPSTREAM).getCompletedCount());
+		assertTrue(pipeline.shutdown());
+	}
+
+	@Test
+	public void testStageThreadCounts()
+	{
+		IngestionPipeline pipeline = new IngestionPipeline(4, QUEUE_SIZE);
+
+		assertTrue(pipeline.isEnabled());
+
+		// analysis state is kept per device, so it can run in parallel too
+		for (IngestionPipeline.Stage stage : IngestionPipeline.Stage.values()) {
+			assertEquals(4, pipeline.getStage(stage).getThreadCount());
+		}
+
+		assertTrue(pipeline.shutdown());
+	}
+
+
+	// private methods
+
+	private void awaitQuietly(CountDownLatch latch)
+	{
+		try {
+			latch.await(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
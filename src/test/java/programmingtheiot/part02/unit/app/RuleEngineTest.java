@@ -0,0 +1,392 @@
+/**
+ * This class is part of the Programming the Internet of Things
+ * project, and is available via the MIT License, which can be
+ * found in the LICENSE file at the top level of this repository.
+ *
+ * Copyright (c) 2020 by Andrew D. King
+ */
+
+package programmingtheiot.part02.unit.app;
+
+import static org.junit.Assert.*;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import org.junit.Test;
+
+import programmingtheiot.common.ConfigConst;
+import programmingtheiot.common.IActuatorDataListener;
+import programmingtheiot.data.ActuatorData;
+import programmingtheiot.data.SensorData;
+import programmingtheiot.gda.app.PatternRule;
+import programmingtheiot.gda.app.RuleEngine;
+import programmingtheiot.gda.app.RuleExpression;
+import programmingtheiot.gda.app.ThresholdRule;
+import programmingtheiot.gda.app.TimingWheel;
+
+/**
+ * This test case class contains very basic unit tests for
+ * RuleEngine, ThresholdRule and PatternRule. It should not be considered complete,
+ * but serve as a starting point for the student implementing
+ * additional functionality within their Programming the IoT
+ * environment.
+ *
+ */
+public class RuleEngineTest
+{
+	// static
+
+	private static final Logger _Logger =
+		Logger.getLogger(RuleEngineTest.class.getName());
+
+	public static final int   MAX_TIME_PAST_THRESHOLD = 10;
+	public static final float FLOOR                   = 30.0f;
+	public static final float CEILING                 = 50.0f;
+	public static final float NOMINAL                 = 40.0f;
+
+	public static final int EVALUATION_COUNT = 100000;
+
+	public static final long WITHIN_SECS = 60L;
+
+	private static final long MILLIS_PAST_THRESHOLD = MAX_TIME_PAST_THRESHOLD * 1000L;
+	private static final long WITHIN_MILLIS         = WITHIN_SECS * 1000L;
+
+
+	// test methods
+
+	@Test
+	public void testRulesAreDispatchedByType()
+	{
+		RuleEngine engine = new RuleEngine(createHumidityRule(), createTemperatureRule());
+		List<ActuatorData> commands = new ArrayList<>();
+
+		assertEquals(2, engine.getRuleCount());
+		assertTrue(engine.hasRules(ConfigConst.HUMIDITY_SENSOR_TYPE));
+		assertTrue(engine.hasRules(ConfigConst.TEMP_SENSOR_TYPE));
+		assertFalse(engine.hasRules(ConfigConst.PRESSURE_SENSOR_TYPE));
+		assertFalse(engine.hasRules(-1));
+
+		// a low humidity reading doesn't trigger the temperature rule
+		assertEquals(0, engine.evaluate(createData("device001", ConfigConst.HUMIDITY_SENSOR_TYPE, 10.0f, 0L), commands::add));
+		assertEquals(1, engine.evaluate(
+			createData("device001", ConfigConst.HUMIDITY_SENSOR_TYPE, 10.0f, MILLIS_PAST_THRESHOLD), commands::add));
+
+		assertEquals(1, commands.size());
+		assertEquals(ConfigConst.HUMIDIFIER_ACTUATOR_TYPE, commands.get(0).getTypeID());
+
+		// no rules for pressure
+		assertEquals(0, engine.evaluate(createData("device001", ConfigConst.PRESSURE_SENSOR_TYPE, 0.0f, 0L), commands::add));
+		assertEquals(1, engine.getCommandCount());
+	}
+
+	@Test
+	public void testCommandIsSentAfterMaxTimePastThreshold()
+	{
+		RuleEngine engine = new RuleEngine(createHumidityRule());
+		List<ActuatorData> commands = new ArrayList<>();
+
+		engine.evaluate(createData("device001", ConfigConst.HUMIDITY_SENSOR_TYPE, 10.0f, 0L), commands::add);
+		engine.evaluate(createData("device001", ConfigConst.HUMIDITY_SENSOR_TYPE, 10.0f, MILLIS_PAST_THRESHOLD - 1), commands::add);
+
+		assertEquals(0, commands.size());
+
+		engine.evaluate(createData("device001", ConfigConst.HUMIDITY_SENSOR_TYPE, 10.0f, MILLIS_PAST_THRESHOLD), commands::add);
+
+		assertEquals(1, commands.size());
+
+		ActuatorData command = commands.get(0);
+
+		assertEquals(ConfigConst.ON_COMMAND, command.getCommand());
+		assertEquals(NOMINAL, command.getValue(), 0.0f);
+		assertEquals("device001", command.getLocationID());
+		assertEquals(ConfigConst.HUMIDIFIER_ACTUATOR_NAME, command.getName());
+
+		// back within range: the actuator is turned off, once
+		engine.evaluate(createData("device001", ConfigConst.HUMIDITY_SENSOR_TYPE, 40.0f, MILLIS_PAST_THRESHOLD + 1), commands::add);
+		engine.evaluate(createData("device001", ConfigConst.HUMIDITY_SENSOR_TYPE, 40.0f, MILLIS_PAST_THRESHOLD + 2), commands::add);
+
+		assertEquals(2, commands.size());
+		assertEquals(ConfigConst.OFF_COMMAND, commands.get(1).getCommand());
+	}
+
+	@Test
+	public void testTimerIsResetWithinRange()
+	{
+		RuleEngine engine = new RuleEngine(createHumidityRule());
+		List<ActuatorData> commands = new ArrayList<>();
+
+		engine.evaluate(createData("device001", ConfigConst.HUMIDITY_SENSOR_TYPE, 10.0f, 0L), commands::add);
+		engine.evaluate(createData("device001", ConfigConst.HUMIDITY_SENSOR_TYPE, 40.0f, 1L), commands::add);
+		engine.evaluate(createData("device001", ConfigConst.HUMIDITY_SENSOR_TYPE, 10.0f, MILLIS_PAST_THRESHOLD), commands::add);
+
+		assertEquals(0, commands.size());
+	}
+
+	@Test
+	public void testTimerIsResetOnCommand()
+	{
+		RuleEngine engine = new RuleEngine(createHumidityRule());
+		List<ActuatorData> commands = new ArrayList<>();
+
+		engine.evaluate(createData("device001", ConfigConst.HUMIDITY_SENSOR_TYPE, 10.0f, 0L), commands::add);
+		engine.evaluate(createData("device001", ConfigConst.HUMIDITY_SENSOR_TYPE, 10.0f, MILLIS_PAST_THRESHOLD), commands::add);
+
+		assertEquals(1, commands.size());
+
+		// straight past the ceiling: the high command waits its own dwell time
+		engine.evaluate(createData("device001", ConfigConst.HUMIDITY_SENSOR_TYPE, 60.0f, MILLIS_PAST_THRESHOLD + 1), commands::add);
+
+		assertEquals(1, commands.size());
+
+		engine.evaluate(
+			createData("device001", ConfigConst.HUMIDITY_SENSOR_TYPE, 60.0f, 2 * MILLIS_PAST_THRESHOLD + 1), commands::add);
+
+		assertEquals(2, commands.size());
+		assertEquals(ConfigConst.OFF_COMMAND, commands.get(1).getCommand());
+	}
+
+	@Test
+	public void testStateIsKeptPerDevice()
+	{
+		ThresholdRule rule = createHumidityRule();
+		RuleEngine engine = new RuleEngine(rule);
+		List<ActuatorData> commands = new ArrayList<>();
+
+		// device002's reading doesn't complete device001's wait
+		engine.evaluate(createData("device001", ConfigConst.HUMIDITY_SENSOR_TYPE, 10.0f, 0L), commands::add);
+		engine.evaluate(createData("device002", ConfigConst.HUMIDITY_SENSOR_TYPE, 10.0f, MILLIS_PAST_THRESHOLD), commands::add);
+
+		assertEquals(0, commands.size());
+		assertEquals(2, rule.getTrackedDeviceCount());
+
+		engine.evaluate(createData("device001", ConfigConst.HUMIDITY_SENSOR_TYPE, 10.0f, MILLIS_PAST_THRESHOLD), commands::add);
+
+		assertEquals(1, commands.size());
+		assertEquals("device001", commands.get(0).getLocationID());
+	}
+
+	@Test
+	public void testCommandIsSentOnTimeWithoutReadings() throws Exception
+	{
+		TimingWheel timer = new TimingWheel("test", 10, TimeUnit.MILLISECONDS, 64);
+		RuleEngine engine = new RuleEngine(createHumidityRule());
+		List<ActuatorData> commands = new ArrayList<>();
+		CountDownLatch latch = new CountDownLatch(1);
+
+		engine.setTimingWheel(timer, (data) -> {
+			commands.add(data);
+			latch.countDown();
+			return true;
+		});
+
+		timer.start();
+
+		try {
+			long startNanos = System.nanoTime();
+
+			// a single low reading, then nothing
+			engine.evaluate(createData("device001", ConfigConst.HUMIDITY_SENSOR_TYPE, 10.0f, 0L), (data) -> true);
+
+			assertTrue(latch.await(MAX_TIME_PAST_THRESHOLD * 2, TimeUnit.SECONDS));
+
+			long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+
+			assertTrue(elapsedMillis >= MILLIS_PAST_THRESHOLD);
+			assertEquals(1, commands.size());
+			assertEquals(ConfigConst.ON_COMMAND, commands.get(0).getCommand());
+			assertEquals(1, engine.getCommandCount());
+
+			// the command is in effect, so it isn't sent again with the next reading
+			assertEquals(0, engine.evaluate(
+				createData("device001", ConfigConst.HUMIDITY_SENSOR_TYPE, 10.0f, 2 * MILLIS_PAST_THRESHOLD), (data) -> true));
+		} finally {
+			timer.stop();
+		}
+	}
+
+	@Test
+	public void testEvaluationDoesNotAllocate()
+	{
+		com.sun.management.ThreadMXBean threadBean =
+			(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+		RuleEngine engine = new RuleEngine(createHumidityRule(), createTemperatureRule());
+		IActuatorDataListener listener = (data) -> true;
+
+		SensorData humidityData = createData("device001", ConfigConst.HUMIDITY_SENSOR_TYPE, 40.0f, 0L);
+		SensorData pressureData = createData("device001", ConfigConst.PRESSURE_SENSOR_TYPE, 1000.0f, 0L);
+
+		// warm up
+		for (int i = 0; i < EVALUATION_COUNT; i++) {
+			engine.evaluate(humidityData, listener);
+			engine.evaluate(pressureData, listener);
+		}
+
+		long threadID = Thread.currentThread().getId();
+		long startBytes = threadBean.getThreadAllocatedBytes(threadID);
+
+		for (int i = 0; i < EVALUATION_COUNT; i++) {
+			engine.evaluate(humidityData, listener);
+			engine.evaluate(pressureData, listener);
+		}
+
+		long allocatedBytes = threadBean.getThreadAllocatedBytes(threadID) - startBytes;
+
+		_Logger.info("Bytes allocated for " + (2 * EVALUATION_COUNT) + " evaluations: " + allocatedBytes);
+
+		// well below a single byte per evaluation (allows for the measurement itself)
+		assertTrue(allocatedBytes < EVALUATION_COUNT);
+	}
+
+
+	@Test
+	public void testPatternRuleJoinsTypesAtLocation()
+	{
+		PatternRule rule = createDryAndHotRule(false);
+		RuleEngine engine = new RuleEngine(rule, createHumidityRule());
+		List<ActuatorData> commands = new ArrayList<>();
+
+		// dispatched for both of its types
+		assertTrue(engine.hasRules(ConfigConst.TEMP_SENSOR_TYPE));
+		assertEquals(2, engine.getRuleCount());
+
+		// low humidity alone, or high temperature elsewhere, doesn't match
+		assertEquals(0, engine.evaluate(createData("device001", ConfigConst.HUMIDITY_SENSOR_TYPE, 40.0f, 0L), commands::add));
+		assertEquals(0, engine.evaluate(createData("device001", ConfigConst.HUMIDITY_SENSOR_TYPE, 20.0f, 1000L), commands::add));
+		assertEquals(0, engine.evaluate(createData("device002", ConfigConst.TEMP_SENSOR_TYPE, 30.0f, 2000L), commands::add));
+
+		assertEquals(1, engine.evaluate(createData("device001", ConfigConst.TEMP_SENSOR_TYPE, 30.0f, 3000L), commands::add));
+		assertEquals(1, commands.size());
+		assertEquals(ConfigConst.HVAC_ACTUATOR_TYPE, commands.get(0).getTypeID());
+		assertEquals(ConfigConst.ON_COMMAND, commands.get(0).getCommand());
+		assertEquals("device001", commands.get(0).getLocationID());
+
+		// still matching: not sent again
+		assertEquals(0, engine.evaluate(createData("device001", ConfigConst.TEMP_SENSOR_TYPE, 31.0f, 4000L), commands::add));
+
+		// the temperature drops: the actuator is turned off
+		assertEquals(1, engine.evaluate(createData("device001", ConfigConst.TEMP_SENSOR_TYPE, 22.0f, 5000L), commands::add));
+		assertEquals(ConfigConst.OFF_COMMAND, commands.get(1).getCommand());
+		assertEquals(2, rule.getTrackedDeviceCount());
+	}
+
+	@Test
+	public void testPatternRuleMatchesWithinWindow()
+	{
+		RuleEngine engine = new RuleEngine(createDryAndHotRule(false));
+		List<ActuatorData> commands = new ArrayList<>();
+
+		engine.evaluate(createData("device001", ConfigConst.HUMIDITY_SENSOR_TYPE, 20.0f, 0L), commands::add);
+
+		// the humidity reading is too old to join
+		engine.evaluate(createData("device001", ConfigConst.TEMP_SENSOR_TYPE, 30.0f, WITHIN_MILLIS + 1), commands::add);
+
+		assertEquals(0, commands.size());
+
+		// a fresh one joins the temperature reading
+		engine.evaluate(createData("device001", ConfigConst.HUMIDITY_SENSOR_TYPE, 20.0f, WITHIN_MILLIS + 2), commands::add);
+
+		assertEquals(1, commands.size());
+	}
+
+	@Test
+	public void testOrderedPatternRule()
+	{
+		RuleEngine engine = new RuleEngine(createDryAndHotRule(true));
+		List<ActuatorData> commands = new ArrayList<>();
+
+		// temperature, then humidity: the wrong order
+		engine.evaluate(createData("device001", ConfigConst.TEMP_SENSOR_TYPE, 30.0f, 0L), commands::add);
+		engine.evaluate(createData("device001", ConfigConst.HUMIDITY_SENSOR_TYPE, 20.0f, 1000L), commands::add);
+
+		assertEquals(0, commands.size());
+
+		// the temperature condition starts to hold again, after the humidity one
+		engine.evaluate(createData("device001", ConfigConst.TEMP_SENSOR_TYPE, 22.0f, 2000L), commands::add);
+		engine.evaluate(createData("device001", ConfigConst.TEMP_SENSOR_TYPE, 30.0f, 3000L), commands::add);
+
+		assertEquals(1, commands.size());
+	}
+
+
+	@Test
+	public void testPatternRuleTerms()
+	{
+		// built from its arguments, not the shared configuration, which
+		// other test cases may have replaced
+		PatternRule rule = createDryAndHotRule(false);
+
+		int[] sensorTypes = rule.getSensorTypes();
+
+		assertEquals(2, sensorTypes.length);
+		assertEquals(ConfigConst.HUMIDITY_SENSOR_TYPE, sensorTypes[0]);
+		assertEquals(ConfigConst.TEMP_SENSOR_TYPE, sensorTypes[1]);
+		assertEquals(WITHIN_SECS, rule.getWithin(TimeUnit.SECONDS));
+		assertFalse(rule.isOrdered());
+
+		// the terms are copied, so they can't be changed from outside the rule
+		sensorTypes[0] = ConfigConst.PRESSURE_SENSOR_TYPE;
+
+		assertEquals(ConfigConst.HUMIDITY_SENSOR_TYPE, rule.getSensorTypes()[0]);
+		assertTrue(createDryAndHotRule(true).isOrdered());
+	}
+
+
+	// private methods
+
+	private PatternRule createDryAndHotRule(boolean isOrdered)
+	{
+		return new PatternRule(
+			"DryAndHot",
+			new int[] { ConfigConst.HUMIDITY_SENSOR_TYPE, ConfigConst.TEMP_SENSOR_TYPE },
+			new RuleExpression[] { RuleExpression.compile("value < 30"), RuleExpression.compile("value > 26") },
+			WITHIN_SECS, TimeUnit.SECONDS, isOrdered,
+			ConfigConst.HVAC_ACTUATOR_TYPE, ConfigConst.HVAC_ACTUATOR_NAME, ConfigConst.ON_COMMAND, 22.0f);
+	}
+
+	private ThresholdRule createHumidityRule()
+	{
+		return new ThresholdRule(
+			RuleEngine.HUMIDITY_RULE_NAME,
+			ConfigConst.HUMIDITY_SENSOR_TYPE,
+			ConfigConst.HUMIDIFIER_ACTUATOR_TYPE,
+			ConfigConst.HUMIDIFIER_ACTUATOR_NAME,
+			FLOOR, CEILING, NOMINAL, MAX_TIME_PAST_THRESHOLD,
+			ConfigConst.ON_COMMAND, ConfigConst.OFF_COMMAND);
+	}
+
+	private ThresholdRule createTemperatureRule()
+	{
+		return new ThresholdRule(
+			"TemperatureRule",
+			ConfigConst.TEMP_SENSOR_TYPE,
+			ConfigConst.HVAC_ACTUATOR_TYPE,
+			ConfigConst.HVAC_ACTUATOR_NAME,
+			18.0f, 24.0f, 21.0f, MAX_TIME_PAST_THRESHOLD,
+			ConfigConst.ON_COMMAND, ConfigConst.ON_COMMAND);
+	}
+
+	private SensorData createData(String locationID, int typeID, float value, long timeStampMillis)
+	{
+		// the rules only look at the millis timestamp, so it's fixed here
+		SensorData data = new SensorData() {
+			@Override
+			public long getTimeStampMillis()
+			{
+				return timeStampMillis;
+			}
+		};
+
+		data.setLocationID(locationID);
+		data.setTypeID(typeID);
+		data.setValue(value);
+
+		return data;
+	}
+
+}
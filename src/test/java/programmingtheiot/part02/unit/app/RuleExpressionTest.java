@@ -0,0 +1,191 @@
+/**
+ * This class is part of the Programming the Internet of Things
+ * project, and is available via the MIT License, which can be
+ * found in the LICENSE file at the top level of this repository.
+ *
+ * Copyright (c) 2020 by Andrew D. King
+ */
+
+package programmingtheiot.part02.unit.app;
+
+import static org.junit.Assert.*;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import programmingtheiot.common.ConfigConst;
+import programmingtheiot.data.ActuatorData;
+import programmingtheiot.data.SensorData;
+import programmingtheiot.gda.app.ExpressionRule;
+import programmingtheiot.gda.app.RuleEngine;
+import programmingtheiot.gda.app.RuleExpression;
+
+/**
+ * This test case class contains very basic unit tests for
+ * RuleExpression and ExpressionRule. It should not be considered
+ * complete, but serve as a starting point for the student implementing
+ * additional functionality within their Programming the IoT
+ * environment.
+ *
+ */
+public class RuleExpressionTest
+{
+	// static
+
+	public static final String CONDITION = "value > 50 && duration(300s) && hour() in 8..20";
+
+
+	// test methods
+
+	@Test
+	public void testComparisons()
+	{
+		SensorData data = createData(50.0f, 0L);
+
+		assertTrue(RuleExpression.compile("value >= 50").test(data));
+		assertTrue(RuleExpression.compile("value <= 50.0").test(data));
+		assertTrue(RuleExpression.compile("value == 50").test(data));
+		assertTrue(RuleExpression.compile("value != 49.5").test(data));
+		assertTrue(RuleExpression.compile("60 > value").test(data));
+		assertTrue(RuleExpression.compile("value > -10").test(data));
+		assertFalse(RuleExpression.compile("value > 50").test(data));
+		assertFalse(RuleExpression.compile("value < 50").test(data));
+		assertTrue(RuleExpression.compile("value in 40..50").test(data));
+		assertFalse(RuleExpression.compile("value in 50.5..60").test(data));
+	}
+
+	@Test
+	public void testBooleanOperators()
+	{
+		SensorData data = createData(50.0f, 0L);
+
+		assertTrue(RuleExpression.compile("value > 40 && value < 60").test(data));
+		assertFalse(RuleExpression.compile("value > 40 && value > 60").test(data));
+		assertTrue(RuleExpression.compile("value > 60 || value < 55").test(data));
+		assertTrue(RuleExpression.compile("!(value > 60)").test(data));
+		assertTrue(RuleExpression.compile("value > 60 || (value > 40 && !false)").test(data));
+		assertFalse(RuleExpression.compile("1 > 2 || false").test(data));
+	}
+
+	@Test
+	public void testTimeOfDay()
+	{
+		long timeStampMillis = toMillis(LocalDateTime.of(2021, 6, 1, 14, 30));
+
+		SensorData data = createData(50.0f, timeStampMillis);
+
+		assertTrue(RuleExpression.compile("hour() == 14 && minute() == 30").test(data));
+		assertTrue(RuleExpression.compile("hour() in 8..20").test(data));
+		assertFalse(RuleExpression.compile("hour() in 15..20").test(data));
+
+		// and in winter time
+		data = createData(50.0f, toMillis(LocalDateTime.of(2021, 12, 1, 7, 59)));
+
+		assertTrue(RuleExpression.compile("hour() == 7 && minute() == 59").test(data));
+		assertFalse(RuleExpression.compile("hour() in 8..20").test(data));
+	}
+
+	@Test
+	public void testDuration()
+	{
+		assertEquals(300000L, RuleExpression.compile(CONDITION).getDurationMillis());
+		assertEquals(500L, RuleExpression.compile("duration(500ms) && value > 1").getDurationMillis());
+		assertEquals(120000L, RuleExpression.compile("value > 1 && duration(2m)").getDurationMillis());
+		assertEquals(3600000L, RuleExpression.compile("duration(1h)").getDurationMillis());
+		assertEquals(5000L, RuleExpression.compile("duration(5)").getDurationMillis());
+		assertEquals(0L, RuleExpression.compile("value > 1").getDurationMillis());
+
+		// the duration isn't part of the test
+		assertTrue(RuleExpression.compile("duration(1h)").test(createData(0.0f, 0L)));
+	}
+
+	@Test
+	public void testInvalidExpressions()
+	{
+		String[] invalid = {
+			"", "value >", "value 50", "values > 50", "value > 50 &&", "(value > 50", "value > 50)",
+			"value in 60..50", "temperature > 50", "hour > 5",
+			"value > 1 || duration(5s)", "duration(5s) && value > 1 || value < 0",
+			"!duration(5s)", "(duration(5s))", "duration(5s) && duration(6s)", "duration(s)"
+		};
+
+		for (String source : invalid) {
+			try {
+				RuleExpression.compile(source);
+				fail("Expected an invalid expression: " + source);
+			} catch (IllegalArgumentException e) {
+				// expected
+			}
+		}
+	}
+
+	@Test
+	public void testRuleCommandIsSentAfterDuration()
+	{
+		long startMillis = toMillis(LocalDateTime.of(2021, 6, 1, 10, 0));
+
+		ExpressionRule rule = new ExpressionRule(
+			"DaytimeHumidity", ConfigConst.HUMIDITY_SENSOR_TYPE, RuleExpression.compile(CONDITION),
+			ConfigConst.HVAC_ACTUATOR_TYPE, ConfigConst.HVAC_ACTUATOR_NAME, ConfigConst.ON_COMMAND, 45.0f);
+
+		RuleEngine engine = new RuleEngine(rule);
+		List<ActuatorData> commands = new ArrayList<>();
+
+		engine.evaluate(createData(60.0f, startMillis), commands::add);
+		engine.evaluate(createData(60.0f, startMillis + 299999L), commands::add);
+
+		assertEquals(0, commands.size());
+
+		engine.evaluate(createData(60.0f, startMillis + 300000L), commands::add);
+		engine.evaluate(createData(60.0f, startMillis + 300001L), commands::add);
+
+		assertEquals(1, commands.size());
+		assertEquals(ConfigConst.ON_COMMAND, commands.get(0).getCommand());
+		assertEquals(45.0f, commands.get(0).getValue(), 0.0f);
+
+		// no longer met: the actuator is turned off
+		engine.evaluate(createData(40.0f, startMillis + 300002L), commands::add);
+
+		assertEquals(2, commands.size());
+		assertEquals(ConfigConst.OFF_COMMAND, commands.get(1).getCommand());
+
+		// met again, but outside of the hours
+		long eveningMillis = toMillis(LocalDateTime.of(2021, 6, 1, 21, 0));
+
+		engine.evaluate(createData(60.0f, eveningMillis), commands::add);
+		engine.evaluate(createData(60.0f, eveningMillis + 300000L), commands::add);
+
+		assertEquals(2, commands.size());
+	}
+
+
+	// private methods
+
+	private SensorData createData(float value, long timeStampMillis)
+	{
+		// the rules only look at the millis timestamp, so it's fixed here
+		SensorData data = new SensorData() {
+			@Override
+			public long getTimeStampMillis()
+			{
+				return timeStampMillis;
+			}
+		};
+
+		data.setLocationID("device001");
+		data.setTypeID(ConfigConst.HUMIDITY_SENSOR_TYPE);
+		data.setValue(value);
+
+		return data;
+	}
+
+	private long toMillis(LocalDateTime dateTime)
+	{
+		return dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+	}
+
+}
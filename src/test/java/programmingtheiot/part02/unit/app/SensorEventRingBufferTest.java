@@ -0,0 +1,220 @@
+/**
+ * This class is part of the Programming the Internet of Things
+ * project, and is available via the MIT License, which can be
+ * found in the LICENSE file at the top level of this repository.
+ *
+ * Copyright (c) 2020 by Andrew D. King
+ */
+
+package programmingtheiot.part02.unit.app;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import org.junit.Test;
+
+import programmingtheiot.common.ConfigConst;
+import programmingtheiot.common.ResourceNameEnum;
+import programmingtheiot.data.SensorData;
+import programmingtheiot.gda.app.SensorEventRingBuffer;
+
+/**
+ * This test case class contains very basic unit tests for
+ * SensorEventRingBuffer. It should not be considered complete,
+ * but serve as a starting point for the student implementing
+ * additional functionality within their Programming the IoT
+ * environment.
+ *
+ */
+public class SensorEventRingBufferTest
+{
+	// static
+
+	private static final Logger _Logger =
+		Logger.getLogger(SensorEventRingBufferTest.class.getName());
+
+	public static final int RING_SIZE   = 64;
+	public static final int EVENT_COUNT = 10000;
+
+	private static final ResourceNameEnum RESOURCE = ResourceNameEnum.CDA_SENSOR_MSG_RESOURCE;
+
+
+	// test methods
+
+	@Test
+	public void testEachConsumerReceivesAllEventsInOrder() throws Exception
+	{
+		SensorEventRingBuffer ring = new SensorEventRingBuffer(RING_SIZE);
+
+		AtomicLong    orderErrors = new AtomicLong();
+		AtomicInteger fastCount   = new AtomicInteger();
+		AtomicInteger batchCount  = new AtomicInteger();
+		AtomicInteger batchedReadings = new AtomicInteger();
+
+		long[] lastValue = { -1L };
+
+		ring.addConsumer("fast", (event, sequence, endOfBatch) -> {
+			if ((long) event.getValue() != lastValue[0] + 1 || event.getResource() != RESOURCE) {
+				orderErrors.incrementAndGet();
+			}
+
+			lastValue[0] = (long) event.getValue();
+			fastCount.incrementAndGet();
+		});
+
+		ring.addConsumer("batching", SensorEventRingBuffer.batching(16, (resource, batch) -> {
+			assertTrue(batch.size() <= 16);
+
+			batchCount.incrementAndGet();
+			batchedReadings.addAndGet(batch.size());
+		}));
+
+		ring.start();
+
+		SensorData data = createSensorData();
+
+		for (int i = 0; i < EVENT_COUNT; i++) {
+			data.setValue(i);
+
+			// the consumers keep up, but the ring is small, so retry when full
+			while (! ring.tryPublish(RESOURCE, data)) {
+				Thread.yield();
+			}
+		}
+
+		assertTrue(ring.stop(5, TimeUnit.SECONDS));
+
+		assertEquals(0, orderErrors.get());
+		assertEquals(EVENT_COUNT, fastCount.get());
+		assertEquals(EVENT_COUNT, batchedReadings.get());
+		assertTrue(batchCount.get() >= EVENT_COUNT / 16);
+		assertEquals(EVENT_COUNT - 1, ring.getCursor());
+		assertEquals(0, ring.getBacklog());
+
+		_Logger.info(ring.toString());
+	}
+
+	@Test
+	public void testFullRingDropsInsteadOfBlocking() throws Exception
+	{
+		SensorEventRingBuffer ring = new SensorEventRingBuffer(RING_SIZE);
+		CountDownLatch release = new CountDownLatch(1);
+		AtomicInteger  count   = new AtomicInteger();
+
+		// stalls on the first event, until released
+		ring.addConsumer("stalled", (event, sequence, endOfBatch) -> {
+			awaitQuietly(release);
+			count.incrementAndGet();
+		});
+
+		SensorData data = createSensorData();
+
+		// not started yet
+		assertFalse(ring.tryPublish(RESOURCE, data));
+
+		ring.start();
+
+		int publishedCount = 0;
+
+		for (int i = 0; i < RING_SIZE * 2; i++) {
+			if (ring.tryPublish(RESOURCE, data)) {
+				publishedCount++;
+			}
+		}
+
+		assertEquals(RING_SIZE, publishedCount);
+		assertEquals(RING_SIZE + 1, ring.getDroppedCount());
+
+		release.countDown();
+
+		assertTrue(ring.stop(5, TimeUnit.SECONDS));
+		assertEquals(RING_SIZE, count.get());
+	}
+
+	@Test
+	public void testSlotCopy() throws Exception
+	{
+		SensorEventRingBuffer ring = new SensorEventRingBuffer(RING_SIZE);
+		SensorData[] copy = new SensorData[1];
+
+		ring.addConsumer("copy", (event, sequence, endOfBatch) -> copy[0] = event.toSensorData());
+		ring.start();
+
+		SensorData data = createSensorData();
+		data.setValue(42.5f);
+
+		assertTrue(ring.tryPublish(RESOURCE, data));
+		assertTrue(ring.stop(5, TimeUnit.SECONDS));
+
+		assertNotNull(copy[0]);
+		assertEquals(data.getName(), copy[0].getName());
+		assertEquals(data.getLocationID(), copy[0].getLocationID());
+		assertEquals(data.getTypeID(), copy[0].getTypeID());
+		assertEquals(data.getValue(), copy[0].getValue(), 0.0f);
+		assertEquals(data.getTimeStampMillis(), copy[0].getTimeStampMillis());
+	}
+
+	@Test
+	public void testBatchingSkipsSuppressedEvents() throws Exception
+	{
+		SensorEventRingBuffer ring = new SensorEventRingBuffer(RING_SIZE);
+		AtomicInteger eventCount = new AtomicInteger();
+		AtomicInteger batchedCount = new AtomicInteger();
+		AtomicInteger emptyBatchCount = new AtomicInteger();
+
+		ring.addConsumer("analysis", (event, sequence, endOfBatch) -> eventCount.incrementAndGet());
+		ring.addConsumer("cloud", SensorEventRingBuffer.batching(
+			SensorEventRingBuffer.DEFAULT_MAX_BATCH_SIZE, (resource, batch) -> {
+				if (batch.isEmpty()) {
+					emptyBatchCount.incrementAndGet();
+				}
+
+				batchedCount.addAndGet(batch.size());
+			}));
+
+		ring.start();
+
+		SensorData data = createSensorData();
+
+		for (int i = 0; i < 100; i++) {
+			while (! ring.tryPublish(RESOURCE, data, i % 10 != 0)) {
+				Thread.yield();
+			}
+		}
+
+		assertTrue(ring.stop(5, TimeUnit.SECONDS));
+
+		assertEquals(100, eventCount.get());
+		assertEquals(10, batchedCount.get());
+		assertEquals(0, emptyBatchCount.get());
+	}
+
+
+	// private methods
+
+	private SensorData createSensorData()
+	{
+		SensorData data = new SensorData();
+
+		data.setName(ConfigConst.TEMP_SENSOR_NAME);
+		data.setLocationID("SensorEventRingLocation");
+		data.setTypeID(ConfigConst.TEMP_SENSOR_TYPE);
+
+		return data;
+	}
+
+	private void awaitQuietly(CountDownLatch latch)
+	{
+		try {
+			latch.await(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
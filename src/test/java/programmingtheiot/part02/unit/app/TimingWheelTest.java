@@ -0,0 +1,211 @@
+/**
+ * This class is part of the Programming the Internet of Things
+ * project, and is available via the MIT License, which can be
+ * found in the LICENSE file at the top level of this repository.
+ *
+ * Copyright (c) 2020 by Andrew D. King
+ */
+
+package programmingtheiot.part02.unit.app;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import programmingtheiot.common.ConfigConst;
+import programmingtheiot.data.ActuatorData;
+import programmingtheiot.data.SensorData;
+import programmingtheiot.gda.app.ActuatorAckMonitor;
+import programmingtheiot.gda.app.StaleSensorMonitor;
+import programmingtheiot.gda.app.TimingWheel;
+
+/**
+ * This test case class contains very basic unit tests for
+ * TimingWheel, and the deadline monitors that use it. It should not
+ * be considered complete, but serve as a starting point for the student
+ * implementing additional functionality within their Programming the IoT
+ * environment.
+ *
+ */
+public class TimingWheelTest
+{
+	// static
+
+	private static final Logger _Logger =
+		Logger.getLogger(TimingWheelTest.class.getName());
+
+	public static final long TICK_MILLIS   = 5L;
+	public static final int  WHEEL_SIZE    = 8;
+	public static final int  TIMEOUT_COUNT = 1000;
+
+
+	// member var's
+
+	private TimingWheel timer = null;
+
+
+	// test setup methods
+
+	@Before
+	public void setUp() throws Exception
+	{
+		// a small wheel, so the longer timeouts move down through the levels
+		this.timer = new TimingWheel("test", TICK_MILLIS, TimeUnit.MILLISECONDS, WHEEL_SIZE);
+		this.timer.start();
+	}
+
+	@After
+	public void tearDown() throws Exception
+	{
+		this.timer.stop();
+	}
+
+
+	// test methods
+
+	@Test
+	public void testTimeoutsExpireOnTime() throws Exception
+	{
+		CountDownLatch latch = new CountDownLatch(TIMEOUT_COUNT);
+		AtomicInteger earlyCount = new AtomicInteger();
+		AtomicLong maxLateMillis = new AtomicLong();
+
+		long startNanos = System.nanoTime();
+
+		// from a few ticks to several levels of the wheel
+		for (int i = 0; i < TIMEOUT_COUNT; i++) {
+			long delayMillis = (i * 7L) % 1000;
+
+			this.timer.schedule(() -> {
+				long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+
+				if (elapsedMillis < delayMillis) {
+					earlyCount.incrementAndGet();
+				}
+
+				maxLateMillis.accumulateAndGet(elapsedMillis - delayMillis, Math::max);
+				latch.countDown();
+			}, delayMillis, TimeUnit.MILLISECONDS);
+		}
+
+		assertTrue(latch.await(10, TimeUnit.SECONDS));
+		assertEquals(0, earlyCount.get());
+		assertEquals(TIMEOUT_COUNT, this.timer.getExpiredCount());
+		assertEquals(0, this.timer.getPendingCount());
+
+		_Logger.info("Max lateness: " + maxLateMillis.get() + " ms. " + this.timer);
+	}
+
+	@Test
+	public void testCancelledTimeoutsDontExpire() throws Exception
+	{
+		AtomicInteger expiredCount = new AtomicInteger();
+		CountDownLatch latch = new CountDownLatch(1);
+
+		TimingWheel.Timeout cancelled = this.timer.schedule(expiredCount::incrementAndGet, 50, TimeUnit.MILLISECONDS);
+		TimingWheel.Timeout expired   = this.timer.schedule(latch::countDown, 100, TimeUnit.MILLISECONDS);
+
+		assertTrue(cancelled.cancel());
+		assertFalse(cancelled.cancel());
+
+		assertTrue(latch.await(5, TimeUnit.SECONDS));
+		Thread.sleep(TICK_MILLIS * 2);
+
+		assertEquals(0, expiredCount.get());
+		assertTrue(cancelled.isCancelled());
+		assertTrue(expired.isExpired());
+		assertFalse(expired.cancel());
+		assertEquals(1, this.timer.getCancelledCount());
+	}
+
+	@Test
+	public void testStoppedWheelIgnoresTimeouts()
+	{
+		this.timer.stop();
+
+		TimingWheel.Timeout timeout = this.timer.schedule(() -> fail("Expired after stop."), 0, TimeUnit.MILLISECONDS);
+
+		assertTrue(timeout.isCancelled());
+		assertFalse(this.timer.isRunning());
+	}
+
+	@Test
+	public void testStaleSensorIsDetected() throws Exception
+	{
+		StaleSensorMonitor monitor = new StaleSensorMonitor(this.timer, 100, TimeUnit.MILLISECONDS);
+		SensorData data = createSensorData();
+
+		// keeps reporting for a while
+		for (int i = 0; i < 10; i++) {
+			monitor.onReading(data);
+			Thread.sleep(20L);
+		}
+
+		assertFalse(monitor.isStale(data.getLocationID(), data.getTypeID()));
+
+		// then goes silent
+		Thread.sleep(250L);
+
+		assertTrue(monitor.isStale(data.getLocationID(), data.getTypeID()));
+		assertEquals(1, monitor.getStaleCount());
+
+		monitor.onReading(data);
+
+		assertFalse(monitor.isStale(data.getLocationID(), data.getTypeID()));
+	}
+
+	@Test
+	public void testActuatorResponseTimeout() throws Exception
+	{
+		ActuatorAckMonitor monitor = new ActuatorAckMonitor(this.timer, 100, TimeUnit.MILLISECONDS);
+		ActuatorData command = createActuatorData();
+
+		monitor.onCommandSent(command);
+
+		assertTrue(monitor.isPending(command.getLocationID(), command.getTypeID()));
+		assertTrue(monitor.onResponse(command));
+		assertFalse(monitor.isPending(command.getLocationID(), command.getTypeID()));
+		assertFalse(monitor.onResponse(command));
+
+		monitor.onCommandSent(command);
+
+		Thread.sleep(250L);
+
+		assertFalse(monitor.isPending(command.getLocationID(), command.getTypeID()));
+		assertEquals(1, monitor.getAckCount());
+		assertEquals(1, monitor.getTimeoutCount());
+	}
+
+
+	// private methods
+
+	private SensorData createSensorData()
+	{
+		SensorData data = new SensorData();
+		data.setName(ConfigConst.TEMP_SENSOR_NAME);
+		data.setLocationID("device001");
+		data.setTypeID(ConfigConst.TEMP_SENSOR_TYPE);
+
+		return data;
+	}
+
+	private ActuatorData createActuatorData()
+	{
+		ActuatorData data = new ActuatorData();
+		data.setName(ConfigConst.HVAC_ACTUATOR_NAME);
+		data.setLocationID("device001");
+		data.setTypeID(ConfigConst.HVAC_ACTUATOR_TYPE);
+		data.setCommand(ConfigConst.ON_COMMAND);
+
+		return data;
+	}
+
+}
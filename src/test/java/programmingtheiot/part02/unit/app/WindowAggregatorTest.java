@@ -0,0 +1,225 @@
+/**
+ * This class is part of the Programming the Internet of Things
+ * project, and is available via the MIT License, which can be
+ * found in the LICENSE file at the top level of this repository.
+ *
+ * Copyright (c) 2020 by Andrew D. King
+ */
+
+package programmingtheiot.part02.unit.app;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import programmingtheiot.common.ConfigConst;
+import programmingtheiot.common.ResourceNameEnum;
+import programmingtheiot.data.SensorDataBatch;
+import programmingtheiot.gda.app.WindowAggregator;
+
+/**
+ * This test case class contains very basic unit tests for
+ * WindowAggregator. It should not be considered complete,
+ * but serve as a starting point for the student implementing
+ * additional functionality within their Programming the IoT
+ * environment.
+ *
+ */
+public class WindowAggregatorTest
+{
+	// static
+
+	private static final ResourceNameEnum RESOURCE = ResourceNameEnum.CDA_SENSOR_MSG_RESOURCE;
+
+	private static final String LOCATION_ID = "device001";
+
+	// the order in which a window's aggregates are emitted
+	private static final int MIN    = 0;
+	private static final int MAX    = 1;
+	private static final int MEAN   = 2;
+	private static final int COUNT  = 3;
+	private static final int LAST   = 4;
+	private static final int STDDEV = 5;
+	private static final int AGGREGATE_COUNT = 6;
+
+
+	// member var's
+
+	private List<SensorDataBatch> emitted = null;
+
+
+	// test setup methods
+
+	@Before
+	public void setUp() throws Exception
+	{
+		this.emitted = new CopyOnWriteArrayList<>();
+	}
+
+
+	// test methods
+
+	@Test
+	public void testTumblingWindowAggregates()
+	{
+		WindowAggregator aggregator = createAggregator(60L, 60L, 0L);
+		float[] values = { 20.0f, 22.0f, 21.0f, 25.0f, 19.0f, 23.0f };
+
+		for (int i = 0; i < values.length; i++) {
+			assertTrue(add(aggregator, values[i], i * 10L));
+		}
+
+		// the window [0, 60) is still open
+		assertTrue(this.emitted.isEmpty());
+
+		add(aggregator, 30.0f, 60L);
+
+		assertEquals(1, this.emitted.size());
+
+		SensorDataBatch aggregates = this.emitted.get(0);
+
+		assertEquals(AGGREGATE_COUNT, aggregates.size());
+		assertEquals(ConfigConst.TEMP_SENSOR_NAME + WindowAggregator.MEAN_SUFFIX, aggregates.getName(MEAN));
+		assertEquals(LOCATION_ID, aggregates.getLocationID(MEAN));
+		assertEquals(ConfigConst.TEMP_SENSOR_TYPE, aggregates.getTypeID(MEAN));
+		assertEquals(TimeUnit.SECONDS.toMillis(60L), aggregates.getTimeStampMillis(MEAN));
+
+		assertEquals(19.0f, aggregates.getValue(MIN), 0.0f);
+		assertEquals(25.0f, aggregates.getValue(MAX), 0.0f);
+		assertEquals(21.666666f, aggregates.getValue(MEAN), 0.0001f);
+		assertEquals(6.0f, aggregates.getValue(COUNT), 0.0f);
+		assertEquals(23.0f, aggregates.getValue(LAST), 0.0f);
+		assertEquals(getStdDev(values), aggregates.getValue(STDDEV), 0.0001f);
+
+		WindowAggregator.Window window = aggregator.getWindow(ConfigConst.TEMP_SENSOR_TYPE);
+
+		assertTrue(window.isTumbling());
+		assertEquals(7, window.getReadingCount());
+		assertEquals(1, window.getEmittedCount());
+	}
+
+	@Test
+	public void testSlidingWindowsMergePanes()
+	{
+		// windows of 30 secs, every 10 secs: each reading is in 3 windows
+		WindowAggregator aggregator = createAggregator(30L, 10L, 0L);
+
+		for (int i = 0; i < 6; i++) {
+			add(aggregator, i, i * 10L);
+		}
+
+		// closed so far: [-20, 10), [-10, 20), [0, 30), [10, 40), [20, 50)
+		assertEquals(5, this.emitted.size());
+
+		SensorDataBatch aggregates = this.emitted.get(2);
+
+		assertEquals(TimeUnit.SECONDS.toMillis(30L), aggregates.getTimeStampMillis(COUNT));
+		assertEquals(3.0f, aggregates.getValue(COUNT), 0.0f);
+		assertEquals(0.0f, aggregates.getValue(MIN), 0.0f);
+		assertEquals(2.0f, aggregates.getValue(MAX), 0.0f);
+		assertEquals(1.0f, aggregates.getValue(MEAN), 0.0f);
+		assertEquals(2.0f, aggregates.getValue(LAST), 0.0f);
+		assertEquals(getStdDev(new float[] { 0.0f, 1.0f, 2.0f }), aggregates.getValue(STDDEV), 0.0001f);
+
+		assertEquals(1.0f, this.emitted.get(0).getValue(COUNT), 0.0f);
+		assertEquals(3.0f, this.emitted.get(4).getValue(COUNT), 0.0f);
+		assertEquals(3.0f, this.emitted.get(4).getValue(MEAN), 0.0f);
+	}
+
+	@Test
+	public void testLateReadingsWithinAllowedLateness()
+	{
+		WindowAggregator aggregator = createAggregator(60L, 60L, 10L);
+
+		add(aggregator, 1.0f, 50L);
+		add(aggregator, 2.0f, 65L);
+
+		// the window [0, 60) stays open until the watermark passes 60 secs
+		assertTrue(this.emitted.isEmpty());
+		assertTrue(add(aggregator, 3.0f, 55L));
+
+		add(aggregator, 4.0f, 70L);
+
+		assertEquals(1, this.emitted.size());
+		assertEquals(2.0f, this.emitted.get(0).getValue(COUNT), 0.0f);
+
+		// the last value is by timestamp, not by arrival
+		assertEquals(3.0f, this.emitted.get(0).getValue(LAST), 0.0f);
+
+		// too late: the window has closed
+		assertFalse(add(aggregator, 5.0f, 59L));
+		assertEquals(1, aggregator.getWindow(ConfigConst.TEMP_SENSOR_TYPE).getLateCount());
+	}
+
+	@Test
+	public void testWindowsWithoutReadingsAreSkipped()
+	{
+		WindowAggregator aggregator = createAggregator(1L, 1L, 0L);
+
+		add(aggregator, 1.0f, 0L);
+
+		// a day later
+		add(aggregator, 2.0f, TimeUnit.DAYS.toSeconds(1L));
+		add(aggregator, 3.0f, TimeUnit.DAYS.toSeconds(1L) + 1L);
+
+		assertEquals(2, this.emitted.size());
+		assertEquals(1.0f, this.emitted.get(0).getValue(LAST), 0.0f);
+		assertEquals(2.0f, this.emitted.get(1).getValue(LAST), 0.0f);
+	}
+
+	@Test
+	public void testDevicesAndTypesAreSeparate()
+	{
+		WindowAggregator aggregator = createAggregator(60L, 60L, 0L);
+
+		aggregator.add(RESOURCE, ConfigConst.TEMP_SENSOR_NAME, "device002", ConfigConst.TEMP_SENSOR_TYPE, 0, 1.0f, 0L);
+		aggregator.add(RESOURCE, "HumiditySensor", LOCATION_ID, ConfigConst.HUMIDITY_SENSOR_TYPE, 0, 1.0f, 0L);
+		add(aggregator, 1.0f, 0L);
+		add(aggregator, 2.0f, 60000L);
+
+		assertEquals(1, this.emitted.size());
+		assertEquals(1.0f, this.emitted.get(0).getValue(COUNT), 0.0f);
+		assertFalse(aggregator.hasWindow(ConfigConst.HUMIDITY_SENSOR_TYPE));
+	}
+
+
+	// private methods
+
+	private WindowAggregator createAggregator(long size, long slide, long allowedLateness)
+	{
+		return new WindowAggregator(
+			(resource, aggregates) -> this.emitted.add(aggregates),
+			new WindowAggregator.Window(ConfigConst.TEMP_SENSOR_TYPE, size, slide, allowedLateness, TimeUnit.SECONDS));
+	}
+
+	private boolean add(WindowAggregator aggregator, float value, long timeStampSecs)
+	{
+		return aggregator.add(
+			RESOURCE, ConfigConst.TEMP_SENSOR_NAME, LOCATION_ID, ConfigConst.TEMP_SENSOR_TYPE, 0,
+			value, TimeUnit.SECONDS.toMillis(timeStampSecs));
+	}
+
+	private float getStdDev(float[] values)
+	{
+		double sum = 0.0;
+
+		for (float value : values) {
+			sum += value;
+		}
+
+		double mean = sum / values.length;
+		double sumOfSquares = 0.0;
+
+		for (float value : values) {
+			sumOfSquares += (value - mean) * (value - mean);
+		}
+
+		return (float) Math.sqrt(sumOfSquares / values.length);
+	}
+
+}
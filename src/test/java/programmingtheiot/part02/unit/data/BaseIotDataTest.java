@@ -10,6 +10,7 @@ package programmingtheiot.part02.unit.data;
 
 import static org.junit.Assert.*;
 
+import java.time.Instant;
 import java.util.logging.Logger;
 
 import org.junit.After;
@@ -18,6 +19,7 @@ import org.junit.Test;
 
 import programmingtheiot.common.ConfigConst;
 import programmingtheiot.common.ConfigUtil;
+import programmingtheiot.common.DeviceIdentity;
 import programmingtheiot.data.BaseIotData;
 
 /**
@@ -108,6 +110,38 @@ public class BaseIotDataTest
 	}
 	
 	
+	@Test
+	public void testLocationFromDeviceIdentity()
+	{
+		assertEquals(DeviceIdentity.getDefault().getLocationID(), this.locationID);
+		assertEquals(new TestIotData(null).getLocationID(), ConfigConst.NOT_SET);
+		
+		TestIotData td = new TestIotData(new DeviceIdentity(DEFAULT_LOCATION_ID));
+		
+		assertEquals(td.getLocationID(), DEFAULT_LOCATION_ID);
+	}
+	
+	@Test
+	public void testTimeStampFormattedFromMillis()
+	{
+		TestIotData td = new TestIotData();
+		
+		String timeStamp = td.getTimeStamp();
+		Instant instant = Instant.parse(timeStamp);
+		
+		assertEquals(td.getTimeStampMillis(), instant.toEpochMilli());
+		
+		// cached until the timestamp changes
+		assertSame(timeStamp, td.getTimeStamp());
+		
+		TestIotData td2 = createTestData();
+		td.updateData(td2);
+		
+		assertTrue(td.getTimeStampMillis() >= instant.toEpochMilli());
+		assertEquals(td.getTimeStampMillis(), Instant.parse(td.getTimeStamp()).toEpochMilli());
+	}
+	
+	
 	// private
 	
 	private class TestIotData extends BaseIotData
@@ -116,6 +150,16 @@ public class BaseIotDataTest
 		 * 
 		 */
 		private static final long serialVersionUID = -5589706082614880746L;
+		
+		TestIotData()
+		{
+			super();
+		}
+		
+		TestIotData(DeviceIdentity identity)
+		{
+			super(identity);
+		}
 
 		@Override
 		protected void handleUpdateData(BaseIotData data)
@@ -10,10 +10,16 @@ package programmingtheiot.part02.unit.data;
 
 import static org.junit.Assert.*;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
 import java.util.logging.Logger;
 
 import org.junit.Test;
 
+import com.google.gson.Gson;
+
+import programmingtheiot.common.ConfigConst;
 import programmingtheiot.data.*;
 
 /**
@@ -114,14 +120,322 @@ public class DataUtilTest
 		assertTrue(data.getMemoryUtilization() == data2.getMemoryUtilization());
 	}
 	
+	@Test
+	public void testJsonMatchesReflectiveGsonOutput()
+	{
+		DataUtil dataUtil = DataUtil.getInstance();
+		Gson reflectiveGson = new Gson();
+		
+		SensorData sensorData = new SensorData();
+		sensorData.setName(DEFAULT_NAME);
+		sensorData.setLocationID(DEFAULT_LOCATION);
+		sensorData.setValue(0.1f);
+		
+		ActuatorData actuatorData = new ActuatorData();
+		actuatorData.setName(DEFAULT_NAME);
+		actuatorData.setCommand(DEFAULT_CMD);
+		actuatorData.setStateData(null);
+		actuatorData.setAsResponse();
+		
+		SystemPerformanceData sysPerfData = new SystemPerformanceData();
+		sysPerfData.setCpuUtilization(DEFAULT_VAL);
+		
+		// the timestamp String is formatted lazily, so it's only visible to
+		// reflection once the adapters have rendered it
+		String sensorJson   = dataUtil.sensorDataToJson(sensorData);
+		String actuatorJson = dataUtil.actuatorDataToJson(actuatorData);
+		String sysPerfJson  = dataUtil.systemPerformanceDataToJson(sysPerfData);
+		
+		assertEquals(reflectiveGson.toJson(sensorData), sensorJson);
+		assertEquals(reflectiveGson.toJson(actuatorData), actuatorJson);
+		assertEquals(reflectiveGson.toJson(sysPerfData), sysPerfJson);
+		
+		// decoding must keep the original timestamp, not generate a new one
+		SensorData sensorData2 = dataUtil.jsonToSensorData(reflectiveGson.toJson(sensorData));
+		
+		assertEquals(sensorData.getTimeStamp(), sensorData2.getTimeStamp());
+		assertEquals(sensorData.getTimeStampMillis(), sensorData2.getTimeStampMillis());
+	}
+	
+	@Test
+	public void testTimeStampMillisFromIsoTimeStamp()
+	{
+		DataUtil dataUtil = DataUtil.getInstance();
+		
+		// as sent by the CDA: the timestamp String, but no millis
+		String timeStamp = "2020-12-27T10:13:30.123456+01:00";
+		String jsonData =
+			"{\"name\":\"" + DEFAULT_NAME + "\",\"typeID\":" + ConfigConst.TEMP_SENSOR_TYPE +
+			",\"timeStamp\":\"" + timeStamp + "\",\"value\":" + DEFAULT_VAL + "}";
+		
+		long millis = OffsetDateTime.parse(timeStamp).toInstant().toEpochMilli();
+		
+		SensorData data = dataUtil.jsonToSensorData(jsonData);
+		SensorData data2 = dataUtil.jsonToSensorData(jsonData.getBytes(StandardCharsets.UTF_8));
+		
+		assertEquals(timeStamp, data.getTimeStamp());
+		assertEquals(millis, data.getTimeStampMillis());
+		assertEquals(timeStamp, data2.getTimeStamp());
+		assertEquals(millis, data2.getTimeStampMillis());
+		
+		// an invalid timestamp is replaced by the time the data was received
+		long startMillis = System.currentTimeMillis();
+		
+		SensorData data3 = dataUtil.jsonToSensorData(jsonData.replace(timeStamp, "yesterday"));
+		
+		assertTrue(data3.getTimeStampMillis() >= startMillis);
+		assertNotEquals("yesterday", data3.getTimeStamp());
+	}
+	
+	@Test
+	public void testSensorDataFromUtf8Bytes()
+	{
+		DataUtil dataUtil = DataUtil.getInstance();
+		
+		SensorData data = new SensorData();
+		data.setName("T\u00e9st \"quoted\"");
+		data.setLocationID(DEFAULT_LOCATION);
+		data.setStatusCode(DEFAULT_STATUS);
+		data.setValue(DEFAULT_VAL);
+		
+		String jsonData = dataUtil.sensorDataToJson(data);
+		byte[] payload = jsonData.getBytes(StandardCharsets.UTF_8);
+		
+		SensorData data2 = dataUtil.jsonToSensorData(payload);
+		
+		ByteBuffer directBuf = ByteBuffer.allocateDirect(payload.length);
+		directBuf.put(payload).flip();
+		
+		SensorData data3 = dataUtil.jsonToSensorData(directBuf);
+		
+		for (SensorData decoded : new SensorData[] {data2, data3}) {
+			assertEquals(data.getName(), decoded.getName());
+			assertEquals(data.getLocationID(), decoded.getLocationID());
+			assertEquals(data.getTimeStamp(), decoded.getTimeStamp());
+			assertTrue(data.getStatusCode() == decoded.getStatusCode());
+			assertTrue(data.getValue() == decoded.getValue());
+		}
+		
+		// the buffer is read in place, not consumed
+		assertEquals(0, directBuf.position());
+		
+		assertEquals(jsonData, dataUtil.sensorDataToJson(data2));
+		assertNull(dataUtil.jsonToSensorData(new byte[0]));
+	}
+	
+	@Test
+	public void testActuatorAndSystemPerformanceDataFromUtf8Bytes()
+	{
+		DataUtil dataUtil = DataUtil.getInstance();
+		
+		ActuatorData data = new ActuatorData();
+		data.setName(DEFAULT_NAME);
+		data.setCommand(DEFAULT_CMD);
+		data.setValue(DEFAULT_VAL);
+		data.setAsResponse();
+		
+		ActuatorData data2 =
+			dataUtil.jsonToActuatorData(dataUtil.actuatorDataToJson(data).getBytes(StandardCharsets.UTF_8));
+		
+		assertTrue(data.getCommand() == data2.getCommand());
+		assertTrue(data.getValue() == data2.getValue());
+		assertTrue(data2.isResponseFlagEnabled());
+		
+		SystemPerformanceData sysPerfData = new SystemPerformanceData();
+		sysPerfData.setCpuUtilization(DEFAULT_VAL);
+		sysPerfData.setMemoryUtilization(DEFAULT_VAL);
+		
+		SystemPerformanceData sysPerfData2 =
+			dataUtil.jsonToSystemPerformanceData(
+				dataUtil.systemPerformanceDataToJson(sysPerfData).getBytes(StandardCharsets.UTF_8));
+		
+		assertTrue(sysPerfData.getCpuUtilization() == sysPerfData2.getCpuUtilization());
+		assertTrue(sysPerfData.getMemoryUtilization() == sysPerfData2.getMemoryUtilization());
+	}
+	
+	@Test
+	public void testSensorDataToCborAndBack()
+	{
+		DataUtil dataUtil = DataUtil.getInstance();
+		
+		SensorData data = new SensorData();
+		data.setName("T\u00e9st");
+		data.setLocationID(DEFAULT_LOCATION);
+		data.setStatusCode(DEFAULT_STATUS);
+		data.setLatitude(42.3601f);
+		data.setValue(21.37f);
+		
+		byte[] cborData = dataUtil.encodeData(data, ConfigConst.CBOR_CONTENT_FORMAT);
+		byte[] jsonData = dataUtil.encodeData(data, ConfigConst.JSON_CONTENT_FORMAT);
+		
+		_Logger.info("SensorData payload size: CBOR = " + cborData.length + ", JSON = " + jsonData.length);
+		
+		assertTrue(cborData.length < jsonData.length / 2);
+		
+		SensorData data2 = dataUtil.decodeData(cborData, ConfigConst.CBOR_CONTENT_FORMAT, SensorData.class);
+		
+		assertEquals(data.getName(), data2.getName());
+		assertEquals(data.getLocationID(), data2.getLocationID());
+		assertEquals(data.getTimeStamp(), data2.getTimeStamp());
+		assertTrue(data.getTimeStampMillis() == data2.getTimeStampMillis());
+		assertTrue(data.getStatusCode() == data2.getStatusCode());
+		assertTrue(data.getLatitude() == data2.getLatitude());
+		assertTrue(data.getValue() == data2.getValue());
+		
+		// the re-encoded JSON must be identical to the original
+		assertEquals(dataUtil.sensorDataToJson(data), dataUtil.sensorDataToJson(data2));
+	}
+	
+	@Test
+	public void testDecodeDataDetectsContentFormat()
+	{
+		DataUtil dataUtil = DataUtil.getInstance();
+		
+		ActuatorData data = new ActuatorData();
+		data.setName(DEFAULT_NAME);
+		data.setCommand(DEFAULT_CMD);
+		data.setValue(DEFAULT_VAL);
+		data.setStateData("state");
+		data.setAsResponse();
+		
+		byte[] cborData = dataUtil.encodeData(data, ConfigConst.CBOR_CONTENT_FORMAT);
+		byte[] jsonData = dataUtil.encodeData(data, ConfigConst.JSON_CONTENT_FORMAT);
+		
+		assertEquals(ConfigConst.CBOR_CONTENT_FORMAT, DataUtil.detectContentFormat(ByteBuffer.wrap(cborData)));
+		assertEquals(ConfigConst.JSON_CONTENT_FORMAT, DataUtil.detectContentFormat(ByteBuffer.wrap(jsonData)));
+		
+		for (byte[] payload : new byte[][] {cborData, jsonData}) {
+			ActuatorData data2 =
+				dataUtil.decodeData(payload, ConfigConst.UNKNOWN_CONTENT_FORMAT, ActuatorData.class);
+			
+			assertTrue(data.getCommand() == data2.getCommand());
+			assertTrue(data.getValue() == data2.getValue());
+			assertEquals(data.getStateData(), data2.getStateData());
+			assertTrue(data2.isResponseFlagEnabled());
+		}
+		
+		assertNull(dataUtil.decodeData(new byte[0], ConfigConst.UNKNOWN_CONTENT_FORMAT, ActuatorData.class));
+	}
+	
+	@Test
+	public void testJsonEncoderMatchesGsonEngine()
+	{
+		DataUtil dataUtil = DataUtil.getInstance();
+		Gson gson = DataUtil.createGsonEngine();
+		
+		SensorData sensorData = new SensorData();
+		sensorData.setName("<T\u00e9st> & 'quoted' \"name\"\t\u2028\ud83d\ude00");
+		sensorData.setLocationID(null);
+		sensorData.setLatitude(-0.0f);
+		sensorData.setLongitude(1.0e7f);
+		sensorData.setElevation(Float.NaN);
+		sensorData.setValue(-123456.0f);
+		
+		ActuatorData actuatorData = new ActuatorData();
+		actuatorData.setName(DEFAULT_NAME);
+		actuatorData.setCommand(Integer.MIN_VALUE);
+		actuatorData.setValue(0.1f);
+		actuatorData.setStateData(null);
+		
+		SystemStateData sysStateData = new SystemStateData();
+		sysStateData.addSensorData(sensorData);
+		sysStateData.addSystemPerformanceData(new SystemPerformanceData());
+		
+		for (BaseIotData data : new BaseIotData[] {sensorData, actuatorData, sysStateData}) {
+			String jsonData = gson.toJson(data, data.getClass());
+			
+			assertArrayEquals(
+				jsonData.getBytes(StandardCharsets.UTF_8),
+				dataUtil.encodeData(data, ConfigConst.JSON_CONTENT_FORMAT));
+		}
+		
+		assertEquals(gson.toJson(sensorData), dataUtil.sensorDataToJson(sensorData));
+		assertEquals(gson.toJson(actuatorData), dataUtil.actuatorDataToJson(actuatorData));
+		assertEquals(gson.toJson(sysStateData), dataUtil.systemStateDataToJson(sysStateData));
+		
+		// an unpaired surrogate can't be encoded as UTF-8, but the String still matches
+		sensorData.setName("\ud83d");
+		
+		assertEquals(gson.toJson(sensorData), dataUtil.sensorDataToJson(sensorData));
+	}
+	
+	@Test
+	public void testDecodedNamesAreCanonicalized()
+	{
+		DataUtil dataUtil = DataUtil.getInstance();
+		
+		SensorData data = new SensorData();
+		data.setName(DEFAULT_NAME);
+		data.setLocationID("CanonicalLocation");
+		data.setValue(DEFAULT_VAL);
+		
+		byte[] jsonData = dataUtil.encodeData(data, ConfigConst.JSON_CONTENT_FORMAT);
+		byte[] cborData = dataUtil.encodeData(data, ConfigConst.CBOR_CONTENT_FORMAT);
+		
+		SensorData data2 = dataUtil.jsonToSensorData(jsonData);
+		
+		long hits = dataUtil.getStringDictionary().getHitCount();
+		
+		// every codec path hands back the same instances
+		SensorData[] decoded = {
+			dataUtil.jsonToSensorData(jsonData),
+			dataUtil.jsonToSensorData(new String(jsonData, StandardCharsets.UTF_8)),
+			dataUtil.decodeData(cborData, ConfigConst.CBOR_CONTENT_FORMAT, SensorData.class)
+		};
+		
+		for (SensorData data3 : decoded) {
+			assertSame(data2.getName(), data3.getName());
+			assertSame(data2.getLocationID(), data3.getLocationID());
+		}
+		
+		assertTrue(dataUtil.getStringDictionary().getHitCount() >= hits + 2 * decoded.length);
+		
+		_Logger.info("String dictionary: " + dataUtil.getStringDictionary());
+	}
+
+	@Test
+	public void testConcurrentSensorDataToJsonAndBack() throws Exception
+	{
+		DataUtil dataUtil = DataUtil.getInstance();
+		
+		Thread[] threads = new Thread[4];
+		boolean[] results = new boolean[threads.length];
+		
+		for (int i = 0; i < threads.length; i++) {
+			final int index = i;
+			
+			threads[i] = new Thread(() -> {
+				boolean success = true;
+				
+				for (int j = 0; j < 1000 && success; j++) {
+					SensorData data = new SensorData();
+					data.setName(DEFAULT_NAME + index);
+					data.setValue(j);
+					
+					SensorData data2 = dataUtil.jsonToSensorData(dataUtil.sensorDataToJson(data));
+					
+					success = data.getName().equals(data2.getName()) && data.getValue() == data2.getValue();
+				}
+				
+				results[index] = success;
+			});
+			
+			threads[i].start();
+		}
+		
+		for (int i = 0; i < threads.length; i++) {
+			threads[i].join();
+			assertTrue(results[i]);
+		}
+	}
+	
 	/**
 	 * NOTE: SystemStateData is not required for the exercises in Programming the IoT.
-	 * The test case below is disabled by default, but can easily be re-enabled by
-	 * uncommenting the @Test attribute if SystemStateData is optionally implemented.
+	 * It's implemented in this tree, so the test cases below are enabled.
 	 * 
 	 */
 	
-//	@Test
+	@Test
 	public void testSystemStateDatatoJsonAndBack()
 	{
 		DataUtil dataUtil = DataUtil.getInstance();
@@ -142,4 +456,50 @@ public class DataUtilTest
 		assertTrue(data.getCommand() == data2.getCommand());
 	}
 	
+	@Test
+	public void testLargeSystemStateDataSnapshot()
+	{
+		DataUtil dataUtil = DataUtil.getInstance();
+		
+		SystemStateData data = new SystemStateData();
+		data.setCommand(ConfigConst.GET_SYSTEM_STATE_COMMAND);
+		
+		for (int i = 0; i < 2000; i++) {
+			SensorData sensorData = new SensorData();
+			sensorData.setName(DEFAULT_NAME + (i % 10));
+			sensorData.setValue(i);
+			
+			assertTrue(data.addSensorData(sensorData));
+			
+			if (i % 4 == 0) {
+				SystemPerformanceData sysPerfData = new SystemPerformanceData();
+				sysPerfData.setCpuUtilization(i);
+				
+				assertTrue(data.addSystemPerformanceData(sysPerfData));
+			}
+		}
+		
+		String jsonData = dataUtil.systemStateDataToJson(data);
+		
+		StringBuilder streamedJson = new StringBuilder();
+		dataUtil.systemStateDataToJson(data, streamedJson);
+		
+		assertEquals(jsonData, streamedJson.toString());
+		
+		SystemStateData fromString = dataUtil.jsonToSystemStateData(jsonData);
+		SystemStateData fromBytes = dataUtil.jsonToSystemStateData(jsonData.getBytes(StandardCharsets.UTF_8));
+		SystemStateData fromCbor =
+			dataUtil.decodeData(
+				dataUtil.encodeData(data, ConfigConst.CBOR_CONTENT_FORMAT),
+				ConfigConst.CBOR_CONTENT_FORMAT, SystemStateData.class);
+		
+		for (SystemStateData data2 : new SystemStateData[] {fromString, fromBytes, fromCbor}) {
+			assertEquals(data.getCommand(), data2.getCommand());
+			assertEquals(2000, data2.getSensorDataList().size());
+			assertEquals(500, data2.getSystemPerformanceDataList().size());
+			assertTrue(data2.getSensorDataList().get(1999).getValue() == 1999.0f);
+			assertEquals(jsonData, dataUtil.systemStateDataToJson(data2));
+		}
+	}
+	
 }
@@ -0,0 +1,140 @@
+/**
+ * This class is part of the Programming the Internet of Things
+ * project, and is available via the MIT License, which can be
+ * found in the LICENSE file at the top level of this repository.
+ *
+ * Copyright (c) 2020 by Andrew D. King
+ */
+
+package programmingtheiot.part02.unit.data;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.logging.Logger;
+
+import org.junit.Test;
+
+import programmingtheiot.common.ConfigConst;
+import programmingtheiot.data.DataUtil;
+import programmingtheiot.data.EncodedIotData;
+import programmingtheiot.data.SensorData;
+import programmingtheiot.data.SystemPerformanceData;
+
+/**
+ * This test case class contains very basic unit tests for
+ * EncodedIotData. It should not be considered complete,
+ * but serve as a starting point for the student implementing
+ * additional functionality within their Programming the IoT
+ * environment.
+ *
+ */
+public class EncodedIotDataTest
+{
+	// static
+
+	private static final Logger _Logger =
+		Logger.getLogger(EncodedIotDataTest.class.getName());
+
+	public static final int THREAD_COUNT = 8;
+
+
+	// test methods
+
+	@Test
+	public void testPayloadIsEncodedOnce()
+	{
+		SensorData data = createSensorData();
+		EncodedIotData encodedData = new EncodedIotData(data);
+
+		assertFalse(encodedData.isEncoded(ConfigConst.JSON_CONTENT_FORMAT));
+
+		byte[] jsonPayload = encodedData.getJsonPayload();
+
+		assertTrue(encodedData.isEncoded(ConfigConst.JSON_CONTENT_FORMAT));
+		assertFalse(encodedData.isEncoded(ConfigConst.CBOR_CONTENT_FORMAT));
+
+		// every sink gets the same (shared) payload
+		assertSame(jsonPayload, encodedData.getJsonPayload());
+		assertSame(jsonPayload, encodedData.getPayload(ConfigConst.JSON_CONTENT_FORMAT));
+		assertSame(encodedData.getPayload(ConfigConst.CBOR_CONTENT_FORMAT), encodedData.getPayload(ConfigConst.CBOR_CONTENT_FORMAT));
+
+		DataUtil dataUtil = DataUtil.getInstance();
+
+		assertArrayEquals(dataUtil.encodeData(data, ConfigConst.JSON_CONTENT_FORMAT), jsonPayload);
+		assertArrayEquals(
+			dataUtil.encodeData(data, ConfigConst.CBOR_CONTENT_FORMAT),
+			encodedData.getPayload(ConfigConst.CBOR_CONTENT_FORMAT));
+
+		assertSame(data, encodedData.getData());
+		assertEquals(data.getName(), encodedData.getName());
+	}
+
+	@Test
+	public void testConcurrentSinksShareOnePayload() throws Exception
+	{
+		SystemPerformanceData data = new SystemPerformanceData();
+		data.setCpuUtilization(12.5f);
+		data.setMemoryUtilization(34.5f);
+
+		EncodedIotData encodedData = new EncodedIotData(data);
+		CountDownLatch startLatch = new CountDownLatch(1);
+
+		byte[][] payloads = new byte[THREAD_COUNT][];
+		Thread[] threads  = new Thread[THREAD_COUNT];
+
+		for (int i = 0; i < THREAD_COUNT; i++) {
+			int index = i;
+
+			threads[i] = new Thread(() -> {
+				try {
+					startLatch.await();
+					payloads[index] = encodedData.getJsonPayload();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			});
+
+			threads[i].start();
+		}
+
+		startLatch.countDown();
+
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		for (byte[] payload : payloads) {
+			assertSame(payloads[0], payload);
+		}
+
+		SystemPerformanceData data2 = DataUtil.getInstance().jsonToSystemPerformanceData(payloads[0]);
+
+		assertEquals(data.getCpuUtilization(), data2.getCpuUtilization(), 0.0f);
+		assertEquals(data.getMemoryUtilization(), data2.getMemoryUtilization(), 0.0f);
+
+		_Logger.info("Shared payload: " + payloads[0].length + " bytes");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNullData()
+	{
+		new EncodedIotData(null);
+	}
+
+
+	// private methods
+
+	private SensorData createSensorData()
+	{
+		SensorData data = new SensorData();
+
+		data.setName(ConfigConst.TEMP_SENSOR_NAME);
+		data.setLocationID("EncodedIotDataLocation");
+		data.setTypeID(ConfigConst.TEMP_SENSOR_TYPE);
+		data.setValue(21.5f);
+
+		return data;
+	}
+
+}
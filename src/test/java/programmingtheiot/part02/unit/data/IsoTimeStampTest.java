@@ -0,0 +1,108 @@
+/**
+ * This class is part of the Programming the Internet of Things
+ * project, and is available via the MIT License, which can be
+ * found in the LICENSE file at the top level of this repository.
+ * 
+ * Copyright (c) 2020 by Andrew D. King
+ */ 
+
+package programmingtheiot.part02.unit.data;
+
+import static org.junit.Assert.*;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Random;
+
+import org.junit.Test;
+
+import programmingtheiot.data.IsoTimeStamp;
+
+/**
+ * This test case class contains very basic unit tests for
+ * IsoTimeStamp. It should not be considered complete,
+ * but serve as a starting point for the student implementing
+ * additional functionality within their Programming the IoT
+ * environment.
+ *
+ */
+public class IsoTimeStampTest
+{
+	// static
+	
+	public static final int RANDOM_TEST_RUNS = 10000;
+	
+	
+	// test methods
+	
+	@Test
+	public void testParseMatchesOffsetDateTime()
+	{
+		String[] timeStamps = {
+			"2020-12-27T10:13:30Z",
+			"2020-12-27T10:13:30.123Z",
+			"2020-12-27T10:13:30.123456789Z",
+			"2020-12-27T10:13:30.1+01:00",
+			"2020-12-27T10:13:30.120-05:30",
+			"2020-12-27T10:13Z",
+			"2020-02-29T23:59:59.999+14:00",
+			"1970-01-01T00:00:00Z",
+			"1969-12-31T23:59:59.999Z",
+			"2000-03-01T00:00:00-12:00"
+		};
+		
+		for (String timeStamp : timeStamps) {
+			assertEquals(timeStamp, toMillis(timeStamp), IsoTimeStamp.parseMillis(timeStamp));
+		}
+	}
+	
+	@Test
+	public void testParseRandomTimeStamps()
+	{
+		Random random = new Random(42L);
+		
+		for (int i = 0; i < RANDOM_TEST_RUNS; i++) {
+			long millis = random.nextLong() % 8_000_000_000_000L;
+			int offsetMinutes = (random.nextInt(27 * 60) - 12 * 60) / 15 * 15;
+			
+			String timeStamp =
+				Instant.ofEpochMilli(millis).atOffset(ZoneOffset.ofTotalSeconds(offsetMinutes * 60)).toString();
+			
+			assertEquals(timeStamp, millis, IsoTimeStamp.parseMillis(timeStamp));
+		}
+	}
+	
+	@Test
+	public void testParseInvalidTimeStamps()
+	{
+		String[] timeStamps = {
+			null,
+			"",
+			"2020-12-27",
+			"2020-12-27T10:13:30",
+			"2020-12-27T10:13:30.Z",
+			"2020-12-27T10:13:30.1234567890Z",
+			"2020-12-27T24:00:00Z",
+			"2020-13-01T10:13:30Z",
+			"2021-02-29T10:13:30Z",
+			"2020-12-27T10:13:30+1",
+			"2020-12-27T10:13:30+19:00",
+			"2020-12-27T10:13:30Zulu",
+			"2020/12/27T10:13:30Z"
+		};
+		
+		for (String timeStamp : timeStamps) {
+			assertEquals(timeStamp, IsoTimeStamp.NO_MILLIS, IsoTimeStamp.parseMillis(timeStamp));
+		}
+	}
+	
+	
+	// private methods
+	
+	private long toMillis(String timeStamp)
+	{
+		return OffsetDateTime.parse(timeStamp).toInstant().toEpochMilli();
+	}
+	
+}
@@ -0,0 +1,146 @@
+/**
+ * This class is part of the Programming the Internet of Things
+ * project, and is available via the MIT License, which can be
+ * found in the LICENSE file at the top level of this repository.
+ *
+ * Copyright (c) 2020 by Andrew D. King
+ */
+
+package programmingtheiot.part02.unit.data;
+
+import static org.junit.Assert.*;
+
+import java.util.logging.Logger;
+
+import org.junit.Test;
+
+import programmingtheiot.common.ConfigConst;
+import programmingtheiot.data.SensorData;
+import programmingtheiot.data.SensorDataBatch;
+
+/**
+ * This test case class contains very basic unit tests for
+ * SensorDataBatch. It should not be considered complete,
+ * but serve as a starting point for the student implementing
+ * additional functionality within their Programming the IoT
+ * environment.
+ *
+ */
+public class SensorDataBatchTest
+{
+	// static
+
+	private static final Logger _Logger =
+		Logger.getLogger(SensorDataBatchTest.class.getName());
+
+	public static final String DEFAULT_LOCATION = "SensorDataBatchLocation";
+	public static final int    READING_COUNT    = 100;
+
+
+	// test methods
+
+	@Test
+	public void testAppendAndGrow()
+	{
+		SensorDataBatch batch = new SensorDataBatch(1);
+
+		for (int i = 0; i < READING_COUNT; i++) {
+			String name = (i % 2 == 0 ? ConfigConst.TEMP_SENSOR_NAME : ConfigConst.CPU_UTIL_NAME);
+
+			assertEquals(i, batch.append(name, DEFAULT_LOCATION, ConfigConst.TEMP_SENSOR_TYPE, 0, i, 1000L + i));
+		}
+
+		assertEquals(READING_COUNT, batch.size());
+
+		for (int i = 0; i < READING_COUNT; i++) {
+			assertTrue(batch.getValue(i) == i);
+			assertEquals(1000L + i, batch.getTimeStampMillis(i));
+			assertEquals(DEFAULT_LOCATION, batch.getLocationID(i));
+		}
+
+		// dictionary encoded: two distinct names, one location
+		assertEquals(batch.getNameCode(0), batch.getNameCode(2));
+		assertNotEquals(batch.getNameCode(0), batch.getNameCode(1));
+		assertEquals(batch.getLocationCode(0), batch.getLocationCode(READING_COUNT - 1));
+
+		batch.clear();
+
+		assertTrue(batch.isEmpty());
+	}
+
+	@Test
+	public void testSensorDataConversion()
+	{
+		SensorData data = new SensorData();
+		data.setName(ConfigConst.TEMP_SENSOR_NAME);
+		data.setTypeID(ConfigConst.TEMP_SENSOR_TYPE);
+		data.setStatusCode(-1);
+		data.setValue(21.5f);
+
+		SensorData data2 = new SensorData();
+		data2.setName(ConfigConst.CPU_UTIL_NAME);
+		data2.setLocationID(DEFAULT_LOCATION);
+		data2.setValue(42.0f);
+
+		SensorDataBatch batch = SensorDataBatch.fromSensorData(data, null, data2);
+
+		assertEquals(2, batch.size());
+
+		SensorData[] dataArray = batch.toSensorDataArray();
+
+		for (int i = 0; i < dataArray.length; i++) {
+			SensorData orig = (i == 0 ? data : data2);
+
+			assertEquals(orig.getName(), dataArray[i].getName());
+			assertEquals(orig.getLocationID(), dataArray[i].getLocationID());
+			assertEquals(orig.getTypeID(), dataArray[i].getTypeID());
+			assertEquals(orig.getStatusCode(), dataArray[i].getStatusCode());
+			assertEquals(orig.getTimeStampMillis(), dataArray[i].getTimeStampMillis());
+			assertTrue(orig.getValue() == dataArray[i].getValue());
+		}
+	}
+
+	@Test
+	public void testSliceAndForEach()
+	{
+		SensorDataBatch batch = new SensorDataBatch();
+
+		for (int i = 0; i < READING_COUNT; i++) {
+			batch.append(ConfigConst.TEMP_SENSOR_NAME, DEFAULT_LOCATION, ConfigConst.TEMP_SENSOR_TYPE, 0, i, i);
+		}
+
+		SensorDataBatch slice = batch.slice(10, 20);
+		SensorDataBatch subSlice = slice.slice(5, 10);
+
+		assertEquals(10, slice.size());
+		assertTrue(slice.isReadOnly());
+		assertTrue(slice.getValue(0) == 10.0f);
+		assertTrue(subSlice.getValue(0) == 15.0f);
+
+		float[] sum = new float[1];
+
+		slice.forEach((index, name, locationID, typeID, statusCode, value, timeStampMillis) -> {
+			assertEquals(ConfigConst.TEMP_SENSOR_NAME, name);
+			assertTrue(value == 10 + index);
+
+			sum[0] += value;
+		});
+
+		assertTrue(sum[0] == 145.0f);
+
+		try {
+			slice.append(ConfigConst.TEMP_SENSOR_NAME, DEFAULT_LOCATION, 0, 0, 0.0f, 0L);
+			fail("Appending to a slice must fail.");
+		} catch (IllegalStateException e) {
+			// expected
+		}
+
+		try {
+			slice.getValue(10);
+			fail("Reading past the end of a slice must fail.");
+		} catch (IndexOutOfBoundsException e) {
+			// expected
+		}
+	}
+
+}
@@ -0,0 +1,185 @@
+/**
+ * This class is part of the Programming the Internet of Things
+ * project, and is available via the MIT License, which can be
+ * found in the LICENSE file at the top level of this repository.
+ *
+ * Copyright (c) 2020 by Andrew D. King
+ */
+
+package programmingtheiot.part02.unit.data;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.logging.Logger;
+
+import org.junit.Test;
+
+import programmingtheiot.common.ConfigConst;
+import programmingtheiot.data.DataUtil;
+import programmingtheiot.data.SensorDataBatch;
+import programmingtheiot.data.SensorDataSeriesCodec;
+
+/**
+ * This test case class contains very basic unit tests for
+ * SensorDataSeriesCodec. It should not be considered complete,
+ * but serve as a starting point for the student implementing
+ * additional functionality within their Programming the IoT
+ * environment.
+ *
+ */
+public class SensorDataSeriesCodecTest
+{
+	// static
+
+	private static final Logger _Logger =
+		Logger.getLogger(SensorDataSeriesCodecTest.class.getName());
+
+	public static final String DEFAULT_LOCATION = "SensorDataSeriesLocation";
+	public static final int    READING_COUNT    = 1000;
+	public static final long   START_MILLIS     = 1600000000000L;
+
+
+	// test methods
+
+	@Test
+	public void testRegularSeriesCompression()
+	{
+		SensorDataBatch batch = new SensorDataBatch();
+
+		// a reading every 5 secs (with some jitter), slowly changing
+		for (int i = 0; i < READING_COUNT; i++) {
+			long  timeStamp = START_MILLIS + i * 5000L + (i % 7 == 0 ? 3 : 0);
+			float value     = 20.0f + (i / 50) * 0.5f;
+
+			batch.append(ConfigConst.TEMP_SENSOR_NAME, DEFAULT_LOCATION, ConfigConst.TEMP_SENSOR_TYPE, 0, value, timeStamp);
+		}
+
+		byte[] series = SensorDataSeriesCodec.encode(batch);
+
+		assertTrue(SensorDataSeriesCodec.isSeries(ByteBuffer.wrap(series)));
+		assertBatchEquals(batch, SensorDataSeriesCodec.decode(series));
+
+		int jsonSize =
+			DataUtil.getInstance().sensorDataToJson(batch.toSensorData(0)).getBytes(StandardCharsets.UTF_8).length;
+
+		double bitsPerReading = series.length * 8.0d / READING_COUNT;
+
+		_Logger.info(
+			String.format(
+				"Series size: %d bytes for %d readings (%.2f bits per reading, vs %d bytes per JSON reading)",
+				series.length, READING_COUNT, bitsPerReading, jsonSize));
+
+		assertTrue(bitsPerReading < 16.0d);
+	}
+
+	@Test
+	public void testMixedSensorsAndEdgeValues()
+	{
+		Random random = new Random(42L);
+		SensorDataBatch batch = new SensorDataBatch();
+
+		float[] edgeValues = {
+			0.0f, -0.0f, Float.NaN, Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY,
+			Float.MIN_VALUE, Float.MAX_VALUE, -1.5f
+		};
+
+		String[] names = { ConfigConst.TEMP_SENSOR_NAME, ConfigConst.CPU_UTIL_NAME, null };
+
+		long timeStamp = START_MILLIS;
+
+		for (int i = 0; i < READING_COUNT; i++) {
+			// irregular, sometimes decreasing and occasionally huge jumps
+			timeStamp += (i % 100 == 0 ? random.nextLong() >> 8 : random.nextInt(20000) - 5000);
+
+			float value = (i < edgeValues.length ? edgeValues[i] : random.nextFloat() * 100.0f);
+
+			batch.append(
+				names[i % names.length], (i % 2 == 0 ? DEFAULT_LOCATION : null),
+				i % 3, (i % 10 == 0 ? -1 : 0), value, timeStamp);
+		}
+
+		SensorDataBatch batch2 = SensorDataSeriesCodec.decode(SensorDataSeriesCodec.encode(batch));
+
+		assertEquals(batch.size(), batch2.size());
+
+		// readings come back grouped by sensor, so compare in that order
+		assertBatchEquals(groupBySensor(batch), batch2);
+	}
+
+	@Test
+	public void testMalformedPayload()
+	{
+		SensorDataBatch batch = new SensorDataBatch();
+
+		for (int i = 0; i < 10; i++) {
+			batch.append(ConfigConst.TEMP_SENSOR_NAME, DEFAULT_LOCATION, 0, 0, i, START_MILLIS + i);
+		}
+
+		byte[] series = SensorDataSeriesCodec.encode(batch);
+
+		try {
+			SensorDataSeriesCodec.decode(Arrays.copyOf(series, series.length - 4));
+			fail("Decoding a truncated series must fail.");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+
+		try {
+			SensorDataSeriesCodec.decode("{}".getBytes(StandardCharsets.UTF_8));
+			fail("Decoding JSON as a series must fail.");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+
+		assertTrue(SensorDataSeriesCodec.decode(SensorDataSeriesCodec.encode(new SensorDataBatch())).isEmpty());
+	}
+
+
+	// private methods
+
+	private void assertBatchEquals(SensorDataBatch expected, SensorDataBatch actual)
+	{
+		assertEquals(expected.size(), actual.size());
+
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals(expected.getName(i), actual.getName(i));
+			assertEquals(expected.getLocationID(i), actual.getLocationID(i));
+			assertEquals(expected.getTypeID(i), actual.getTypeID(i));
+			assertEquals(expected.getStatusCode(i), actual.getStatusCode(i));
+			assertEquals(expected.getTimeStampMillis(i), actual.getTimeStampMillis(i));
+			assertEquals(
+				Float.floatToRawIntBits(expected.getValue(i)), Float.floatToRawIntBits(actual.getValue(i)));
+		}
+	}
+
+	private SensorDataBatch groupBySensor(SensorDataBatch batch)
+	{
+		SensorDataBatch grouped = new SensorDataBatch();
+		boolean[] done = new boolean[batch.size()];
+
+		for (int i = 0; i < batch.size(); i++) {
+			if (done[i]) {
+				continue;
+			}
+
+			for (int j = i; j < batch.size(); j++) {
+				if (! done[j]
+					&& batch.getNameCode(j) == batch.getNameCode(i)
+					&& batch.getLocationCode(j) == batch.getLocationCode(i)) {
+					grouped.append(
+						batch.getName(j), batch.getLocationID(j), batch.getTypeID(j),
+						batch.getStatusCode(j), batch.getValue(j), batch.getTimeStampMillis(j));
+
+					done[j] = true;
+				}
+			}
+		}
+
+		return grouped;
+	}
+
+}
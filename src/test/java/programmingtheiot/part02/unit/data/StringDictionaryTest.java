@@ -0,0 +1,121 @@
+/**
+ * This class is part of the Programming the Internet of Things
+ * project, and is available via the MIT License, which can be
+ * found in the LICENSE file at the top level of this repository.
+ *
+ * Copyright (c) 2020 by Andrew D. King
+ */
+
+package programmingtheiot.part02.unit.data;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.logging.Logger;
+
+import org.junit.Test;
+
+import programmingtheiot.common.ConfigConst;
+import programmingtheiot.data.StringDictionary;
+
+/**
+ * This test case class contains very basic unit tests for
+ * StringDictionary. It should not be considered complete,
+ * but serve as a starting point for the student implementing
+ * additional functionality within their Programming the IoT
+ * environment.
+ *
+ */
+public class StringDictionaryTest
+{
+	// static
+
+	private static final Logger _Logger =
+		Logger.getLogger(StringDictionaryTest.class.getName());
+
+	public static final String DEFAULT_LOCATION = "StringDictionaryLocation";
+
+
+	// test methods
+
+	@Test
+	public void testCanonicalize()
+	{
+		StringDictionary dictionary = new StringDictionary();
+
+		String str  = new String(ConfigConst.TEMP_SENSOR_NAME);
+		String str2 = new String(ConfigConst.TEMP_SENSOR_NAME);
+
+		assertNotSame(str, str2);
+		assertSame(str, dictionary.canonicalize(str));
+		assertSame(str, dictionary.canonicalize(str2));
+		assertNull(dictionary.canonicalize(null));
+
+		assertEquals(1, dictionary.getHitCount());
+		assertEquals(1, dictionary.getMissCount());
+		assertTrue(dictionary.getHitRatio() == 0.5d);
+
+		dictionary.resetStatistics();
+
+		assertEquals(0, dictionary.getHitCount());
+		assertSame(str, dictionary.canonicalize(str2));
+	}
+
+	@Test
+	public void testDecodeFromBytes()
+	{
+		StringDictionary dictionary = new StringDictionary();
+
+		byte[] bytes = ("xx" + DEFAULT_LOCATION + "yy").getBytes(StandardCharsets.UTF_8);
+		int    len   = DEFAULT_LOCATION.length();
+
+		String canonical = dictionary.canonicalize(new String(DEFAULT_LOCATION));
+
+		// heap and direct buffers both resolve to the cached instance
+		ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+		direct.put(bytes).flip();
+
+		assertSame(canonical, dictionary.decode(ByteBuffer.wrap(bytes), 2, len));
+		assertSame(canonical, dictionary.decode(direct, 2, len));
+		assertEquals(0, direct.position());
+
+		// a different value is created once, then cached
+		String other = dictionary.decode(ByteBuffer.wrap(bytes), 0, len);
+
+		assertEquals("xx" + DEFAULT_LOCATION.substring(0, len - 2), other);
+		assertSame(other, dictionary.decode(ByteBuffer.wrap(bytes), 0, len));
+
+		// non-ASCII values are decoded, but not cached
+		byte[] utf8 = "Temp\u00e9rature".getBytes(StandardCharsets.UTF_8);
+
+		assertEquals("Temp\u00e9rature", dictionary.decode(ByteBuffer.wrap(utf8), 0, utf8.length));
+		assertEquals(3, dictionary.getHitCount());
+	}
+
+	@Test
+	public void testBoundedCapacity()
+	{
+		StringDictionary dictionary = new StringDictionary(100, 8);
+
+		assertEquals(128, dictionary.getCapacity());
+
+		for (int i = 0; i < 10000; i++) {
+			dictionary.canonicalize("Loc" + i);
+		}
+
+		assertTrue(dictionary.size() <= dictionary.getCapacity());
+
+		// longer than the max length, so never cached
+		String longStr = "ThisIsTooLong";
+
+		dictionary.resetStatistics();
+
+		assertSame(longStr, dictionary.canonicalize(longStr));
+		assertNotSame(longStr, dictionary.canonicalize(new String(longStr)));
+		assertEquals(0, dictionary.getHitCount() + dictionary.getMissCount());
+
+		_Logger.info("Bounded dictionary: " + dictionary + ", size = " + dictionary.size());
+	}
+
+}
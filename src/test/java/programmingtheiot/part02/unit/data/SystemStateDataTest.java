@@ -65,12 +65,11 @@ public class SystemStateDataTest
 	
 	/**
 	 * NOTE: SystemStateData is not required for the exercises in Programming the IoT.
-	 * The test cases below are disabled by default, but can easily be re-enabled by
-	 * uncommenting the @Test attribute if SystemStateData is optionally implemented.
+	 * It's implemented in this tree, so the test cases below are enabled.
 	 * 
 	 */
 	
-//	@Test
+	@Test
 	public void testDefaultValues()
 	{
 		SystemStateData ssd = new SystemStateData();
@@ -80,7 +79,7 @@ public class SystemStateDataTest
 		assertTrue(ssd.getCommand() == ConfigConst.DEFAULT_COMMAND);
 	}
 	
-//	@Test
+	@Test
 	public void testParameterUpdates()
 	{
 		SystemStateData ssd = createTestData();
@@ -104,7 +103,7 @@ public class SystemStateDataTest
 		}
 	}
 	
-//	@Test
+	@Test
 	public void testFullUpdate()
 	{
 		SystemStateData ssd = new SystemStateData();
@@ -136,6 +135,33 @@ public class SystemStateDataTest
 	}
 	
 	
+	@Test
+	public void testBoundedCapacity()
+	{
+		SystemStateData ssd = new SystemStateData(null, 2);
+		
+		assertTrue(ssd.addSensorData(new SensorData()));
+		assertTrue(ssd.addSensorData(new SensorData()));
+		assertFalse(ssd.addSensorData(new SensorData()));
+		assertFalse(ssd.addSystemPerformanceData(null));
+		
+		assertEquals(2, ssd.getSensorDataList().size());
+		assertEquals(0, ssd.getSystemPerformanceDataList().size());
+		
+		// the lists are read-only views
+		try {
+			ssd.getSensorDataList().add(new SensorData());
+			fail("The sensor data list must not be modifiable.");
+		} catch (UnsupportedOperationException e) {
+			// expected
+		}
+		
+		ssd.clearData();
+		
+		assertTrue(ssd.getSensorDataList().isEmpty());
+	}
+	
+	
 	// private
 	
 	private SystemStateData createTestData()